@@ -32,6 +32,22 @@ curl -0 -v http://localhost:8080/transfer \
     -H 'Content-Type: application/json; charset=utf-8' \
     -d @transfer_to_unknown_currency.json | jq .
 
+# repeated with the same Idempotency-Key, executed only once
+for i in 1 2; do
+  curl -0 -v http://localhost:8080/transfer \
+      -H 'Content-Type: application/json; charset=utf-8' \
+      -H 'Idempotency-Key: 6f0c7a2e-example' \
+      -d @transfer_without_conversion.json | jq .
+done
+
+curl -0 -v http://localhost:8080/transfers/batch \
+    -H 'Content-Type: application/json; charset=utf-8' \
+    -d @transfer_batch.json | jq .
+
+curl -0 -v http://localhost:8080/transfers/payout \
+    -H 'Content-Type: application/json; charset=utf-8' \
+    -d @payout.json | jq .
+
 curl -0 -v http://localhost:8080/history \
     -H 'Content-Type: application/json; charset=utf-8' \
     -d @transfer_to_unknown_currency.json | jq .
@@ -47,3 +63,11 @@ curl -0 -v http://localhost:8080/history \
 curl -0 -v http://localhost:8080/history \
     -H 'Content-Type: application/json; charset=utf-8' \
     -d @history_of_unknown_account.json | jq .
+
+curl -0 -v 'http://localhost:8080/history/export?account_id=02bbeffa-0de8-44f9-99a6-5ee2205ec2e9&format=csv'
+
+curl -0 -v 'http://localhost:8080/clients/39db54e0-3627-4d6b-98a1-93ef930f96db/timeline?limit=20' | jq .
+
+curl -0 -v 'http://localhost:8080/balance?account_id=02bbeffa-0de8-44f9-99a6-5ee2205ec2e9&at=2024-05-31T23:59:59Z' | jq .
+
+curl -0 -v 'http://localhost:8080/stats?account_id=02bbeffa-0de8-44f9-99a6-5ee2205ec2e9' | jq .
@@ -2,11 +2,24 @@ package com.zigurs.ledger;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import java.time.Clock;
 
 @SpringBootApplication
+@EnableScheduling
 public class LedgerApplication {
 
     public static void main(String[] args) {
         SpringApplication.run(LedgerApplication.class, args);
     }
+
+    /**
+     * Time source of components that measure ages (FX rate table, cached history), replaced in their tests.
+     */
+    @Bean
+    public Clock clock() {
+        return Clock.systemUTC();
+    }
 }
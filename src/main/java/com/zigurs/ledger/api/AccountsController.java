@@ -1,17 +1,25 @@
 package com.zigurs.ledger.api;
 
+import com.zigurs.ledger.api.exceptions.BadRequestException;
 import com.zigurs.ledger.api.exceptions.NotFoundException;
 import com.zigurs.ledger.api.requests.AccountsRequest;
 import com.zigurs.ledger.api.responses.AccountView;
+import com.zigurs.ledger.api.responses.BalanceView;
 import com.zigurs.ledger.data.AccountsRepository;
 import com.zigurs.ledger.data.ClientsRepository;
+import com.zigurs.ledger.model.Account;
 
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * Accounts controller following Spring Boot patterns.
@@ -21,13 +29,19 @@ public class AccountsController {
 
     private final ClientsRepository clientsRepository;
     private final AccountsRepository accountsRepository;
+    private final HotAccountsService hotAccountsService;
+    private final HistoricalBalanceService historicalBalanceService;
 
     public AccountsController(
             ClientsRepository clientsRepository,
-            AccountsRepository accountsRepository
+            AccountsRepository accountsRepository,
+            HotAccountsService hotAccountsService,
+            HistoricalBalanceService historicalBalanceService
     ) {
         this.clientsRepository = clientsRepository;
         this.accountsRepository = accountsRepository;
+        this.hotAccountsService = hotAccountsService;
+        this.historicalBalanceService = historicalBalanceService;
     }
 
     @PostMapping("accounts")
@@ -42,8 +56,42 @@ public class AccountsController {
                 accountsRepository
                         .findByClientId(request.client_id())
                         .stream()
-                        .map(AccountView::fromModel)
+                        .map(this::toView)
                         .toList()
         );
     }
+
+    /**
+     * Balance of the account as of the given instant (ISO-8601), incl. transactions at that very instant.
+     */
+    @GetMapping("balance")
+    public ResponseEntity<BalanceView> getBalance(
+            @RequestParam("account_id") UUID accountId,
+            @RequestParam("at") String atParam
+    ) {
+        Instant at;
+        try {
+            at = Instant.parse(atParam);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException("at must be an ISO-8601 timestamp");
+        }
+
+        if (at.isAfter(Instant.now())) {
+            throw new BadRequestException("at must not be in the future");
+        }
+
+        Account account = accountsRepository.findById(accountId).orElseThrow(
+                () -> new NotFoundException("account not found")
+        );
+
+        return ResponseEntity.ok(BalanceView.fromModel(account, at, historicalBalanceService.balanceAt(account, at)));
+    }
+
+    private AccountView toView(Account account) {
+        // hot accounts have their balance spread across sub-balance slots
+        if (account.getSlots() > 0) {
+            return AccountView.fromModel(account, hotAccountsService.balance(account));
+        }
+        return AccountView.fromModel(account);
+    }
 }
@@ -0,0 +1,132 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.api.responses.TimelineEntryView;
+import com.zigurs.ledger.data.LedgerEntriesRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.HistoryEntry;
+
+import lombok.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * History of all accounts of a client as a single timeline, newest first.
+ * <p>
+ * Built with a k-way merge of per-account history cursors - every account is read in small batches (its share of
+ * the page), and only accounts whose entries make it into the page are read further. Both sides of a transfer between
+ * accounts of the client share the same position, so they are always returned on the same page (which might then
+ * exceed the limit by one).
+ */
+@Component
+public class ClientTimeline {
+
+    // same ordering as history queries - the database compares UUIDs as unsigned, unlike UUID.compareTo
+    private static final Comparator<HistoryEntry> NEWEST_FIRST = Comparator
+            .comparing(HistoryEntry::timestamp)
+            .thenComparing(entry -> entry.transactionId().getMostSignificantBits(), Long::compareUnsigned)
+            .thenComparing(entry -> entry.transactionId().getLeastSignificantBits(), Long::compareUnsigned)
+            .reversed()
+            // sides of the same transfer, in any (but stable) order
+            .thenComparing(HistoryEntry::accountId);
+
+    private final LedgerEntriesRepository ledgerEntriesRepository;
+
+    public ClientTimeline(@NonNull LedgerEntriesRepository ledgerEntriesRepository) {
+        this.ledgerEntriesRepository = ledgerEntriesRepository;
+    }
+
+    /**
+     * @param accounts accounts of the client
+     * @param cursor   position of the last entry of the previous page, first page if null
+     * @return entries of the page, newest first
+     */
+    public List<TimelineEntryView> page(@NonNull List<Account> accounts, HistoryCursor cursor, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+
+        // the page (and the other side of a transfer at its end) split evenly, accounts with more recent
+        // entries are read again as needed
+        int batchSize = Math.max(1, (int) Math.ceil((limit + 1.0) / Math.max(1, accounts.size())));
+
+        PriorityQueue<AccountCursor> heads = new PriorityQueue<>(Comparator.comparing(AccountCursor::head, NEWEST_FIRST));
+        for (Account account : accounts) {
+            AccountCursor accountCursor = new AccountCursor(account, cursor, batchSize);
+            if (accountCursor.head() != null) {
+                heads.add(accountCursor);
+            }
+        }
+
+        List<TimelineEntryView> page = new ArrayList<>(limit + 1);
+        HistoryEntry last = null;
+        while (!heads.isEmpty()) {
+            AccountCursor next = heads.peek();
+            if (page.size() >= limit && !sameTransaction(last, next.head())) {
+                break;
+            }
+
+            heads.poll();
+            last = next.next();
+            page.add(TimelineEntryView.fromModel(next.account, last));
+
+            if (next.head() != null) {
+                heads.add(next);
+            }
+        }
+        return page;
+    }
+
+    private static boolean sameTransaction(HistoryEntry last, HistoryEntry next) {
+        return last != null && last.transactionId().equals(next.transactionId());
+    }
+
+    /**
+     * History of a single account, read in batches as it is consumed.
+     */
+    private final class AccountCursor {
+
+        private final Account account;
+        private final int batchSize;
+        private final Deque<HistoryEntry> buffered = new ArrayDeque<>();
+        private HistoryCursor position;
+        private boolean exhausted;
+
+        AccountCursor(Account account, HistoryCursor position, int batchSize) {
+            this.account = account;
+            this.position = position;
+            this.batchSize = batchSize;
+        }
+
+        /**
+         * @return the next entry, without consuming it, null once history of the account runs out
+         */
+        HistoryEntry head() {
+            if (buffered.isEmpty() && !exhausted) {
+                List<HistoryEntry> batch;
+                if (position != null) {
+                    batch = ledgerEntriesRepository.findHistoryBefore(account.getId(), position.timestamp(), position.id(), batchSize);
+                } else {
+                    batch = ledgerEntriesRepository.findHistory(account.getId(), 0, batchSize);
+                }
+                exhausted = batch.size() < batchSize;
+
+                buffered.addAll(batch);
+                if (!batch.isEmpty()) {
+                    HistoryEntry last = batch.get(batch.size() - 1);
+                    position = new HistoryCursor(last.timestamp(), last.transactionId());
+                }
+            }
+            return buffered.peekFirst();
+        }
+
+        HistoryEntry next() {
+            return buffered.pollFirst();
+        }
+    }
+}
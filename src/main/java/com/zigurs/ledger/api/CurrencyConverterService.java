@@ -3,6 +3,8 @@ package com.zigurs.ledger.api;
 import lombok.NonNull;
 
 import java.math.BigInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 // TODO - generalize amount class so it is suitable for use here
 public interface CurrencyConverterService {
@@ -18,6 +20,35 @@ public interface CurrencyConverterService {
      */
     CurrencyConversionResult convert(String fromCurrency, String toCurrency, BigInteger amount) throws CurrencyConversionException;
 
+    /**
+     * Same as {@link #convert}, without waiting for the outcome - e.g. to carry on with other work while the FX
+     * provider is called. Failures complete the future exceptionally, see {@link #join}.
+     */
+    default CompletableFuture<CurrencyConversionResult> convertAsync(String fromCurrency, String toCurrency, BigInteger amount) {
+        try {
+            return CompletableFuture.completedFuture(convert(fromCurrency, toCurrency, amount));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Wait for the outcome of an asynchronous conversion, failures are thrown as is (not wrapped).
+     */
+    static <T> T join(@NonNull CompletableFuture<T> future) throws CurrencyConversionException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
     class CurrencyConversionException extends RuntimeException {
         public CurrencyConversionException(String message) {
             super(message);
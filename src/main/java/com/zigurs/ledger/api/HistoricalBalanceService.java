@@ -0,0 +1,18 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.model.Account;
+
+import lombok.NonNull;
+
+import java.math.BigInteger;
+import java.time.Instant;
+
+public interface HistoricalBalanceService {
+
+    /**
+     * @param account account (hot or regular)
+     * @param at      point in time, transactions at that very instant included
+     * @return balance of the account as of the instant
+     */
+    BigInteger balanceAt(@NonNull Account account, @NonNull Instant at);
+}
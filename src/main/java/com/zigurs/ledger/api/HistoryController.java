@@ -7,17 +7,31 @@ import com.zigurs.ledger.api.responses.AccountView;
 import com.zigurs.ledger.api.responses.HistoryResponse;
 import com.zigurs.ledger.api.responses.TransactionView;
 import com.zigurs.ledger.data.AccountsRepository;
-import com.zigurs.ledger.data.TransactionsRepository;
+import com.zigurs.ledger.data.HistoryExportRepository;
+import com.zigurs.ledger.data.LedgerEntriesRepository;
 import com.zigurs.ledger.model.Account;
-import com.zigurs.ledger.model.Transaction;
 
-import org.springframework.data.domain.PageRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.UUID;
 
 /**
  * History controller following Spring Boot patterns.
@@ -30,16 +44,32 @@ public class HistoryController {
     public static final int DEFAULT_LIMIT = 10;
 
     private final AccountsRepository accountsRepository;
-    private final TransactionsRepository transactionsRepository;
+    private final LedgerEntriesRepository ledgerEntriesRepository;
+    private final HistoryExportRepository historyExportRepository;
+    private final RecentHistory recentHistory;
+    private final HotAccountsService hotAccountsService;
+    private final ObjectMapper objectMapper;
 
     public HistoryController(
             AccountsRepository accountsRepository,
-            TransactionsRepository transactionsRepository
+            LedgerEntriesRepository ledgerEntriesRepository,
+            HistoryExportRepository historyExportRepository,
+            RecentHistory recentHistory,
+            HotAccountsService hotAccountsService,
+            ObjectMapper objectMapper
     ) {
         this.accountsRepository = accountsRepository;
-        this.transactionsRepository = transactionsRepository;
+        this.ledgerEntriesRepository = ledgerEntriesRepository;
+        this.historyExportRepository = historyExportRepository;
+        this.recentHistory = recentHistory;
+        this.hotAccountsService = hotAccountsService;
+        this.objectMapper = objectMapper;
     }
 
+    /**
+     * Account history, newest first. Pages are followed either with {@code offset} or, preferably, with
+     * {@code cursor} set to {@code next_cursor} of the previous response.
+     */
     @PostMapping("/history")
     public ResponseEntity<HistoryResponse> getHistory(@RequestBody HistoryRequest request) {
         Account account = accountsRepository.findById(request.account_id()).orElseThrow(
@@ -56,27 +86,106 @@ public class HistoryController {
             throw new BadRequestException("offset must be 0 or positive");
         }
 
-        // convert offset to page
-        // TODO - Note - this will snap to page boundaries. We might have to do something smarter
-        //  with pageable or control paging manually. Leaving it as a cleanup exercise for later.
-        int page = offset / limit;
+        List<TransactionView> transactionsView;
+        if (request.cursor() != null) {
+            if (offset != 0) {
+                throw new BadRequestException("offset cannot be combined with cursor");
+            }
 
-        List<Transaction> transactions = transactionsRepository.findAllBySourceAccountIdOrDestinationAccountIdOrderByTimestampDesc(
-                account.getId(),
-                account.getId(),
-                PageRequest.of(page, limit)
-        );
+            // seek straight past the last entry of the previous page
+            HistoryCursor cursor = HistoryCursor.decode(request.cursor());
+            transactionsView = ledgerEntriesRepository.findHistoryBefore(account.getId(), cursor.timestamp(), cursor.id(), limit)
+                    .stream()
+                    .map(TransactionView::fromModel)
+                    .toList();
+        } else {
+            // first page(s) are mostly served from memory
+            transactionsView = recentHistory.find(account.getId(), offset, limit).orElseGet(() ->
+                    // offsets are exact, but every skipped entry is still read - cursors should be preferred
+                    ledgerEntriesRepository.findHistory(account.getId(), offset, limit)
+                            .stream()
+                            .map(TransactionView::fromModel)
+                            .toList()
+            );
+        }
+
+        // a full page might be followed by more
+        String nextCursor = transactionsView.size() < limit
+                ? null
+                : HistoryCursor.of(transactionsView.get(transactionsView.size() - 1)).encode();
 
-        AccountView accountView = AccountView.fromModel(account);
-        List<TransactionView> transactionsView = transactions.stream()
-                .map(t -> TransactionView.fromModel(account, t))
-                .toList();
+        // hot accounts have their balance spread across sub-balance slots
+        AccountView accountView = account.getSlots() > 0
+                ? AccountView.fromModel(account, hotAccountsService.balance(account))
+                : AccountView.fromModel(account);
 
         return ResponseEntity.ok(new HistoryResponse(
                 accountView,
                 offset,
                 limit,
-                transactionsView
+                transactionsView,
+                nextCursor
         ));
     }
+
+    /**
+     * Complete account history (optionally within {@code [from, to)} time window) in a single response, newest
+     * first. Entries are written to the response as they are read from the database, nothing is buffered.
+     */
+    @GetMapping("/history/export")
+    public ResponseEntity<StreamingResponseBody> exportHistory(
+            @RequestParam("account_id") UUID accountId,
+            @RequestParam(value = "from", required = false) String fromParam,
+            @RequestParam(value = "to", required = false) String toParam,
+            @RequestParam(value = "format", defaultValue = "ndjson") String format
+    ) {
+        HistoryExportFormat exportFormat = HistoryExportFormat.parse(format);
+        Instant from = parseTimestamp("from", fromParam);
+        Instant to = parseTimestamp("to", toParam);
+
+        if (from != null && to != null && !from.isBefore(to)) {
+            throw new BadRequestException("from must be before to");
+        }
+
+        // validated upfront, once streaming starts the response status is already sent
+        Account account = accountsRepository.findById(accountId).orElseThrow(
+                () -> new NotFoundException("account not found")
+        );
+
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            exportFormat.writeHeader(writer);
+
+            historyExportRepository.export(account.getId(), from, to, entry -> {
+                try {
+                    exportFormat.write(writer, objectMapper, TransactionView.fromModel(entry));
+                } catch (IOException e) {
+                    // client went away, stops reading the cursor
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            writer.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(exportFormat.mediaType())
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("history-" + account.getId() + "." + exportFormat.extension())
+                        .build()
+                        .toString())
+                .body(body);
+    }
+
+    private static Instant parseTimestamp(String name, String value) {
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            return Instant.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException(String.format("%s must be an ISO-8601 timestamp", name));
+        }
+    }
 }
@@ -0,0 +1,44 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.api.exceptions.BadRequestException;
+import com.zigurs.ledger.api.responses.TransactionView;
+
+import lombok.NonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position within account history - (timestamp, transaction id) of the last entry returned to the client.
+ * <p>
+ * Handed out as an opaque string, clients should only pass it back as is.
+ */
+public record HistoryCursor(@NonNull Instant timestamp, @NonNull UUID id) {
+
+    private static final String SEPARATOR = "/";
+
+    public static HistoryCursor of(@NonNull TransactionView transaction) {
+        return new HistoryCursor(transaction.timestamp(), transaction.transaction_id());
+    }
+
+    public static HistoryCursor decode(@NonNull String cursor) {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf(SEPARATOR);
+
+            return new HistoryCursor(
+                    Instant.parse(decoded.substring(0, separator)),
+                    UUID.fromString(decoded.substring(separator + 1))
+            );
+        } catch (RuntimeException e) {
+            throw new BadRequestException("cursor invalid");
+        }
+    }
+
+    public String encode() {
+        String cursor = timestamp + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+}
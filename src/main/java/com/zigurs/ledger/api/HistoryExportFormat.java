@@ -0,0 +1,101 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.api.exceptions.BadRequestException;
+import com.zigurs.ledger.api.responses.TransactionView;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Output formats of {@code /history/export}, one line per transaction.
+ */
+enum HistoryExportFormat {
+
+    NDJSON(MediaType.parseMediaType("application/x-ndjson")) {
+        @Override
+        void writeHeader(Writer writer) {
+        }
+
+        @Override
+        void write(Writer writer, ObjectMapper objectMapper, TransactionView view) throws IOException {
+            // same representation as /history, written per line rather than as a single array
+            writer.write(objectMapper.writeValueAsString(view));
+            writer.write('\n');
+        }
+    },
+
+    CSV(MediaType.parseMediaType("text/csv")) {
+        @Override
+        void writeHeader(Writer writer) throws IOException {
+            writer.write(String.join(",", CSV_COLUMNS));
+            writer.write('\n');
+        }
+
+        @Override
+        void write(Writer writer, ObjectMapper objectMapper, TransactionView view) throws IOException {
+            writer.write(String.join(",",
+                    view.transaction_id().toString(),
+                    view.timestamp().toString(),
+                    view.type().toString(),
+                    view.status(),
+                    view.source_account_id().toString(),
+                    view.destination_account_id().toString(),
+                    view.amount().toString(),
+                    view.account_balance().toString(),
+                    escape(view.description())
+            ));
+            writer.write('\n');
+        }
+
+        private static String escape(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+    };
+
+    private static final List<String> CSV_COLUMNS = List.of(
+            "transaction_id",
+            "timestamp",
+            "type",
+            "status",
+            "source_account_id",
+            "destination_account_id",
+            "amount",
+            "account_balance",
+            "description"
+    );
+
+    private final MediaType mediaType;
+
+    HistoryExportFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    MediaType mediaType() {
+        return mediaType;
+    }
+
+    String extension() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    abstract void writeHeader(Writer writer) throws IOException;
+
+    abstract void write(Writer writer, ObjectMapper objectMapper, TransactionView view) throws IOException;
+
+    static HistoryExportFormat parse(String format) {
+        for (HistoryExportFormat value : values()) {
+            if (value.extension().equals(format)) {
+                return value;
+            }
+        }
+        throw new BadRequestException("format must be ndjson or csv");
+    }
+}
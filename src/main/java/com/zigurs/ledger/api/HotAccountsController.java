@@ -0,0 +1,81 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.api.exceptions.BadRequestException;
+import com.zigurs.ledger.api.exceptions.NotFoundException;
+import com.zigurs.ledger.api.requests.HotAccountRequest;
+import com.zigurs.ledger.api.responses.AccountView;
+import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.model.Account;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Admin API for marking accounts as hot (balance striped across sub-balance slots).
+ */
+@RestController
+public class HotAccountsController {
+
+    // other transfer modes read and update account balance directly
+    private static final Set<String> SUPPORTED_MODES = Set.of("pessimistic", "partitioned");
+
+    private final AccountsRepository accountsRepository;
+    private final HotAccountsService hotAccountsService;
+    private final int maxSlots;
+    private final boolean supported;
+
+    public HotAccountsController(
+            AccountsRepository accountsRepository,
+            HotAccountsService hotAccountsService,
+            @Value("${hot_account_max_slots}") int maxSlots,
+            @Value("${transfer_mode}") String transferMode
+    ) {
+        this.accountsRepository = accountsRepository;
+        this.hotAccountsService = hotAccountsService;
+        this.maxSlots = maxSlots;
+        this.supported = SUPPORTED_MODES.contains(transferMode);
+    }
+
+    @PutMapping("/admin/accounts/{id}/hot")
+    public ResponseEntity<AccountView> markHot(@PathVariable UUID id, @RequestBody HotAccountRequest request) {
+        if (!supported) {
+            throw new BadRequestException("hot accounts not supported by current transfer mode");
+        }
+
+        if (request.slots() < 1 || request.slots() > maxSlots) {
+            throw new BadRequestException(String.format("slots must be between 1 and %d", maxSlots));
+        }
+
+        if (!hotAccountsService.markHot(id, request.slots())) {
+            throw new NotFoundException("account not found");
+        }
+
+        return ResponseEntity.ok(view(id));
+    }
+
+    @DeleteMapping("/admin/accounts/{id}/hot")
+    public ResponseEntity<AccountView> unmarkHot(@PathVariable UUID id) {
+        if (!hotAccountsService.unmarkHot(id)) {
+            throw new NotFoundException("account not found");
+        }
+
+        return ResponseEntity.ok(view(id));
+    }
+
+    private AccountView view(UUID id) {
+        // loaded only after the change, so balance (and slots) are current
+        Account account = accountsRepository.findById(id).orElseThrow(
+                () -> new NotFoundException("account not found")
+        );
+
+        return AccountView.fromModel(account, hotAccountsService.balance(account));
+    }
+}
@@ -0,0 +1,35 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.model.Account;
+
+import lombok.NonNull;
+
+import java.math.BigInteger;
+import java.util.UUID;
+
+public interface HotAccountsService {
+
+    /**
+     * Should split balance of the account into specified number of sub-balance slots, so that concurrent transfers
+     * of the account don't serialize on a single row lock. Already hot account is re-striped.
+     *
+     * @param accountId account to mark as hot
+     * @param slots     number of slots
+     * @return false if account does not exist
+     */
+    boolean markHot(@NonNull UUID accountId, int slots);
+
+    /**
+     * Should merge all sub-balance slots of the account back into a single balance.
+     *
+     * @param accountId account to mark as regular
+     * @return false if account does not exist
+     */
+    boolean unmarkHot(@NonNull UUID accountId);
+
+    /**
+     * @param account account (hot or regular)
+     * @return total account balance, incl. all sub-balance slots
+     */
+    BigInteger balance(@NonNull Account account);
+}
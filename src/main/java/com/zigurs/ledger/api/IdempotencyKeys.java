@@ -0,0 +1,206 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.api.exceptions.BadRequestException;
+import com.zigurs.ledger.api.exceptions.ConflictException;
+import com.zigurs.ledger.api.requests.TransferRequest;
+import com.zigurs.ledger.api.responses.TransactionView;
+import com.zigurs.ledger.data.IdempotencyKeysRepository;
+import com.zigurs.ledger.data.TransactionsRepository;
+import com.zigurs.ledger.model.Transaction;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Executes transfers at most once per {@code Idempotency-Key}.
+ * <p>
+ * Outcomes of recently used keys are kept in a bounded LRU, so retries are answered without hitting the database
+ * (let alone account locks). Keys are also stored in {@code idempotency_keys} table, which covers evicted keys,
+ * restarts and concurrent requests carrying the same key.
+ * <p>
+ * Keys are recorded after the transfer, not within the same database transaction. Should the process die in between
+ * (or recording fail), the key stays reserved and is answered with 409 Conflict - until the reservation is older than
+ * {@code idempotency_key_reservation_timeout_ms}, when a retry takes it over and executes the transfer again. Keys are
+ * purged {@code idempotency_key_retention_ms} after they were reserved, retries after that are new transfers.
+ */
+@Slf4j
+@Component
+public class IdempotencyKeys {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyKeysRepository idempotencyKeysRepository;
+    private final TransactionsRepository transactionsRepository;
+    private final Duration reservationTimeout;
+    private final Duration retention;
+    private final Map<String, CachedTransfer> recent;
+
+    public IdempotencyKeys(
+            @NonNull IdempotencyKeysRepository idempotencyKeysRepository,
+            @NonNull TransactionsRepository transactionsRepository,
+            @Value("${idempotency_cache_size}") int cacheSize,
+            @Value("${idempotency_key_reservation_timeout_ms}") long reservationTimeoutMs,
+            @Value("${idempotency_key_retention_ms}") long retentionMs
+    ) {
+        this.idempotencyKeysRepository = idempotencyKeysRepository;
+        this.transactionsRepository = transactionsRepository;
+        this.reservationTimeout = Duration.ofMillis(reservationTimeoutMs);
+        this.retention = Duration.ofMillis(retentionMs);
+
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedTransfer> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    private record CachedTransfer(String fingerprint, TransactionView transaction) {
+    }
+
+    /**
+     * Execute transfer, unless it has already been executed with the same key.
+     *
+     * @param key      client supplied idempotency key
+     * @param request  transfer request, repeated requests must match the original one
+     * @param transfer executes the transfer
+     * @return resulting transaction, either new or the one created by the first request with this key
+     */
+    public TransactionView execute(
+            @NonNull String key,
+            @NonNull TransferRequest request,
+            @NonNull Supplier<TransactionView> transfer
+    ) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new BadRequestException(HEADER + " invalid");
+        }
+
+        String fingerprint = fingerprint(request);
+        Instant now = Instant.now();
+        Instant staleBefore = now.minus(reservationTimeout);
+
+        Optional<TransactionView> previous = previous(key, fingerprint, staleBefore);
+        if (previous.isPresent()) {
+            return previous.get();
+        }
+
+        if (!idempotencyKeysRepository.reserve(key, fingerprint, now, staleBefore)) {
+            // lost the race to a concurrent request with the same key
+            return previous(key, fingerprint, staleBefore).orElseThrow(IdempotencyKeys::inProgress);
+        }
+
+        TransactionView transaction;
+        try {
+            transaction = transfer.get();
+        } catch (RuntimeException e) {
+            // nothing happened, let the client retry
+            idempotencyKeysRepository.release(key);
+            throw e;
+        }
+
+        // cached first, retries reaching this instance are answered even if recording the key fails
+        recent.put(key, new CachedTransfer(fingerprint, transaction));
+        idempotencyKeysRepository.complete(key, transaction.transaction_id());
+
+        return transaction;
+    }
+
+    /**
+     * Delete keys older than the retention period, keeping the table (and its index) from growing forever.
+     */
+    @Scheduled(fixedDelayString = "${idempotency_key_purge_interval_ms}")
+    public void purge() {
+        if (retention.isZero()) {
+            // disabled
+            return;
+        }
+
+        try {
+            int purged = idempotencyKeysRepository.purge(Instant.now().minus(retention));
+            if (purged > 0) {
+                log.info("purged {} idempotency keys", purged);
+            }
+        } catch (RuntimeException e) {
+            // next round will try again
+            log.error("unable to purge idempotency keys", e);
+        }
+    }
+
+    /**
+     * @return outcome of a previous request with the key, empty if there is none or its reservation is stale
+     */
+    private Optional<TransactionView> previous(String key, String fingerprint, Instant staleBefore) {
+        CachedTransfer cached = recent.get(key);
+        if (cached != null) {
+            verifyFingerprint(cached.fingerprint(), fingerprint);
+            return Optional.of(cached.transaction());
+        }
+
+        Optional<IdempotencyKeysRepository.StoredKey> stored = idempotencyKeysRepository.find(key);
+        if (stored.isEmpty()) {
+            return Optional.empty();
+        }
+
+        verifyFingerprint(stored.get().fingerprint(), fingerprint);
+
+        if (stored.get().transactionId() == null) {
+            if (stored.get().created().isBefore(staleBefore)) {
+                // abandoned, to be taken over
+                return Optional.empty();
+            }
+            throw inProgress();
+        }
+
+        // transaction may not be stored yet with asynchronous (sequencer) writes
+        Transaction transaction = transactionsRepository.findById(stored.get().transactionId())
+                .orElseThrow(IdempotencyKeys::inProgress);
+
+        TransactionView view = TransactionView.fromModel(transaction.getSourceAccount(), transaction);
+        recent.put(key, new CachedTransfer(fingerprint, view));
+
+        return Optional.of(view);
+    }
+
+    private static void verifyFingerprint(String expected, String actual) {
+        if (!expected.equals(actual)) {
+            throw new BadRequestException(HEADER + " already used for a different transfer");
+        }
+    }
+
+    private static ConflictException inProgress() {
+        return new ConflictException("transfer with the same " + HEADER + " is in progress");
+    }
+
+    static String fingerprint(TransferRequest request) {
+        String canonical = String.join("\n",
+                String.valueOf(request.sourceAccountId()),
+                String.valueOf(request.destinationAccountId()),
+                String.valueOf(request.currency()),
+                String.valueOf(request.amount())
+        );
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
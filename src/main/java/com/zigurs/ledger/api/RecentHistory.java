@@ -0,0 +1,218 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.api.responses.TransactionView;
+import com.zigurs.ledger.data.LedgerEntriesRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.Transaction;
+
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Most recent history entries of recently read accounts, so that polling the first page(s) of history doesn't
+ * query ledger entries every time.
+ * <p>
+ * Every cached account keeps its newest {@code recent_history_size} entries in a bounded buffer, least recently read
+ * accounts are evicted beyond {@code recent_history_accounts}. An account is loaded from the database when first read,
+ * from then on entries of committed transfers are added as they happen.
+ * <p>
+ * Only transfers made through this instance are added - with several instances, an account is reloaded when read
+ * more than {@code recent_history_max_age_ms} after it was loaded, so that transfers made elsewhere show up within
+ * that time. 0 never reloads, for single instance deployments only.
+ * <p>
+ * Only transfer modes that go through {@link com.zigurs.ledger.app.TransferServiceImpl} report their transfers, with
+ * any other mode the cache is disabled.
+ */
+@Component
+public class RecentHistory {
+
+    static final Set<String> CACHED_MODES = Set.of("pessimistic", "partitioned");
+
+    // same ordering as history queries - the database compares UUIDs as unsigned, unlike UUID.compareTo
+    private static final Comparator<TransactionView> NEWEST_FIRST = Comparator
+            .comparing(TransactionView::timestamp)
+            .thenComparing(view -> view.transaction_id().getMostSignificantBits(), Long::compareUnsigned)
+            .thenComparing(view -> view.transaction_id().getLeastSignificantBits(), Long::compareUnsigned)
+            .reversed();
+
+    private final LedgerEntriesRepository ledgerEntriesRepository;
+    private final int size;
+    private final Duration maxAge;
+    private final Clock clock;
+    private final boolean enabled;
+    private final Map<UUID, Entries> accounts;
+
+    public RecentHistory(
+            @NonNull LedgerEntriesRepository ledgerEntriesRepository,
+            @Value("${recent_history_size}") int size,
+            @Value("${recent_history_accounts}") int maxAccounts,
+            @Value("${recent_history_max_age_ms}") long maxAgeMs,
+            @NonNull @Value("${transfer_mode}") String transferMode,
+            @NonNull Clock clock
+    ) {
+        this.ledgerEntriesRepository = ledgerEntriesRepository;
+        this.size = size;
+        this.maxAge = Duration.ofMillis(maxAgeMs);
+        this.clock = clock;
+        this.enabled = size > 0 && maxAccounts > 0 && CACHED_MODES.contains(transferMode);
+
+        // access ordered, guarded by itself
+        this.accounts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, Entries> eldest) {
+                return size() > maxAccounts;
+            }
+        };
+    }
+
+    /**
+     * Page of account history, if it lies within the cached entries.
+     *
+     * @return entries of the page, newest first, or empty if it has to be read from the database
+     */
+    public Optional<List<TransactionView>> find(@NonNull UUID accountId, int offset, int limit) {
+        if (!enabled || offset < 0 || limit < 1 || (long) offset + limit > size) {
+            return Optional.empty();
+        }
+
+        Entries entries;
+        boolean load = false;
+        synchronized (accounts) {
+            entries = accounts.get(accountId);
+            if (entries == null || entries.expired()) {
+                entries = new Entries();
+                accounts.put(accountId, entries);
+                load = true;
+            }
+        }
+
+        if (load) {
+            // transfers committed from here on are collected by entries while loading, duplicates are dropped
+            List<TransactionView> newest;
+            try {
+                newest = ledgerEntriesRepository.findHistory(accountId, 0, size).stream()
+                        .map(TransactionView::fromModel)
+                        .toList();
+            } catch (RuntimeException e) {
+                synchronized (accounts) {
+                    accounts.remove(accountId, entries);
+                }
+                throw e;
+            }
+
+            synchronized (accounts) {
+                entries.load(newest);
+            }
+        }
+
+        synchronized (accounts) {
+            // still being loaded by a concurrent request
+            if (!entries.loaded) {
+                return Optional.empty();
+            }
+            return Optional.of(entries.page(offset, limit));
+        }
+    }
+
+    /**
+     * Add entries of transactions to cached accounts once the surrounding database transaction commits
+     * (or right away if there is none). Rolled back transactions are never added.
+     */
+    public void recordAfterCommit(@NonNull List<Transaction> transactions) {
+        if (!enabled) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(transactions);
+                }
+            });
+        } else {
+            record(transactions);
+        }
+    }
+
+    private void record(List<Transaction> transactions) {
+        synchronized (accounts) {
+            for (Transaction transaction : transactions) {
+                // Views are built from the saved transaction itself (rather than its ledger entries), as the id of a
+                // transaction saved with JPA is only assigned on save
+                for (Account account : List.of(transaction.getSourceAccount(), transaction.getDestinationAccount())) {
+                    // accounts that aren't cached are loaded with this transaction when read
+                    Entries entries = accounts.get(account.getId());
+                    if (entries != null) {
+                        entries.add(TransactionView.fromModel(account, transaction));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Newest entries of a single account, newest first. Not thread safe.
+     */
+    private final class Entries {
+
+        private final List<TransactionView> views = new ArrayList<>(size);
+        private final Instant created = clock.instant();
+        private boolean loaded;
+
+        boolean expired() {
+            // entries still being loaded are left to their loader
+            return loaded && !maxAge.isZero() && created.plus(maxAge).isBefore(clock.instant());
+        }
+
+        void load(List<TransactionView> newest) {
+            // keep entries added while loading
+            newest.forEach(this::add);
+            loaded = true;
+        }
+
+        void add(TransactionView view) {
+            int position = 0;
+            while (position < views.size() && NEWEST_FIRST.compare(views.get(position), view) < 0) {
+                position++;
+            }
+
+            if (position < views.size() && views.get(position).transaction_id().equals(view.transaction_id())) {
+                // already known
+                return;
+            }
+
+            if (position == size) {
+                // older than all of the kept ones
+                return;
+            }
+
+            views.add(position, view);
+            if (views.size() > size) {
+                views.remove(views.size() - 1);
+            }
+        }
+
+        List<TransactionView> page(int offset, int limit) {
+            if (offset >= views.size()) {
+                return List.of();
+            }
+            return List.copyOf(views.subList(offset, Math.min(offset + limit, views.size())));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.api.exceptions.BadRequestException;
+import com.zigurs.ledger.api.exceptions.NotFoundException;
+import com.zigurs.ledger.api.responses.AccountView;
+import com.zigurs.ledger.api.responses.DailyTotalsView;
+import com.zigurs.ledger.api.responses.StatsResponse;
+import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.data.DailyAccountTotalsRepository;
+import com.zigurs.ledger.model.Account;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+/**
+ * Account statistics controller, served from daily totals maintained as transactions are written.
+ */
+@RestController
+public class StatsController {
+
+    // Default range, ending today
+    public static final int DEFAULT_DAYS = 30;
+    public static final int MAX_DAYS = 366;
+
+    private final AccountsRepository accountsRepository;
+    private final DailyAccountTotalsRepository dailyAccountTotalsRepository;
+    private final HotAccountsService hotAccountsService;
+
+    public StatsController(
+            AccountsRepository accountsRepository,
+            DailyAccountTotalsRepository dailyAccountTotalsRepository,
+            HotAccountsService hotAccountsService
+    ) {
+        this.accountsRepository = accountsRepository;
+        this.dailyAccountTotalsRepository = dailyAccountTotalsRepository;
+        this.hotAccountsService = hotAccountsService;
+    }
+
+    /**
+     * Daily totals of completed transactions of the account within {@code [from, to]} days (UTC).
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<StatsResponse> getStats(
+            @RequestParam("account_id") UUID accountId,
+            @RequestParam(value = "from", required = false) String fromParam,
+            @RequestParam(value = "to", required = false) String toParam
+    ) {
+        LocalDate to = toParam == null ? LocalDate.now(ZoneOffset.UTC) : parseDay("to", toParam);
+        LocalDate from = fromParam == null ? to.minusDays(DEFAULT_DAYS - 1) : parseDay("from", fromParam);
+
+        if (from.isAfter(to)) {
+            throw new BadRequestException("from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_DAYS) {
+            throw new BadRequestException(String.format("range must not exceed %d days", MAX_DAYS));
+        }
+
+        Account account = accountsRepository.findById(accountId).orElseThrow(
+                () -> new NotFoundException("account not found")
+        );
+
+        // hot accounts have their balance spread across sub-balance slots
+        AccountView accountView = account.getSlots() > 0
+                ? AccountView.fromModel(account, hotAccountsService.balance(account))
+                : AccountView.fromModel(account);
+
+        return ResponseEntity.ok(new StatsResponse(
+                accountView,
+                from,
+                to,
+                dailyAccountTotalsRepository.find(account.getId(), from, to)
+                        .stream()
+                        .map(DailyTotalsView::fromModel)
+                        .toList()
+        ));
+    }
+
+    private static LocalDate parseDay(String name, String value) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new BadRequestException(String.format("%s must be an ISO-8601 date", name));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.api.exceptions.BadRequestException;
+import com.zigurs.ledger.api.exceptions.NotFoundException;
+import com.zigurs.ledger.api.responses.TimelineEntryView;
+import com.zigurs.ledger.api.responses.TimelineResponse;
+import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.data.ClientsRepository;
+import com.zigurs.ledger.model.Client;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Client timeline controller - history of all accounts of a client in a single stream.
+ */
+@RestController
+public class TimelineController {
+
+    private final ClientsRepository clientsRepository;
+    private final AccountsRepository accountsRepository;
+    private final ClientTimeline clientTimeline;
+
+    public TimelineController(
+            ClientsRepository clientsRepository,
+            AccountsRepository accountsRepository,
+            ClientTimeline clientTimeline
+    ) {
+        this.clientsRepository = clientsRepository;
+        this.accountsRepository = accountsRepository;
+        this.clientTimeline = clientTimeline;
+    }
+
+    /**
+     * Transactions of all accounts of the client, newest first. Pages are followed with {@code cursor} set to
+     * {@code next_cursor} of the previous response.
+     */
+    @GetMapping("/clients/{id}/timeline")
+    public ResponseEntity<TimelineResponse> getTimeline(
+            @PathVariable("id") UUID clientId,
+            @RequestParam(value = "limit", required = false) Integer limitParam,
+            @RequestParam(value = "cursor", required = false) String cursorParam
+    ) {
+        int limit = limitParam == null ? HistoryController.DEFAULT_LIMIT : limitParam;
+        if (limit < 1) {
+            throw new BadRequestException("limit must be positive");
+        }
+
+        HistoryCursor cursor = cursorParam == null ? null : HistoryCursor.decode(cursorParam);
+
+        Client client = clientsRepository.findById(clientId).orElseThrow(
+                () -> new NotFoundException("client not found")
+        );
+
+        List<TimelineEntryView> entries = clientTimeline.page(accountsRepository.findByClientId(client.getId()), cursor, limit);
+
+        // a full page might be followed by more
+        String nextCursor = entries.size() < limit
+                ? null
+                : HistoryCursor.of(entries.get(entries.size() - 1).transaction()).encode();
+
+        return ResponseEntity.ok(new TimelineResponse(client.getId(), limit, entries, nextCursor));
+    }
+}
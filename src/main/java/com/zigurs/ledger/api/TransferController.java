@@ -2,25 +2,49 @@ package com.zigurs.ledger.api;
 
 import com.zigurs.ledger.api.exceptions.BadRequestException;
 import com.zigurs.ledger.api.exceptions.NotFoundException;
+import com.zigurs.ledger.api.requests.PayoutItem;
+import com.zigurs.ledger.api.requests.PayoutRequest;
+import com.zigurs.ledger.api.requests.TransferBatchRequest;
 import com.zigurs.ledger.api.requests.TransferRequest;
+import com.zigurs.ledger.api.responses.PayoutResponse;
+import com.zigurs.ledger.api.responses.QueuedTransferView;
 import com.zigurs.ledger.api.responses.TransactionView;
+import com.zigurs.ledger.api.responses.TransferBatchItem;
+import com.zigurs.ledger.api.responses.TransferBatchResponse;
 import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.data.QueuedTransfersRepository;
+import com.zigurs.ledger.data.TransactionsRepository;
 import com.zigurs.ledger.model.Account;
 import com.zigurs.ledger.model.Currency;
+import com.zigurs.ledger.model.QueuedTransfer;
+import com.zigurs.ledger.model.QueuedTransferStatus;
 import com.zigurs.ledger.model.Transaction;
-import com.zigurs.ledger.model.currencies.EUR;
-import com.zigurs.ledger.model.currencies.JPY;
-import com.zigurs.ledger.model.currencies.TwoDecimalsCurrency;
-import com.zigurs.ledger.model.currencies.USD;
+import com.zigurs.ledger.model.TransactionStatus;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.client.HttpStatusCodeException;
 
 import java.math.BigInteger;
 import java.text.ParseException;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Transfer controller following Spring Boot patterns.
@@ -28,31 +52,283 @@ import java.time.Instant;
 @RestController
 public class TransferController {
 
+    // other transfer modes don't implement payouts
+    private static final Set<String> PAYOUT_MODES = Set.of("pessimistic", "partitioned");
+
+    // ISO 4217 currency codes
+    private static final Set<String> ISO_CURRENCY_CODES = java.util.Currency.getAvailableCurrencies().stream()
+            .map(java.util.Currency::getCurrencyCode)
+            .collect(Collectors.toUnmodifiableSet());
+
     private final AccountsRepository accountsRepository;
-    private final CurrencyConverterService currencyConverterService;
+    private final TransactionsRepository transactionsRepository;
+    private final QueuedTransfersRepository queuedTransfersRepository;
+    private final TransferInstructions transferInstructions;
+    private final IdempotencyKeys idempotencyKeys;
     private final TransferService transferService;
+    private final int maxBatchSize;
+    private final boolean asyncSubmission;
+    private final boolean payoutsSupported;
 
     public TransferController(
             AccountsRepository accountsRepository,
-            CurrencyConverterService currencyConverterService,
-            TransferService transferService
+            TransactionsRepository transactionsRepository,
+            QueuedTransfersRepository queuedTransfersRepository,
+            TransferInstructions transferInstructions,
+            IdempotencyKeys idempotencyKeys,
+            TransferService transferService,
+            @Value("${transfer_batch_max_size}") int maxBatchSize,
+            @Value("${transfer_submission}") String transferSubmission,
+            @Value("${transfer_mode}") String transferMode
     ) {
         this.accountsRepository = accountsRepository;
-        this.currencyConverterService = currencyConverterService;
+        this.transactionsRepository = transactionsRepository;
+        this.queuedTransfersRepository = queuedTransfersRepository;
+        this.transferInstructions = transferInstructions;
+        this.idempotencyKeys = idempotencyKeys;
         this.transferService = transferService;
+        this.maxBatchSize = maxBatchSize;
+        this.asyncSubmission = "async".equals(transferSubmission);
+        this.payoutsSupported = PAYOUT_MODES.contains(transferMode);
     }
 
+    /**
+     * Executes transfer immediately and responds with resulting transaction (200), or, with async submission
+     * enabled, only validates and queues it for execution and responds with queued transfer id (202).
+     * <p>
+     * Synchronous transfers carrying {@code Idempotency-Key} header are executed at most once, repeated requests
+     * are answered with the original transaction.
+     */
     @PostMapping("/transfer")
-    public ResponseEntity<TransactionView> transfer(@RequestBody TransferRequest request) throws TransferService.TransferException, CurrencyConverterService.CurrencyConversionException {
-        // validate provided accounts.
+    public ResponseEntity<?> transfer(
+            @RequestBody TransferRequest request,
+            @RequestHeader(value = IdempotencyKeys.HEADER, required = false) String idempotencyKey
+    ) throws TransferService.TransferException, CurrencyConverterService.CurrencyConversionException {
+        if (asyncSubmission) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(queueTransfer(request));
+        }
+
+        if (idempotencyKey != null) {
+            return ResponseEntity.ok(idempotencyKeys.execute(idempotencyKey, request, () -> executeTransfer(request)));
+        }
+
+        return ResponseEntity.ok(executeTransfer(request));
+    }
+
+    @PostMapping("/transfers/batch")
+    public ResponseEntity<TransferBatchResponse> transferBatch(@RequestBody TransferBatchRequest request) throws TransferService.TransferException {
+        List<TransferRequest> requests = request.transfers();
+        if (requests.size() > maxBatchSize) {
+            throw new BadRequestException(String.format("at most %d transfers allowed per batch", maxBatchSize));
+        }
+
+        // validate all accounts at once
+        Set<UUID> accountIds = new HashSet<>();
+        for (TransferRequest transferRequest : requests) {
+            accountIds.add(transferRequest.sourceAccountId());
+            accountIds.add(transferRequest.destinationAccountId());
+        }
+
+        Map<UUID, Account> accounts = accountsRepository.findAllByIdIn(accountIds).stream()
+                .collect(Collectors.toMap(Account::getId, Function.identity()));
+
+        // Invalid transfers are reported individually rather than failing the whole batch
+        TransferBatchItem[] results = new TransferBatchItem[requests.size()];
+        List<Integer> accepted = new ArrayList<>();
+        List<TransferService.TransferInstruction> transfers = new ArrayList<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequest transferRequest = requests.get(i);
+            try {
+                Account sourceAccount = accounts.get(transferRequest.sourceAccountId());
+                if (sourceAccount == null) {
+                    throw new NotFoundException("source_account_id invalid");
+                }
+
+                Account destinationAccount = accounts.get(transferRequest.destinationAccountId());
+                if (destinationAccount == null) {
+                    throw new NotFoundException("destination_account_id invalid");
+                }
+
+                transfers.add(prepareTransfer(sourceAccount, destinationAccount, transferRequest));
+                accepted.add(i);
+            } catch (HttpStatusCodeException e) {
+                results[i] = new TransferBatchItem(i, TransactionStatus.FAILED.toString(), null, e.getStatusText());
+            } catch (CurrencyConverterService.CurrencyConversionException e) {
+                results[i] = new TransferBatchItem(i, TransactionStatus.FAILED.toString(), null, "currency conversion unavailable");
+            }
+        }
+
+        if (!transfers.isEmpty()) {
+            List<Transaction> transactions = transferService.transferAll(transfers);
+
+            for (int i = 0; i < transactions.size(); i++) {
+                Transaction transaction = transactions.get(i);
+                int index = accepted.get(i);
+
+                results[index] = new TransferBatchItem(
+                        index,
+                        transaction.getStatus().toString(),
+                        TransactionView.fromModel(transaction.getSourceAccount(), transaction),
+                        transaction.getStatus() == TransactionStatus.FAILED ? transaction.getDescription() : null
+                );
+            }
+        }
+
+        return ResponseEntity.ok(new TransferBatchResponse(Arrays.asList(results)));
+    }
+
+    /**
+     * Pays out from a single source account to many destinations in one unit of work. Payouts are all or nothing -
+     * a single invalid payout rejects the request, and insufficient balance for the total fails every payout.
+     */
+    @PostMapping("/transfers/payout")
+    public ResponseEntity<PayoutResponse> payout(@RequestBody PayoutRequest request) throws TransferService.TransferException, CurrencyConverterService.CurrencyConversionException {
+        if (!payoutsSupported) {
+            throw new BadRequestException("payouts not supported by current transfer mode");
+        }
+
+        List<PayoutItem> items = request.payouts();
+        if (items.isEmpty() || items.size() > maxBatchSize) {
+            throw new BadRequestException(String.format("between 1 and %d payouts allowed", maxBatchSize));
+        }
+
         Account sourceAccount = accountsRepository.findById(request.sourceAccountId()).orElseThrow(
                 () -> new NotFoundException("source_account_id invalid")
         );
 
-        Account destinationAccount = accountsRepository.findById(request.destinationAccountId()).orElseThrow(
+        // validate all destinations at once
+        Set<UUID> destinationIds = items.stream().map(PayoutItem::destinationAccountId).collect(Collectors.toSet());
+        Map<UUID, Account> accounts = accountsRepository.findAllByIdIn(destinationIds).stream()
+                .collect(Collectors.toMap(Account::getId, Function.identity()));
+
+        List<TransferService.TransferInstruction> payouts = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            PayoutItem item = items.get(i);
+            try {
+                Account destinationAccount = accounts.get(item.destinationAccountId());
+                if (destinationAccount == null) {
+                    throw new NotFoundException("destination_account_id invalid");
+                }
+
+                payouts.add(prepareTransfer(
+                        sourceAccount,
+                        destinationAccount,
+                        new TransferRequest(sourceAccount.getId(), item.destinationAccountId(), item.currency(), item.amount())
+                ));
+            } catch (HttpStatusCodeException e) {
+                throw new BadRequestException(String.format("payouts[%d] %s", i, e.getStatusText()));
+            }
+        }
+
+        List<Transaction> transactions = transferService.payout(payouts);
+
+        return ResponseEntity.ok(new PayoutResponse(
+                transactions.get(0).getStatus().toString(),
+                transactions.stream().map(transaction -> TransactionView.fromModel(sourceAccount, transaction)).toList()
+        ));
+    }
+
+    private TransactionView executeTransfer(TransferRequest request) {
+        // validate provided accounts.
+        Account sourceAccount = findSourceAccount(request);
+
+        // FX provider is called while the rest of the transfer is validated
+        CompletableFuture<CurrencyConverterService.CurrencyConversionResult> conversion = startConversion(sourceAccount, request);
+
+        Account destinationAccount;
+        BigInteger amount;
+        try {
+            destinationAccount = findDestinationAccount(request);
+            amount = validateTransfer(sourceAccount, destinationAccount, request);
+        } catch (RuntimeException e) {
+            if (conversion != null) {
+                // outcome no longer needed
+                conversion.cancel(false);
+            }
+            throw e;
+        }
+
+        TransferService.TransferInstruction transfer = transferInstructions.prepare(
+                sourceAccount,
+                destinationAccount,
+                TransferInstructions.lookupCurrency(request.currency()),
+                amount,
+                conversion
+        );
+
+        // And proceed with transfer
+        return TransactionView.fromModel(
+                sourceAccount,
+                transferService.transfer(
+                        transfer.timestamp(),
+                        transfer.sourceAccountId(),
+                        transfer.sourceAmount(),
+                        transfer.destinationAccountId(),
+                        transfer.destinationAmount(),
+                        transfer.description()
+                )
+        );
+    }
+
+    private QueuedTransferView queueTransfer(TransferRequest request) {
+        Account sourceAccount = findSourceAccount(request);
+        Account destinationAccount = findDestinationAccount(request);
+
+        // FX conversion and the transfer itself are left for the queue workers
+        BigInteger amount = validateTransfer(sourceAccount, destinationAccount, request);
+
+        Instant now = Instant.now();
+        QueuedTransfer queuedTransfer = queuedTransfersRepository.save(new QueuedTransfer(
+                null,
+                QueuedTransferStatus.PENDING,
+                now,
+                now,
+                sourceAccount.getId(),
+                destinationAccount.getId(),
+                request.currency(),
+                amount,
+                null,
+                null
+        ));
+
+        return QueuedTransferView.fromModel(queuedTransfer, null);
+    }
+
+    private Account findSourceAccount(TransferRequest request) {
+        return accountsRepository.findById(request.sourceAccountId()).orElseThrow(
+                () -> new NotFoundException("source_account_id invalid")
+        );
+    }
+
+    private Account findDestinationAccount(TransferRequest request) {
+        return accountsRepository.findById(request.destinationAccountId()).orElseThrow(
                 () -> new NotFoundException("destination_account_id invalid")
         );
+    }
+
+    @GetMapping("/transfer/{id}")
+    public ResponseEntity<QueuedTransferView> getTransfer(@PathVariable UUID id) {
+        QueuedTransfer queuedTransfer = queuedTransfersRepository.findById(id).orElseThrow(
+                () -> new NotFoundException("transfer not found")
+        );
+
+        TransactionView transaction = null;
+        if (queuedTransfer.getTransactionId() != null) {
+            transaction = transactionsRepository.findById(queuedTransfer.getTransactionId())
+                    .map(t -> TransactionView.fromModel(t.getSourceAccount(), t))
+                    .orElse(null);
+        }
+
+        return ResponseEntity.ok(QueuedTransferView.fromModel(queuedTransfer, transaction));
+    }
 
+    /**
+     * Validate transfer request against resolved accounts.
+     *
+     * @return amount to transfer, in destination account currency
+     */
+    private BigInteger validateTransfer(Account sourceAccount, Account destinationAccount, TransferRequest request) {
         // small sanity check
         if (sourceAccount.getId().equals(destinationAccount.getId())) {
             throw new BadRequestException("source and destination accounts cannot be the same");
@@ -63,7 +339,7 @@ public class TransferController {
             throw new BadRequestException("currency does not match destination account");
         }
 
-        Currency currency = lookupCurrency(request.currency());
+        Currency currency = TransferInstructions.lookupCurrency(request.currency());
 
         // extract supplied amount string
         BigInteger amount = parseTransferAmount(currency, request.amount());
@@ -72,70 +348,45 @@ public class TransferController {
             throw new BadRequestException("amount must be positive");
         }
 
-        // And proceed with transfer
-        return ResponseEntity.ok(
-                TransactionView.fromModel(
-                        sourceAccount,
-                        transfer(sourceAccount, destinationAccount, currency, amount)
-                )
-        );
+        return amount;
     }
 
-    // TODO - for now we always find at least 2-decimals currency.
-    private Currency lookupCurrency(String currency) {
-        return switch (currency) {
-            case "USD" -> new USD();
-            case "EUR" -> new EUR();
-            case "JPY" -> new JPY();
-            default -> (TwoDecimalsCurrency) () -> currency;
-        };
+    /**
+     * Validate transfer request against resolved accounts and work out amounts to transfer (incl. FX conversion).
+     */
+    private TransferService.TransferInstruction prepareTransfer(Account sourceAccount, Account destinationAccount, TransferRequest request) throws CurrencyConverterService.CurrencyConversionException {
+        BigInteger amount = validateTransfer(sourceAccount, destinationAccount, request);
+
+        return transferInstructions.prepare(
+                sourceAccount,
+                destinationAccount,
+                TransferInstructions.lookupCurrency(request.currency()),
+                amount
+        );
     }
 
-    private Transaction transfer(Account sourceAccount, Account destinationAccount, Currency currency, BigInteger amount) throws TransferService.TransferException, CurrencyConverterService.CurrencyConversionException {
-        if (sourceAccount.getCurrency().equals(destinationAccount.getCurrency())) {
-            // Simple transfer, we can proceed immediately
-            return transferService.transfer(
-                    Instant.now(),
-                    sourceAccount.getId(),
-                    amount,
-                    destinationAccount.getId(),
-                    amount,
-                    String.format( // TODO - add better formatter
-                            "Transferred %s %s from %s to %s",
-                            currency.toFriendlyString(amount),
-                            currency.currencyCode(),
-                            sourceAccount.getId(),
-                            destinationAccount.getId()
-                    )
-            );
-        } else {
-            // Let's do the FX conversion outside our transaction below
-            // as any external request shouldn't lock up our DB.
-            CurrencyConverterService.CurrencyConversionResult convertedAmount = currencyConverterService.convert(
-                    currency.currencyCode(),
-                    sourceAccount.getCurrency(),
-                    amount);
-
-            if (convertedAmount.value().compareTo(BigInteger.ZERO) < 1) {
-                throw new CurrencyConverterService.CurrencyConversionException("currency conversion error (rounding?)");
+    /**
+     * Start the FX conversion of the transfer amount, as far as it can be told from the source account alone - only
+     * for ISO 4217 currency codes, anything else can't match the destination account and isn't worth a provider
+     * request. Invalid amounts are left for {@link #validateTransfer} to report.
+     *
+     * @return conversion in flight, null if there is nothing to convert (yet)
+     */
+    private CompletableFuture<CurrencyConverterService.CurrencyConversionResult> startConversion(Account sourceAccount, TransferRequest request) {
+        if (request.currency() == null || !ISO_CURRENCY_CODES.contains(request.currency())) {
+            return null;
+        }
+
+        Currency currency = TransferInstructions.lookupCurrency(request.currency());
+        try {
+            BigInteger amount = currency.parseFromString(request.amount());
+            if (amount.compareTo(BigInteger.ZERO) < 1) {
+                return null;
             }
 
-            return transferService.transfer(
-                    Instant.now(),
-                    sourceAccount.getId(),
-                    convertedAmount.value(),
-                    destinationAccount.getId(),
-                    amount,
-                    String.format( // TODO - add better formatter, inject actual conversion rate
-                            "Transfer from %s (%s %s) to %s (%s %s) complete",
-                            sourceAccount.getId(),
-                            convertedAmount.value(), // TODO - need to handle fractions here
-                            sourceAccount.getCurrency(),
-                            destinationAccount.getId(),
-                            currency.toFriendlyString(amount),
-                            destinationAccount.getCurrency()
-                    )
-            );
+            return transferInstructions.convertAsync(sourceAccount, currency, amount);
+        } catch (ParseException e) {
+            return null;
         }
     }
 
@@ -0,0 +1,134 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.Currency;
+import com.zigurs.ledger.model.currencies.EUR;
+import com.zigurs.ledger.model.currencies.JPY;
+import com.zigurs.ledger.model.currencies.TwoDecimalsCurrency;
+import com.zigurs.ledger.model.currencies.USD;
+
+import lombok.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Turns a validated transfer (accounts, currency and amount to credit) into {@link TransferService.TransferInstruction},
+ * incl. FX conversion of the amount to debit.
+ * <p>
+ * Shared between synchronous transfers and queued transfer processing.
+ */
+@Component
+public class TransferInstructions {
+
+    private final CurrencyConverterService currencyConverterService;
+
+    public TransferInstructions(@NonNull CurrencyConverterService currencyConverterService) {
+        this.currencyConverterService = currencyConverterService;
+    }
+
+    // TODO - for now we always find at least 2-decimals currency.
+    public static Currency lookupCurrency(@NonNull String currency) {
+        return switch (currency) {
+            case "USD" -> new USD();
+            case "EUR" -> new EUR();
+            case "JPY" -> new JPY();
+            default -> (TwoDecimalsCurrency) () -> currency;
+        };
+    }
+
+    /**
+     * Start the FX conversion of the amount to debit ahead of {@link #prepare}, e.g. while the rest of the transfer is
+     * still being validated.
+     *
+     * @return conversion in flight, null if the source account is in the transfer currency already
+     */
+    public CompletableFuture<CurrencyConverterService.CurrencyConversionResult> convertAsync(
+            @NonNull Account sourceAccount,
+            @NonNull Currency currency,
+            @NonNull BigInteger amount
+    ) {
+        if (sourceAccount.getCurrency().equals(currency.currencyCode())) {
+            return null;
+        }
+
+        return currencyConverterService.convertAsync(currency.currencyCode(), sourceAccount.getCurrency(), amount);
+    }
+
+    public TransferService.TransferInstruction prepare(
+            @NonNull Account sourceAccount,
+            @NonNull Account destinationAccount,
+            @NonNull Currency currency,
+            @NonNull BigInteger amount
+    ) throws CurrencyConverterService.CurrencyConversionException {
+        return prepare(sourceAccount, destinationAccount, currency, amount, null);
+    }
+
+    /**
+     * @param conversion started by {@link #convertAsync} for the same source account, currency and amount - converted
+     *                   right away if null
+     */
+    public TransferService.TransferInstruction prepare(
+            @NonNull Account sourceAccount,
+            @NonNull Account destinationAccount,
+            @NonNull Currency currency,
+            @NonNull BigInteger amount,
+            CompletableFuture<CurrencyConverterService.CurrencyConversionResult> conversion
+    ) throws CurrencyConverterService.CurrencyConversionException {
+        if (sourceAccount.getCurrency().equals(destinationAccount.getCurrency())) {
+            // Simple transfer, we can proceed immediately
+            return new TransferService.TransferInstruction(
+                    now(),
+                    sourceAccount.getId(),
+                    amount,
+                    destinationAccount.getId(),
+                    amount,
+                    String.format( // TODO - add better formatter
+                            "Transferred %s %s from %s to %s",
+                            currency.toFriendlyString(amount),
+                            currency.currencyCode(),
+                            sourceAccount.getId(),
+                            destinationAccount.getId()
+                    )
+            );
+        } else {
+            // Let's do the FX conversion outside our transaction below
+            // as any external request shouldn't lock up our DB.
+            CurrencyConverterService.CurrencyConversionResult convertedAmount = conversion != null
+                    ? CurrencyConverterService.join(conversion)
+                    : currencyConverterService.convert(currency.currencyCode(), sourceAccount.getCurrency(), amount);
+
+            if (convertedAmount.value().compareTo(BigInteger.ZERO) < 1) {
+                throw new CurrencyConverterService.CurrencyConversionException("currency conversion error (rounding?)");
+            }
+
+            return new TransferService.TransferInstruction(
+                    now(),
+                    sourceAccount.getId(),
+                    convertedAmount.value(),
+                    destinationAccount.getId(),
+                    amount,
+                    String.format( // TODO - add better formatter, inject actual conversion rate
+                            "Transfer from %s (%s %s) to %s (%s %s) complete",
+                            sourceAccount.getId(),
+                            convertedAmount.value(), // TODO - need to handle fractions here
+                            sourceAccount.getCurrency(),
+                            destinationAccount.getId(),
+                            currency.toFriendlyString(amount),
+                            destinationAccount.getCurrency()
+                    )
+            );
+        }
+    }
+
+    /**
+     * @return current time in the precision transaction timestamps are stored with (microseconds), so that a
+     * transaction reads back the same as it was written - e.g. in cached history, or cursors built from it
+     */
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
+}
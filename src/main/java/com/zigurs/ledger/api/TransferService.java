@@ -6,6 +6,8 @@ import lombok.NonNull;
 
 import java.math.BigInteger;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 public interface TransferService {
@@ -22,15 +24,84 @@ public interface TransferService {
      * @param description          transaction description (shown to user)
      * @return created transaction
      */
-    Transaction transfer(
+    default Transaction transfer(
             @NonNull Instant timestamp,
             @NonNull UUID sourceAccountId,
             @NonNull BigInteger sourceAmount,
             @NonNull UUID destinationAccountId,
             @NonNull BigInteger destinationAmount,
             @NonNull String description
+    ) throws TransferException {
+        return transfer(timestamp, sourceAccountId, sourceAmount, destinationAccountId, destinationAmount, description, null);
+    }
+
+    /**
+     * Same as {@link #transfer(Instant, UUID, BigInteger, UUID, BigInteger, String)}, executing a queued transfer
+     * request. Implementation should store the request id with the transaction (failed ones included) - request ids
+     * are unique across transactions, so a request executed again is rejected (or answered with the transaction it
+     * has been executed with already) rather than moving money twice.
+     *
+     * @param requestId id of the queued transfer request, null if none
+     */
+    Transaction transfer(
+            @NonNull Instant timestamp,
+            @NonNull UUID sourceAccountId,
+            @NonNull BigInteger sourceAmount,
+            @NonNull UUID destinationAccountId,
+            @NonNull BigInteger destinationAmount,
+            @NonNull String description,
+            UUID requestId
     ) throws TransferException;
 
+    /**
+     * Implementation should create and store all specified transfers, preferably in a single unit of work.
+     * Transfers are applied in the supplied order, created transactions are returned in the same order.
+     * <p>
+     * Default implementation simply performs transfers one by one.
+     *
+     * @param transfers transfers to perform
+     * @return created transactions
+     */
+    default List<Transaction> transferAll(@NonNull List<TransferInstruction> transfers) throws TransferException {
+        List<Transaction> transactions = new ArrayList<>(transfers.size());
+        for (TransferInstruction transfer : transfers) {
+            transactions.add(transfer(
+                    transfer.timestamp(),
+                    transfer.sourceAccountId(),
+                    transfer.sourceAmount(),
+                    transfer.destinationAccountId(),
+                    transfer.destinationAmount(),
+                    transfer.description()
+            ));
+        }
+        return transactions;
+    }
+
+    /**
+     * Implementation should pay out from a single source account to all destinations atomically - source is
+     * debited once for the total of all payouts and either every payout completes or, if the source balance is
+     * insufficient for the total, all of them fail. Created transactions are returned in the supplied order.
+     * <p>
+     * Not supported by default.
+     *
+     * @param payouts transfers to perform, all sharing the same source account
+     * @return created transactions
+     */
+    default List<Transaction> payout(@NonNull List<TransferInstruction> payouts) throws TransferException {
+        throw new TransferException();
+    }
+
+    /**
+     * Single transfer parameters, see {@link #transfer} for details.
+     */
+    record TransferInstruction(@NonNull Instant timestamp,
+                               @NonNull UUID sourceAccountId,
+                               @NonNull BigInteger sourceAmount,
+                               @NonNull UUID destinationAccountId,
+                               @NonNull BigInteger destinationAmount,
+                               @NonNull String description) {
+    }
+
     class TransferException extends RuntimeException {
         public TransferException() {
             super("internal error");
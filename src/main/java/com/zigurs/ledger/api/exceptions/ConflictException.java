@@ -0,0 +1,11 @@
+package com.zigurs.ledger.api.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpStatusCodeException;
+
+public class ConflictException extends HttpStatusCodeException {
+
+    public ConflictException(String description) {
+        super(HttpStatus.CONFLICT, description);
+    }
+}
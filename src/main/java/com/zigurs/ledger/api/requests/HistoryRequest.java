@@ -6,5 +6,6 @@ import java.util.UUID;
 
 public record HistoryRequest(@NonNull UUID account_id,
                              Integer offset,
-                             Integer limit) {
+                             Integer limit,
+                             String cursor) {
 }
@@ -0,0 +1,7 @@
+package com.zigurs.ledger.api.requests;
+
+/**
+ * @param slots number of sub-balance slots to split account balance into
+ */
+public record HotAccountRequest(int slots) {
+}
@@ -0,0 +1,13 @@
+package com.zigurs.ledger.api.requests;
+
+import lombok.NonNull;
+
+import java.util.UUID;
+
+/**
+ * Single payout within a payout request, paid from the source account of the request.
+ */
+public record PayoutItem(@NonNull UUID destinationAccountId,
+                         @NonNull String currency,
+                         @NonNull String amount) {
+}
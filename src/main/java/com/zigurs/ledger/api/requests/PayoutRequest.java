@@ -0,0 +1,10 @@
+package com.zigurs.ledger.api.requests;
+
+import lombok.NonNull;
+
+import java.util.List;
+import java.util.UUID;
+
+public record PayoutRequest(@NonNull UUID sourceAccountId,
+                            @NonNull List<PayoutItem> payouts) {
+}
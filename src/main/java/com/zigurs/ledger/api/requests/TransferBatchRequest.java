@@ -0,0 +1,8 @@
+package com.zigurs.ledger.api.requests;
+
+import lombok.NonNull;
+
+import java.util.List;
+
+public record TransferBatchRequest(@NonNull List<TransferRequest> transfers) {
+}
@@ -12,6 +12,13 @@ public record AccountView(@NonNull UUID account_id,
                           @NonNull BigInteger balance) {
 
     public static AccountView fromModel(Account account) {
-        return new AccountView(account.getId(), account.getCurrency(), account.getBalance());
+        return fromModel(account, account.getBalance());
+    }
+
+    /**
+     * @param balance total balance (of a hot account, incl. all sub-balance slots)
+     */
+    public static AccountView fromModel(Account account, BigInteger balance) {
+        return new AccountView(account.getId(), account.getCurrency(), balance);
     }
 }
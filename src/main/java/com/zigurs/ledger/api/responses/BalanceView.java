@@ -0,0 +1,19 @@
+package com.zigurs.ledger.api.responses;
+
+import com.zigurs.ledger.model.Account;
+
+import lombok.NonNull;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.UUID;
+
+public record BalanceView(@NonNull UUID account_id,
+                          @NonNull String currency,
+                          @NonNull Instant at,
+                          @NonNull BigInteger balance) {
+
+    public static BalanceView fromModel(Account account, Instant at, BigInteger balance) {
+        return new BalanceView(account.getId(), account.getCurrency(), at, balance);
+    }
+}
@@ -0,0 +1,34 @@
+package com.zigurs.ledger.api.responses;
+
+import com.zigurs.ledger.model.DailyAccountTotals;
+
+import lombok.NonNull;
+
+import java.math.BigInteger;
+import java.time.LocalDate;
+
+/**
+ * @param debit_sum   sum of debited amounts, positive
+ * @param min_balance lowest account balance after a transaction of the day (approximate for hot accounts)
+ * @param max_balance highest account balance after a transaction of the day (approximate for hot accounts)
+ */
+public record DailyTotalsView(@NonNull LocalDate day,
+                              long debit_count,
+                              @NonNull BigInteger debit_sum,
+                              long credit_count,
+                              @NonNull BigInteger credit_sum,
+                              @NonNull BigInteger min_balance,
+                              @NonNull BigInteger max_balance) {
+
+    public static DailyTotalsView fromModel(DailyAccountTotals totals) {
+        return new DailyTotalsView(
+                totals.day(),
+                totals.debitCount(),
+                totals.debitSum(),
+                totals.creditCount(),
+                totals.creditSum(),
+                totals.minBalance(),
+                totals.maxBalance()
+        );
+    }
+}
@@ -4,8 +4,12 @@ import lombok.NonNull;
 
 import java.util.List;
 
+/**
+ * @param next_cursor cursor of the following page, absent once the end of history is reached
+ */
 public record HistoryResponse(@NonNull AccountView account,
                               int offset,
                               int limit,
-                              @NonNull List<TransactionView> transactions) {
+                              @NonNull List<TransactionView> transactions,
+                              String next_cursor) {
 }
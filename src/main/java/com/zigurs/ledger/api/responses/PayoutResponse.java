@@ -0,0 +1,15 @@
+package com.zigurs.ledger.api.responses;
+
+import lombok.NonNull;
+
+import java.util.List;
+
+/**
+ * Outcome of a payout.
+ *
+ * @param status       COMPLETED or FAILED, shared by all payouts
+ * @param transactions created transactions (from the source account perspective), in request order
+ */
+public record PayoutResponse(@NonNull String status,
+                             @NonNull List<TransactionView> transactions) {
+}
@@ -0,0 +1,30 @@
+package com.zigurs.ledger.api.responses;
+
+import com.zigurs.ledger.model.QueuedTransfer;
+
+import lombok.NonNull;
+
+import java.util.UUID;
+
+/**
+ * State of an asynchronously executed transfer.
+ *
+ * @param transfer_id submitted transfer id
+ * @param status      PENDING, PROCESSING, COMPLETED or FAILED
+ * @param transaction resulting transaction, once available
+ * @param error       failure reason, if any
+ */
+public record QueuedTransferView(@NonNull UUID transfer_id,
+                                 @NonNull String status,
+                                 TransactionView transaction,
+                                 String error) {
+
+    public static QueuedTransferView fromModel(QueuedTransfer queuedTransfer, TransactionView transaction) {
+        return new QueuedTransferView(
+                queuedTransfer.getId(),
+                queuedTransfer.getStatus().toString(),
+                transaction,
+                queuedTransfer.getError()
+        );
+    }
+}
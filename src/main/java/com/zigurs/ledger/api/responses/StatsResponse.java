@@ -0,0 +1,17 @@
+package com.zigurs.ledger.api.responses;
+
+import lombok.NonNull;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * @param from first day (UTC) of the range, inclusive
+ * @param to   last day (UTC) of the range, inclusive
+ * @param days totals of days with completed transactions only, oldest first
+ */
+public record StatsResponse(@NonNull AccountView account,
+                            @NonNull LocalDate from,
+                            @NonNull LocalDate to,
+                            @NonNull List<DailyTotalsView> days) {
+}
@@ -0,0 +1,20 @@
+package com.zigurs.ledger.api.responses;
+
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.HistoryEntry;
+
+import lombok.NonNull;
+
+import java.util.UUID;
+
+/**
+ * Entry of a client timeline - transaction as seen by one of the client's accounts.
+ */
+public record TimelineEntryView(@NonNull UUID account_id,
+                                @NonNull String currency,
+                                @NonNull TransactionView transaction) {
+
+    public static TimelineEntryView fromModel(Account account, HistoryEntry entry) {
+        return new TimelineEntryView(account.getId(), account.getCurrency(), TransactionView.fromModel(entry));
+    }
+}
@@ -0,0 +1,15 @@
+package com.zigurs.ledger.api.responses;
+
+import lombok.NonNull;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * @param next_cursor cursor of the following page, absent once the end of the timeline is reached
+ */
+public record TimelineResponse(@NonNull UUID client_id,
+                               int limit,
+                               @NonNull List<TimelineEntryView> entries,
+                               String next_cursor) {
+}
@@ -1,6 +1,7 @@
 package com.zigurs.ledger.api.responses;
 
 import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.HistoryEntry;
 import com.zigurs.ledger.model.Transaction;
 
 import lombok.NonNull;
@@ -51,4 +52,23 @@ public record TransactionView(@NonNull UUID transaction_id,
                 transaction.getDescription()
         );
     }
+
+    /**
+     * Entry already belongs to the requesting account, direction and balance are taken as is.
+     */
+    public static TransactionView fromModel(HistoryEntry entry) {
+        boolean debit = entry.isDebit();
+
+        return new TransactionView(
+                entry.transactionId(),
+                entry.timestamp(),
+                debit ? TransactionDirection.DEBIT : TransactionDirection.CREDIT,
+                entry.status().toString(),
+                debit ? entry.accountId() : entry.counterpartyAccountId(),
+                debit ? entry.counterpartyAccountId() : entry.accountId(),
+                entry.amount().abs(),
+                entry.balance(),
+                entry.description()
+        );
+    }
 }
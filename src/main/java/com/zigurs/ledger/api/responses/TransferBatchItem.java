@@ -0,0 +1,17 @@
+package com.zigurs.ledger.api.responses;
+
+import lombok.NonNull;
+
+/**
+ * Outcome of a single transfer within a batch.
+ *
+ * @param index       position of the transfer in the original request
+ * @param status      COMPLETED or FAILED
+ * @param transaction created transaction, absent if transfer was rejected before execution
+ * @param error       failure reason, absent if transfer completed
+ */
+public record TransferBatchItem(int index,
+                                @NonNull String status,
+                                TransactionView transaction,
+                                String error) {
+}
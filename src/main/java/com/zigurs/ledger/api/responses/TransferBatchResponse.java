@@ -0,0 +1,8 @@
+package com.zigurs.ledger.api.responses;
+
+import lombok.NonNull;
+
+import java.util.List;
+
+public record TransferBatchResponse(@NonNull List<TransferBatchItem> transfers) {
+}
@@ -0,0 +1,131 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.api.TransferService;
+import com.zigurs.ledger.data.AccountBalancesRepository;
+import com.zigurs.ledger.data.TransactionsBatchRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.Transaction;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import lombok.NonNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Transfers without reading and locking accounts upfront.
+ * <p>
+ * Balance check and update is done by the database in a single conditional statement
+ * ({@code balance = balance - ? where balance >= ?}), affected row decides whether transfer is completed or failed.
+ * Row locks are only held from the update until commit, and there is no need for serializable isolation.
+ * <p>
+ * Returned transaction only references account ids (and resulting balances), not fully loaded accounts.
+ * <p>
+ * Enabled with {@code transfer_mode=atomic}.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "transfer_mode", havingValue = "atomic")
+public class AtomicDebitTransferService implements TransferService {
+
+    private final AccountBalancesRepository accountBalancesRepository;
+    private final TransactionsBatchRepository transactionsBatchRepository;
+
+    public AtomicDebitTransferService(
+            @NonNull AccountBalancesRepository accountBalancesRepository,
+            @NonNull TransactionsBatchRepository transactionsBatchRepository
+    ) {
+        this.accountBalancesRepository = accountBalancesRepository;
+        this.transactionsBatchRepository = transactionsBatchRepository;
+    }
+
+    @Override
+    @Transactional
+    public Transaction transfer(
+            @NonNull Instant timestamp,
+            @NonNull UUID sourceAccountId,
+            @NonNull BigInteger sourceAmount,
+            @NonNull UUID destinationAccountId,
+            @NonNull BigInteger destinationAmount,
+            @NonNull String description,
+            UUID requestId
+    ) throws TransferException {
+        // Updates still take row locks, so same as with locking reads - touch "smallest" account ID first
+        // to avoid deadlocking with a concurrent transfer in the opposite direction.
+        Optional<BigInteger> sourceBalance;
+        BigInteger destinationBalance;
+
+        if (sourceAccountId.compareTo(destinationAccountId) < 0) {
+            sourceBalance = accountBalancesRepository.debit(sourceAccountId, sourceAmount);
+            if (sourceBalance.isEmpty()) {
+                return failed(timestamp, sourceAccountId, sourceAmount, destinationAccountId, destinationAmount, requestId);
+            }
+            destinationBalance = accountBalancesRepository.credit(destinationAccountId, destinationAmount)
+                    .orElseThrow(TransferException::new); // rolls back the debit
+        } else if (sourceAccountId.compareTo(destinationAccountId) > 0) {
+            destinationBalance = accountBalancesRepository.credit(destinationAccountId, destinationAmount)
+                    .orElseThrow(TransferException::new);
+            sourceBalance = accountBalancesRepository.debit(sourceAccountId, sourceAmount);
+            if (sourceBalance.isEmpty()) {
+                // revert the credit, destination row is already locked by us
+                accountBalancesRepository.credit(destinationAccountId, destinationAmount.negate());
+                return failed(timestamp, sourceAccountId, sourceAmount, destinationAccountId, destinationAmount, requestId);
+            }
+        } else {
+            throw new TransferException();
+        }
+
+        return store(new Transaction(UUID.randomUUID(),
+                TransactionStatus.COMPLETED,
+                timestamp,
+                accountReference(sourceAccountId, sourceBalance.get()),
+                sourceAmount,
+                sourceBalance.get(),
+                accountReference(destinationAccountId, destinationBalance),
+                destinationAmount,
+                destinationBalance,
+                description,
+                requestId));
+    }
+
+    private Transaction failed(
+            Instant timestamp,
+            UUID sourceAccountId,
+            BigInteger sourceAmount,
+            UUID destinationAccountId,
+            BigInteger destinationAmount,
+            UUID requestId
+    ) {
+        // Debit didn't match - either there is no such account, or insufficient balance
+        BigInteger sourceBalance = accountBalancesRepository.findBalance(sourceAccountId).orElseThrow(TransferException::new);
+        BigInteger destinationBalance = accountBalancesRepository.findBalance(destinationAccountId).orElseThrow(TransferException::new);
+
+        return store(new Transaction(UUID.randomUUID(),
+                TransactionStatus.FAILED,
+                timestamp,
+                accountReference(sourceAccountId, sourceBalance),
+                sourceAmount,
+                sourceBalance,
+                accountReference(destinationAccountId, destinationBalance),
+                destinationAmount,
+                destinationBalance,
+                "insufficient balance",
+                requestId));
+    }
+
+    private Transaction store(Transaction transaction) {
+        transactionsBatchRepository.insertAll(List.of(transaction));
+        return transaction;
+    }
+
+    private static Account accountReference(UUID accountId, BigInteger balance) {
+        return new Account(accountId, null, null, balance);
+    }
+}
@@ -0,0 +1,104 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.data.BalanceCheckpointsRepository;
+import com.zigurs.ledger.data.LedgerEntriesRepository;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Periodically writes balance checkpoints, replaying transactions one checkpoint period at a time and picking up where
+ * the previous run (on any instance) stopped.
+ * <p>
+ * Periods are aligned to {@code balance_checkpoint_period_hours} since epoch. A period is only checkpointed once it
+ * ended at least {@code balance_checkpoint_delay_ms} ago, so that transfers still in flight when it ended are
+ * committed by then.
+ */
+@Slf4j
+@Component
+public class BalanceCheckpointer {
+
+    private final BalanceCheckpointsRepository balanceCheckpointsRepository;
+    private final LedgerEntriesRepository ledgerEntriesRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration period;
+    private final Duration delay;
+
+    public BalanceCheckpointer(
+            @NonNull BalanceCheckpointsRepository balanceCheckpointsRepository,
+            @NonNull LedgerEntriesRepository ledgerEntriesRepository,
+            @NonNull PlatformTransactionManager transactionManager,
+            @Value("${balance_checkpoint_period_hours}") int periodHours,
+            @Value("${balance_checkpoint_delay_ms}") long delayMs
+    ) {
+        if (periodHours < 1) {
+            throw new IllegalArgumentException("balance_checkpoint_period_hours must be positive");
+        }
+
+        this.balanceCheckpointsRepository = balanceCheckpointsRepository;
+        this.ledgerEntriesRepository = ledgerEntriesRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.period = Duration.ofHours(periodHours);
+        this.delay = Duration.ofMillis(delayMs);
+    }
+
+    @Scheduled(fixedDelayString = "${balance_checkpoint_interval_ms}")
+    public void checkpoint() {
+        try {
+            Instant settled = Instant.now().minus(delay);
+            while (checkpointNextPeriod(settled)) {
+                // catching up, one period (and database transaction) at a time
+            }
+        } catch (RuntimeException e) {
+            // next round will try again
+            log.error("unable to write balance checkpoints", e);
+        }
+    }
+
+    /**
+     * Checkpoint the period following the last checkpointed one, if it ended before {@code settled}.
+     *
+     * @return false if there was no such period
+     */
+    boolean checkpointNextPeriod(@NonNull Instant settled) {
+        return Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            Instant from = balanceCheckpointsRepository.lockProgress()
+                    .or(balanceCheckpointsRepository::findFirstTransactionTimestamp)
+                    .map(this::periodStart)
+                    .orElseGet(() -> periodStart(settled));
+
+            Instant to = from.plus(period);
+            if (to.isAfter(settled)) {
+                return false;
+            }
+
+            // accounts checkpointed for the first time start from their balance replayed back from the current one
+            Map<UUID, BigInteger> balances = balanceCheckpointsRepository.findClosingBalances(
+                    from,
+                    to,
+                    accountId -> ledgerEntriesRepository.findBalanceBefore(accountId, from)
+            );
+            balanceCheckpointsRepository.saveAll(to, balances);
+            balanceCheckpointsRepository.updateProgress(to);
+
+            log.debug("checkpointed balances of {} accounts at {}", balances.size(), to);
+            return true;
+        }));
+    }
+
+    private Instant periodStart(Instant timestamp) {
+        long periodMs = period.toMillis();
+        return Instant.ofEpochMilli(Math.floorDiv(timestamp.toEpochMilli(), periodMs) * periodMs);
+    }
+}
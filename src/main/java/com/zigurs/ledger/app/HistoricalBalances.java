@@ -0,0 +1,49 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.api.HistoricalBalanceService;
+import com.zigurs.ledger.data.BalanceCheckpointsRepository;
+import com.zigurs.ledger.data.LedgerEntriesRepository;
+import com.zigurs.ledger.model.Account;
+
+import lombok.NonNull;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Point-in-time balances, replayed from the latest balance checkpoint (see {@link BalanceCheckpointer}) preceding the
+ * instant - the checkpoint plus amounts of completed ledger entries between the two. Running balances of entries are
+ * not used, as they don't follow timestamp order.
+ * <p>
+ * Before the first checkpoint of the account the balance is replayed back from its current balance instead.
+ */
+@Service
+public class HistoricalBalances implements HistoricalBalanceService {
+
+    private final BalanceCheckpointsRepository balanceCheckpointsRepository;
+    private final LedgerEntriesRepository ledgerEntriesRepository;
+
+    public HistoricalBalances(
+            @NonNull BalanceCheckpointsRepository balanceCheckpointsRepository,
+            @NonNull LedgerEntriesRepository ledgerEntriesRepository
+    ) {
+        this.balanceCheckpointsRepository = balanceCheckpointsRepository;
+        this.ledgerEntriesRepository = ledgerEntriesRepository;
+    }
+
+    @Override
+    public BigInteger balanceAt(@NonNull Account account, @NonNull Instant at) {
+        // entries at the instant are included
+        Instant until = at.plusNanos(1);
+
+        Optional<BalanceCheckpointsRepository.Checkpoint> checkpoint = balanceCheckpointsRepository.findLatest(account.getId(), at);
+        if (checkpoint.isPresent()) {
+            return checkpoint.get().balance()
+                    .add(ledgerEntriesRepository.sumCompleted(account.getId(), checkpoint.get().at(), until));
+        }
+
+        return ledgerEntriesRepository.findBalanceBefore(account.getId(), until);
+    }
+}
@@ -0,0 +1,182 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.api.HotAccountsService;
+import com.zigurs.ledger.api.TransferService;
+import com.zigurs.ledger.data.AccountSlotsRepository;
+import com.zigurs.ledger.model.Account;
+
+import jakarta.annotation.PostConstruct;
+import lombok.NonNull;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Striped balances of hot accounts (e.g. merchant settlement or fee collection accounts involved in most transfers).
+ * <p>
+ * Credits go to a random slot. Debits go to the first slot (starting from a random one) with sufficient funds,
+ * falling back to a sweep across all slots when none of them has enough on its own. Slots are kept evenly funded
+ * by {@link HotAccountsRebalancer}.
+ * <p>
+ * Hot accounts are cached in memory and refreshed periodically, so marking accounts as hot on another instance is
+ * picked up with a delay.
+ */
+@Service
+public class HotAccounts implements HotAccountsService {
+
+    private final AccountSlotsRepository accountSlotsRepository;
+    private final Map<UUID, Integer> slotCounts = new ConcurrentHashMap<>();
+
+    public HotAccounts(@NonNull AccountSlotsRepository accountSlotsRepository) {
+        this.accountSlotsRepository = accountSlotsRepository;
+    }
+
+    @PostConstruct
+    public void refresh() {
+        Map<UUID, Integer> current = accountSlotsRepository.findSlotCounts();
+        slotCounts.keySet().retainAll(current.keySet());
+        slotCounts.putAll(current);
+    }
+
+    public boolean isHot(@NonNull UUID accountId) {
+        return slotCounts.containsKey(accountId);
+    }
+
+    public Set<UUID> hotAccountIds() {
+        return Set.copyOf(slotCounts.keySet());
+    }
+
+    @Override
+    @Transactional
+    public boolean markHot(@NonNull UUID accountId, int slots) {
+        if (slots < 1) {
+            throw new IllegalArgumentException("at least one slot required");
+        }
+
+        if (!accountSlotsRepository.stripe(accountId, slots)) {
+            return false;
+        }
+
+        slotCounts.put(accountId, slots);
+        return true;
+    }
+
+    @Override
+    @Transactional
+    public boolean unmarkHot(@NonNull UUID accountId) {
+        if (!accountSlotsRepository.unstripe(accountId)) {
+            return false;
+        }
+
+        slotCounts.remove(accountId);
+        return true;
+    }
+
+    @Override
+    public BigInteger balance(@NonNull Account account) {
+        if (account.getSlots() == 0 && !isHot(account.getId())) {
+            return account.getBalance();
+        }
+
+        return account.getBalance().add(accountSlotsRepository.slotsBalance(account.getId()));
+    }
+
+    /**
+     * Add amount to a random slot of a hot account. Has to be called within a transaction.
+     *
+     * @return credited slot
+     * @throws TransferService.TransferException if account is not (or no longer) hot
+     */
+    public int credit(@NonNull UUID accountId, @NonNull BigInteger amount) {
+        int slot = ThreadLocalRandom.current().nextInt(slotCount(accountId));
+
+        if (!accountSlotsRepository.credit(accountId, slot, amount)) {
+            throw new TransferService.TransferException();
+        }
+        return slot;
+    }
+
+    /**
+     * Take back amount credited (and still locked) within the current transaction.
+     */
+    public void revertCredit(@NonNull UUID accountId, int slot, @NonNull BigInteger amount) {
+        if (!accountSlotsRepository.credit(accountId, slot, amount.negate())) {
+            throw new TransferService.TransferException();
+        }
+    }
+
+    /**
+     * Deduct amount from a hot account if (and only if) it has sufficient balance across all of its slots.
+     * Has to be called within a transaction.
+     *
+     * @return false if balance is insufficient
+     * @throws TransferService.TransferException if account is not (or no longer) hot
+     */
+    public boolean debit(@NonNull UUID accountId, @NonNull BigInteger amount) {
+        int slots = slotCount(accountId);
+
+        // single slot with enough funds, only that slot is locked
+        int start = ThreadLocalRandom.current().nextInt(slots);
+        for (int i = 0; i < slots; i++) {
+            if (accountSlotsRepository.debit(accountId, (start + i) % slots, amount)) {
+                return true;
+            }
+        }
+
+        // sweep - lock all slots (in slot order) and collect the amount across them
+        List<BigInteger> balances = accountSlotsRepository.lockSlots(accountId);
+        if (balances.size() != slots) {
+            throw new TransferService.TransferException();
+        }
+
+        BigInteger remaining = amount;
+        List<BigInteger> updated = new ArrayList<>(balances.size());
+        for (BigInteger balance : balances) {
+            BigInteger taken = balance.min(remaining);
+            updated.add(balance.subtract(taken));
+            remaining = remaining.subtract(taken);
+        }
+
+        if (remaining.signum() > 0) {
+            // Insufficient balance
+            return false;
+        }
+
+        accountSlotsRepository.updateSlots(accountId, updated);
+        return true;
+    }
+
+    /**
+     * Spread balance of a hot account evenly across its slots.
+     */
+    @Transactional
+    public void rebalance(@NonNull UUID accountId) {
+        List<BigInteger> balances = accountSlotsRepository.lockSlots(accountId);
+        if (balances.isEmpty()) {
+            return;
+        }
+
+        BigInteger total = balances.stream().reduce(BigInteger.ZERO, BigInteger::add);
+        List<BigInteger> distributed = AccountSlotsRepository.distribute(total, balances.size());
+
+        if (!distributed.equals(balances)) {
+            accountSlotsRepository.updateSlots(accountId, distributed);
+        }
+    }
+
+    private int slotCount(UUID accountId) {
+        Integer slots = slotCounts.get(accountId);
+        if (slots == null) {
+            throw new TransferService.TransferException();
+        }
+        return slots;
+    }
+}
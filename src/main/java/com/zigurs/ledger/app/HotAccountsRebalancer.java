@@ -0,0 +1,38 @@
+package com.zigurs.ledger.app;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Periodically spreads balances of hot accounts evenly across their slots, so that debits keep finding a single
+ * slot with sufficient funds instead of sweeping (and locking) all of them. Also picks up accounts marked as hot
+ * on other instances.
+ */
+@Slf4j
+@Component
+public class HotAccountsRebalancer {
+
+    private final HotAccounts hotAccounts;
+
+    public HotAccountsRebalancer(@NonNull HotAccounts hotAccounts) {
+        this.hotAccounts = hotAccounts;
+    }
+
+    @Scheduled(fixedDelayString = "${hot_account_rebalance_interval_ms}")
+    public void rebalance() {
+        hotAccounts.refresh();
+
+        for (UUID accountId : hotAccounts.hotAccountIds()) {
+            try {
+                hotAccounts.rebalance(accountId);
+            } catch (RuntimeException e) {
+                // next round will try again
+                log.error("unable to rebalance hot account {}", accountId, e);
+            }
+        }
+    }
+}
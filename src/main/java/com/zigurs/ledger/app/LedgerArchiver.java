@@ -0,0 +1,71 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.data.LedgerArchive;
+import com.zigurs.ledger.data.LedgerPartitions;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Periodically moves ledger partitions that ended more than {@code ledger_archive_after_days} ago into segment files,
+ * oldest first, and drops their tables {@code ledger_archive_drop_delay_ms} later - by then every instance has
+ * switched over to reading the segment.
+ * <p>
+ * Only ledger entries are archived - {@code transactions} keeps growing, as transfers are looked up there (outcomes of
+ * queued transfers, replays of idempotent transfers, balance checkpoints).
+ */
+@Slf4j
+@Component
+public class LedgerArchiver {
+
+    private final LedgerPartitions ledgerPartitions;
+    private final LedgerArchive ledgerArchive;
+    private final Duration age;
+    private final Duration dropDelay;
+
+    public LedgerArchiver(
+            @NonNull LedgerPartitions ledgerPartitions,
+            @NonNull LedgerArchive ledgerArchive,
+            @Value("${ledger_archive_after_days}") int afterDays,
+            @Value("${ledger_archive_drop_delay_ms}") long dropDelayMs
+    ) {
+        this.ledgerPartitions = ledgerPartitions;
+        this.ledgerArchive = ledgerArchive;
+        this.age = Duration.ofDays(afterDays);
+        this.dropDelay = Duration.ofMillis(dropDelayMs);
+    }
+
+    @Scheduled(fixedDelayString = "${ledger_archive_interval_ms}")
+    public void archive() {
+        if (age.isZero()) {
+            // disabled
+            return;
+        }
+
+        try {
+            Instant now = Instant.now();
+
+            // partitions are archived in order, so that archived ones always precede those in tables
+            Optional<LedgerPartitions.Partition> oldest;
+            while ((oldest = ledgerPartitions.oldestLive()).isPresent() && !oldest.get().end().isAfter(now.minus(age))) {
+                LedgerPartitions.Partition partition = oldest.get();
+                String segment = ledgerArchive.write(partition);
+                ledgerPartitions.markArchived(partition, segment);
+
+                log.info("archived ledger partition {} into {}", partition.table(), segment);
+            }
+
+            ledgerPartitions.dropArchived(now.minus(dropDelay));
+        } catch (RuntimeException e) {
+            // next round will try again
+            log.error("unable to archive ledger partitions", e);
+        }
+    }
+}
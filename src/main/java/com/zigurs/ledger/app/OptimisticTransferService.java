@@ -0,0 +1,177 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.api.TransferService;
+import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.data.TransactionsRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.Transaction;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Optimistic counterpart of {@link TransferServiceImpl}.
+ * <p>
+ * Accounts are read without locks and updated with a version check ({@code where version = ?}). If any of the
+ * accounts was modified concurrently the whole transfer is retried in a new transaction, with jittered exponential
+ * backoff, up to a configured number of times. Cheaper than locking for accounts with little contention.
+ * <p>
+ * Enabled with {@code transfer_mode=optimistic}.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "transfer_mode", havingValue = "optimistic")
+public class OptimisticTransferService implements TransferService {
+
+    static final String MODE = "optimistic";
+
+    // cap exponential growth of the backoff window
+    private static final int MAX_BACKOFF_SHIFT = 10;
+
+    private final AccountsRepository accountsRepository;
+    private final TransactionsRepository transactionsRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransferMetrics transferMetrics;
+    private final int maxRetries;
+    private final long backoffMs;
+
+    public OptimisticTransferService(
+            @NonNull AccountsRepository accountsRepository,
+            @NonNull TransactionsRepository transactionsRepository,
+            @NonNull PlatformTransactionManager transactionManager,
+            @NonNull TransferMetrics transferMetrics,
+            @Value("${optimistic_max_retries}") int maxRetries,
+            @Value("${optimistic_retry_backoff_ms}") long backoffMs
+    ) {
+        this.accountsRepository = accountsRepository;
+        this.transactionsRepository = transactionsRepository;
+        this.transferMetrics = transferMetrics;
+        this.maxRetries = maxRetries;
+        this.backoffMs = backoffMs;
+
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+    }
+
+    @Override
+    public Transaction transfer(
+            @NonNull Instant timestamp,
+            @NonNull UUID sourceAccountId,
+            @NonNull BigInteger sourceAmount,
+            @NonNull UUID destinationAccountId,
+            @NonNull BigInteger destinationAmount,
+            @NonNull String description,
+            UUID requestId
+    ) throws TransferException {
+        if (sourceAccountId.equals(destinationAccountId)) {
+            throw new TransferException();
+        }
+
+        return transferMetrics.record(MODE, () -> {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    return transactionTemplate.execute(status -> attemptTransfer(
+                            timestamp,
+                            sourceAccountId,
+                            sourceAmount,
+                            destinationAccountId,
+                            destinationAmount,
+                            description,
+                            requestId
+                    ));
+                } catch (ConcurrencyFailureException e) {
+                    // version mismatch (or lock conflict) on one of the accounts
+                    if (attempt >= maxRetries) {
+                        throw new TransferException();
+                    }
+
+                    transferMetrics.retry(MODE);
+                    backoff(attempt);
+                }
+            }
+        });
+    }
+
+    private Transaction attemptTransfer(
+            Instant timestamp,
+            UUID sourceAccountId,
+            BigInteger sourceAmount,
+            UUID destinationAccountId,
+            BigInteger destinationAmount,
+            String description,
+            UUID requestId
+    ) {
+        // Plain reads, no locks. Still loaded (and therefore flushed) in id order to avoid deadlocking on update.
+        Account sourceAccount, destinationAccount;
+        if (sourceAccountId.compareTo(destinationAccountId) > 0) {
+            destinationAccount = accountsRepository.findById(destinationAccountId).orElseThrow(TransferException::new);
+            sourceAccount = accountsRepository.findById(sourceAccountId).orElseThrow(TransferException::new);
+        } else {
+            sourceAccount = accountsRepository.findById(sourceAccountId).orElseThrow(TransferException::new);
+            destinationAccount = accountsRepository.findById(destinationAccountId).orElseThrow(TransferException::new);
+        }
+
+        if (sourceAccount.getBalance().subtract(sourceAmount).compareTo(BigInteger.ZERO) < 0) {
+            // Insufficient balance
+            return transactionsRepository.save(
+                    new Transaction(null,
+                            TransactionStatus.FAILED,
+                            timestamp,
+                            sourceAccount,
+                            sourceAmount,
+                            sourceAccount.getBalance(),
+                            destinationAccount,
+                            destinationAmount,
+                            destinationAccount.getBalance(),
+                            "insufficient balance",
+                            requestId)
+            );
+        }
+
+        // version checked on flush
+        sourceAccount.setBalance(sourceAccount.getBalance().subtract(sourceAmount));
+        sourceAccount = accountsRepository.save(sourceAccount);
+
+        destinationAccount.setBalance(destinationAccount.getBalance().add(destinationAmount));
+        destinationAccount = accountsRepository.save(destinationAccount);
+
+        return transactionsRepository.save(
+                new Transaction(null,
+                        TransactionStatus.COMPLETED,
+                        timestamp,
+                        sourceAccount,
+                        sourceAmount,
+                        sourceAccount.getBalance(),
+                        destinationAccount,
+                        destinationAmount,
+                        destinationAccount.getBalance(),
+                        description,
+                        requestId)
+        );
+    }
+
+    private void backoff(int attempt) {
+        // "full jitter" - random delay within exponentially growing window
+        long window = backoffMs << Math.min(attempt, MAX_BACKOFF_SHIFT);
+
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(window + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferException();
+        }
+    }
+}
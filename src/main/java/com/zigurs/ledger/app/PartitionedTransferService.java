@@ -0,0 +1,144 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.api.TransferService;
+import com.zigurs.ledger.model.Transaction;
+
+import jakarta.annotation.PreDestroy;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializes transfers per account in the JVM before they reach the database.
+ * <p>
+ * Accounts are hashed into N single threaded partitions (N defaults to number of cores). A transfer is executed on
+ * the partition(s) owning both of its accounts, so transfers touching the same account never compete for the same
+ * row locks in {@link TransferServiceImpl}, while transfers between unrelated accounts proceed in parallel.
+ * <p>
+ * Cross partition transfers are handed off in a fixed order - queued on the lower partition first, which then
+ * waits for the higher one. Partitions only ever wait on higher numbered ones, so there can be no circular waits.
+ * <p>
+ * Enabled with {@code transfer_mode=partitioned}.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "transfer_mode", havingValue = "partitioned")
+public class PartitionedTransferService implements TransferService {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30L;
+
+    private final TransferServiceImpl delegate;
+    private final ExecutorService[] partitions;
+
+    public PartitionedTransferService(
+            @NonNull TransferServiceImpl delegate,
+            @Value("${partitioned_executor_count}") int partitionCount
+    ) {
+        this.delegate = delegate;
+
+        int count = partitionCount > 0 ? partitionCount : Runtime.getRuntime().availableProcessors();
+        this.partitions = new ExecutorService[count];
+        for (int i = 0; i < count; i++) {
+            partitions[i] = Executors.newSingleThreadExecutor(
+                    Thread.ofPlatform().name("transfer-partition-" + i).factory()
+            );
+        }
+    }
+
+    @Override
+    public Transaction transfer(
+            @NonNull Instant timestamp,
+            @NonNull UUID sourceAccountId,
+            @NonNull BigInteger sourceAmount,
+            @NonNull UUID destinationAccountId,
+            @NonNull BigInteger destinationAmount,
+            @NonNull String description,
+            UUID requestId
+    ) throws TransferException {
+        Callable<Transaction> work = () -> delegate.transfer(
+                timestamp,
+                sourceAccountId,
+                sourceAmount,
+                destinationAccountId,
+                destinationAmount,
+                description,
+                requestId
+        );
+
+        int sourcePartition = partitionOf(sourceAccountId);
+        int destinationPartition = partitionOf(destinationAccountId);
+
+        int lower = Math.min(sourcePartition, destinationPartition);
+        int higher = Math.max(sourcePartition, destinationPartition);
+
+        try {
+            if (lower == higher) {
+                return await(partitions[lower].submit(work));
+            } else {
+                // hold the lower partition for the duration of the transfer on the higher one
+                return await(partitions[lower].submit(() -> await(partitions[higher].submit(work))));
+            }
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            throw new TransferException();
+        }
+    }
+
+    /**
+     * Payouts touch too many accounts to be queued on their partitions, row locks of the delegate keep them
+     * consistent with partitioned transfers.
+     */
+    @Override
+    public List<Transaction> payout(@NonNull List<TransferInstruction> payouts) throws TransferException {
+        return delegate.payout(payouts);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ExecutorService partition : partitions) {
+            partition.shutdown();
+        }
+
+        for (ExecutorService partition : partitions) {
+            partition.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    int partitionOf(UUID accountId) {
+        return Math.floorMod(accountId.hashCode(), partitions.length);
+    }
+
+    int partitionCount() {
+        return partitions.length;
+    }
+
+    private static Transaction await(Future<Transaction> future) throws TransferException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException) {
+                // includes TransferException, as well as unwrapped failures from nested hand off
+                throw runtimeException;
+            }
+            throw new TransferException();
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.api.CurrencyConverterService;
+import com.zigurs.ledger.api.TransferInstructions;
+import com.zigurs.ledger.api.TransferService;
+import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.data.QueuedTransfersRepository;
+import com.zigurs.ledger.data.TransactionsRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.QueuedTransfer;
+import com.zigurs.ledger.model.QueuedTransferStatus;
+import com.zigurs.ledger.model.Transaction;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import jakarta.annotation.PreDestroy;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes transfers queued by {@code POST /transfer} when {@code transfer_submission=async}.
+ * <p>
+ * Pending requests are polled from {@code transfer_requests} table and executed on a fixed pool of workers through
+ * the configured {@link TransferService}. Each request is claimed with a conditional PENDING -> PROCESSING update
+ * first, so it is executed at most once even with several pollers (or instances) running.
+ * <p>
+ * Transactions of queued transfers carry the id of their request, written in the same database transaction as the
+ * transfer itself and unique across transactions - a request claimed again can't move money twice, whichever attempt
+ * commits first wins. Requests left in PROCESSING (by a crash, or when recording the outcome keeps failing) are
+ * reconciled against it once they are older than {@code transfer_queue_stuck_after_ms} - completed (or failed) from
+ * the transaction if there is one, queued again otherwise.
+ * <p>
+ * Requests that couldn't be converted (FX provider unavailable) are queued again with exponential backoff, starting
+ * at {@code transfer_queue_retry_delay_ms}, and only failed after {@code transfer_queue_max_attempts} attempts.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transfer_submission", havingValue = "async")
+public class QueuedTransferWorker {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30L;
+    private static final int COMPLETE_ATTEMPTS = 3;
+    private static final long COMPLETE_RETRY_DELAY_MS = 100L;
+    // cap exponential growth of the retry delay
+    private static final int MAX_BACKOFF_SHIFT = 10;
+
+    private final QueuedTransfersRepository queuedTransfersRepository;
+    private final AccountsRepository accountsRepository;
+    private final TransactionsRepository transactionsRepository;
+    private final TransferInstructions transferInstructions;
+    private final TransferService transferService;
+    private final int batchSize;
+    private final long stuckAfterMs;
+    private final long retryDelayMs;
+    private final int maxAttempts;
+    private final ExecutorService workers;
+
+    public QueuedTransferWorker(
+            @NonNull QueuedTransfersRepository queuedTransfersRepository,
+            @NonNull AccountsRepository accountsRepository,
+            @NonNull TransactionsRepository transactionsRepository,
+            @NonNull TransferInstructions transferInstructions,
+            @NonNull TransferService transferService,
+            @Value("${transfer_queue_batch_size}") int batchSize,
+            @Value("${transfer_queue_workers}") int workerCount,
+            @Value("${transfer_queue_stuck_after_ms}") long stuckAfterMs,
+            @Value("${transfer_queue_retry_delay_ms}") long retryDelayMs,
+            @Value("${transfer_queue_max_attempts}") int maxAttempts
+    ) {
+        this.queuedTransfersRepository = queuedTransfersRepository;
+        this.accountsRepository = accountsRepository;
+        this.transactionsRepository = transactionsRepository;
+        this.transferInstructions = transferInstructions;
+        this.transferService = transferService;
+        this.batchSize = batchSize;
+        this.stuckAfterMs = stuckAfterMs;
+        this.retryDelayMs = retryDelayMs;
+        this.maxAttempts = maxAttempts;
+
+        this.workers = Executors.newFixedThreadPool(
+                workerCount,
+                Thread.ofPlatform().name("transfer-worker-", 0).factory()
+        );
+    }
+
+    /**
+     * Execute next batch of pending transfers that are due, waiting for all of them to finish.
+     *
+     * @return number of requests picked up
+     */
+    @Scheduled(fixedDelayString = "${transfer_queue_poll_interval_ms}")
+    public int processPending() throws InterruptedException {
+        List<QueuedTransfer> pending = queuedTransfersRepository.findAllDue(
+                QueuedTransferStatus.PENDING,
+                Instant.now(),
+                PageRequest.of(0, batchSize)
+        );
+
+        List<Callable<Void>> tasks = new ArrayList<>(pending.size());
+        for (QueuedTransfer queuedTransfer : pending) {
+            tasks.add(() -> {
+                process(queuedTransfer);
+                return null;
+            });
+        }
+
+        workers.invokeAll(tasks);
+        return pending.size();
+    }
+
+    /**
+     * Reconcile requests stuck in PROCESSING against transactions.
+     *
+     * @return number of requests reconciled
+     */
+    @Scheduled(fixedDelayString = "${transfer_queue_reap_interval_ms}")
+    public int reapStuck() {
+        List<QueuedTransfer> stuck = queuedTransfersRepository.findAllByStatusAndUpdatedBeforeOrderByUpdatedAsc(
+                QueuedTransferStatus.PROCESSING,
+                Instant.now().minusMillis(stuckAfterMs),
+                PageRequest.of(0, batchSize)
+        );
+
+        for (QueuedTransfer queuedTransfer : stuck) {
+            reap(queuedTransfer);
+        }
+        return stuck.size();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        if (!workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            log.error("transfer workers did not finish in time");
+        }
+    }
+
+    void process(QueuedTransfer queuedTransfer) {
+        if (queuedTransfersRepository.updateStatus(
+                queuedTransfer.getId(),
+                QueuedTransferStatus.PENDING,
+                QueuedTransferStatus.PROCESSING,
+                Instant.now()) == 0) {
+            // claimed by someone else
+            return;
+        }
+
+        Transaction transaction;
+        try {
+            Account sourceAccount = accountsRepository.findById(queuedTransfer.getSourceAccountId())
+                    .orElseThrow(TransferService.TransferException::new);
+            Account destinationAccount = accountsRepository.findById(queuedTransfer.getDestinationAccountId())
+                    .orElseThrow(TransferService.TransferException::new);
+
+            TransferService.TransferInstruction transfer = transferInstructions.prepare(
+                    sourceAccount,
+                    destinationAccount,
+                    TransferInstructions.lookupCurrency(queuedTransfer.getCurrency()),
+                    queuedTransfer.getAmount()
+            );
+
+            transaction = transferService.transfer(
+                    transfer.timestamp(),
+                    transfer.sourceAccountId(),
+                    transfer.sourceAmount(),
+                    transfer.destinationAccountId(),
+                    transfer.destinationAmount(),
+                    transfer.description(),
+                    queuedTransfer.getId()
+            );
+        } catch (CurrencyConverterService.CurrencyConversionException e) {
+            // most likely transient, the provider (or its circuit breaker) might recover
+            retry(queuedTransfer, "currency conversion unavailable");
+            return;
+        } catch (Exception e) {
+            // an attempt claimed earlier (and taken for stuck) might have committed the transfer first
+            Optional<Transaction> executed = transactionsRepository.findByRequestId(queuedTransfer.getId());
+            if (executed.isEmpty()) {
+                log.error("unable to execute queued transfer {}", queuedTransfer.getId(), e);
+                fail(queuedTransfer, "internal error");
+                return;
+            }
+            transaction = executed.get();
+        }
+
+        // Transfer is committed at this point, the request must not be failed anymore. If its outcome can't be
+        // recorded it is left in PROCESSING for reapStuck() to complete.
+        for (int attempt = 1; ; attempt++) {
+            try {
+                complete(queuedTransfer, transaction);
+                return;
+            } catch (Exception e) {
+                if (attempt >= COMPLETE_ATTEMPTS) {
+                    log.error("unable to complete queued transfer {} of transaction {}", queuedTransfer.getId(), transaction.getId(), e);
+                    return;
+                }
+            }
+
+            try {
+                Thread.sleep(COMPLETE_RETRY_DELAY_MS * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    void reap(QueuedTransfer queuedTransfer) {
+        // failed transactions (insufficient balance) carry the request id too
+        Optional<Transaction> executed = transactionsRepository.findByRequestId(queuedTransfer.getId());
+
+        if (executed.isEmpty()) {
+            // should the stuck attempt still commit after all, the one queued now is rejected (and vice versa)
+            log.warn("queued transfer {} stuck in processing was not executed, queueing again", queuedTransfer.getId());
+            queuedTransfersRepository.updateStatus(
+                    queuedTransfer.getId(),
+                    QueuedTransferStatus.PROCESSING,
+                    QueuedTransferStatus.PENDING,
+                    Instant.now()
+            );
+        } else {
+            log.warn("queued transfer {} stuck in processing was executed, completing", queuedTransfer.getId());
+            complete(queuedTransfer, executed.get());
+        }
+    }
+
+    private void complete(QueuedTransfer queuedTransfer, Transaction transaction) {
+        // failed transactions (insufficient balance) are recorded too, reason is in description
+        boolean failed = transaction.getStatus() == TransactionStatus.FAILED;
+        queuedTransfersRepository.complete(
+                queuedTransfer.getId(),
+                failed ? QueuedTransferStatus.FAILED : QueuedTransferStatus.COMPLETED,
+                transaction.getId(),
+                failed ? transaction.getDescription() : null,
+                Instant.now()
+        );
+    }
+
+    private void retry(QueuedTransfer queuedTransfer, String error) {
+        int attempts = queuedTransfer.getAttempts() + 1;
+        if (attempts >= maxAttempts) {
+            fail(queuedTransfer, error);
+            return;
+        }
+
+        Instant now = Instant.now();
+        long delayMs = retryDelayMs << Math.min(attempts - 1, MAX_BACKOFF_SHIFT);
+        log.warn("queued transfer {} failed ({}), attempt {} of {}, retrying in {}ms", queuedTransfer.getId(), error, attempts, maxAttempts, delayMs);
+        queuedTransfersRepository.retry(queuedTransfer.getId(), attempts, now.plusMillis(delayMs), now);
+    }
+
+    private void fail(QueuedTransfer queuedTransfer, String error) {
+        queuedTransfersRepository.complete(
+                queuedTransfer.getId(),
+                QueuedTransferStatus.FAILED,
+                null,
+                error,
+                Instant.now()
+        );
+    }
+}
@@ -0,0 +1,322 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.api.TransferService;
+import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.data.TransactionsBatchRepository;
+import com.zigurs.ledger.data.TransactionsRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.Transaction;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import jakarta.annotation.PreDestroy;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single writer transfer engine.
+ * <p>
+ * All balances are kept in memory and mutated by exactly one sequencer thread that consumes transfers from a bounded
+ * ring buffer, so no row locks or serializable transactions are needed to keep balances consistent. Resulting
+ * transactions (and latest account balances) are written behind to the database in batches by a separate thread.
+ * <p>
+ * Note that this trades durability for throughput - a transfer is acknowledged once applied in memory, before it
+ * is stored. It also assumes that this is the only process writing to the accounts table.
+ * <p>
+ * Queued transfer requests executed again are answered with their original transaction instead - looked up among
+ * transactions not stored yet, then in the database - as a duplicate request id would fail the whole written batch.
+ * <p>
+ * Enabled with {@code transfer_mode=sequencer} (see {@code sequencer} profile).
+ */
+@Slf4j
+@Service
+@Primary
+@ConditionalOnProperty(name = "transfer_mode", havingValue = "sequencer")
+public class SequencerTransferService implements TransferService {
+
+    private static final long POLL_INTERVAL_MS = 100L;
+    private static final long MAX_WRITE_BACKOFF_MS = 5_000L;
+    private static final long SHUTDOWN_TIMEOUT_MS = 30_000L;
+
+    private final AccountsRepository accountsRepository;
+    private final TransactionsBatchRepository transactionsBatchRepository;
+    private final TransactionsRepository transactionsRepository;
+    private final int writeBatchSize;
+
+    private final BlockingQueue<TransferCommand> ringBuffer;
+    private final BlockingQueue<Transaction> journal;
+
+    // Owned exclusively by the sequencer thread, hence no synchronisation
+    private final Map<UUID, AccountState> accounts = new HashMap<>();
+
+    // transactions of queued transfer requests applied but not stored yet, keyed by request id
+    private final Map<UUID, Transaction> unstoredRequests = new ConcurrentHashMap<>();
+
+    private final Thread sequencer;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public SequencerTransferService(
+            @NonNull AccountsRepository accountsRepository,
+            @NonNull TransactionsBatchRepository transactionsBatchRepository,
+            @NonNull TransactionsRepository transactionsRepository,
+            @Value("${sequencer_ring_buffer_size}") int ringBufferSize,
+            @Value("${sequencer_write_batch_size}") int writeBatchSize
+    ) {
+        this.accountsRepository = accountsRepository;
+        this.transactionsBatchRepository = transactionsBatchRepository;
+        this.transactionsRepository = transactionsRepository;
+        this.writeBatchSize = writeBatchSize;
+
+        // ArrayBlockingQueue is a fixed size circular array - full buffer applies back pressure on callers
+        this.ringBuffer = new ArrayBlockingQueue<>(ringBufferSize);
+        this.journal = new ArrayBlockingQueue<>(ringBufferSize);
+
+        this.sequencer = Thread.ofPlatform().name("transfer-sequencer").start(this::runSequencer);
+        this.writer = Thread.ofPlatform().name("transfer-writer").start(this::runWriter);
+    }
+
+    @Override
+    public Transaction transfer(
+            @NonNull Instant timestamp,
+            @NonNull UUID sourceAccountId,
+            @NonNull BigInteger sourceAmount,
+            @NonNull UUID destinationAccountId,
+            @NonNull BigInteger destinationAmount,
+            @NonNull String description,
+            UUID requestId
+    ) throws TransferException {
+        if (!running) {
+            throw new TransferException();
+        }
+
+        TransferCommand command = new TransferCommand(
+                timestamp,
+                sourceAccountId,
+                sourceAmount,
+                destinationAccountId,
+                destinationAmount,
+                description,
+                requestId,
+                new CompletableFuture<>()
+        );
+
+        try {
+            ringBuffer.put(command);
+            return command.result().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TransferException();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TransferException transferException) {
+                throw transferException;
+            }
+            throw new TransferException();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // stop accepting new work, let both threads drain what is already queued
+        running = false;
+        sequencer.join(SHUTDOWN_TIMEOUT_MS);
+
+        // anything that slipped in after the sequencer stopped is rejected
+        List<TransferCommand> rejected = new ArrayList<>();
+        ringBuffer.drainTo(rejected);
+        rejected.forEach(command -> command.result().completeExceptionally(new TransferException()));
+
+        writer.join(SHUTDOWN_TIMEOUT_MS);
+
+        if (writer.isAlive()) {
+            log.error("transfer writer did not finish in time, {} transactions not stored", journal.size());
+        }
+    }
+
+    private void runSequencer() {
+        try {
+            while (running || !ringBuffer.isEmpty()) {
+                TransferCommand command = ringBuffer.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (command != null) {
+                    apply(command);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void apply(TransferCommand command) throws InterruptedException {
+        try {
+            Transaction executed = executed(command.requestId());
+            if (executed != null) {
+                command.result().complete(executed);
+                return;
+            }
+
+            Transaction transaction = execute(command);
+            if (command.requestId() != null) {
+                unstoredRequests.put(command.requestId(), transaction);
+            }
+            // hand over to the writer before acknowledging, full journal slows the sequencer down
+            journal.put(transaction);
+            command.result().complete(transaction);
+        } catch (TransferException e) {
+            command.result().completeExceptionally(e);
+        } catch (RuntimeException e) {
+            log.error("unable to apply transfer", e);
+            command.result().completeExceptionally(new TransferException());
+        }
+    }
+
+    /**
+     * @return transaction the queued transfer request has been executed with already, null if none
+     */
+    private Transaction executed(UUID requestId) {
+        if (requestId == null) {
+            return null;
+        }
+
+        // removed only once stored, so it is found in one or the other
+        Transaction unstored = unstoredRequests.get(requestId);
+        return unstored != null ? unstored : transactionsRepository.findByRequestId(requestId).orElse(null);
+    }
+
+    private Transaction execute(TransferCommand command) {
+        // same sanity checks as the locking implementation
+        if (command.sourceAccountId().equals(command.destinationAccountId())) {
+            throw new TransferException();
+        }
+
+        AccountState source = lookupAccount(command.sourceAccountId());
+        AccountState destination = lookupAccount(command.destinationAccountId());
+
+        if (source.balance.subtract(command.sourceAmount()).compareTo(BigInteger.ZERO) < 0) {
+            // Insufficient balance
+            return new Transaction(UUID.randomUUID(),
+                    TransactionStatus.FAILED,
+                    command.timestamp(),
+                    source.account,
+                    command.sourceAmount(),
+                    source.balance,
+                    destination.account,
+                    command.destinationAmount(),
+                    destination.balance,
+                    "insufficient balance",
+                    command.requestId());
+        }
+
+        source.balance = source.balance.subtract(command.sourceAmount());
+        destination.balance = destination.balance.add(command.destinationAmount());
+
+        return new Transaction(UUID.randomUUID(),
+                TransactionStatus.COMPLETED,
+                command.timestamp(),
+                source.account,
+                command.sourceAmount(),
+                source.balance,
+                destination.account,
+                command.destinationAmount(),
+                destination.balance,
+                command.description(),
+                command.requestId());
+    }
+
+    private AccountState lookupAccount(UUID accountId) {
+        AccountState state = accounts.get(accountId);
+
+        if (state == null) {
+            // first time we see this account - database is authoritative until then
+            Account account = accountsRepository.findById(accountId).orElseThrow(TransferException::new);
+            state = new AccountState(account, account.getBalance());
+            accounts.put(accountId, state);
+        }
+
+        return state;
+    }
+
+    private void runWriter() {
+        try {
+            while (running || sequencer.isAlive() || !journal.isEmpty()) {
+                Transaction transaction = journal.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (transaction == null) {
+                    continue;
+                }
+
+                List<Transaction> batch = new ArrayList<>(writeBatchSize);
+                batch.add(transaction);
+                journal.drainTo(batch, writeBatchSize - 1);
+
+                flush(batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flush(List<Transaction> batch) throws InterruptedException {
+        // Only the latest balance of each account in the batch matters
+        Map<UUID, BigInteger> balances = new HashMap<>();
+        for (Transaction transaction : batch) {
+            if (transaction.getStatus() == TransactionStatus.COMPLETED) {
+                balances.put(transaction.getSourceAccount().getId(), transaction.getSourceBalance());
+                balances.put(transaction.getDestinationAccount().getId(), transaction.getDestinationBalance());
+            }
+        }
+
+        // Transfers are already acknowledged, so keep retrying rather than dropping the batch
+        long backoff = POLL_INTERVAL_MS;
+        while (true) {
+            try {
+                transactionsBatchRepository.persist(batch, balances);
+                for (Transaction transaction : batch) {
+                    if (transaction.getRequestId() != null) {
+                        unstoredRequests.remove(transaction.getRequestId());
+                    }
+                }
+                return;
+            } catch (RuntimeException e) {
+                log.error("unable to store {} transactions, retrying in {}ms", batch.size(), backoff, e);
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_WRITE_BACKOFF_MS);
+            }
+        }
+    }
+
+    private record TransferCommand(Instant timestamp,
+                                   UUID sourceAccountId,
+                                   BigInteger sourceAmount,
+                                   UUID destinationAccountId,
+                                   BigInteger destinationAmount,
+                                   String description,
+                                   UUID requestId,
+                                   CompletableFuture<Transaction> result) {
+    }
+
+    private static final class AccountState {
+        private final Account account;
+        private BigInteger balance;
+
+        private AccountState(Account account, BigInteger balance) {
+            this.account = account;
+            this.balance = balance;
+        }
+    }
+}
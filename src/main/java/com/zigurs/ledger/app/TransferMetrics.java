@@ -0,0 +1,51 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.model.Transaction;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.NonNull;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Transfer throughput, latency and retry metrics, tagged by transfer mode so modes can be compared side by side.
+ * <p>
+ * {@code ledger.transfers} - timer of transfer attempts by outcome (COMPLETED, FAILED or ERROR)<br>
+ * {@code ledger.transfer.retries} - number of retries due to concurrent modification
+ * <p>
+ * Transfers have to be recorded around their transaction rather than within it, so that commit time (and commit
+ * failures) are measured the same way in every mode.
+ */
+@Component
+public class TransferMetrics {
+
+    public static final String TRANSFERS = "ledger.transfers";
+    public static final String RETRIES = "ledger.transfer.retries";
+
+    private final MeterRegistry meterRegistry;
+
+    public TransferMetrics(@NonNull MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Transaction record(@NonNull String mode, @NonNull Supplier<Transaction> transfer) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "ERROR";
+
+        try {
+            Transaction transaction = transfer.get();
+            if (transaction != null) {
+                outcome = transaction.getStatus().toString();
+            }
+            return transaction;
+        } finally {
+            sample.stop(meterRegistry.timer(TRANSFERS, "mode", mode, "outcome", outcome));
+        }
+    }
+
+    public void retry(@NonNull String mode) {
+        meterRegistry.counter(RETRIES, "mode", mode).increment();
+    }
+}
@@ -1,7 +1,9 @@
 package com.zigurs.ledger.app;
 
+import com.zigurs.ledger.api.RecentHistory;
 import com.zigurs.ledger.api.TransferService;
 import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.data.TransactionsBatchRepository;
 import com.zigurs.ledger.data.TransactionsRepository;
 import com.zigurs.ledger.model.Account;
 import com.zigurs.ledger.model.Transaction;
@@ -9,36 +11,102 @@ import com.zigurs.ledger.model.TransactionStatus;
 
 import lombok.NonNull;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigInteger;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.UUID;
 
 @Service
 public class TransferServiceImpl implements TransferService {
 
+    static final String MODE = "pessimistic";
+
     private final AccountsRepository accountsRepository;
     private final TransactionsRepository transactionsRepository;
+    private final TransactionsBatchRepository transactionsBatchRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final TransferMetrics transferMetrics;
+    private final HotAccounts hotAccounts;
+    private final RecentHistory recentHistory;
 
     public TransferServiceImpl(
             @NonNull AccountsRepository accountsRepository,
-            @NonNull TransactionsRepository transactionsRepository
+            @NonNull TransactionsRepository transactionsRepository,
+            @NonNull TransactionsBatchRepository transactionsBatchRepository,
+            @NonNull PlatformTransactionManager transactionManager,
+            @NonNull TransferMetrics transferMetrics,
+            @NonNull HotAccounts hotAccounts,
+            @NonNull RecentHistory recentHistory
     ) {
         this.accountsRepository = accountsRepository;
         this.transactionsRepository = transactionsRepository;
+        this.transactionsBatchRepository = transactionsBatchRepository;
+        this.transferMetrics = transferMetrics;
+        this.hotAccounts = hotAccounts;
+        this.recentHistory = recentHistory;
+
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
     }
 
-    @Transactional(isolation = Isolation.SERIALIZABLE)
     public Transaction transfer(
             @NonNull Instant timestamp,
             @NonNull UUID sourceAccountId,
             @NonNull BigInteger sourceAmount,
             @NonNull UUID destinationAccountId,
             @NonNull BigInteger destinationAmount,
-            @NonNull String description
+            @NonNull String description,
+            UUID requestId
+    ) throws TransferException {
+        // timed around the transaction (not within it) so that the commit is included, same as optimistic mode
+        return transferMetrics.record(MODE, () -> transactionTemplate.execute(status -> {
+            Transaction transaction = lockAndTransfer(
+                    timestamp,
+                    sourceAccountId,
+                    sourceAmount,
+                    destinationAccountId,
+                    destinationAmount,
+                    description,
+                    requestId
+            );
+
+            recentHistory.recordAfterCommit(List.of(transaction));
+            return transaction;
+        }));
+    }
+
+    private Transaction lockAndTransfer(
+            Instant timestamp,
+            UUID sourceAccountId,
+            BigInteger sourceAmount,
+            UUID destinationAccountId,
+            BigInteger destinationAmount,
+            String description,
+            UUID requestId
     ) throws TransferException {
+        if (hotAccounts.isHot(sourceAccountId) || hotAccounts.isHot(destinationAccountId)) {
+            return stripedTransfer(
+                    timestamp,
+                    sourceAccountId,
+                    sourceAmount,
+                    destinationAccountId,
+                    destinationAmount,
+                    description,
+                    requestId
+            );
+        }
+
         // Magic here. There is no eloquent way of reliably locking accounts of possibly different clients,
         // and serializable is not really reliable across different DB engines.
         // Instead we will lock accounts FOR UPDATE in alphabetical sequence - this guarantees that we are in control
@@ -73,7 +141,8 @@ public class TransferServiceImpl implements TransferService {
                             destinationAccount,
                             destinationAmount,
                             destinationAccount.getBalance(),
-                            "insufficient balance")
+                            "insufficient balance",
+                            requestId)
             );
         } else {
             // enough funds to proceed
@@ -93,8 +162,306 @@ public class TransferServiceImpl implements TransferService {
                             destinationAccount,
                             destinationAmount,
                             destinationAccount.getBalance(),
-                            description)
+                            description,
+                            requestId)
             );
         }
     }
+
+    /**
+     * Transfer involving hot account(s). Regular accounts are locked as usual, while hot accounts are not locked
+     * at all - only the slot being debited or credited is. Slots are locked after account rows, and in account id
+     * order, so the overall lock ordering stays the same.
+     * <p>
+     * Running balances recorded for hot accounts are approximate - a snapshot of the account row and all of its
+     * slots, including changes of other slots committed concurrently. They are not serial in timestamp (or any other)
+     * order across entries of the account, unlike amounts, which are exact.
+     */
+    private Transaction stripedTransfer(
+            Instant timestamp,
+            UUID sourceAccountId,
+            BigInteger sourceAmount,
+            UUID destinationAccountId,
+            BigInteger destinationAmount,
+            String description,
+            UUID requestId
+    ) throws TransferException {
+        if (sourceAccountId.equals(destinationAccountId)) {
+            throw new TransferException();
+        }
+
+        boolean sourceHot = hotAccounts.isHot(sourceAccountId);
+        boolean destinationHot = hotAccounts.isHot(destinationAccountId);
+
+        // at most one of the accounts is regular (and locked) here
+        Account sourceAccount = (sourceHot
+                ? accountsRepository.findById(sourceAccountId)
+                : accountsRepository.findByIdForUpdate(sourceAccountId)).orElseThrow(TransferException::new);
+        Account destinationAccount = (destinationHot
+                ? accountsRepository.findById(destinationAccountId)
+                : accountsRepository.findByIdForUpdate(destinationAccountId)).orElseThrow(TransferException::new);
+
+        if (!sourceHot && sourceAccount.getBalance().subtract(sourceAmount).compareTo(BigInteger.ZERO) < 0) {
+            return failedStripedTransfer(timestamp, sourceAccount, sourceAmount, destinationAccount, destinationAmount, requestId);
+        }
+
+        // both hot - credit first if destination comes first in lock order
+        Integer creditedSlot = null;
+        if (sourceHot && destinationHot && destinationAccountId.compareTo(sourceAccountId) < 0) {
+            creditedSlot = hotAccounts.credit(destinationAccountId, destinationAmount);
+        }
+
+        if (sourceHot) {
+            if (!hotAccounts.debit(sourceAccountId, sourceAmount)) {
+                if (creditedSlot != null) {
+                    hotAccounts.revertCredit(destinationAccountId, creditedSlot, destinationAmount);
+                }
+                return failedStripedTransfer(timestamp, sourceAccount, sourceAmount, destinationAccount, destinationAmount, requestId);
+            }
+        } else {
+            sourceAccount.setBalance(sourceAccount.getBalance().subtract(sourceAmount));
+            sourceAccount = accountsRepository.save(sourceAccount);
+        }
+
+        if (!destinationHot) {
+            destinationAccount.setBalance(destinationAccount.getBalance().add(destinationAmount));
+            destinationAccount = accountsRepository.save(destinationAccount);
+        } else if (creditedSlot == null) {
+            hotAccounts.credit(destinationAccountId, destinationAmount);
+        }
+
+        // balances of hot accounts include concurrent (committed) changes of other slots
+        return transactionsRepository.save(
+                new Transaction(null,
+                        TransactionStatus.COMPLETED,
+                        timestamp,
+                        sourceAccount,
+                        sourceAmount,
+                        hotAccounts.balance(sourceAccount),
+                        destinationAccount,
+                        destinationAmount,
+                        hotAccounts.balance(destinationAccount),
+                        description,
+                        requestId)
+        );
+    }
+
+    private Transaction failedStripedTransfer(
+            Instant timestamp,
+            Account sourceAccount,
+            BigInteger sourceAmount,
+            Account destinationAccount,
+            BigInteger destinationAmount,
+            UUID requestId
+    ) {
+        return transactionsRepository.save(
+                new Transaction(null,
+                        TransactionStatus.FAILED,
+                        timestamp,
+                        sourceAccount,
+                        sourceAmount,
+                        hotAccounts.balance(sourceAccount),
+                        destinationAccount,
+                        destinationAmount,
+                        hotAccounts.balance(destinationAccount),
+                        "insufficient balance",
+                        requestId)
+        );
+    }
+
+    @Override
+    public List<Transaction> transferAll(@NonNull List<TransferInstruction> transfers) throws TransferException {
+        // Same locking approach as a single transfer, except that every involved account is locked only once
+        // for the whole batch. Sorted with the same ordering, so batches and single transfers can't deadlock.
+        SortedSet<UUID> accountIds = new TreeSet<>();
+        for (TransferInstruction transfer : transfers) {
+            if (transfer.sourceAccountId().equals(transfer.destinationAccountId())) {
+                throw new TransferException();
+            }
+            accountIds.add(transfer.sourceAccountId());
+            accountIds.add(transfer.destinationAccountId());
+        }
+
+        if (accountIds.stream().anyMatch(hotAccounts::isHot)) {
+            // Hot accounts are never locked as a whole and their slots are picked at random, so locks of the whole
+            // batch can't be taken in a consistent order. Fall back to one by one, each transfer in a transaction of
+            // its own (locking in the usual order) rather than all of them in a single one.
+            return TransferService.super.transferAll(transfers);
+        }
+
+        return transactionTemplate.execute(status -> lockedTransferAll(accountIds, transfers));
+    }
+
+    private List<Transaction> lockedTransferAll(SortedSet<UUID> accountIds, List<TransferInstruction> transfers) {
+        Map<UUID, Account> accounts = new HashMap<>();
+        Map<UUID, BigInteger> balances = new HashMap<>();
+        for (UUID accountId : accountIds) {
+            Account account = accountsRepository.findByIdForUpdate(accountId).orElseThrow(TransferException::new);
+            accounts.put(accountId, account);
+            balances.put(accountId, account.getBalance());
+        }
+
+        // Everything is locked, apply transfers in order against running balances
+        List<Transaction> transactions = new ArrayList<>(transfers.size());
+        Map<UUID, BigInteger> updatedBalances = new HashMap<>();
+        for (TransferInstruction transfer : transfers) {
+            BigInteger sourceBalance = balances.get(transfer.sourceAccountId());
+            BigInteger destinationBalance = balances.get(transfer.destinationAccountId());
+
+            if (sourceBalance.subtract(transfer.sourceAmount()).compareTo(BigInteger.ZERO) < 0) {
+                // Insufficient balance
+                transactions.add(new Transaction(UUID.randomUUID(),
+                        TransactionStatus.FAILED,
+                        transfer.timestamp(),
+                        accounts.get(transfer.sourceAccountId()),
+                        transfer.sourceAmount(),
+                        sourceBalance,
+                        accounts.get(transfer.destinationAccountId()),
+                        transfer.destinationAmount(),
+                        destinationBalance,
+                        "insufficient balance"));
+            } else {
+                sourceBalance = sourceBalance.subtract(transfer.sourceAmount());
+                destinationBalance = destinationBalance.add(transfer.destinationAmount());
+
+                balances.put(transfer.sourceAccountId(), sourceBalance);
+                balances.put(transfer.destinationAccountId(), destinationBalance);
+                updatedBalances.put(transfer.sourceAccountId(), sourceBalance);
+                updatedBalances.put(transfer.destinationAccountId(), destinationBalance);
+
+                transactions.add(new Transaction(UUID.randomUUID(),
+                        TransactionStatus.COMPLETED,
+                        transfer.timestamp(),
+                        accounts.get(transfer.sourceAccountId()),
+                        transfer.sourceAmount(),
+                        sourceBalance,
+                        accounts.get(transfer.destinationAccountId()),
+                        transfer.destinationAmount(),
+                        destinationBalance,
+                        transfer.description()));
+            }
+        }
+
+        // Write everything with JDBC batches, committed together with the locks released
+        transactionsBatchRepository.insertAll(transactions);
+        transactionsBatchRepository.updateBalances(updatedBalances);
+
+        recentHistory.recordAfterCommit(transactions);
+        return transactions;
+    }
+
+    @Override
+    @Transactional(isolation = Isolation.SERIALIZABLE)
+    public List<Transaction> payout(@NonNull List<TransferInstruction> payouts) throws TransferException {
+        if (payouts.isEmpty()) {
+            throw new TransferException();
+        }
+
+        UUID sourceAccountId = payouts.get(0).sourceAccountId();
+        BigInteger total = BigInteger.ZERO;
+        Map<UUID, BigInteger> credits = new HashMap<>();
+        for (TransferInstruction payout : payouts) {
+            if (!payout.sourceAccountId().equals(sourceAccountId) || payout.destinationAccountId().equals(sourceAccountId)) {
+                throw new TransferException();
+            }
+            total = total.add(payout.sourceAmount());
+            credits.merge(payout.destinationAccountId(), payout.destinationAmount(), BigInteger::add);
+        }
+
+        // Source is locked together with destinations, in the same ordering as single transfers and batches,
+        // so payouts can't deadlock with them. Hot accounts are not locked as a whole, same as in stripedTransfer.
+        SortedSet<UUID> accountIds = new TreeSet<>(credits.keySet());
+        accountIds.add(sourceAccountId);
+
+        Map<UUID, Account> accounts = new HashMap<>();
+        Map<UUID, BigInteger> balances = new HashMap<>();
+        for (UUID accountId : accountIds) {
+            boolean hot = hotAccounts.isHot(accountId);
+            Account account = (hot
+                    ? accountsRepository.findById(accountId)
+                    : accountsRepository.findByIdForUpdate(accountId)).orElseThrow(TransferException::new);
+            accounts.put(accountId, account);
+            balances.put(accountId, hot ? hotAccounts.balance(account) : account.getBalance());
+        }
+
+        boolean sourceHot = hotAccounts.isHot(sourceAccountId);
+        if (!sourceHot && balances.get(sourceAccountId).compareTo(total) < 0) {
+            return failedPayout(payouts, accounts, balances);
+        }
+
+        // Slots are locked after account rows and in account id order - destinations preceding the source
+        // are credited before the source is debited, and reverted if the debit fails
+        Map<UUID, Integer> creditedSlots = new HashMap<>();
+        for (UUID accountId : accountIds) {
+            if (!hotAccounts.isHot(accountId)) {
+                continue;
+            }
+
+            if (!accountId.equals(sourceAccountId)) {
+                creditedSlots.put(accountId, hotAccounts.credit(accountId, credits.get(accountId)));
+            } else if (!hotAccounts.debit(sourceAccountId, total)) {
+                for (Map.Entry<UUID, Integer> credited : creditedSlots.entrySet()) {
+                    hotAccounts.revertCredit(credited.getKey(), credited.getValue(), credits.get(credited.getKey()));
+                }
+                return failedPayout(payouts, accounts, balances);
+            }
+        }
+
+        // Everything is locked and the source is known to cover the total, all payouts complete
+        List<Transaction> transactions = new ArrayList<>(payouts.size());
+        for (TransferInstruction payout : payouts) {
+            BigInteger sourceBalance = balances.get(sourceAccountId).subtract(payout.sourceAmount());
+            BigInteger destinationBalance = balances.get(payout.destinationAccountId()).add(payout.destinationAmount());
+
+            balances.put(sourceAccountId, sourceBalance);
+            balances.put(payout.destinationAccountId(), destinationBalance);
+
+            transactions.add(new Transaction(UUID.randomUUID(),
+                    TransactionStatus.COMPLETED,
+                    payout.timestamp(),
+                    accounts.get(sourceAccountId),
+                    payout.sourceAmount(),
+                    sourceBalance,
+                    accounts.get(payout.destinationAccountId()),
+                    payout.destinationAmount(),
+                    destinationBalance,
+                    payout.description()));
+        }
+
+        // Regular accounts get their final balance in a single update each, hot ones were updated via slots
+        Map<UUID, BigInteger> updatedBalances = new HashMap<>(balances);
+        updatedBalances.keySet().removeIf(hotAccounts::isHot);
+
+        transactionsBatchRepository.insertAll(transactions);
+        transactionsBatchRepository.updateBalances(updatedBalances);
+
+        recentHistory.recordAfterCommit(transactions);
+        return transactions;
+    }
+
+    private List<Transaction> failedPayout(
+            List<TransferInstruction> payouts,
+            Map<UUID, Account> accounts,
+            Map<UUID, BigInteger> balances
+    ) {
+        // Insufficient balance for the total, every payout fails
+        List<Transaction> transactions = new ArrayList<>(payouts.size());
+        for (TransferInstruction payout : payouts) {
+            transactions.add(new Transaction(UUID.randomUUID(),
+                    TransactionStatus.FAILED,
+                    payout.timestamp(),
+                    accounts.get(payout.sourceAccountId()),
+                    payout.sourceAmount(),
+                    balances.get(payout.sourceAccountId()),
+                    accounts.get(payout.destinationAccountId()),
+                    payout.destinationAmount(),
+                    balances.get(payout.destinationAccountId()),
+                    "insufficient balance"));
+        }
+
+        transactionsBatchRepository.insertAll(transactions);
+
+        recentHistory.recordAfterCommit(transactions);
+        return transactions;
+    }
 }
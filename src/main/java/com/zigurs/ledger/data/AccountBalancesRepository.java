@@ -0,0 +1,73 @@
+package com.zigurs.ledger.data;
+
+import lombok.NonNull;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Single statement balance updates, without reading (and locking) accounts upfront.
+ * <p>
+ * Every update returns resulting balance in the same round trip. H2 doesn't support {@code RETURNING}, so this is
+ * done with {@code FINAL TABLE} data change delta table instead (equivalent to {@code update ... returning balance}).
+ */
+@Repository
+public class AccountBalancesRepository {
+
+    private static final String DEBIT = """
+            select balance from final table (
+                update accounts set balance = balance - ?, version = version + 1 where id = ? and balance >= ?
+            )
+            """;
+
+    private static final String CREDIT = """
+            select balance from final table (
+                update accounts set balance = balance + ?, version = version + 1 where id = ?
+            )
+            """;
+
+    private static final String BALANCE = "select balance from accounts where id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AccountBalancesRepository(@NonNull JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Deduct amount from account if (and only if) it has sufficient balance.
+     *
+     * @return resulting balance, empty if account does not exist or has insufficient balance
+     */
+    public Optional<BigInteger> debit(@NonNull UUID accountId, @NonNull BigInteger amount) {
+        BigDecimal value = new BigDecimal(amount);
+        return single(jdbcTemplate.queryForList(DEBIT, BigDecimal.class, value, accountId, value));
+    }
+
+    /**
+     * Add amount to account.
+     *
+     * @return resulting balance, empty if account does not exist
+     */
+    public Optional<BigInteger> credit(@NonNull UUID accountId, @NonNull BigInteger amount) {
+        return single(jdbcTemplate.queryForList(CREDIT, BigDecimal.class, new BigDecimal(amount), accountId));
+    }
+
+    /**
+     * Current (committed or own) balance, without locking.
+     *
+     * @return balance, empty if account does not exist
+     */
+    public Optional<BigInteger> findBalance(@NonNull UUID accountId) {
+        return single(jdbcTemplate.queryForList(BALANCE, BigDecimal.class, accountId));
+    }
+
+    private static Optional<BigInteger> single(List<BigDecimal> balances) {
+        return balances.stream().findFirst().map(BigDecimal::toBigIntegerExact);
+    }
+}
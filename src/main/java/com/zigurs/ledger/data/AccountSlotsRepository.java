@@ -0,0 +1,168 @@
+package com.zigurs.ledger.data;
+
+import lombok.NonNull;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Sub-balance slots of hot accounts.
+ * <p>
+ * Balance of a hot account is the sum of {@code accounts.balance} and all of its {@code account_slots}. Transfers
+ * lock (and update) a single slot rather than the account row, so concurrent transfers of the same account only
+ * contend when they happen to pick the same slot.
+ */
+@Repository
+public class AccountSlotsRepository {
+
+    private static final String SLOT_COUNTS = "select id, slots from accounts where slots > 0";
+
+    private static final String LOCK_ACCOUNT = "select balance from accounts where id = ? for update";
+
+    private static final String INSERT_SLOT = "insert into account_slots(account_id, slot, balance) values (?, ?, ?)";
+
+    private static final String SET_SLOTS = "update accounts set balance = ?, slots = ?, version = version + 1 where id = ?";
+
+    private static final String LOCK_SLOTS = "select balance from account_slots where account_id = ? order by slot for update";
+
+    private static final String DELETE_SLOTS = "delete from account_slots where account_id = ?";
+
+    private static final String CREDIT = "update account_slots set balance = balance + ? where account_id = ? and slot = ?";
+
+    private static final String DEBIT = "update account_slots set balance = balance - ? where account_id = ? and slot = ? and balance >= ?";
+
+    private static final String UPDATE_SLOT = "update account_slots set balance = ? where account_id = ? and slot = ?";
+
+    private static final String SLOTS_BALANCE = "select coalesce(sum(balance), 0) from account_slots where account_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AccountSlotsRepository(@NonNull JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @return number of slots of every hot account
+     */
+    public Map<UUID, Integer> findSlotCounts() {
+        Map<UUID, Integer> slotCounts = new HashMap<>();
+        jdbcTemplate.query(SLOT_COUNTS, rs -> {
+            slotCounts.put(rs.getObject(1, UUID.class), rs.getInt(2));
+        });
+        return slotCounts;
+    }
+
+    /**
+     * Move account balance (incl. any existing slots) into given number of evenly funded slots.
+     * Has to be called within a transaction.
+     *
+     * @return false if account does not exist
+     */
+    public boolean stripe(@NonNull UUID accountId, int slots) {
+        List<BigDecimal> balance = jdbcTemplate.queryForList(LOCK_ACCOUNT, BigDecimal.class, accountId);
+        if (balance.isEmpty()) {
+            return false;
+        }
+
+        BigInteger total = balance.get(0).toBigIntegerExact().add(sum(lockSlots(accountId)));
+        jdbcTemplate.update(DELETE_SLOTS, accountId);
+
+        List<BigInteger> balances = distribute(total, slots);
+        List<Object[]> rows = new ArrayList<>(slots);
+        for (int slot = 0; slot < slots; slot++) {
+            rows.add(new Object[]{accountId, slot, new BigDecimal(balances.get(slot))});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SLOT, rows);
+
+        jdbcTemplate.update(SET_SLOTS, BigDecimal.ZERO, slots, accountId);
+        return true;
+    }
+
+    /**
+     * Move balance of all slots back to the account row. Has to be called within a transaction.
+     *
+     * @return false if account does not exist
+     */
+    public boolean unstripe(@NonNull UUID accountId) {
+        List<BigDecimal> balance = jdbcTemplate.queryForList(LOCK_ACCOUNT, BigDecimal.class, accountId);
+        if (balance.isEmpty()) {
+            return false;
+        }
+
+        BigInteger total = balance.get(0).toBigIntegerExact().add(sum(lockSlots(accountId)));
+        jdbcTemplate.update(DELETE_SLOTS, accountId);
+
+        jdbcTemplate.update(SET_SLOTS, new BigDecimal(total), 0, accountId);
+        return true;
+    }
+
+    /**
+     * Lock all slots of the account, in slot order.
+     *
+     * @return slot balances, indexed by slot
+     */
+    public List<BigInteger> lockSlots(@NonNull UUID accountId) {
+        return jdbcTemplate.queryForList(LOCK_SLOTS, BigDecimal.class, accountId).stream()
+                .map(BigDecimal::toBigIntegerExact)
+                .toList();
+    }
+
+    /**
+     * Overwrite balances of (previously locked) slots.
+     */
+    public void updateSlots(@NonNull UUID accountId, @NonNull List<BigInteger> balances) {
+        List<Object[]> rows = new ArrayList<>(balances.size());
+        for (int slot = 0; slot < balances.size(); slot++) {
+            rows.add(new Object[]{new BigDecimal(balances.get(slot)), accountId, slot});
+        }
+        jdbcTemplate.batchUpdate(UPDATE_SLOT, rows);
+    }
+
+    /**
+     * @return false if slot does not exist
+     */
+    public boolean credit(@NonNull UUID accountId, int slot, @NonNull BigInteger amount) {
+        return jdbcTemplate.update(CREDIT, new BigDecimal(amount), accountId, slot) == 1;
+    }
+
+    /**
+     * Deduct amount from slot if (and only if) it has sufficient balance.
+     *
+     * @return false if slot does not exist or has insufficient balance
+     */
+    public boolean debit(@NonNull UUID accountId, int slot, @NonNull BigInteger amount) {
+        BigDecimal value = new BigDecimal(amount);
+        return jdbcTemplate.update(DEBIT, value, accountId, slot, value) == 1;
+    }
+
+    /**
+     * Sum of all slots of the account, without locking.
+     */
+    public BigInteger slotsBalance(@NonNull UUID accountId) {
+        return jdbcTemplate.queryForObject(SLOTS_BALANCE, BigDecimal.class, accountId).toBigIntegerExact();
+    }
+
+    /**
+     * Split amount into evenly sized parts, remainder goes to the first slot.
+     */
+    public static List<BigInteger> distribute(@NonNull BigInteger total, int slots) {
+        BigInteger[] split = total.divideAndRemainder(BigInteger.valueOf(slots));
+
+        List<BigInteger> balances = new ArrayList<>(slots);
+        for (int slot = 0; slot < slots; slot++) {
+            balances.add(slot == 0 ? split[0].add(split[1]) : split[0]);
+        }
+        return balances;
+    }
+
+    private static BigInteger sum(List<BigInteger> balances) {
+        return balances.stream().reduce(BigInteger.ZERO, BigInteger::add);
+    }
+}
@@ -0,0 +1,170 @@
+package com.zigurs.ledger.data;
+
+import com.zigurs.ledger.model.TransactionStatus;
+
+import lombok.NonNull;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Periodic per-account balance checkpoints, and the progress of writing them.
+ * <p>
+ * A checkpoint at {@code checkpoint_at} holds the balance of the account after all of its transactions preceding that
+ * instant. Checkpoints are only written for accounts with completed transactions within the period, so the latest
+ * checkpoint preceding an instant is the one to start from.
+ */
+@Repository
+public class BalanceCheckpointsRepository {
+
+    private static final String LOCK_PROGRESS = "select checkpointed_until from balance_checkpoint_progress where id = 1 for update";
+
+    private static final String UPDATE_PROGRESS = "update balance_checkpoint_progress set checkpointed_until = ? where id = 1";
+
+    private static final String FIRST_TRANSACTION = "select min(timestamp) from transactions";
+
+    // net change of every account with completed transactions within the window, and its previous checkpoint
+    private static final String CHANGES = """
+            select account_id, sum(amount),
+                   (select c.balance from balance_checkpoints c
+                    where c.account_id = changes.account_id
+                      and c.checkpoint_at = (select max(checkpoint_at) from balance_checkpoints
+                                             where account_id = changes.account_id and checkpoint_at <= ?))
+            from (select source_account_id account_id, -source_amount amount
+                  from transactions
+                  where status = ? and timestamp >= ? and timestamp < ?
+                  union all
+                  select destination_account_id, destination_amount
+                  from transactions
+                  where status = ? and timestamp >= ? and timestamp < ?) changes
+            group by account_id
+            """;
+
+    private static final String SAVE = """
+            merge into balance_checkpoints(account_id, checkpoint_at, balance) key (account_id, checkpoint_at)
+            values (?, ?, ?)
+            """;
+
+    private static final String LATEST = """
+            select checkpoint_at, balance from balance_checkpoints
+            where account_id = ? and checkpoint_at <= ?
+            order by checkpoint_at desc
+            limit 1
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BalanceCheckpointsRepository(@NonNull JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @param at      checkpoint instant, exclusive end of the transactions it covers
+     * @param balance balance of the account as of {@code at}
+     */
+    public record Checkpoint(@NonNull Instant at, @NonNull BigInteger balance) {
+    }
+
+    /**
+     * Lock the progress for the rest of the ongoing transaction, so that a single instance writes checkpoints at a time.
+     *
+     * @return end of the last checkpointed period, empty if none was checkpointed yet
+     */
+    public Optional<Instant> lockProgress() {
+        return Optional.ofNullable(jdbcTemplate.queryForObject(LOCK_PROGRESS, OffsetDateTime.class))
+                .map(OffsetDateTime::toInstant);
+    }
+
+    public void updateProgress(@NonNull Instant checkpointedUntil) {
+        jdbcTemplate.update(UPDATE_PROGRESS, Timestamp.from(checkpointedUntil));
+    }
+
+    /**
+     * @return timestamp of the oldest transaction, empty if there are no transactions
+     */
+    public Optional<Instant> findFirstTransactionTimestamp() {
+        return Optional.ofNullable(jdbcTemplate.queryForObject(FIRST_TRANSACTION, OffsetDateTime.class))
+                .map(OffsetDateTime::toInstant);
+    }
+
+    /**
+     * Replay completed transactions within {@code [from, to)} on top of the previous checkpoint of every account
+     * involved - the previous checkpoint plus the sum of transferred amounts. Running balances recorded with
+     * transactions are not used, as they don't follow timestamp order.
+     *
+     * @param openingBalance balance before {@code from} of accounts without a checkpoint at or before {@code from}
+     * @return balance of every account with completed transactions within the window, as of {@code to}
+     */
+    public Map<UUID, BigInteger> findClosingBalances(
+            @NonNull Instant from,
+            @NonNull Instant to,
+            @NonNull Function<UUID, BigInteger> openingBalance
+    ) {
+        Timestamp fromTimestamp = Timestamp.from(from);
+        Timestamp toTimestamp = Timestamp.from(to);
+        int completed = TransactionStatus.COMPLETED.ordinal();
+
+        List<Change> changes = jdbcTemplate.query(
+                CHANGES,
+                (rs, rowNum) -> new Change(
+                        rs.getObject(1, UUID.class),
+                        rs.getBigDecimal(2).toBigIntegerExact(),
+                        Optional.ofNullable(rs.getBigDecimal(3)).map(BigDecimal::toBigIntegerExact).orElse(null)
+                ),
+                fromTimestamp,
+                completed, fromTimestamp, toTimestamp,
+                completed, fromTimestamp, toTimestamp
+        );
+
+        Map<UUID, BigInteger> balances = new HashMap<>();
+        for (Change change : changes) {
+            BigInteger previous = change.previous() != null
+                    ? change.previous()
+                    : openingBalance.apply(change.accountId());
+            balances.put(change.accountId(), previous.add(change.amount()));
+        }
+        return balances;
+    }
+
+    private record Change(UUID accountId, BigInteger amount, BigInteger previous) {
+    }
+
+    /**
+     * Write (or overwrite) checkpoints of all accounts at the same instant.
+     */
+    public void saveAll(@NonNull Instant at, @NonNull Map<UUID, BigInteger> balances) {
+        Timestamp checkpointAt = Timestamp.from(at);
+
+        List<Object[]> rows = new ArrayList<>(balances.size());
+        balances.forEach((accountId, balance) -> rows.add(new Object[]{accountId, checkpointAt, new BigDecimal(balance)}));
+
+        jdbcTemplate.batchUpdate(SAVE, rows);
+    }
+
+    /**
+     * @return the latest checkpoint of the account at or before the instant, empty if there is none
+     */
+    public Optional<Checkpoint> findLatest(@NonNull UUID accountId, @NonNull Instant at) {
+        return jdbcTemplate.query(
+                LATEST,
+                (rs, rowNum) -> new Checkpoint(
+                        rs.getObject(1, OffsetDateTime.class).toInstant(),
+                        rs.getBigDecimal(2).toBigIntegerExact()
+                ),
+                accountId,
+                Timestamp.from(at)
+        ).stream().findFirst();
+    }
+}
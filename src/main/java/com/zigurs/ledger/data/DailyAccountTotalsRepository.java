@@ -0,0 +1,170 @@
+package com.zigurs.ledger.data;
+
+import com.zigurs.ledger.model.DailyAccountTotals;
+import com.zigurs.ledger.model.LedgerEntry;
+import com.zigurs.ledger.model.Transaction;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Daily totals of completed transactions per account, added to as transactions are written - in the same database
+ * transaction, see {@link TransactionsWriter} and {@link TransactionsBatchRepository}.
+ * <p>
+ * Every write adds to a random one of {@code daily_account_totals_stripes} rows of the account and day, so that
+ * concurrent transfers of a hot account don't all wait for the same row lock. Totals are summed up across stripes
+ * when read.
+ * <p>
+ * Lowest and highest balances are taken from running balances of transactions, approximate for hot accounts (see
+ * {@link DailyAccountTotals}).
+ */
+@Repository
+public class DailyAccountTotalsRepository {
+
+    private static final String ADD = """
+            update daily_account_totals
+            set debit_count  = debit_count + ?,
+                debit_sum    = debit_sum + ?,
+                credit_count = credit_count + ?,
+                credit_sum   = credit_sum + ?,
+                min_balance  = least(min_balance, ?),
+                max_balance  = greatest(max_balance, ?)
+            where account_id = ? and day = ? and stripe = ?
+            """;
+
+    private static final String INSERT = """
+            insert into daily_account_totals(debit_count, debit_sum, credit_count, credit_sum,
+                                             min_balance, max_balance, account_id, day, stripe)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String FIND = """
+            select day, sum(debit_count), sum(debit_sum), sum(credit_count), sum(credit_sum),
+                   min(min_balance), max(max_balance)
+            from daily_account_totals
+            where account_id = ? and day between ? and ?
+            group by day
+            order by day
+            """;
+
+    // rows are always locked in this order, so that concurrent transactions can't deadlock on them
+    private static final Comparator<Key> LOCK_ORDER = Comparator
+            .comparing(Key::accountId)
+            .thenComparing(Key::day)
+            .thenComparingInt(Key::stripe);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int stripes;
+
+    public DailyAccountTotalsRepository(
+            @NonNull JdbcTemplate jdbcTemplate,
+            @Value("${daily_account_totals_stripes}") int stripes
+    ) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("daily_account_totals_stripes must be positive");
+        }
+
+        this.jdbcTemplate = jdbcTemplate;
+        this.stripes = stripes;
+    }
+
+    private record Key(UUID accountId, LocalDate day, int stripe) {
+    }
+
+    /**
+     * Add completed transactions to daily totals of both of their accounts. Expected to run within the database
+     * transaction writing them.
+     */
+    public void addAll(@NonNull List<Transaction> transactions) {
+        // a single row update per account and day, however many transactions of the batch it has
+        int stripe = ThreadLocalRandom.current().nextInt(stripes);
+        Map<Key, DailyAccountTotals> totals = new TreeMap<>(LOCK_ORDER);
+        for (Transaction transaction : transactions) {
+            if (transaction.getStatus() != TransactionStatus.COMPLETED) {
+                continue;
+            }
+
+            for (LedgerEntry entry : transaction.getEntries()) {
+                DailyAccountTotals entryTotals = DailyAccountTotals.of(entry);
+                totals.merge(new Key(entry.getAccountId(), entryTotals.day(), stripe), entryTotals, DailyAccountTotals::plus);
+            }
+        }
+
+        if (totals.isEmpty()) {
+            return;
+        }
+
+        List<Key> keys = new ArrayList<>(totals.keySet());
+        List<Object[]> rows = keys.stream().map(key -> row(key, totals.get(key))).toList();
+
+        int[] updated = jdbcTemplate.batchUpdate(ADD, rows);
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] == 0) {
+                insert(rows.get(i));
+            }
+        }
+    }
+
+    /**
+     * @param from inclusive
+     * @param to   inclusive
+     * @return totals of days with completed transactions of the account, oldest first
+     */
+    public List<DailyAccountTotals> find(@NonNull UUID accountId, @NonNull LocalDate from, @NonNull LocalDate to) {
+        return jdbcTemplate.query(
+                FIND,
+                (rs, rowNum) -> new DailyAccountTotals(
+                        rs.getObject(1, LocalDate.class),
+                        rs.getLong(2),
+                        rs.getBigDecimal(3).toBigIntegerExact(),
+                        rs.getLong(4),
+                        rs.getBigDecimal(5).toBigIntegerExact(),
+                        rs.getBigDecimal(6).toBigIntegerExact(),
+                        rs.getBigDecimal(7).toBigIntegerExact()
+                ),
+                accountId,
+                from,
+                to
+        );
+    }
+
+    private void insert(Object[] row) {
+        try {
+            jdbcTemplate.update(INSERT, row);
+        } catch (DuplicateKeyException e) {
+            // first row of the stripe inserted concurrently, add to it instead
+            jdbcTemplate.update(ADD, row);
+        }
+    }
+
+    /**
+     * Parameters of both {@link #ADD} and {@link #INSERT}.
+     */
+    private static Object[] row(Key key, DailyAccountTotals totals) {
+        return new Object[]{
+                totals.debitCount(),
+                new BigDecimal(totals.debitSum()),
+                totals.creditCount(),
+                new BigDecimal(totals.creditSum()),
+                new BigDecimal(totals.minBalance()),
+                new BigDecimal(totals.maxBalance()),
+                key.accountId(),
+                key.day(),
+                key.stripe()
+        };
+    }
+}
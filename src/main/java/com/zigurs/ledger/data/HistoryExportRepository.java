@@ -0,0 +1,120 @@
+package com.zigurs.ledger.data;
+
+import com.zigurs.ledger.model.HistoryEntry;
+
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Full account history for export, streamed row by row.
+ * <p>
+ * Rows are read with a forward-only cursor and handed over one at a time without being collected, so memory use
+ * doesn't depend on the number of exported entries. Bypasses JPA entirely - nothing is kept in a persistence context.
+ * <p>
+ * Partitions are read one by one, newest first, skipping those outside of the time window. Archived partitions are
+ * read from their segment files.
+ */
+@Repository
+public class HistoryExportRepository {
+
+    private static final String EXPORT = """
+            select %s
+            from %s
+            where account_id = ?
+            """;
+
+    private static final String FROM = " and timestamp >= ?";
+
+    private static final String TO = " and timestamp < ?";
+
+    private static final String ORDER = " order by timestamp desc, transaction_id desc";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LedgerPartitions ledgerPartitions;
+    private final LedgerArchive ledgerArchive;
+    private final int fetchSize;
+
+    public HistoryExportRepository(
+            @NonNull JdbcTemplate jdbcTemplate,
+            @NonNull LedgerPartitions ledgerPartitions,
+            @NonNull LedgerArchive ledgerArchive,
+            @Value("${history_export_fetch_size}") int fetchSize
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ledgerPartitions = ledgerPartitions;
+        this.ledgerArchive = ledgerArchive;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Pass every entry of the account within the time window to the consumer, newest first (same as history).
+     *
+     * @param from inclusive lower bound, unbounded if null
+     * @param to   exclusive upper bound, unbounded if null
+     */
+    @Transactional(readOnly = true) // some drivers (e.g. PostgreSQL) only use cursors outside of auto-commit
+    public void export(@NonNull UUID accountId, Instant from, Instant to, @NonNull Consumer<HistoryEntry> consumer) {
+        for (LedgerPartitions.Partition partition : ledgerPartitions.newestFirst(from, to)) {
+            if (partition.archived()) {
+                // starting with the newest entry preceding to
+                ledgerArchive.read(partition, accountId, to, null, entry -> {
+                    if (to != null && !entry.timestamp().isBefore(to)) {
+                        return true;
+                    }
+                    if (from != null && entry.timestamp().isBefore(from)) {
+                        return false;
+                    }
+                    consumer.accept(entry);
+                    return true;
+                });
+            } else {
+                export(partition.table(), accountId, from, to, consumer);
+            }
+        }
+    }
+
+    private void export(String table, UUID accountId, Instant from, Instant to, Consumer<HistoryEntry> consumer) {
+        StringBuilder sql = new StringBuilder(String.format(EXPORT, LedgerEntriesRepository.COLUMNS, table));
+        List<Object> parameters = new ArrayList<>(3);
+        parameters.add(accountId);
+        if (from != null) {
+            sql.append(FROM);
+            parameters.add(Timestamp.from(from));
+        }
+        if (to != null) {
+            sql.append(TO);
+            parameters.add(Timestamp.from(to));
+        }
+        sql.append(ORDER);
+
+        jdbcTemplate.query(
+                connection -> {
+                    PreparedStatement statement = connection.prepareStatement(
+                            sql.toString(),
+                            ResultSet.TYPE_FORWARD_ONLY,
+                            ResultSet.CONCUR_READ_ONLY
+                    );
+                    statement.setFetchSize(fetchSize);
+                    for (int i = 0; i < parameters.size(); i++) {
+                        statement.setObject(i + 1, parameters.get(i));
+                    }
+                    return statement;
+                },
+                rs -> {
+                    consumer.accept(LedgerEntriesRepository.map(rs));
+                }
+        );
+    }
+}
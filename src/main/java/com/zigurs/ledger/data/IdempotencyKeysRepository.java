@@ -0,0 +1,98 @@
+package com.zigurs.ledger.data;
+
+import lombok.NonNull;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Durable record of {@code Idempotency-Key} values used for transfers.
+ * <p>
+ * Keys are reserved before executing the transfer - the primary key on {@code idempotency_keys} makes sure only one
+ * of concurrent requests carrying the same key gets to execute it. Reservations left without a transaction (e.g. by
+ * a crash) can be taken over once stale, by a single conditional update - again only one of concurrent requests wins.
+ */
+@Repository
+public class IdempotencyKeysRepository {
+
+    private static final String RESERVE = "insert into idempotency_keys(idempotency_key, fingerprint, created) values (?, ?, ?)";
+
+    private static final String TAKE_OVER = """
+            update idempotency_keys set created = ?
+            where idempotency_key = ? and fingerprint = ? and transaction_id is null and created < ?
+            """;
+
+    private static final String FIND = "select fingerprint, transaction_id, created from idempotency_keys where idempotency_key = ?";
+
+    private static final String COMPLETE = "update idempotency_keys set transaction_id = ? where idempotency_key = ?";
+
+    private static final String RELEASE = "delete from idempotency_keys where idempotency_key = ? and transaction_id is null";
+
+    private static final String PURGE = "delete from idempotency_keys where created < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdempotencyKeysRepository(@NonNull JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * @param fingerprint   request the key was first used with
+     * @param transactionId resulting transaction, null while transfer is in progress
+     * @param created       when the key was reserved (or its reservation last taken over)
+     */
+    public record StoredKey(@NonNull String fingerprint, UUID transactionId, @NonNull Instant created) {
+    }
+
+    /**
+     * Claim key for a new transfer, or take over a reservation of the same request that got no transaction recorded
+     * and was made before {@code staleBefore}.
+     *
+     * @return true if reserved, false if key has already been used (or is still reserved)
+     */
+    public boolean reserve(@NonNull String key, @NonNull String fingerprint, @NonNull Instant created, @NonNull Instant staleBefore) {
+        try {
+            jdbcTemplate.update(RESERVE, key, fingerprint, Timestamp.from(created));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return jdbcTemplate.update(TAKE_OVER, Timestamp.from(created), key, fingerprint, Timestamp.from(staleBefore)) == 1;
+        }
+    }
+
+    public Optional<StoredKey> find(@NonNull String key) {
+        return jdbcTemplate.query(
+                FIND,
+                (rs, rowNum) -> new StoredKey(rs.getString(1), rs.getObject(2, UUID.class), rs.getObject(3, OffsetDateTime.class).toInstant()),
+                key
+        ).stream().findFirst();
+    }
+
+    /**
+     * Record transaction created for a reserved key.
+     */
+    public void complete(@NonNull String key, @NonNull UUID transactionId) {
+        jdbcTemplate.update(COMPLETE, transactionId, key);
+    }
+
+    /**
+     * Drop reservation of a key whose transfer did not go through, so that it can be retried.
+     */
+    public void release(@NonNull String key) {
+        jdbcTemplate.update(RELEASE, key);
+    }
+
+    /**
+     * Delete keys reserved before the given instant, completed or not.
+     *
+     * @return number of keys deleted
+     */
+    public int purge(@NonNull Instant createdBefore) {
+        return jdbcTemplate.update(PURGE, Timestamp.from(createdBefore));
+    }
+}
@@ -0,0 +1,133 @@
+package com.zigurs.ledger.data;
+
+import com.zigurs.ledger.infra.archive.Segment;
+import com.zigurs.ledger.infra.archive.SegmentWriter;
+import com.zigurs.ledger.model.HistoryEntry;
+
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Archived ledger partitions - immutable, compressed segment files in {@code ledger_archive_dir}, one per partition.
+ * <p>
+ * Entries are sorted by account, then newest first, so that history of an account is a contiguous run within the
+ * segment, found through its sparse (per block) index. Segments are memory-mapped once opened and stay open.
+ */
+@Repository
+public class LedgerArchive {
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    // history index order, the same order segments keep entries in
+    private static final String SELECT_ALL = """
+            select %s from %s
+            order by account_id, timestamp desc, transaction_id desc
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Path directory;
+    private final int blockEntries;
+    private final int fetchSize;
+    private final Map<String, Segment> segments = new ConcurrentHashMap<>();
+
+    public LedgerArchive(
+            @NonNull JdbcTemplate jdbcTemplate,
+            @NonNull @Value("${ledger_archive_dir}") String directory,
+            @Value("${ledger_archive_block_entries}") int blockEntries,
+            @Value("${history_export_fetch_size}") int fetchSize
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.directory = Path.of(directory);
+        this.blockEntries = blockEntries;
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Write all entries of the (live) partition into a new segment file, replacing a previous attempt if any.
+     *
+     * @return file name of the segment
+     */
+    @Transactional(readOnly = true) // some drivers (e.g. PostgreSQL) only use cursors outside of auto-commit
+    public String write(@NonNull LedgerPartitions.Partition partition) {
+        String segment = partition.table() + SEGMENT_SUFFIX;
+
+        try {
+            Files.createDirectories(directory);
+            try (SegmentWriter writer = new SegmentWriter(directory.resolve(segment), blockEntries)) {
+                jdbcTemplate.query(
+                        connection -> {
+                            PreparedStatement statement = connection.prepareStatement(
+                                    String.format(SELECT_ALL, LedgerEntriesRepository.COLUMNS, partition.table()),
+                                    ResultSet.TYPE_FORWARD_ONLY,
+                                    ResultSet.CONCUR_READ_ONLY
+                            );
+                            statement.setFetchSize(fetchSize);
+                            return statement;
+                        },
+                        rs -> {
+                            try {
+                                writer.append(LedgerEntriesRepository.map(rs));
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        }
+                );
+                writer.finish();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to archive ledger partition " + partition.table(), e);
+        }
+
+        return segment;
+    }
+
+    /**
+     * Pass entries of the account in the archived partition to the consumer, newest first, starting right after the
+     * given position - until either entries of the account run out or the consumer returns false.
+     *
+     * @param before        timestamp of the position, newest entries of the account first if null
+     * @param transactionId transaction of the position, all entries at {@code before} included if null
+     */
+    public void read(
+            @NonNull LedgerPartitions.Partition partition,
+            @NonNull UUID accountId,
+            Instant before,
+            UUID transactionId,
+            @NonNull Predicate<HistoryEntry> consumer
+    ) {
+        if (!partition.archived()) {
+            throw new IllegalArgumentException("ledger partition " + partition.table() + " is not archived");
+        }
+
+        try {
+            segment(partition.segment()).read(accountId, before, transactionId, consumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("unable to read ledger segment " + partition.segment(), e);
+        }
+    }
+
+    private Segment segment(String name) {
+        return segments.computeIfAbsent(name, n -> {
+            try {
+                return Segment.open(directory.resolve(n));
+            } catch (IOException e) {
+                throw new UncheckedIOException("unable to open ledger segment " + n, e);
+            }
+        });
+    }
+}
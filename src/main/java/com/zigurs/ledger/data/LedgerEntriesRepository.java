@@ -0,0 +1,339 @@
+package com.zigurs.ledger.data;
+
+import com.zigurs.ledger.model.HistoryEntry;
+import com.zigurs.ledger.model.LedgerEntry;
+import com.zigurs.ledger.model.Transaction;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import lombok.NonNull;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Ledger entries, stored in time partitions (see {@link LedgerPartitions}). Entries are written together with their
+ * transactions only, see {@link TransactionsRepository} and {@link TransactionsBatchRepository}.
+ * <p>
+ * History is read with plain JDBC straight into {@link HistoryEntry} - just the columns needed, no entities. Every
+ * page is a single statement, a {@code (account_id, timestamp desc, transaction_id desc)} index range per partition
+ * that can hold entries of the page.
+ * <p>
+ * Archived partitions (see {@link LedgerArchive}) are always older than the ones still in tables, so they are only
+ * read once tables run out of entries.
+ */
+@Repository
+public class LedgerEntriesRepository {
+
+    static final String COLUMNS = "transaction_id, account_id, counterparty_account_id, timestamp, status, amount, balance, description";
+
+    private static final String INSERT = """
+            insert into %s(id, transaction_id, account_id, counterparty_account_id,
+                           timestamp, status, amount, balance, description)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String HISTORY = """
+            (select %s from %s
+             where account_id = ?
+             order by timestamp desc, transaction_id desc
+             limit ?)""";
+
+    private static final String HISTORY_BEFORE = """
+            (select %s from %s
+             where account_id = ?
+               and (timestamp < ? or (timestamp = ? and transaction_id < ?))
+             order by timestamp desc, transaction_id desc
+             limit ?)""";
+
+    private static final String COMPLETED_AMOUNTS = """
+            (select amount from %s
+             where account_id = ?
+               and status = ?
+               and timestamp >= ?%s)""";
+
+    private static final String UNTIL = " and timestamp < ?";
+
+    private static final String SUM = "select coalesce(sum(amount), 0) from (%s) entries";
+
+    // current balance incl. slots of hot accounts, less entries at or after the instant
+    private static final String BALANCE_BEFORE = """
+            select a.balance
+                 + coalesce((select sum(s.balance) from account_slots s where s.account_id = a.id), 0)
+                 - coalesce((select sum(amount) from (%s) entries), 0)
+            from accounts a
+            where a.id = ?""";
+
+    private static final String COUNT = "select count(*) from (%s) entries";
+
+    // partitions don't overlap, but are merged in a single statement
+    private static final String PAGE = """
+            select * from (%s) entries
+            order by timestamp desc, transaction_id desc
+            limit ? offset ?""";
+
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LedgerPartitions ledgerPartitions;
+    private final LedgerArchive ledgerArchive;
+
+    public LedgerEntriesRepository(
+            @NonNull JdbcTemplate jdbcTemplate,
+            @NonNull LedgerPartitions ledgerPartitions,
+            @NonNull LedgerArchive ledgerArchive
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ledgerPartitions = ledgerPartitions;
+        this.ledgerArchive = ledgerArchive;
+    }
+
+    /**
+     * Insert entries of all transactions, each into the partition of its timestamp. Transactions themselves are
+     * expected to be inserted already.
+     */
+    public void insertAll(@NonNull List<Transaction> transactions) {
+        Map<String, List<Object[]>> rowsByTable = new HashMap<>();
+        for (Transaction transaction : transactions) {
+            String table = ledgerPartitions.tableFor(transaction.getTimestamp());
+            List<Object[]> rows = rowsByTable.computeIfAbsent(table, t -> new ArrayList<>());
+
+            for (LedgerEntry entry : transaction.getEntries()) {
+                rows.add(new Object[]{
+                        entry.getId(),
+                        entry.getTransactionId(),
+                        entry.getAccountId(),
+                        entry.getCounterpartyAccountId(),
+                        Timestamp.from(entry.getTimestamp()),
+                        entry.getStatus().ordinal(), // stored as enum ordinal, same as transactions
+                        new BigDecimal(entry.getAmount()),
+                        new BigDecimal(entry.getBalance()),
+                        entry.getDescription()
+                });
+            }
+        }
+
+        rowsByTable.forEach((table, rows) -> jdbcTemplate.batchUpdate(String.format(INSERT, table), rows));
+    }
+
+    /**
+     * Entries of the account, newest first, skipping {@code offset} most recent ones. Archived entries are only read
+     * if tables don't fill the page - entries they hold that are skipped by the offset are read (and skipped) too.
+     */
+    public List<HistoryEntry> findHistory(@NonNull UUID accountId, int offset, int limit) {
+        List<LedgerPartitions.Partition> partitions = ledgerPartitions.newestFirst(null, null);
+
+        // every partition might hold the whole page, including skipped entries
+        int partitionLimit = (int) Math.min((long) offset + limit, Integer.MAX_VALUE);
+
+        List<String> branches = new ArrayList<>();
+        List<Object> parameters = new ArrayList<>();
+        for (LedgerPartitions.Partition partition : live(partitions)) {
+            branches.add(String.format(HISTORY, COLUMNS, partition.table()));
+            parameters.add(accountId);
+            parameters.add(partitionLimit);
+        }
+
+        List<HistoryEntry> entries = page(branches, new ArrayList<>(parameters), offset, limit);
+        List<LedgerPartitions.Partition> archived = archived(partitions);
+        if (entries.size() == limit || archived.isEmpty()) {
+            return entries;
+        }
+
+        // past the hot window - archived entries follow all of the above, those the offset reaches into are skipped
+        long[] skip = {entries.isEmpty() ? offset - count(branches, parameters) : 0};
+        List<HistoryEntry> page = new ArrayList<>(entries);
+        for (LedgerPartitions.Partition partition : archived) {
+            ledgerArchive.read(partition, accountId, null, null, entry -> {
+                if (skip[0] > 0) {
+                    skip[0]--;
+                    return true;
+                }
+                page.add(entry);
+                return page.size() < limit;
+            });
+            if (page.size() == limit) {
+                break;
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Entries of the account preceding the given (timestamp, transaction id) position, newest first. Partitions
+     * following the position are not read at all, archived ones only if tables don't fill the page.
+     */
+    public List<HistoryEntry> findHistoryBefore(@NonNull UUID accountId, @NonNull Instant timestamp, @NonNull UUID transactionId, int limit) {
+        Timestamp position = Timestamp.from(timestamp);
+        List<LedgerPartitions.Partition> partitions = ledgerPartitions.newestFirst(null, timestamp.plusNanos(1));
+
+        List<String> branches = new ArrayList<>();
+        List<Object> parameters = new ArrayList<>();
+        for (LedgerPartitions.Partition partition : live(partitions)) {
+            branches.add(String.format(HISTORY_BEFORE, COLUMNS, partition.table()));
+            parameters.add(accountId);
+            parameters.add(position);
+            parameters.add(position);
+            parameters.add(transactionId);
+            parameters.add(limit);
+        }
+
+        List<HistoryEntry> entries = page(branches, parameters, 0, limit);
+        if (entries.size() == limit) {
+            return entries;
+        }
+
+        // past the hot window - all archived entries precede all of the above, so the same position applies
+        List<HistoryEntry> page = new ArrayList<>(entries);
+        for (LedgerPartitions.Partition partition : archived(partitions)) {
+            ledgerArchive.read(partition, accountId, timestamp, transactionId, entry -> {
+                page.add(entry);
+                return page.size() < limit;
+            });
+            if (page.size() == limit) {
+                break;
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Change of the account balance within {@code [from, to)} - sum of amounts of its completed entries. Running
+     * balances of entries are not used, as they don't follow timestamp order (timestamps are taken before accounts
+     * are locked, and balances of hot accounts are approximate).
+     *
+     * @param from inclusive
+     * @param to   exclusive
+     */
+    public BigInteger sumCompleted(@NonNull UUID accountId, @NonNull Instant from, @NonNull Instant to) {
+        List<LedgerPartitions.Partition> partitions = ledgerPartitions.newestFirst(from, to);
+
+        List<Object> parameters = new ArrayList<>();
+        String amounts = completedAmounts(live(partitions), accountId, from, to, parameters);
+
+        BigInteger sum = amounts.isEmpty()
+                ? BigInteger.ZERO
+                : jdbcTemplate.queryForObject(String.format(SUM, amounts), BigDecimal.class, parameters.toArray()).toBigIntegerExact();
+        return sum.add(sumArchived(archived(partitions), accountId, from, to));
+    }
+
+    /**
+     * Balance of the account before the instant, replayed back from its current balance (including slots of a hot
+     * account) - less amounts of completed entries at or after the instant. The current balance and entries still
+     * in tables are read by a single statement, so transfers committed meanwhile are either counted in both or in
+     * neither.
+     */
+    public BigInteger findBalanceBefore(@NonNull UUID accountId, @NonNull Instant instant) {
+        List<LedgerPartitions.Partition> partitions = ledgerPartitions.newestFirst(instant, null);
+
+        List<Object> parameters = new ArrayList<>();
+        String amounts = completedAmounts(live(partitions), accountId, instant, null, parameters);
+        parameters.add(accountId);
+
+        // the newest partition is never archived, there is always one
+        BigInteger balance = jdbcTemplate.queryForObject(String.format(BALANCE_BEFORE, amounts), BigDecimal.class, parameters.toArray())
+                .toBigIntegerExact();
+        return balance.subtract(sumArchived(archived(partitions), accountId, instant, null));
+    }
+
+    /**
+     * Union of completed amounts of the account within the window across partitions, empty if there are none.
+     */
+    private static String completedAmounts(
+            List<LedgerPartitions.Partition> partitions,
+            UUID accountId,
+            Instant from,
+            Instant to,
+            List<Object> parameters
+    ) {
+        List<String> branches = new ArrayList<>();
+        for (LedgerPartitions.Partition partition : partitions) {
+            branches.add(String.format(COMPLETED_AMOUNTS, partition.table(), to == null ? "" : UNTIL));
+            parameters.add(accountId);
+            parameters.add(TransactionStatus.COMPLETED.ordinal());
+            parameters.add(Timestamp.from(from));
+            if (to != null) {
+                parameters.add(Timestamp.from(to));
+            }
+        }
+        return String.join(" union all ", branches);
+    }
+
+    private BigInteger sumArchived(List<LedgerPartitions.Partition> partitions, UUID accountId, Instant from, Instant to) {
+        BigInteger[] sum = {BigInteger.ZERO};
+        for (LedgerPartitions.Partition partition : partitions) {
+            // newest first, starting at the end of the window
+            ledgerArchive.read(partition, accountId, to, null, entry -> {
+                if (entry.timestamp().isBefore(from)) {
+                    return false;
+                }
+                if (entry.status() == TransactionStatus.COMPLETED && (to == null || entry.timestamp().isBefore(to))) {
+                    sum[0] = sum[0].add(entry.amount());
+                }
+                return true;
+            });
+        }
+        return sum[0];
+    }
+
+    private static List<LedgerPartitions.Partition> live(List<LedgerPartitions.Partition> partitions) {
+        return partitions.stream().filter(partition -> !partition.archived()).toList();
+    }
+
+    private static List<LedgerPartitions.Partition> archived(List<LedgerPartitions.Partition> partitions) {
+        return partitions.stream().filter(LedgerPartitions.Partition::archived).toList();
+    }
+
+    /**
+     * Number of entries read by the branches - all entries of the account in tables, if none of the partitions is
+     * cut short by its limit.
+     */
+    private long count(List<String> branches, List<Object> parameters) {
+        if (branches.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.queryForObject(String.format(COUNT, String.join(" union all ", branches)), Long.class, parameters.toArray());
+    }
+
+    private List<HistoryEntry> page(List<String> branches, List<Object> parameters, int offset, int limit) {
+        if (branches.isEmpty()) {
+            return List.of();
+        }
+
+        parameters.add(limit);
+        parameters.add(offset);
+
+        return jdbcTemplate.query(
+                String.format(PAGE, String.join(" union all ", branches)),
+                (rs, rowNum) -> map(rs),
+                parameters.toArray()
+        );
+    }
+
+    /**
+     * Row of {@link #COLUMNS}, in the same order.
+     */
+    static HistoryEntry map(ResultSet rs) throws SQLException {
+        return new HistoryEntry(
+                rs.getObject(1, UUID.class),
+                rs.getObject(2, UUID.class),
+                rs.getObject(3, UUID.class),
+                rs.getObject(4, OffsetDateTime.class).toInstant(),
+                STATUSES[rs.getInt(5)],
+                rs.getBigDecimal(6).toBigIntegerExact(),
+                rs.getBigDecimal(7).toBigIntegerExact(),
+                rs.getString(8)
+        );
+    }
+}
@@ -0,0 +1,313 @@
+package com.zigurs.ledger.data;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Routes ledger entries to time partitions - separate tables each covering a range of entry timestamps.
+ * <p>
+ * Partitions are aligned to {@code ledger_partition_months} months (UTC) and registered in {@code ledger_partitions}.
+ * The original {@code ledger_entries} table is the partition of everything preceding the first of them. Partitions
+ * are created ahead of time by {@link #createUpcoming()}, or on first write otherwise.
+ * <p>
+ * Old partitions are eventually archived - moved to read-only segment files (see {@link LedgerArchive}). Archived
+ * partitions stay registered, with their tables dropped a while later.
+ * <p>
+ * Partitions have no foreign keys, so that creating one never has to lock accounts or transactions tables - which
+ * might be locked by the very transfer writing the first entry.
+ */
+@Slf4j
+@Component
+public class LedgerPartitions {
+
+    static final String DEFAULT_TABLE = "ledger_entries";
+
+    private static final String SELECT_PARTITIONS = "select table_name, starts_at, ends_at, segment from ledger_partitions";
+
+    private static final String ARCHIVE_PARTITION = "update ledger_partitions set segment = ?, archived_at = ? where table_name = ?";
+
+    private static final String SELECT_DROPPABLE = """
+            select table_name from ledger_partitions
+            where segment is not null and dropped_at is null and archived_at < ?
+            """;
+
+    private static final String MARK_DROPPED = "update ledger_partitions set dropped_at = ? where table_name = ?";
+
+    private static final String REGISTER_PARTITION = """
+            merge into ledger_partitions(table_name, starts_at, ends_at) key (table_name) values (?, ?, ?)
+            """;
+
+    private static final String CREATE_TABLE = """
+            create table if not exists %1$s
+            (
+                id                      uuid                     not null,
+                transaction_id          uuid                     not null,
+                account_id              uuid                     not null,
+                counterparty_account_id uuid                     not null,
+                timestamp               timestamp with time zone not null,
+                status                  tinyint                  not null,
+                amount                  numeric(38, 0)           not null,
+                balance                 numeric(38, 0)           not null,
+                description             varchar(255),
+                primary key (id)
+            )
+            """;
+
+    private static final String CREATE_INDEX = """
+            create index if not exists %1$s_history_idx
+                on %1$s (account_id, timestamp desc, transaction_id desc)
+            """;
+
+    private static final DateTimeFormatter TABLE_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMdd").withZone(ZoneOffset.UTC);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final int months;
+
+    // immutable snapshot keyed by start, replaced (under lock) whenever partitions change
+    private volatile NavigableMap<Instant, Partition> partitions;
+
+    public LedgerPartitions(
+            @NonNull JdbcTemplate jdbcTemplate,
+            @NonNull DataSource dataSource,
+            @Value("${ledger_partition_months}") int months
+    ) {
+        if (months < 1) {
+            throw new IllegalArgumentException("ledger_partition_months must be positive");
+        }
+
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.months = months;
+    }
+
+    /**
+     * Range of entry timestamps stored in a single table (or segment file, once archived).
+     *
+     * @param start   inclusive, {@link Instant#MIN} if unbounded
+     * @param end     exclusive, {@link Instant#MAX} if unbounded
+     * @param segment file name of the archived partition, null while entries are in the table
+     */
+    public record Partition(@NonNull String table, @NonNull Instant start, @NonNull Instant end, String segment) {
+
+        public boolean archived() {
+            return segment != null;
+        }
+
+        public boolean contains(Instant timestamp) {
+            return !timestamp.isBefore(start) && timestamp.isBefore(end);
+        }
+
+        /**
+         * @param from inclusive, unbounded if null
+         * @param to   exclusive, unbounded if null
+         */
+        public boolean overlaps(Instant from, Instant to) {
+            return (from == null || from.isBefore(end)) && (to == null || to.isAfter(start));
+        }
+    }
+
+    /**
+     * Table entries with the given timestamp are stored in, created if it doesn't exist yet.
+     *
+     * @throws IllegalStateException if the partition of the timestamp is archived already
+     */
+    public String tableFor(@NonNull Instant timestamp) {
+        Partition partition = find(snapshot(), timestamp);
+        if (partition == null) {
+            partition = createFor(timestamp);
+        }
+
+        if (partition.archived()) {
+            throw new IllegalStateException("ledger partition " + partition.table() + " is archived, timestamp " + timestamp);
+        }
+        return partition.table();
+    }
+
+    /**
+     * Partitions that might hold entries within the time window, newest first. As partitions don't overlap, reading
+     * them one after another yields entries in history order.
+     *
+     * @param from inclusive, unbounded if null
+     * @param to   exclusive, unbounded if null
+     */
+    public List<Partition> newestFirst(Instant from, Instant to) {
+        List<Partition> overlapping = new ArrayList<>();
+        for (Partition partition : snapshot().descendingMap().values()) {
+            if (partition.overlaps(from, to)) {
+                overlapping.add(partition);
+            }
+        }
+        return overlapping;
+    }
+
+    /**
+     * The oldest partition still stored in a table, if any.
+     */
+    public Optional<Partition> oldestLive() {
+        return snapshot().values().stream().filter(partition -> !partition.archived()).findFirst();
+    }
+
+    /**
+     * Register the partition as archived, so that its entries are read from the segment from now on. The table is
+     * kept for readers still using it, see {@link #dropArchived(Instant)}.
+     */
+    public synchronized void markArchived(@NonNull Partition partition, @NonNull String segment) {
+        jdbcTemplate.update(ARCHIVE_PARTITION, segment, Timestamp.from(Instant.now()), partition.table());
+        partitions = load();
+    }
+
+    /**
+     * Drop tables of partitions archived before the given instant.
+     */
+    public void dropArchived(@NonNull Instant archivedBefore) {
+        List<String> tables = jdbcTemplate.queryForList(SELECT_DROPPABLE, String.class, Timestamp.from(archivedBefore));
+        for (String table : tables) {
+            ddl(ddl -> ddl.execute("drop table if exists " + table));
+            jdbcTemplate.update(MARK_DROPPED, Timestamp.from(Instant.now()), table);
+            log.info("dropped archived ledger partition {}", table);
+        }
+    }
+
+    /**
+     * Make sure partitions of the current and the following period exist before any entries are written to them.
+     * Also picks up partitions created or archived by other instances.
+     */
+    @Scheduled(fixedDelayString = "${ledger_partition_check_interval_ms}")
+    public void createUpcoming() {
+        try {
+            synchronized (this) {
+                partitions = load();
+            }
+
+            Instant now = Instant.now();
+            tableFor(now);
+            tableFor(periodStart(now).plusMonths(months).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC));
+        } catch (RuntimeException e) {
+            // next round will try again, writes create missing partitions anyway
+            log.error("unable to create upcoming ledger partitions", e);
+        }
+    }
+
+    private NavigableMap<Instant, Partition> snapshot() {
+        NavigableMap<Instant, Partition> current = partitions;
+        if (current == null) {
+            synchronized (this) {
+                if (partitions == null) {
+                    partitions = load();
+                }
+                current = partitions;
+            }
+        }
+        return current;
+    }
+
+    private synchronized Partition createFor(Instant timestamp) {
+        // might have been created concurrently, here or by another instance
+        partitions = load();
+        Partition partition = find(partitions, timestamp);
+        if (partition != null) {
+            return partition;
+        }
+
+        partition = create(partitions, timestamp);
+
+        NavigableMap<Instant, Partition> updated = new TreeMap<>(partitions);
+        updated.put(partition.start(), partition);
+        partitions = Collections.unmodifiableNavigableMap(updated);
+        return partition;
+    }
+
+    private NavigableMap<Instant, Partition> load() {
+        NavigableMap<Instant, Partition> registered = new TreeMap<>();
+        jdbcTemplate.query(SELECT_PARTITIONS, rs -> {
+            OffsetDateTime start = rs.getObject(2, OffsetDateTime.class);
+            OffsetDateTime end = rs.getObject(3, OffsetDateTime.class);
+
+            Partition partition = new Partition(
+                    rs.getString(1),
+                    start == null ? Instant.MIN : start.toInstant(),
+                    end == null ? Instant.MAX : end.toInstant(),
+                    rs.getString(4)
+            );
+            registered.put(partition.start(), partition);
+        });
+        return Collections.unmodifiableNavigableMap(registered);
+    }
+
+    private Partition create(NavigableMap<Instant, Partition> existing, Instant timestamp) {
+        // aligned period, shortened where it would overlap partitions registered otherwise
+        YearMonth periodStart = periodStart(timestamp);
+        Instant start = periodStart.atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+        Instant end = periodStart.plusMonths(months).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+
+        Map.Entry<Instant, Partition> preceding = existing.floorEntry(timestamp);
+        if (preceding != null && preceding.getValue().end().isAfter(start)) {
+            start = preceding.getValue().end();
+        }
+        Map.Entry<Instant, Partition> following = existing.higherEntry(timestamp);
+        if (following != null && following.getKey().isBefore(end)) {
+            end = following.getKey();
+        }
+
+        Partition partition = new Partition(DEFAULT_TABLE + "_" + TABLE_SUFFIX.format(start), start, end, null);
+        Instant partitionStart = start;
+        Instant partitionEnd = end;
+
+        ddl(ddl -> {
+            ddl.execute(String.format(CREATE_TABLE, partition.table()));
+            ddl.execute(String.format(CREATE_INDEX, partition.table()));
+            ddl.update(REGISTER_PARTITION, partition.table(), Timestamp.from(partitionStart), Timestamp.from(partitionEnd));
+        });
+
+        log.info("created ledger partition {} for [{}, {})", partition.table(), start, end);
+        return partition;
+    }
+
+    private void ddl(Consumer<JdbcTemplate> statements) {
+        // DDL commits implicitly (on H2 at least), so it must not run on the connection of the ongoing transfer
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(true);
+            statements.accept(new JdbcTemplate(new SingleConnectionDataSource(connection, true)));
+        } catch (SQLException e) {
+            throw new IllegalStateException("unable to change ledger partitions", e);
+        }
+    }
+
+    private static Partition find(NavigableMap<Instant, Partition> partitions, Instant timestamp) {
+        Map.Entry<Instant, Partition> floor = partitions.floorEntry(timestamp);
+        if (floor != null && floor.getValue().contains(timestamp)) {
+            return floor.getValue();
+        }
+        return null;
+    }
+
+    private YearMonth periodStart(Instant timestamp) {
+        YearMonth month = YearMonth.from(timestamp.atOffset(ZoneOffset.UTC));
+        int index = month.getYear() * 12 + month.getMonthValue() - 1;
+        return month.minusMonths(Math.floorMod(index, months));
+    }
+}
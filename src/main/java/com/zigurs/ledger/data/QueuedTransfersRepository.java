@@ -0,0 +1,59 @@
+package com.zigurs.ledger.data;
+
+import com.zigurs.ledger.model.QueuedTransfer;
+import com.zigurs.ledger.model.QueuedTransferStatus;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface QueuedTransfersRepository extends Repository<QueuedTransfer, UUID> {
+
+    QueuedTransfer save(QueuedTransfer queuedTransfer);
+
+    Optional<QueuedTransfer> findById(UUID id);
+
+    /**
+     * Requests in the given status that are due at the given instant, oldest first.
+     */
+    @Query("select q from QueuedTransfer q where q.status = :status and (q.notBefore is null or q.notBefore <= :now) order by q.created asc")
+    List<QueuedTransfer> findAllDue(QueuedTransferStatus status, Instant now, Pageable pageable);
+
+    List<QueuedTransfer> findAllByStatusAndUpdatedBeforeOrderByUpdatedAsc(QueuedTransferStatus status, Instant updated, Pageable pageable);
+
+    /**
+     * Conditional status transition, used to claim requests so that each is processed only once.
+     *
+     * @return 1 if transitioned, 0 if request is not (or no longer) in expected status
+     */
+    @Transactional
+    @Modifying
+    @Query("update QueuedTransfer q set q.status = :to, q.updated = :updated where q.id = :id and q.status = :from")
+    int updateStatus(UUID id, QueuedTransferStatus from, QueuedTransferStatus to, Instant updated);
+
+    @Transactional
+    @Modifying
+    @Query("update QueuedTransfer q set q.status = :status, q.transactionId = :transactionId, q.error = :error, q.updated = :updated where q.id = :id")
+    int complete(UUID id, QueuedTransferStatus status, UUID transactionId, String error, Instant updated);
+
+    /**
+     * Put a PROCESSING request back to PENDING, not to be picked up before {@code notBefore}.
+     *
+     * @return 1 if requeued, 0 if request is no longer in PROCESSING
+     */
+    @Transactional
+    @Modifying
+    @Query("""
+            update QueuedTransfer q set q.status = com.zigurs.ledger.model.QueuedTransferStatus.PENDING,
+                q.attempts = :attempts, q.notBefore = :notBefore, q.updated = :updated
+            where q.id = :id and q.status = com.zigurs.ledger.model.QueuedTransferStatus.PROCESSING
+            """)
+    int retry(UUID id, int attempts, Instant notBefore, Instant updated);
+}
@@ -0,0 +1,105 @@
+package com.zigurs.ledger.data;
+
+import com.zigurs.ledger.model.Transaction;
+
+import lombok.NonNull;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Plain JDBC counterpart of {@link TransactionsRepository} for bulk writes.
+ * <p>
+ * Bypasses the persistence context entirely - rows are written with JDBC batching, so callers are expected
+ * to supply transactions with ids already assigned and balances already calculated.
+ */
+@Repository
+public class TransactionsBatchRepository {
+
+    private static final String INSERT_TRANSACTION = """
+            insert into transactions(id, status, timestamp,
+                                     source_account_id, source_amount, source_balance,
+                                     destination_account_id, destination_amount, destination_balance,
+                                     description, request_id)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String UPDATE_BALANCE = "update accounts set balance = ?, version = version + 1 where id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LedgerEntriesRepository ledgerEntriesRepository;
+    private final DailyAccountTotalsRepository dailyAccountTotalsRepository;
+
+    public TransactionsBatchRepository(
+            @NonNull JdbcTemplate jdbcTemplate,
+            @NonNull LedgerEntriesRepository ledgerEntriesRepository,
+            @NonNull DailyAccountTotalsRepository dailyAccountTotalsRepository
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ledgerEntriesRepository = ledgerEntriesRepository;
+        this.dailyAccountTotalsRepository = dailyAccountTotalsRepository;
+    }
+
+    /**
+     * Insert all supplied transactions and set supplied account balances in a single database transaction.
+     *
+     * @param transactions transactions to insert (with ids assigned)
+     * @param balances     resulting account balances to store, keyed by account id
+     */
+    @Transactional
+    public void persist(@NonNull List<Transaction> transactions, @NonNull Map<UUID, BigInteger> balances) {
+        insertAll(transactions);
+        updateBalances(balances);
+    }
+
+    /**
+     * Insert transactions together with their ledger entries, and add them to daily account totals.
+     */
+    public void insertAll(@NonNull List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            rows.add(new Object[]{
+                    transaction.getId(),
+                    transaction.getStatus().ordinal(), // stored as enum ordinal, same as JPA mapping
+                    Timestamp.from(transaction.getTimestamp()),
+                    transaction.getSourceAccount().getId(),
+                    new BigDecimal(transaction.getSourceAmount()),
+                    new BigDecimal(transaction.getSourceBalance()),
+                    transaction.getDestinationAccount().getId(),
+                    new BigDecimal(transaction.getDestinationAmount()),
+                    new BigDecimal(transaction.getDestinationBalance()),
+                    transaction.getDescription(),
+                    transaction.getRequestId()
+            });
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_TRANSACTION, rows);
+
+        // ledger entries of every transaction, after all transactions they reference
+        ledgerEntriesRepository.insertAll(transactions);
+        dailyAccountTotalsRepository.addAll(transactions);
+    }
+
+    public void updateBalances(@NonNull Map<UUID, BigInteger> balances) {
+        if (balances.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> rows = new ArrayList<>(balances.size());
+        balances.forEach((id, balance) -> rows.add(new Object[]{new BigDecimal(balance), id}));
+
+        jdbcTemplate.batchUpdate(UPDATE_BALANCE, rows);
+    }
+}
@@ -2,15 +2,22 @@ package com.zigurs.ledger.data;
 
 import com.zigurs.ledger.model.Transaction;
 
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.repository.Repository;
 
-import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
-public interface TransactionsRepository extends Repository<Transaction, UUID> {
+/**
+ * Transactions are only written and looked up by id (or queued transfer request) here, account history is read from
+ * {@link LedgerEntriesRepository}. Saved transactions are written together with their ledger entries,
+ * see {@link TransactionsWriter}.
+ */
+public interface TransactionsRepository extends Repository<Transaction, UUID>, TransactionsWriter {
 
-    Transaction save(Transaction transaction);
+    Optional<Transaction> findById(UUID id);
 
-    List<Transaction> findAllBySourceAccountIdOrDestinationAccountIdOrderByTimestampDesc(UUID sourceAccountId, UUID destinationAccountId, Pageable pageable);
+    /**
+     * Transaction executing a queued transfer, used to find out whether (and how) the request was executed.
+     */
+    Optional<Transaction> findByRequestId(UUID requestId);
 }
@@ -0,0 +1,17 @@
+package com.zigurs.ledger.data;
+
+import com.zigurs.ledger.model.Transaction;
+
+/**
+ * Saving transactions with JPA, together with their ledger entries and daily account totals (which are not JPA
+ * entities).
+ */
+public interface TransactionsWriter {
+
+    /**
+     * Insert a new transaction (id not assigned yet) and its ledger entries, and add it to daily account totals.
+     *
+     * @return the same transaction, with id assigned
+     */
+    Transaction save(Transaction transaction);
+}
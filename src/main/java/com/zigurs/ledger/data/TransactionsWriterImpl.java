@@ -0,0 +1,43 @@
+package com.zigurs.ledger.data;
+
+import com.zigurs.ledger.model.Transaction;
+
+import jakarta.persistence.EntityManager;
+import lombok.NonNull;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * {@link TransactionsWriter} fragment of {@link TransactionsRepository}, takes precedence over the default
+ * {@code save}.
+ */
+class TransactionsWriterImpl implements TransactionsWriter {
+
+    private final EntityManager entityManager;
+    private final LedgerEntriesRepository ledgerEntriesRepository;
+    private final DailyAccountTotalsRepository dailyAccountTotalsRepository;
+
+    TransactionsWriterImpl(
+            @NonNull EntityManager entityManager,
+            @NonNull LedgerEntriesRepository ledgerEntriesRepository,
+            @NonNull DailyAccountTotalsRepository dailyAccountTotalsRepository
+    ) {
+        this.entityManager = entityManager;
+        this.ledgerEntriesRepository = ledgerEntriesRepository;
+        this.dailyAccountTotalsRepository = dailyAccountTotalsRepository;
+    }
+
+    @Override
+    @Transactional
+    public Transaction save(@NonNull Transaction transaction) {
+        entityManager.persist(transaction);
+
+        // transaction row (and its id) has to exist before entries referencing it are written with JDBC
+        entityManager.flush();
+        ledgerEntriesRepository.insertAll(List.of(transaction));
+        dailyAccountTotalsRepository.addAll(List.of(transaction));
+
+        return transaction;
+    }
+}
@@ -0,0 +1,163 @@
+package com.zigurs.ledger.infra.archive;
+
+import com.zigurs.ledger.model.HistoryEntry;
+
+import lombok.NonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only, memory-mapped segment file (see {@link SegmentFormat}). The sparse index is kept on heap, blocks are
+ * decompressed straight from the mapping as they are read - nothing else is cached, the OS page cache keeps recently
+ * read parts of the file in memory. Safe for concurrent use.
+ * <p>
+ * A single mapping is limited to 2GB, larger files are mapped in consecutive chunks - blocks crossing a chunk boundary
+ * are copied from both.
+ */
+public final class Segment {
+
+    private static final long CHUNK_SIZE = 1L << 30;
+
+    private final Path path;
+    private final ByteBuffer[] chunks;
+    private final long chunkSize;
+    private final SegmentKey[] firstKeys;
+    private final long[] offsets;
+    private final int[] compressedLengths;
+    private final int[] rawLengths;
+    private final int[] entries;
+
+    private Segment(Path path, ByteBuffer[] chunks, long chunkSize, int blocks) {
+        this.path = path;
+        this.chunks = chunks;
+        this.chunkSize = chunkSize;
+        this.firstKeys = new SegmentKey[blocks];
+        this.offsets = new long[blocks];
+        this.compressedLengths = new int[blocks];
+        this.rawLengths = new int[blocks];
+        this.entries = new int[blocks];
+    }
+
+    public static Segment open(@NonNull Path path) throws IOException {
+        return open(path, CHUNK_SIZE);
+    }
+
+    static Segment open(Path path, long chunkSize) throws IOException {
+        long size;
+        ByteBuffer[] chunks;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            chunks = new ByteBuffer[Math.toIntExact((size + chunkSize - 1) / chunkSize)];
+            for (int i = 0; i < chunks.length; i++) {
+                long start = i * chunkSize;
+                // mapping stays valid after the channel is closed
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(chunkSize, size - start));
+            }
+        }
+
+        if (size < SegmentFormat.HEADER_SIZE + SegmentFormat.FOOTER_SIZE) {
+            throw new IOException("not a segment file: " + path);
+        }
+        ByteBuffer header = ByteBuffer.wrap(bytes(chunks, chunkSize, 0, SegmentFormat.HEADER_SIZE));
+        ByteBuffer footer = ByteBuffer.wrap(bytes(chunks, chunkSize, size - SegmentFormat.FOOTER_SIZE, SegmentFormat.FOOTER_SIZE));
+        if (header.getInt(0) != SegmentFormat.MAGIC || footer.getInt(SegmentFormat.FOOTER_SIZE - 4) != SegmentFormat.MAGIC) {
+            throw new IOException("not a segment file: " + path);
+        }
+        if (header.getInt(4) != SegmentFormat.VERSION) {
+            throw new IOException("unsupported segment version: " + path);
+        }
+
+        long indexOffset = footer.getLong(0);
+        int blocks = footer.getInt(8);
+        Segment segment = new Segment(path, chunks, chunkSize, blocks);
+
+        DataInputStream index = new DataInputStream(new ByteArrayInputStream(
+                bytes(chunks, chunkSize, indexOffset, Math.toIntExact(size - SegmentFormat.FOOTER_SIZE - indexOffset))
+        ));
+        for (int i = 0; i < blocks; i++) {
+            segment.firstKeys[i] = SegmentFormat.readKey(index);
+            segment.offsets[i] = index.readLong();
+            segment.compressedLengths[i] = index.readInt();
+            segment.rawLengths[i] = index.readInt();
+            segment.entries[i] = index.readInt();
+        }
+        return segment;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * Pass entries of the account to the consumer, newest first, starting right after the given position - until
+     * either entries of the account run out or the consumer returns false.
+     *
+     * @param before        timestamp of the position, newest entries of the account first if null
+     * @param transactionId transaction of the position, all entries at {@code before} included if null
+     */
+    public void read(@NonNull UUID accountId, Instant before, UUID transactionId, @NonNull Predicate<HistoryEntry> consumer) throws IOException {
+        SegmentKey position = new SegmentKey(accountId, before, before == null ? null : transactionId);
+
+        // last block starting at (or before) the position, the position itself might be anywhere within it
+        int block = Arrays.binarySearch(firstKeys, position);
+        if (block < 0) {
+            block = Math.max(0, -block - 2);
+        }
+
+        for (; block < firstKeys.length; block++) {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(inflate(block)));
+            for (int i = 0; i < entries[block]; i++) {
+                HistoryEntry entry = SegmentFormat.readEntry(in);
+                if (SegmentKey.of(entry).compareTo(position) <= 0) {
+                    continue;
+                }
+                if (!entry.accountId().equals(accountId) || !consumer.test(entry)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private byte[] inflate(int block) throws IOException {
+        byte[] raw = new byte[rawLengths[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes(chunks, chunkSize, offsets[block], compressedLengths[block]));
+            int length = inflater.inflate(raw);
+            if (length != raw.length || !inflater.finished()) {
+                throw new IOException("corrupted block " + block + " of " + path);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupted block " + block + " of " + path, e);
+        } finally {
+            inflater.end();
+        }
+        return raw;
+    }
+
+    private static byte[] bytes(ByteBuffer[] chunks, long chunkSize, long offset, int length) {
+        byte[] bytes = new byte[length];
+        for (int copied = 0; copied < length; ) {
+            long position = offset + copied;
+            ByteBuffer chunk = chunks[(int) (position / chunkSize)];
+            int start = (int) (position % chunkSize);
+            int count = Math.min(length - copied, chunk.capacity() - start);
+            // absolute bulk get, doesn't touch the (shared) buffer position
+            chunk.get(start, bytes, copied, count);
+            copied += count;
+        }
+        return bytes;
+    }
+}
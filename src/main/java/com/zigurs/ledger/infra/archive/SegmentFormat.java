@@ -0,0 +1,99 @@
+package com.zigurs.ledger.infra.archive;
+
+import com.zigurs.ledger.model.HistoryEntry;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Layout of segment files:
+ * <pre>
+ * header  - magic, version
+ * blocks  - deflate compressed runs of consecutive entries
+ * index   - per block: key of its first entry, offset, compressed and raw length, number of entries
+ * footer  - index offset, number of blocks, magic
+ * </pre>
+ * The index is sparse - one key per block rather than per entry. All numbers are big endian.
+ */
+final class SegmentFormat {
+
+    static final int MAGIC = 0x4c454447; // "LEDG"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8;
+    static final int FOOTER_SIZE = 16;
+
+    private static final TransactionStatus[] STATUSES = TransactionStatus.values();
+
+    private SegmentFormat() {
+    }
+
+    static void writeEntry(DataOutput out, HistoryEntry entry) throws IOException {
+        writeUuid(out, entry.accountId());
+        writeUuid(out, entry.transactionId());
+        writeUuid(out, entry.counterpartyAccountId());
+        writeInstant(out, entry.timestamp());
+        out.writeByte(entry.status().ordinal());
+        writeBigInteger(out, entry.amount());
+        writeBigInteger(out, entry.balance());
+        out.writeUTF(entry.description());
+    }
+
+    static HistoryEntry readEntry(DataInput in) throws IOException {
+        UUID accountId = readUuid(in);
+        UUID transactionId = readUuid(in);
+        UUID counterpartyAccountId = readUuid(in);
+        Instant timestamp = readInstant(in);
+        TransactionStatus status = STATUSES[in.readUnsignedByte()];
+        BigInteger amount = readBigInteger(in);
+        BigInteger balance = readBigInteger(in);
+        String description = in.readUTF();
+
+        return new HistoryEntry(transactionId, accountId, counterpartyAccountId, timestamp, status, amount, balance, description);
+    }
+
+    static void writeKey(DataOutput out, SegmentKey key) throws IOException {
+        writeUuid(out, key.accountId());
+        writeInstant(out, key.timestamp());
+        writeUuid(out, key.transactionId());
+    }
+
+    static SegmentKey readKey(DataInput in) throws IOException {
+        return new SegmentKey(readUuid(in), readInstant(in), readUuid(in));
+    }
+
+    private static void writeUuid(DataOutput out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInput in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static void writeInstant(DataOutput out, Instant instant) throws IOException {
+        out.writeLong(instant.getEpochSecond());
+        out.writeInt(instant.getNano());
+    }
+
+    private static Instant readInstant(DataInput in) throws IOException {
+        return Instant.ofEpochSecond(in.readLong(), in.readInt());
+    }
+
+    // numeric(38, 0) takes 17 bytes at most
+    private static void writeBigInteger(DataOutput out, BigInteger value) throws IOException {
+        byte[] bytes = value.toByteArray();
+        out.writeByte(bytes.length);
+        out.write(bytes);
+    }
+
+    private static BigInteger readBigInteger(DataInput in) throws IOException {
+        byte[] bytes = new byte[in.readUnsignedByte()];
+        in.readFully(bytes);
+        return new BigInteger(bytes);
+    }
+}
@@ -0,0 +1,36 @@
+package com.zigurs.ledger.infra.archive;
+
+import com.zigurs.ledger.model.HistoryEntry;
+
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Position of an entry within a segment - entries are sorted by account, then newest first (same as history).
+ * UUIDs compare as unsigned, same as the database sorting them on the way in.
+ *
+ * @param timestamp     null for a position preceding all entries of the account
+ * @param transactionId null for a position preceding all entries of the account at the timestamp
+ */
+record SegmentKey(UUID accountId, Instant timestamp, UUID transactionId) implements Comparable<SegmentKey> {
+
+    private static final Comparator<UUID> UNSIGNED = Comparator
+            .comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+            .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned);
+
+    // nulls (earliest positions) first, then newest first
+    private static final Comparator<SegmentKey> ORDER = Comparator
+            .comparing(SegmentKey::accountId, UNSIGNED)
+            .thenComparing(SegmentKey::timestamp, Comparator.nullsFirst(Comparator.<Instant>reverseOrder()))
+            .thenComparing(SegmentKey::transactionId, Comparator.nullsFirst(UNSIGNED.reversed()));
+
+    static SegmentKey of(HistoryEntry entry) {
+        return new SegmentKey(entry.accountId(), entry.timestamp(), entry.transactionId());
+    }
+
+    @Override
+    public int compareTo(SegmentKey other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,151 @@
+package com.zigurs.ledger.infra.archive;
+
+import com.zigurs.ledger.model.HistoryEntry;
+
+import lombok.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes a segment file (see {@link SegmentFormat}) from entries supplied in segment order. The file only appears
+ * under its name once {@link #finish()} completes, until then it is written to a temporary file next to it.
+ */
+public final class SegmentWriter implements Closeable {
+
+    private final Path target;
+    private final Path temporary;
+    private final int blockEntries;
+    private final FileChannel channel;
+    private final DataOutputStream out;
+
+    private final List<BlockIndex> index = new ArrayList<>();
+    private final ByteArrayOutputStream raw = new ByteArrayOutputStream();
+    private final DataOutputStream block = new DataOutputStream(raw);
+    private SegmentKey firstKey;
+    private SegmentKey lastKey;
+    private int count;
+    private long offset;
+    private boolean finished;
+
+    private record BlockIndex(SegmentKey firstKey, long offset, int compressedLength, int rawLength, int entries) {
+    }
+
+    /**
+     * @param blockEntries entries per compressed block - larger blocks compress better, smaller ones are quicker
+     *                     to seek into
+     */
+    public SegmentWriter(@NonNull Path target, int blockEntries) throws IOException {
+        if (blockEntries < 1) {
+            throw new IllegalArgumentException("blockEntries must be positive");
+        }
+
+        this.target = target;
+        // unique, in case the same segment is written concurrently (e.g. by another instance)
+        this.temporary = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        this.blockEntries = blockEntries;
+        this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+        out.writeInt(SegmentFormat.MAGIC);
+        out.writeInt(SegmentFormat.VERSION);
+        offset = SegmentFormat.HEADER_SIZE;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the entry precedes the previous one in segment order
+     */
+    public void append(@NonNull HistoryEntry entry) throws IOException {
+        SegmentKey key = SegmentKey.of(entry);
+        if (lastKey != null && key.compareTo(lastKey) < 0) {
+            throw new IllegalArgumentException("entries must be appended in segment order");
+        }
+
+        if (count == 0) {
+            firstKey = key;
+        }
+        lastKey = key;
+
+        SegmentFormat.writeEntry(block, entry);
+        if (++count == blockEntries) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * Write the index, sync the file to disk and move it in place.
+     *
+     * @return path of the segment
+     */
+    public Path finish() throws IOException {
+        flushBlock();
+
+        long indexOffset = offset;
+        for (BlockIndex blockIndex : index) {
+            SegmentFormat.writeKey(out, blockIndex.firstKey());
+            out.writeLong(blockIndex.offset());
+            out.writeInt(blockIndex.compressedLength());
+            out.writeInt(blockIndex.rawLength());
+            out.writeInt(blockIndex.entries());
+        }
+
+        out.writeLong(indexOffset);
+        out.writeInt(index.size());
+        out.writeInt(SegmentFormat.MAGIC);
+        out.flush();
+        channel.force(true);
+        out.close();
+
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        finished = true;
+        return target;
+    }
+
+    /**
+     * Discard the segment, unless finished.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!finished) {
+            out.close();
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (count == 0) {
+            return;
+        }
+
+        block.flush();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.size() / 2);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (OutputStream deflated = new DeflaterOutputStream(compressed, deflater)) {
+            raw.writeTo(deflated);
+        } finally {
+            deflater.end();
+        }
+
+        compressed.writeTo(out);
+        index.add(new BlockIndex(firstKey, offset, compressed.size(), raw.size(), count));
+        offset += compressed.size();
+
+        raw.reset();
+        count = 0;
+    }
+}
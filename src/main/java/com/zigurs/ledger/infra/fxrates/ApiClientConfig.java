@@ -1,12 +1,12 @@
 package com.zigurs.ledger.infra.fxrates;
 
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
 import java.time.Duration;
+import java.util.concurrent.Executors;
 
 @Configuration
 public class ApiClientConfig {
@@ -14,14 +14,24 @@ public class ApiClientConfig {
     @Value("${currency_beakon_api_connection_timeout}")
     private int connectionTimeout;
 
-    @Value("${currency_beakon_api_read_timeout}")
-    private int requestTimeout;
+    @Value("${spring.threads.virtual.enabled}")
+    private boolean virtualThreads;
 
+    /**
+     * Shared by all CurrencyBeacon requests - connections (and TLS sessions) are pooled and kept alive between them,
+     * HTTP/2 multiplexes concurrent requests over a single connection where the provider supports it.
+     */
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder restTemplateBuilder) {
-        return restTemplateBuilder
-                .setConnectTimeout(Duration.ofSeconds(connectionTimeout))
-                .setReadTimeout(Duration.ofSeconds(requestTimeout))
-                .build();
+    public HttpClient currencyBeaconHttpClient() {
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(connectionTimeout));
+
+        if (virtualThreads) {
+            // response handling (and anything chained to it) on virtual threads too
+            builder.executor(Executors.newVirtualThreadPerTaskExecutor());
+        }
+
+        return builder.build();
     }
 }
@@ -0,0 +1,85 @@
+package com.zigurs.ledger.infra.fxrates;
+
+import lombok.NonNull;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds concurrent calls to {@code maxConcurrent}. Up to {@code maxQueued} further callers wait (in order) up to
+ * {@code maxWait} for their turn, others are turned away right away.
+ * <p>
+ * Nobody blocks while waiting - a turn is a future, completed by {@link #exit()} of the call before.
+ */
+final class Bulkhead {
+
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitNanos;
+
+    private final Deque<CompletableFuture<Void>> waiting = new ArrayDeque<>();
+    private int active;
+
+    Bulkhead(int maxConcurrent, int maxQueued, @NonNull Duration maxWait) {
+        if (maxConcurrent < 1 || maxQueued < 0) {
+            throw new IllegalArgumentException("max concurrent must be positive, max queued must not be negative");
+        }
+
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWaitNanos = maxWait.toNanos();
+    }
+
+    /**
+     * @return turn of the caller, null if turned away right away. Completes once the call can be made (followed by
+     * {@link #exit()} once it completes), or with a {@link java.util.concurrent.TimeoutException} after
+     * {@code maxWait}.
+     */
+    CompletableFuture<Void> enter() {
+        CompletableFuture<Void> turn = new CompletableFuture<>();
+        synchronized (this) {
+            if (active < maxConcurrent) {
+                active++;
+                return CompletableFuture.completedFuture(null);
+            }
+            if (waiting.size() >= maxQueued) {
+                return null;
+            }
+            waiting.addLast(turn);
+        }
+
+        turn.orTimeout(maxWaitNanos, TimeUnit.NANOSECONDS).whenComplete((ignored, e) -> {
+            if (e != null) {
+                synchronized (this) {
+                    waiting.remove(turn);
+                }
+            }
+        });
+        return turn;
+    }
+
+    void exit() {
+        while (true) {
+            CompletableFuture<Void> next;
+            synchronized (this) {
+                next = waiting.pollFirst();
+                if (next == null) {
+                    active--;
+                    return;
+                }
+            }
+
+            // handed over as is, unless the caller gave up waiting meanwhile
+            if (next.complete(null)) {
+                return;
+            }
+        }
+    }
+
+    synchronized int queued() {
+        return waiting.size();
+    }
+}
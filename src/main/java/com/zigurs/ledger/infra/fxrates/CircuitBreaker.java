@@ -0,0 +1,102 @@
+package com.zigurs.ledger.infra.fxrates;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Consecutive failures circuit breaker.
+ * <p>
+ * Closed - calls are made, {@code failureThreshold} consecutive failures open the circuit. Open - calls are not made
+ * for {@code openDuration}, after which the circuit is half-open. Half-open - a single probe call is made at a time,
+ * its success closes the circuit, its failure opens it again.
+ */
+@Slf4j
+final class CircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Clock clock;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private Instant openedAt;
+    private boolean probing;
+
+    CircuitBreaker(int failureThreshold, @NonNull Duration openDuration, @NonNull Clock clock) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failure threshold must be positive");
+        }
+
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.clock = clock;
+    }
+
+    /**
+     * @return true if the call can be made, its outcome has to be reported with one of {@link #onSuccess()},
+     * {@link #onFailure()} or {@link #onSkipped()}
+     */
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case OPEN:
+                if (clock.instant().isBefore(openedAt.plus(openDuration))) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                probing = true;
+                return true;
+            case HALF_OPEN:
+                if (probing) {
+                    return false;
+                }
+                probing = true;
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            log.info("FX provider circuit closed");
+        }
+        state = State.CLOSED;
+        failures = 0;
+        probing = false;
+    }
+
+    synchronized void onFailure() {
+        probing = false;
+        if (state == State.OPEN) {
+            // admitted while closed, completed after the circuit opened
+            return;
+        }
+
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            log.warn("FX provider circuit open after {} consecutive failure(s)", failures);
+            state = State.OPEN;
+            openedAt = clock.instant();
+            failures = 0;
+        }
+    }
+
+    /**
+     * Call was admitted, but not made after all - counts as neither success nor failure.
+     */
+    synchronized void onSkipped() {
+        probing = false;
+    }
+
+    synchronized State state() {
+        return state;
+    }
+}
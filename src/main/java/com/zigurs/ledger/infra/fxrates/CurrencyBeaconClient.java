@@ -0,0 +1,90 @@
+package com.zigurs.ledger.infra.fxrates;
+
+import com.zigurs.ledger.api.CurrencyConverterService.CurrencyConversionException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Non-blocking CurrencyBeacon requests over the shared, connection-pooled {@link HttpClient} (see
+ * {@link ApiClientConfig}) - no thread waits for the provider while a request is in flight.
+ * <p>
+ * Every failure completes the future with a {@link CurrencyConversionException}, so that it counts as a provider
+ * failure (see {@link FxProviderGuard}) - except for requests rejected as invalid, completed with a
+ * {@link FxRequestRejectedException}.
+ */
+@Component
+public class CurrencyBeaconClient {
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Duration readTimeout;
+
+    public CurrencyBeaconClient(
+            @NonNull HttpClient httpClient,
+            @NonNull ObjectMapper objectMapper,
+            @Value("${currency_beakon_api_read_timeout}") int readTimeout
+    ) {
+        this.httpClient = httpClient;
+        this.objectMapper = objectMapper;
+        this.readTimeout = Duration.ofSeconds(readTimeout);
+    }
+
+    /**
+     * @param failure what failed, prefix of the exception message
+     * @return response body of the GET request, parsed
+     */
+    public <T> CompletableFuture<T> get(@NonNull String url, @NonNull Class<T> type, @NonNull String failure) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(readTimeout)
+                .header("Accept", "application/json")
+                .GET()
+                .build();
+
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .handle((response, e) -> {
+                    if (e != null) {
+                        throw new CompletionException(new CurrencyConversionException( // conversion failed due to network issue
+                                failure + ", provider unavailable"
+                        ));
+                    }
+
+                    if (response.statusCode() >= 400 && response.statusCode() <= 499 && response.statusCode() != 429) {
+                        throw new CompletionException(new FxRequestRejectedException( // invalid request, e.g. unknown currency
+                                failure + ", rejected by provider"
+                        ));
+                    }
+
+                    if (response.statusCode() < 200 || response.statusCode() > 299) {
+                        throw new CompletionException(new CurrencyConversionException( // conversion failed on server side
+                                failure + ", provider error"
+                        ));
+                    }
+
+                    return parse(response.body(), type, failure);
+                });
+    }
+
+    private <T> T parse(byte[] body, Class<T> type, String failure) {
+        try {
+            T parsed = body.length == 0 ? null : objectMapper.readValue(body, type);
+            if (parsed == null) {
+                throw new CompletionException(new CurrencyConversionException(failure + ", internal error"));
+            }
+            return parsed;
+        } catch (IOException e) {
+            throw new CompletionException(new CurrencyConversionException(failure + ", internal error"));
+        }
+    }
+}
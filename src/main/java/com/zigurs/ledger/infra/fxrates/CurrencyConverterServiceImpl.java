@@ -3,31 +3,61 @@ package com.zigurs.ledger.infra.fxrates;
 import com.zigurs.ledger.api.CurrencyConverterService;
 import com.zigurs.ledger.infra.fxrates.model.CurrencyBeaconResponse;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.NonNull;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 
+import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.math.MathContext;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Converts amounts locally, with rates from the periodically refreshed {@link FxRateTable}. Pairs it can't answer
+ * (no current table, or currencies missing from it) are fetched from CurrencyBeacon one by one and cached, see
+ * {@link FxRateCache}.
+ * <p>
+ * Provider requests don't block, see {@link #convertAsync} - {@link #convert} only waits for its outcome.
+ */
 @Service
 public class CurrencyConverterServiceImpl implements CurrencyConverterService {
 
     private final String currencyBeaconApiKey;
     private final String currencyBeaconBaseURL;
 
-    private final RestTemplate restTemplate;
+    private final CurrencyBeaconClient currencyBeaconClient;
+    private final FxProviderGuard providerGuard;
+    private final FxRateTable rateTable;
+    private final FxRateCache rates;
 
     public CurrencyConverterServiceImpl(
-            RestTemplate restTemplate,
+            CurrencyBeaconClient currencyBeaconClient,
+            MeterRegistry meterRegistry,
+            FxProviderGuard providerGuard,
+            FxRateTable rateTable,
             @Value("${currency_beacon_api_base_url}") String baseURL,
-            @Value("${currency_beakon_api_key}") String apiKey
+            @Value("${currency_beakon_api_key}") String apiKey,
+            @Value("${fx_rate_ttl_ms}") long rateTtlMs,
+            @Value("${fx_rate_stale_ms}") long rateStaleMs,
+            @Value("${fx_rate_fallback_max_age_ms}") long rateFallbackMaxAgeMs
     ) {
-        this.restTemplate = restTemplate;
+        this.currencyBeaconClient = currencyBeaconClient;
+        this.providerGuard = providerGuard;
+        this.rateTable = rateTable;
         currencyBeaconApiKey = apiKey;
         currencyBeaconBaseURL = baseURL;
+
+        this.rates = new FxRateCache(
+                this::fetchRate,
+                Duration.ofMillis(rateTtlMs),
+                Duration.ofMillis(rateStaleMs),
+                Duration.ofMillis(rateFallbackMaxAgeMs),
+                meterRegistry,
+                Clock.systemUTC()
+        );
     }
 
     @Override
@@ -35,39 +65,49 @@ public class CurrencyConverterServiceImpl implements CurrencyConverterService {
             @NonNull String fromCurrency,
             @NonNull String toCurrency,
             @NonNull BigInteger amount) throws CurrencyConversionException {
-        try {
-            String currencyBeaconRequest = String.format(
-                    "%s?api_key=%s&from=%s&to=%s&amount=%s",
-                    currencyBeaconBaseURL,
-                    currencyBeaconApiKey,
-                    fromCurrency,
-                    toCurrency,
-                    amount);
+        return CurrencyConverterService.join(convertAsync(fromCurrency, toCurrency, amount));
+    }
+
+    @Override
+    public CompletableFuture<CurrencyConversionResult> convertAsync(
+            @NonNull String fromCurrency,
+            @NonNull String toCurrency,
+            @NonNull BigInteger amount) {
+        CompletableFuture<BigDecimal> rate = rateTable.rate(fromCurrency, toCurrency)
+                .map(CompletableFuture::completedFuture)
+                .orElseGet(() -> rates.rateAsync(fromCurrency, toCurrency));
+
+        // truncated, same as amounts converted by the provider used to be
+        return rate.thenApply(value -> new CurrencyConversionResult(
+                fromCurrency,
+                toCurrency,
+                new BigDecimal(amount).multiply(value).toBigInteger()
+        ));
+    }
 
-            ResponseEntity<CurrencyBeaconResponse> responseEntity = restTemplate.getForEntity(currencyBeaconRequest, CurrencyBeaconResponse.class);
-            if (responseEntity.getStatusCode().is2xxSuccessful()) {
-                CurrencyBeaconResponse response = responseEntity.getBody();
+    /**
+     * Rate of the pair, as the value of a single unit converted by the provider.
+     */
+    private CompletableFuture<BigDecimal> fetchRate(String fromCurrency, String toCurrency) {
+        String failure = String.format("unable to convert %s into %s", fromCurrency, toCurrency);
+        String currencyBeaconRequest = String.format(
+                "%s?api_key=%s&from=%s&to=%s&amount=%s",
+                currencyBeaconBaseURL,
+                currencyBeaconApiKey,
+                fromCurrency,
+                toCurrency,
+                BigInteger.ONE);
 
-                if (response == null) {
-                    throw new CurrencyConversionException( // conversion failed on server side
-                            String.format("unable to convert %s into %s, internal error", fromCurrency, toCurrency)
-                    );
-                }
+        return providerGuard.call(FxProviderGuard.Endpoint.CONVERT, failure, () -> currencyBeaconClient
+                .get(currencyBeaconRequest, CurrencyBeaconResponse.class, failure)
+                .thenApply(response -> {
+                    if (response.amount().signum() <= 0 || response.value().signum() <= 0) {
+                        throw new CurrencyConversionException( // nonsense rate, better not to cache it
+                                failure + ", invalid rate"
+                        );
+                    }
 
-                return new CurrencyConversionResult(
-                        response.from(),
-                        response.to(),
-                        response.value().toBigInteger()
-                );
-            } else {
-                throw new CurrencyConversionException( // conversion failed on server side
-                        String.format("unable to convert %s into %s, provider error", fromCurrency, toCurrency)
-                );
-            }
-        } catch (RestClientException e) {
-            throw new CurrencyConversionException( // conversion failed due to network issue
-                    String.format("unable to convert %s into %s, provider unavailable", fromCurrency, toCurrency)
-            );
-        }
+                    return response.value().divide(response.amount(), MathContext.DECIMAL64);
+                }));
     }
 }
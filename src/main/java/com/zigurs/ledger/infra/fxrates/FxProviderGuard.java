@@ -0,0 +1,146 @@
+package com.zigurs.ledger.infra.fxrates;
+
+import com.zigurs.ledger.api.CurrencyConverterService.CurrencyConversionException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.NonNull;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Every CurrencyBeacon request goes through a {@link CircuitBreaker} and a {@link Bulkhead} - during a provider
+ * brownout callers fail fast instead of each one waiting for the read timeout, and no more than a bounded number of
+ * requests are ever in flight to the provider.
+ * <p>
+ * Every {@link Endpoint} has a circuit of its own - failures of the periodic table refresh don't fail conversions
+ * fast, and the other way round. The bulkhead is shared.
+ * <p>
+ * Only {@link CurrencyConversionException}s of calls count as provider failures, other than requests rejected as
+ * invalid ({@link FxRequestRejectedException}) - those tell nothing about the provider's health either way.
+ * <p>
+ * {@code ledger.fx.provider.rejected} - calls not made, by reason (open circuit or busy bulkhead)<br>
+ * {@code ledger.fx.provider.circuit.open} - 1 while the circuit of the endpoint is open or half-open<br>
+ * {@code ledger.fx.provider.queued} - callers waiting for their turn
+ */
+@Component
+public class FxProviderGuard {
+
+    public static final String REJECTED = "ledger.fx.provider.rejected";
+    public static final String CIRCUIT_OPEN = "ledger.fx.provider.circuit.open";
+    public static final String QUEUED = "ledger.fx.provider.queued";
+
+    /**
+     * CurrencyBeacon endpoints, failing independently.
+     */
+    public enum Endpoint {
+        CONVERT, LATEST
+    }
+
+    private final Map<Endpoint, CircuitBreaker> circuitBreakers = new EnumMap<>(Endpoint.class);
+    private final Bulkhead bulkhead;
+    private final MeterRegistry meterRegistry;
+
+    public FxProviderGuard(
+            @NonNull MeterRegistry meterRegistry,
+            @Value("${fx_circuit_failure_threshold}") int failureThreshold,
+            @Value("${fx_circuit_open_ms}") long openMs,
+            @Value("${fx_bulkhead_max_concurrent}") int maxConcurrent,
+            @Value("${fx_bulkhead_max_queued}") int maxQueued,
+            @Value("${fx_bulkhead_max_wait_ms}") long maxWaitMs
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.bulkhead = new Bulkhead(maxConcurrent, maxQueued, Duration.ofMillis(maxWaitMs));
+
+        for (Endpoint endpoint : Endpoint.values()) {
+            CircuitBreaker circuitBreaker = new CircuitBreaker(failureThreshold, Duration.ofMillis(openMs), Clock.systemUTC());
+            circuitBreakers.put(endpoint, circuitBreaker);
+            meterRegistry.gauge(CIRCUIT_OPEN, Tags.of("endpoint", endpoint.name().toLowerCase()), circuitBreaker,
+                    breaker -> breaker.state() == CircuitBreaker.State.CLOSED ? 0 : 1);
+        }
+        meterRegistry.gauge(QUEUED, bulkhead, Bulkhead::queued);
+    }
+
+    /**
+     * @param endpoint endpoint called, whose circuit the outcome counts towards
+     * @param failure  what failed, prefix of the exception message if the call is not made
+     * @param call     starts the call
+     * @return outcome of the call, or a {@link CurrencyConversionException} if it is not made
+     */
+    public <T> CompletableFuture<T> call(@NonNull Endpoint endpoint, @NonNull String failure, @NonNull Supplier<CompletableFuture<T>> call) {
+        CircuitBreaker circuitBreaker = circuitBreakers.get(endpoint);
+        if (!circuitBreaker.tryAcquire()) {
+            meterRegistry.counter(REJECTED, "reason", "open").increment();
+            return CompletableFuture.failedFuture(new CurrencyConversionException(failure + ", provider unavailable (circuit open)"));
+        }
+
+        CompletableFuture<Void> turn = bulkhead.enter();
+        if (turn == null) {
+            return CompletableFuture.failedFuture(busy(circuitBreaker, failure));
+        }
+
+        CompletableFuture<T> outcome = new CompletableFuture<>();
+        turn.whenComplete((ignored, timedOut) -> {
+            if (timedOut != null) {
+                // not its turn within max wait
+                outcome.completeExceptionally(busy(circuitBreaker, failure));
+                return;
+            }
+
+            CompletableFuture<T> started;
+            try {
+                started = call.get();
+            } catch (RuntimeException | Error e) {
+                started = CompletableFuture.failedFuture(e);
+            }
+
+            started.whenComplete((value, e) -> {
+                Throwable cause = unwrap(e);
+                if (cause == null) {
+                    circuitBreaker.onSuccess();
+                } else if (cause instanceof FxRequestRejectedException) {
+                    // the request's fault
+                    circuitBreaker.onSkipped();
+                } else if (cause instanceof CurrencyConversionException) {
+                    circuitBreaker.onFailure();
+                } else {
+                    // not the provider's fault
+                    circuitBreaker.onSkipped();
+                }
+                bulkhead.exit();
+
+                if (cause == null) {
+                    outcome.complete(value);
+                } else {
+                    outcome.completeExceptionally(cause);
+                }
+            });
+        });
+        return outcome;
+    }
+
+    private CurrencyConversionException busy(CircuitBreaker circuitBreaker, String failure) {
+        circuitBreaker.onSkipped();
+        meterRegistry.counter(REJECTED, "reason", "busy").increment();
+        return new CurrencyConversionException(failure + ", provider busy");
+    }
+
+    /**
+     * @return exception the future was completed with, rather than the {@link CompletionException} dependent stages
+     * get it wrapped into
+     */
+    static Throwable unwrap(Throwable e) {
+        if (e instanceof CompletionException && e.getCause() != null) {
+            return e.getCause();
+        }
+        return e;
+    }
+}
@@ -0,0 +1,167 @@
+package com.zigurs.ledger.infra.fxrates;
+
+import com.zigurs.ledger.api.CurrencyConverterService;
+import com.zigurs.ledger.api.CurrencyConverterService.CurrencyConversionException;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+/**
+ * FX rates per currency pair, kept for {@code ttl} since they were fetched.
+ * <p>
+ * Rates older than that, but still within {@code staleWindow} after it, are served as is while a single background
+ * refresh of the pair is started (stale-while-revalidate). Only lookups of rates older than both wait for the fetch.
+ * A failed background refresh keeps the stale rate, the next lookup tries again.
+ * <p>
+ * Concurrent fetches of the same pair (e.g. a burst of transfers right after its rate expired) are coalesced into a
+ * single provider request, all callers get its rate or its exception.
+ * <p>
+ * If a fetch fails (or is not even made, see {@link FxProviderGuard}), the last known rate of the pair is used instead
+ * as long as it is not older than {@code fallbackMaxAge} - zero disables the fallback.
+ * <p>
+ * {@code ledger.fx.rate.lookups} - lookups by result (hit, stale, miss or fallback)<br>
+ * {@code ledger.fx.rate.age} - age of rates served from the cache<br>
+ * {@code ledger.fx.rate.refresh.failures} - failed background refreshes
+ */
+@Slf4j
+public class FxRateCache {
+
+    public static final String LOOKUPS = "ledger.fx.rate.lookups";
+    public static final String AGE = "ledger.fx.rate.age";
+    public static final String REFRESH_FAILURES = "ledger.fx.rate.refresh.failures";
+
+    private final BiFunction<String, String, CompletableFuture<BigDecimal>> loader;
+    private final Duration ttl;
+    private final Duration staleUntil;
+    private final Duration fallbackMaxAge;
+    private final MeterRegistry meterRegistry;
+    private final Clock clock;
+
+    // a few hundred pairs at most, never evicted
+    private final Map<Pair, Rate> rates = new ConcurrentHashMap<>();
+    private final SingleFlight<Pair, Rate> fetches = new SingleFlight<>();
+
+    /**
+     * @param loader starts fetching the rate of (from, to) pair from the provider
+     */
+    public FxRateCache(
+            @NonNull BiFunction<String, String, CompletableFuture<BigDecimal>> loader,
+            @NonNull Duration ttl,
+            @NonNull Duration staleWindow,
+            @NonNull Duration fallbackMaxAge,
+            @NonNull MeterRegistry meterRegistry,
+            @NonNull Clock clock
+    ) {
+        if (ttl.isNegative() || staleWindow.isNegative() || fallbackMaxAge.isNegative()) {
+            throw new IllegalArgumentException("ttl, stale window and fallback max age must not be negative");
+        }
+
+        this.loader = loader;
+        this.ttl = ttl;
+        this.staleUntil = ttl.plus(staleWindow);
+        this.fallbackMaxAge = fallbackMaxAge;
+        this.meterRegistry = meterRegistry;
+        this.clock = clock;
+    }
+
+    private record Pair(String from, String to) {
+    }
+
+    private static final class Rate {
+
+        private final BigDecimal value;
+        private final Instant fetchedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Rate(BigDecimal value, Instant fetchedAt) {
+            this.value = value;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    /**
+     * @return amount of {@code to} currency one unit of {@code from} currency is worth
+     */
+    public BigDecimal rate(@NonNull String from, @NonNull String to) throws CurrencyConversionException {
+        return CurrencyConverterService.join(rateAsync(from, to));
+    }
+
+    /**
+     * Same as {@link #rate}, completed right away unless the rate has to be fetched.
+     */
+    public CompletableFuture<BigDecimal> rateAsync(@NonNull String from, @NonNull String to) {
+        Pair pair = new Pair(from, to);
+
+        Rate rate = rates.get(pair);
+        if (rate != null) {
+            Duration age = Duration.between(rate.fetchedAt, clock.instant());
+            if (age.compareTo(ttl) < 0) {
+                served("hit", age);
+                return CompletableFuture.completedFuture(rate.value);
+            }
+            if (age.compareTo(staleUntil) < 0) {
+                served("stale", age);
+                refresh(pair, rate);
+                return CompletableFuture.completedFuture(rate.value);
+            }
+        }
+
+        return load(pair).handle((loaded, e) -> {
+            Throwable failure = FxProviderGuard.unwrap(e);
+            if (failure instanceof CurrencyConversionException && rate != null) {
+                Duration age = Duration.between(rate.fetchedAt, clock.instant());
+                if (age.compareTo(fallbackMaxAge) < 0) {
+                    log.warn("serving last known {} {} rate: {}", pair.from(), pair.to(), failure.getMessage());
+                    served("fallback", age);
+                    return rate.value;
+                }
+            }
+
+            meterRegistry.counter(LOOKUPS, "result", "miss").increment();
+            if (failure != null) {
+                throw new CompletionException(failure);
+            }
+            return loaded.value;
+        });
+    }
+
+    private void served(String result, Duration age) {
+        meterRegistry.counter(LOOKUPS, "result", result).increment();
+        meterRegistry.timer(AGE).record(age);
+    }
+
+    private void refresh(Pair pair, Rate stale) {
+        // a single refresh per stale rate, replaced once it succeeds
+        if (!stale.refreshing.compareAndSet(false, true)) {
+            return;
+        }
+
+        load(pair).whenComplete((refreshed, e) -> {
+            if (e != null) {
+                stale.refreshing.set(false);
+                meterRegistry.counter(REFRESH_FAILURES).increment();
+                log.warn("unable to refresh {} {} rate, serving stale one", pair.from(), pair.to(), FxProviderGuard.unwrap(e));
+            }
+        });
+    }
+
+    private CompletableFuture<Rate> load(Pair pair) {
+        return fetches.run(pair, () -> loader.apply(pair.from(), pair.to()).thenApply(value -> {
+            Rate rate = new Rate(value, clock.instant());
+            rates.put(pair, rate);
+            return rate;
+        }));
+    }
+}
@@ -0,0 +1,114 @@
+package com.zigurs.ledger.infra.fxrates;
+
+import com.zigurs.ledger.api.CurrencyConverterService;
+import com.zigurs.ledger.api.CurrencyConverterService.CurrencyConversionException;
+import com.zigurs.ledger.infra.fxrates.model.CurrencyBeaconLatestResponse;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rates of all currency pairs, from the full table of latest rates against {@code fx_rate_table_base} - a single
+ * provider request per refresh, every {@code fx_rate_table_refresh_interval_ms}.
+ * <p>
+ * Every refresh builds a new {@link RateMatrix} and swaps it in, lookups never wait for a refresh. A table older than
+ * {@code fx_rate_table_max_age_ms} (e.g. the provider being down for a while) is not used at all.
+ */
+@Slf4j
+@Component
+public class FxRateTable {
+
+    private final CurrencyBeaconClient currencyBeaconClient;
+    private final FxProviderGuard providerGuard;
+    private final MeterRegistry meterRegistry;
+    private final String currencyBeaconLatestURL;
+    private final String currencyBeaconApiKey;
+    private final String base;
+    private final Duration maxAge;
+    private final Clock clock;
+
+    private final AtomicReference<RateMatrix> matrix = new AtomicReference<>();
+
+    public FxRateTable(
+            @NonNull CurrencyBeaconClient currencyBeaconClient,
+            @NonNull FxProviderGuard providerGuard,
+            @NonNull MeterRegistry meterRegistry,
+            @NonNull @Value("${currency_beacon_api_latest_url}") String latestURL,
+            @NonNull @Value("${currency_beakon_api_key}") String apiKey,
+            @NonNull @Value("${fx_rate_table_base}") String base,
+            @Value("${fx_rate_table_max_age_ms}") long maxAgeMs,
+            @NonNull Clock clock
+    ) {
+        this.currencyBeaconClient = currencyBeaconClient;
+        this.providerGuard = providerGuard;
+        this.meterRegistry = meterRegistry;
+        this.currencyBeaconLatestURL = latestURL;
+        this.currencyBeaconApiKey = apiKey;
+        this.base = base;
+        this.maxAge = Duration.ofMillis(maxAgeMs);
+        this.clock = clock;
+    }
+
+    @Scheduled(fixedDelayString = "${fx_rate_table_refresh_interval_ms}")
+    public void refresh() {
+        if (base.isBlank()) {
+            // disabled, rates of pairs are fetched one by one
+            return;
+        }
+
+        try {
+            RateMatrix refreshed = fetch();
+            matrix.set(refreshed);
+            log.debug("refreshed FX rates of {} currencies against {}", refreshed.size(), base);
+        } catch (RuntimeException e) {
+            // next round will try again, current table is used until it gets too old
+            log.error("unable to refresh FX rate table", e);
+        }
+    }
+
+    /**
+     * @return rate of the pair, empty if there is no current table or either currency is not in it
+     */
+    public Optional<BigDecimal> rate(@NonNull String from, @NonNull String to) {
+        RateMatrix current = matrix.get();
+        if (current == null || Duration.between(current.fetchedAt(), clock.instant()).compareTo(maxAge) > 0) {
+            return Optional.empty();
+        }
+
+        Optional<BigDecimal> rate = current.rate(from, to);
+        if (rate.isPresent()) {
+            meterRegistry.counter(FxRateCache.LOOKUPS, "result", "table").increment();
+        }
+        return rate;
+    }
+
+    private RateMatrix fetch() {
+        String failure = "unable to fetch rates against " + base;
+        String currencyBeaconRequest = String.format(
+                "%s?api_key=%s&base=%s",
+                currencyBeaconLatestURL,
+                currencyBeaconApiKey,
+                base);
+
+        // scheduler thread, nothing else to do meanwhile
+        return CurrencyConverterService.join(providerGuard.call(FxProviderGuard.Endpoint.LATEST, failure, () -> currencyBeaconClient
+                .get(currencyBeaconRequest, CurrencyBeaconLatestResponse.class, failure)
+                .thenApply(response -> {
+                    if (!base.equals(response.base())) {
+                        throw new CurrencyConversionException(failure + ", got rates against " + response.base());
+                    }
+
+                    return RateMatrix.triangulate(base, response.rates(), clock.instant());
+                })));
+    }
+}
@@ -0,0 +1,14 @@
+package com.zigurs.ledger.infra.fxrates;
+
+import com.zigurs.ledger.api.CurrencyConverterService.CurrencyConversionException;
+
+/**
+ * Request rejected by the provider as invalid (4xx other than 429), e.g. an unknown currency - the request's fault
+ * rather than the provider's, so it neither opens nor closes the circuit (see {@link FxProviderGuard}).
+ */
+class FxRequestRejectedException extends CurrencyConversionException {
+
+    FxRequestRejectedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,89 @@
+package com.zigurs.ledger.infra.fxrates;
+
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Immutable rates between every pair of currencies of a rate table, derived from their rates against a single base
+ * currency (triangulation) when built - lookups are a couple of map gets and an array index.
+ */
+public final class RateMatrix {
+
+    private final Map<String, Integer> indexes;
+    // rates[from * size + to]
+    private final BigDecimal[] rates;
+    private final Instant fetchedAt;
+
+    private RateMatrix(Map<String, Integer> indexes, BigDecimal[] rates, Instant fetchedAt) {
+        this.indexes = indexes;
+        this.rates = rates;
+        this.fetchedAt = fetchedAt;
+    }
+
+    /**
+     * @param base      base currency of the table
+     * @param baseRates amount of each currency one unit of base is worth, non-positive rates are left out
+     * @param fetchedAt when the table was fetched from the provider
+     */
+    public static RateMatrix triangulate(
+            @NonNull String base,
+            @NonNull Map<String, BigDecimal> baseRates,
+            @NonNull Instant fetchedAt
+    ) {
+        List<String> currencies = new ArrayList<>();
+        List<BigDecimal> againstBase = new ArrayList<>();
+        currencies.add(base);
+        againstBase.add(BigDecimal.ONE);
+
+        baseRates.forEach((currency, rate) -> {
+            if (!currency.equals(base) && rate != null && rate.signum() > 0) {
+                currencies.add(currency);
+                againstBase.add(rate);
+            }
+        });
+
+        int size = currencies.size();
+        Map<String, Integer> indexes = new HashMap<>(size * 2);
+        BigDecimal[] rates = new BigDecimal[size * size];
+        for (int from = 0; from < size; from++) {
+            indexes.put(currencies.get(from), from);
+            for (int to = 0; to < size; to++) {
+                // from -> base -> to
+                rates[from * size + to] = from == to
+                        ? BigDecimal.ONE
+                        : againstBase.get(to).divide(againstBase.get(from), MathContext.DECIMAL64);
+            }
+        }
+
+        return new RateMatrix(Map.copyOf(indexes), rates, fetchedAt);
+    }
+
+    /**
+     * @return amount of {@code to} currency one unit of {@code from} currency is worth, empty if either currency is
+     * not in the table
+     */
+    public Optional<BigDecimal> rate(@NonNull String from, @NonNull String to) {
+        Integer fromIndex = indexes.get(from);
+        Integer toIndex = indexes.get(to);
+        if (fromIndex == null || toIndex == null) {
+            return Optional.empty();
+        }
+        return Optional.of(rates[fromIndex * indexes.size() + toIndex]);
+    }
+
+    public Instant fetchedAt() {
+        return fetchedAt;
+    }
+
+    public int size() {
+        return indexes.size();
+    }
+}
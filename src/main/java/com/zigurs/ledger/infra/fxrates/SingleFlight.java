@@ -0,0 +1,48 @@
+package com.zigurs.ledger.infra.fxrates;
+
+import lombok.NonNull;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key - the first caller starts the call, callers arriving while it is in
+ * flight share its outcome, be it a result or an exception. Nothing is kept once the call completes, the next caller
+ * starts a new one.
+ */
+final class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @return outcome of the call, a copy per caller - cancelling it doesn't affect the others
+     */
+    CompletableFuture<V> run(@NonNull K key, @NonNull Supplier<CompletableFuture<V>> call) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            return existing.copy();
+        }
+
+        CompletableFuture<V> started;
+        try {
+            started = call.get();
+        } catch (RuntimeException | Error e) {
+            started = CompletableFuture.failedFuture(e);
+        }
+
+        started.whenComplete((value, e) -> {
+            // gone before anyone is told, so that callers reacting to the outcome start a new call
+            inFlight.remove(key, flight);
+            if (e == null) {
+                flight.complete(value);
+            } else {
+                // completed as the first caller would get it
+                flight.completeExceptionally(FxProviderGuard.unwrap(e));
+            }
+        });
+        return flight.copy();
+    }
+}
@@ -0,0 +1,15 @@
+package com.zigurs.ledger.infra.fxrates.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.NonNull;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Latest rates of all currencies against the base currency, i.e. amount of each currency one unit of base is worth.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record CurrencyBeaconLatestResponse(@NonNull String base,
+                                           @NonNull Map<String, BigDecimal> rates) {
+}
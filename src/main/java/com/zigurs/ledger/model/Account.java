@@ -1,10 +1,11 @@
 package com.zigurs.ledger.model;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
-import lombok.AllArgsConstructor;
+import jakarta.persistence.Version;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -16,7 +17,6 @@ import java.util.UUID;
 @Getter
 @Entity
 @Table(name = "accounts")
-@AllArgsConstructor
 @NoArgsConstructor
 public class Account {
 
@@ -31,4 +31,19 @@ public class Account {
 
     @Setter
     private BigInteger balance;
+
+    // Bumped on every balance change, incl. plain SQL updates
+    @Version
+    private Long version;
+
+    // Number of sub-balance slots of a hot account, 0 for regular accounts. Managed with plain SQL only.
+    @Column(insertable = false, updatable = false)
+    private int slots;
+
+    public Account(UUID id, Client client, String currency, BigInteger balance) {
+        this.id = id;
+        this.client = client;
+        this.currency = currency;
+        this.balance = balance;
+    }
 }
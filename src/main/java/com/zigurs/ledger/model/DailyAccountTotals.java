@@ -0,0 +1,64 @@
+package com.zigurs.ledger.model;
+
+import lombok.NonNull;
+
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Completed transactions of an account within a single day (UTC).
+ *
+ * Balances are the running balances recorded with transactions of the day. Those of hot accounts are approximate
+ * (a snapshot of the account and all of its slots, including changes committed concurrently), so are their lowest
+ * and highest balances. Counts and sums are exact for every account.
+ *
+ * @param debitSum   sum of debited amounts, positive
+ * @param minBalance lowest running balance after a transaction of the day
+ * @param maxBalance highest running balance after a transaction of the day
+ */
+public record DailyAccountTotals(@NonNull LocalDate day,
+                                 long debitCount,
+                                 @NonNull BigInteger debitSum,
+                                 long creditCount,
+                                 @NonNull BigInteger creditSum,
+                                 @NonNull BigInteger minBalance,
+                                 @NonNull BigInteger maxBalance) {
+
+    /**
+     * Totals of a single completed entry.
+     */
+    public static DailyAccountTotals of(@NonNull LedgerEntry entry) {
+        LocalDate day = LocalDate.ofInstant(entry.getTimestamp(), ZoneOffset.UTC);
+        boolean debit = entry.getAmount().signum() < 0;
+
+        return new DailyAccountTotals(
+                day,
+                debit ? 1 : 0,
+                debit ? entry.getAmount().negate() : BigInteger.ZERO,
+                debit ? 0 : 1,
+                debit ? BigInteger.ZERO : entry.getAmount(),
+                entry.getBalance(),
+                entry.getBalance()
+        );
+    }
+
+    /**
+     * Totals of both, of the same day.
+     */
+    public DailyAccountTotals plus(@NonNull DailyAccountTotals other) {
+        if (!day.equals(other.day)) {
+            throw new IllegalArgumentException("totals of different days");
+        }
+
+        return new DailyAccountTotals(
+                day,
+                debitCount + other.debitCount,
+                debitSum.add(other.debitSum),
+                creditCount + other.creditCount,
+                creditSum.add(other.creditSum),
+                minBalance.min(other.minBalance),
+                maxBalance.max(other.maxBalance)
+        );
+    }
+}
@@ -0,0 +1,40 @@
+package com.zigurs.ledger.model;
+
+import lombok.NonNull;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Read-only projection of a {@link LedgerEntry} - just the columns needed to present account history.
+ * <p>
+ * Selected directly into this record, so history reads neither instantiate managed entities nor touch accounts,
+ * clients or transactions they reference (only their ids).
+ */
+public record HistoryEntry(@NonNull UUID transactionId,
+                           @NonNull UUID accountId,
+                           @NonNull UUID counterpartyAccountId,
+                           @NonNull Instant timestamp,
+                           @NonNull TransactionStatus status,
+                           @NonNull BigInteger amount,
+                           @NonNull BigInteger balance,
+                           @NonNull String description) {
+
+    public static HistoryEntry of(@NonNull LedgerEntry entry) {
+        return new HistoryEntry(
+                entry.getTransactionId(),
+                entry.getAccountId(),
+                entry.getCounterpartyAccountId(),
+                entry.getTimestamp(),
+                entry.getStatus(),
+                entry.getAmount(),
+                entry.getBalance(),
+                entry.getDescription()
+        );
+    }
+
+    public boolean isDebit() {
+        return amount.signum() < 0;
+    }
+}
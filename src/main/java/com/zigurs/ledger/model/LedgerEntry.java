@@ -0,0 +1,60 @@
+package com.zigurs.ledger.model;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * One side of a {@link Transaction} from the perspective of a single account - every transaction has a debit entry
+ * for its source account and a credit entry for its destination account.
+ * <p>
+ * Carries everything needed to present account history, so history is read without touching transactions (see
+ * {@link HistoryEntry}). Created together with the transaction only, and stored with plain JDBC into time partitioned
+ * tables - see {@link com.zigurs.ledger.data.LedgerEntriesRepository}.
+ */
+@Getter
+public class LedgerEntry {
+
+    private final UUID id;
+
+    // id of a transaction saved with JPA is only known once it is persisted
+    @Getter(AccessLevel.NONE)
+    private final Transaction transaction;
+
+    private final UUID accountId;
+    private final UUID counterpartyAccountId;
+
+    // signed, negative for debits
+    private final BigInteger amount;
+
+    // running balance of the account
+    private final BigInteger balance;
+
+    LedgerEntry(Transaction transaction, Account account, Account counterpartyAccount, BigInteger amount, BigInteger balance) {
+        this.id = UUID.randomUUID();
+        this.transaction = transaction;
+        this.accountId = account.getId();
+        this.counterpartyAccountId = counterpartyAccount.getId();
+        this.amount = amount;
+        this.balance = balance;
+    }
+
+    public UUID getTransactionId() {
+        return transaction.getId();
+    }
+
+    public Instant getTimestamp() {
+        return transaction.getTimestamp();
+    }
+
+    public TransactionStatus getStatus() {
+        return transaction.getStatus();
+    }
+
+    public String getDescription() {
+        return transaction.getDescription();
+    }
+}
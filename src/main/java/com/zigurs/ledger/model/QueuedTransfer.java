@@ -0,0 +1,59 @@
+package com.zigurs.ledger.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import org.hibernate.annotations.UuidGenerator;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Transfer accepted for asynchronous execution.
+ */
+@Getter
+@Entity
+@Table(name = "transfer_requests")
+public class QueuedTransfer {
+
+    @Id
+    @UuidGenerator
+    private UUID id;
+    private QueuedTransferStatus status;
+    private Instant created;
+    private Instant updated;
+    private UUID sourceAccountId;
+    private UUID destinationAccountId;
+    private String currency;
+    private BigInteger amount;
+    private UUID transactionId;
+    private String error;
+    // executions put back to PENDING after a transient failure so far, and when the next one is due (null if now)
+    private int attempts;
+    private Instant notBefore;
+
+    public QueuedTransfer() {
+
+    }
+
+    public QueuedTransfer(UUID id, QueuedTransferStatus status, Instant created, Instant updated, UUID sourceAccountId, UUID destinationAccountId, String currency, BigInteger amount, UUID transactionId, String error) {
+        this(id, status, created, updated, sourceAccountId, destinationAccountId, currency, amount, transactionId, error, 0, null);
+    }
+
+    public QueuedTransfer(UUID id, QueuedTransferStatus status, Instant created, Instant updated, UUID sourceAccountId, UUID destinationAccountId, String currency, BigInteger amount, UUID transactionId, String error, int attempts, Instant notBefore) {
+        this.id = id;
+        this.status = status;
+        this.created = created;
+        this.updated = updated;
+        this.sourceAccountId = sourceAccountId;
+        this.destinationAccountId = destinationAccountId;
+        this.currency = currency;
+        this.amount = amount;
+        this.transactionId = transactionId;
+        this.error = error;
+        this.attempts = attempts;
+        this.notBefore = notBefore;
+    }
+}
@@ -0,0 +1,8 @@
+package com.zigurs.ledger.model;
+
+public enum QueuedTransferStatus {
+    PENDING,
+    PROCESSING,
+    COMPLETED,
+    FAILED
+}
@@ -4,11 +4,14 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import lombok.Getter;
 import org.hibernate.annotations.UuidGenerator;
 
 import java.math.BigInteger;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 @Getter
@@ -30,12 +33,23 @@ public class Transaction {
     private BigInteger destinationAmount;
     private BigInteger destinationBalance;
     private String description;
+    // queued transfer request (if any) executed by the transaction, unique across transactions
+    private UUID requestId;
+
+    // Double-entry view of the transaction, stored together with it by TransactionsRepository and
+    // TransactionsBatchRepository. Never loaded back - history reads entries directly.
+    @Transient
+    private List<LedgerEntry> entries;
 
     public Transaction() {
 
     }
 
     public Transaction(UUID id, TransactionStatus status, Instant timestamp, Account sourceAccount, BigInteger sourceAmount, BigInteger sourceBalance, Account destinationAccount, BigInteger destinationAmount, BigInteger destinationBalance, String description) {
+        this(id, status, timestamp, sourceAccount, sourceAmount, sourceBalance, destinationAccount, destinationAmount, destinationBalance, description, null);
+    }
+
+    public Transaction(UUID id, TransactionStatus status, Instant timestamp, Account sourceAccount, BigInteger sourceAmount, BigInteger sourceBalance, Account destinationAccount, BigInteger destinationAmount, BigInteger destinationBalance, String description, UUID requestId) {
         this.id = id;
         this.status = status;
         this.timestamp = timestamp;
@@ -46,6 +60,12 @@ public class Transaction {
         this.destinationAmount = destinationAmount;
         this.destinationBalance = destinationBalance;
         this.description = description;
+        this.requestId = requestId;
+
+        this.entries = new ArrayList<>(List.of(
+                new LedgerEntry(this, sourceAccount, destinationAccount, sourceAmount.negate(), sourceBalance),
+                new LedgerEntry(this, destinationAccount, sourceAccount, destinationAmount, destinationBalance)
+        ));
     }
 
 }
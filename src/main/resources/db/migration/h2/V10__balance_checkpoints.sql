@@ -0,0 +1,24 @@
+-- Balance of every account active within a checkpoint period, as of the end of the period (exclusive) -
+-- accounts without transactions in a period keep their previous checkpoint.
+create table balance_checkpoints
+(
+    account_id    uuid                     not null,
+    checkpoint_at timestamp with time zone not null,
+    balance       numeric(38, 0)           not null,
+    primary key (account_id, checkpoint_at)
+);
+
+-- Single row, end of the last period checkpoints were written for (null until the first run)
+create table balance_checkpoint_progress
+(
+    id                 tinyint                  not null,
+    checkpointed_until timestamp with time zone,
+    primary key (id)
+);
+
+insert into balance_checkpoint_progress(id, checkpointed_until)
+values (1, null);
+
+-- Checkpoints walk transactions in time order, one period at a time
+create index transactions_timestamp_idx
+    on transactions (timestamp, id);
@@ -0,0 +1,42 @@
+-- Completed transactions of every account per day (UTC), kept up to date as transactions are written.
+-- Every account and day is spread across several stripes (rows), so that concurrent transfers of the same
+-- (e.g. hot) account don't serialize on a single row - totals of a day are the sum of its stripes.
+create table daily_account_totals
+(
+    account_id   uuid           not null,
+    day          date           not null,
+    stripe       smallint       not null,
+    debit_count  bigint         not null,
+    -- sum of debited amounts, positive
+    debit_sum    numeric(38, 0) not null,
+    credit_count bigint         not null,
+    credit_sum   numeric(38, 0) not null,
+    -- lowest and highest running balance of the account after its transactions of the day
+    min_balance  numeric(38, 0) not null,
+    max_balance  numeric(38, 0) not null,
+    primary key (account_id, day, stripe)
+);
+
+-- Transactions so far, from both sides
+insert into daily_account_totals(account_id, day, stripe, debit_count, debit_sum, credit_count, credit_sum, min_balance, max_balance)
+select account_id, day, 0, sum(debit_count), sum(debit_sum), sum(credit_count), sum(credit_sum), min(balance), max(balance)
+from (select source_account_id                              as account_id,
+             cast(timestamp at time zone 'UTC' as date)     as day,
+             1                                              as debit_count,
+             source_amount                                  as debit_sum,
+             0                                              as credit_count,
+             0                                              as credit_sum,
+             source_balance                                 as balance
+      from transactions
+      where status = 0
+      union all
+      select destination_account_id,
+             cast(timestamp at time zone 'UTC' as date),
+             0,
+             0,
+             1,
+             destination_amount,
+             destination_balance
+      from transactions
+      where status = 0) entries
+group by account_id, day;
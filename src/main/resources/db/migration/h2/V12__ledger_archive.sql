@@ -0,0 +1,10 @@
+-- Partitions moved to segment files are read from there, the table is dropped a while later (once every
+-- instance stopped reading it).
+alter table ledger_partitions
+    add column segment varchar(255);
+
+alter table ledger_partitions
+    add column archived_at timestamp with time zone;
+
+alter table ledger_partitions
+    add column dropped_at timestamp with time zone;
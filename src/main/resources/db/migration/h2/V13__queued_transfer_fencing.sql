@@ -0,0 +1,14 @@
+-- Queued transfer request executed by the transaction, written together with it. Unique, so that a request
+-- claimed again (e.g. by the reaper while the first attempt is still running) can't be executed twice.
+alter table transactions
+    add column request_id uuid;
+
+create unique index transactions_request_idx on transactions (request_id);
+
+-- Requests put back to PENDING after a transient failure (FX provider unavailable) are retried with backoff
+alter table transfer_requests
+    add column attempts int default 0 not null;
+
+-- null if due right away
+alter table transfer_requests
+    add column not_before timestamp with time zone;
@@ -0,0 +1,3 @@
+-- Optimistic locking support, incremented on every balance update
+alter table accounts
+    add column version bigint default 0 not null;
@@ -0,0 +1,29 @@
+-- Durable queue of submitted (not yet executed) transfers
+create table transfer_requests
+(
+    id                     uuid                                   not null,
+    -- stored as enum ordinal (PENDING, PROCESSING, COMPLETED, FAILED)
+    status                 tinyint check (status between 0 and 3) not null,
+    created                timestamp with time zone               not null,
+    updated                timestamp with time zone               not null,
+
+    source_account_id      uuid                                   not null,
+    destination_account_id uuid                                   not null,
+    -- amount to credit, in destination account currency
+    currency               varchar(3)                             not null,
+    amount                 numeric(38, 0)                         not null,
+
+    -- outcome
+    transaction_id         uuid,
+    error                  varchar(255),
+    primary key (id)
+);
+
+-- workers pick up oldest pending requests first
+create index transfer_requests_status_idx on transfer_requests (status, created);
+
+alter table if exists transfer_requests
+    add constraint transfer_requests_to_source_account_fk foreign key (source_account_id) references accounts;
+
+alter table if exists transfer_requests
+    add constraint transfer_requests_to_destination_account_fk foreign key (destination_account_id) references accounts;
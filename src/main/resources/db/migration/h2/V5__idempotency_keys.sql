@@ -0,0 +1,14 @@
+-- Idempotency-Key header values of executed (or executing) transfers
+create table idempotency_keys
+(
+    idempotency_key varchar(255)             not null,
+    -- request the key was first used with, repeated requests must match it
+    fingerprint     varchar(255)             not null,
+    created         timestamp with time zone not null,
+    -- null while transfer is in progress. No FK, as transactions can be stored asynchronously (sequencer).
+    transaction_id  uuid,
+    primary key (idempotency_key)
+);
+
+-- for purging old keys
+create index idempotency_keys_created_idx on idempotency_keys (created);
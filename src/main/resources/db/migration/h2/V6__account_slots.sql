@@ -0,0 +1,14 @@
+-- Hot accounts keep their balance striped across several sub-balance slots (0 - regular account)
+alter table accounts
+    add column slots smallint default 0 not null;
+
+create table account_slots
+(
+    account_id uuid           not null,
+    slot       smallint       not null,
+    balance    numeric(38, 0) not null,
+    primary key (account_id, slot)
+);
+
+alter table if exists account_slots
+    add constraint account_slots_to_accounts_fk foreign key (account_id) references accounts;
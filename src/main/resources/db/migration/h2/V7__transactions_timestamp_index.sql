@@ -0,0 +1,11 @@
+-- Timestamp was declared as time only, dropping the date of every transaction
+alter table transactions
+    alter column timestamp set data type timestamp with time zone;
+
+-- History is read newest first per account, as two index seeks (one per side of the transfer),
+-- id breaks ties between transactions with the same timestamp
+create index transactions_source_history_idx
+    on transactions (source_account_id, timestamp desc, id desc);
+
+create index transactions_destination_history_idx
+    on transactions (destination_account_id, timestamp desc, id desc);
@@ -0,0 +1,39 @@
+-- Double-entry view of transactions - a debit entry of the source account and a credit entry
+-- of the destination account per transaction, history of an account is a single index range.
+create table ledger_entries
+(
+    id                      uuid                                   not null,
+    transaction_id          uuid                                   not null,
+    account_id              uuid                                   not null,
+    counterparty_account_id uuid                                   not null,
+    timestamp               timestamp with time zone               not null,
+    -- stored as enum ordinal, same as transactions
+    status                  tinyint check (status between 0 and 1) not null,
+    -- signed, negative for debits
+    amount                  numeric(38, 0)                         not null,
+    -- running balance of the account
+    balance                 numeric(38, 0)                         not null,
+    description             varchar(255),
+    primary key (id)
+);
+
+alter table if exists ledger_entries
+    add constraint ledger_entries_to_transactions_fk foreign key (transaction_id) references transactions;
+
+alter table if exists ledger_entries
+    add constraint ledger_entries_to_accounts_fk foreign key (account_id) references accounts;
+
+create index ledger_entries_history_idx
+    on ledger_entries (account_id, timestamp desc, transaction_id desc);
+
+insert into ledger_entries(id, transaction_id, account_id, counterparty_account_id, timestamp, status, amount, balance, description)
+select random_uuid(), id, source_account_id, destination_account_id, timestamp, status, -source_amount, source_balance, description
+from transactions;
+
+insert into ledger_entries(id, transaction_id, account_id, counterparty_account_id, timestamp, status, amount, balance, description)
+select random_uuid(), id, destination_account_id, source_account_id, timestamp, status, destination_amount, destination_balance, description
+from transactions;
+
+-- history no longer reads transactions
+drop index if exists transactions_source_history_idx;
+drop index if exists transactions_destination_history_idx;
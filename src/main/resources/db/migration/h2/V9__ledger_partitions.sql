@@ -0,0 +1,13 @@
+-- Ledger entries are split by time into separate tables (partitions), created by the application as time goes.
+-- Every partition covers [starts_at, ends_at), null meaning unbounded.
+create table ledger_partitions
+(
+    table_name varchar(63)              not null,
+    starts_at  timestamp with time zone,
+    ends_at    timestamp with time zone,
+    primary key (table_name)
+);
+
+-- Entries so far stay where they are, partitions start with the next month (UTC)
+insert into ledger_partitions(table_name, starts_at, ends_at)
+values ('ledger_entries', null, dateadd(month, 1, date_trunc('month', current_timestamp at time zone 'UTC')));
@@ -8,7 +8,8 @@ import org.springframework.boot.test.context.SpringBootTest;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
-@SpringBootTest
+// no FX provider requests
+@SpringBootTest(properties = "fx_rate_table_base=")
 class LedgerApplicationTests {
 
     @Autowired
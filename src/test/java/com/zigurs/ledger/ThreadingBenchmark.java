@@ -0,0 +1,228 @@
+package com.zigurs.ledger;
+
+import com.zigurs.ledger.api.requests.HistoryRequest;
+import com.zigurs.ledger.api.requests.TransferRequest;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static testutils.Utils.asJsonString;
+
+/**
+ * Platform vs virtual request threads with a slow FX provider, at 1k concurrent clients.
+ * <p>
+ * Half of the clients make cross-currency transfers, which wait for the FX stub for {@link #FX_DELAY}. The other
+ * half make same-currency transfers and history reads that don't need FX at all. With platform threads the slow
+ * half occupies Tomcat's thread pool and the fast half queues behind it, with virtual threads it shouldn't.
+ * <p>
+ * Excluded from regular builds, run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+abstract class ThreadingBenchmark {
+
+    private static final int CLIENTS = 1000;
+    private static final int REQUESTS_PER_CLIENT = 4;
+    private static final Duration FX_DELAY = Duration.ofSeconds(1);
+
+    // seeded by V2 migration
+    private static final UUID CLIENT_ID = UUID.fromString("39db54e0-3627-4d6b-98a1-93ef930f96db");
+
+    private static final HttpServer fxStub = startFxStub();
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // per client source (USD) and destination (USD for fast clients, EUR for slow ones) accounts
+    private final List<UUID> sourceAccounts = new ArrayList<>();
+    private final List<UUID> destinationAccounts = new ArrayList<>();
+
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+            "spring.threads.virtual.enabled=false",
+            "spring.datasource.url=jdbc:h2:mem:platform;DB_CLOSE_DELAY=-1",
+            "spring.flyway.url=jdbc:h2:mem:platform;DB_CLOSE_DELAY=-1",
+            // every cross-currency transfer waits for the provider
+            "fx_rate_ttl_ms=0",
+            "fx_rate_stale_ms=0",
+            "fx_rate_table_base=",
+            "fx_bulkhead_max_concurrent=1000"
+    })
+    static class PlatformThreads extends ThreadingBenchmark {
+    }
+
+    @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+            "spring.threads.virtual.enabled=true",
+            "spring.datasource.url=jdbc:h2:mem:virtual;DB_CLOSE_DELAY=-1",
+            "spring.flyway.url=jdbc:h2:mem:virtual;DB_CLOSE_DELAY=-1",
+            // every cross-currency transfer waits for the provider
+            "fx_rate_ttl_ms=0",
+            "fx_rate_stale_ms=0",
+            "fx_rate_table_base=",
+            "fx_bulkhead_max_concurrent=1000"
+    })
+    static class VirtualThreads extends ThreadingBenchmark {
+    }
+
+    @DynamicPropertySource
+    static void fxProperties(DynamicPropertyRegistry registry) {
+        registry.add(
+                "currency_beacon_api_base_url",
+                () -> "http://localhost:" + fxStub.getAddress().getPort() + "/v1/convert"
+        );
+    }
+
+    @BeforeEach
+    void setUp() {
+        // separate accounts per client, so that transfers don't contend on row locks
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            UUID source = UUID.randomUUID();
+            UUID destination = UUID.randomUUID();
+            sourceAccounts.add(source);
+            destinationAccounts.add(destination);
+
+            rows.add(new Object[]{source, CLIENT_ID, "USD"});
+            rows.add(new Object[]{destination, CLIENT_ID, isSlow(i) ? "EUR" : "USD"});
+        }
+        jdbcTemplate.batchUpdate("insert into accounts(id, client_id, currency, balance) values (?, ?, ?, 100000000)", rows);
+    }
+
+    @Test
+    void slowFxProvider() throws InterruptedException {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+
+        List<Long> fastLatencies = Collections.synchronizedList(new ArrayList<>());
+        List<Long> slowLatencies = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger errors = new AtomicInteger();
+
+        long start = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CLIENTS; i++) {
+                int client = i;
+                clients.submit(() -> {
+                    for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                        HttpRequest request = isSlow(client) || r % 2 == 0 ? transfer(client) : history(client);
+
+                        long requestStart = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                errors.incrementAndGet();
+                            }
+                        } catch (IOException e) {
+                            errors.incrementAndGet();
+                        }
+                        (isSlow(client) ? slowLatencies : fastLatencies).add(System.nanoTime() - requestStart);
+                    }
+                    return null;
+                });
+            }
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        System.out.printf(
+                "%s: %d clients, %d requests in %d ms (%.0f req/s), %d errors%n" +
+                        "  no FX     p50 %d ms, p99 %d ms, max %d ms%n" +
+                        "  with FX   p50 %d ms, p99 %d ms, max %d ms%n",
+                getClass().getSimpleName(),
+                CLIENTS,
+                CLIENTS * REQUESTS_PER_CLIENT,
+                elapsed.toMillis(),
+                CLIENTS * REQUESTS_PER_CLIENT / (elapsed.toNanos() / 1e9),
+                errors.get(),
+                percentile(fastLatencies, 0.5), percentile(fastLatencies, 0.99), percentile(fastLatencies, 1.0),
+                percentile(slowLatencies, 0.5), percentile(slowLatencies, 0.99), percentile(slowLatencies, 1.0)
+        );
+
+        assertEquals(CLIENTS * REQUESTS_PER_CLIENT, fastLatencies.size() + slowLatencies.size());
+    }
+
+    private HttpRequest transfer(int client) {
+        TransferRequest request = new TransferRequest(
+                sourceAccounts.get(client),
+                destinationAccounts.get(client),
+                isSlow(client) ? "EUR" : "USD",
+                "0.01"
+        );
+        return post("/transfer", asJsonString(request));
+    }
+
+    private HttpRequest history(int client) {
+        return post("/history", asJsonString(new HistoryRequest(sourceAccounts.get(client), 0, 10, null)));
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofMinutes(1))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static boolean isSlow(int client) {
+        return client % 2 == 0;
+    }
+
+    private static long percentile(List<Long> latenciesNanos, double percentile) {
+        List<Long> sorted = new ArrayList<>(latenciesNanos);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return Duration.ofNanos(sorted.get(Math.max(index, 0))).toMillis();
+    }
+
+    private static HttpServer startFxStub() {
+        try {
+            HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+            server.createContext("/v1/convert", exchange -> {
+                try {
+                    Thread.sleep(FX_DELAY);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                // always 1 (cent), good enough for this benchmark
+                byte[] body = "{\"from\":\"EUR\",\"to\":\"USD\",\"amount\":1,\"value\":1}".getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.start();
+            return server;
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -18,6 +18,7 @@ import org.springframework.test.web.servlet.MvcResult;
 import testutils.Snapshot;
 
 import java.math.BigInteger;
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -25,9 +26,13 @@ import java.util.UUID;
 import static io.github.jsonSnapshot.SnapshotMatcher.*;
 import static org.hamcrest.core.StringContains.containsString;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static testutils.Utils.asJsonString;
 
@@ -43,6 +48,12 @@ class AccountsControllerTest {
     @MockBean
     private AccountsRepository accountsRepository;
 
+    @MockBean
+    private HotAccountsService hotAccountsService;
+
+    @MockBean
+    private HistoricalBalanceService historicalBalanceService;
+
     @BeforeAll
     public static void beforeAll() {
         start(Snapshot::asJsonString);
@@ -177,4 +188,53 @@ class AccountsControllerTest {
 
         expect(result.getResponse().getContentAsString()).toMatchSnapshot();
     }
-}
\ No newline at end of file
+
+    @Test
+    void getBalanceAt() throws Exception {
+        Account account = new Account(
+                UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"),
+                new Client(UUID.randomUUID()),
+                "EUR",
+                BigInteger.valueOf(500L)
+        );
+        Instant at = Instant.parse("2024-05-31T23:59:59Z");
+
+        when(accountsRepository.findById(account.getId())).thenReturn(Optional.of(account));
+        when(historicalBalanceService.balanceAt(account, at)).thenReturn(BigInteger.valueOf(300L));
+
+        mockMvc.perform(get("/balance")
+                        .param("account_id", account.getId().toString())
+                        .param("at", "2024-05-31T23:59:59Z"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.account_id").value(account.getId().toString()))
+                .andExpect(jsonPath("$.currency").value("EUR"))
+                .andExpect(jsonPath("$.at").value("2024-05-31T23:59:59Z"))
+                .andExpect(jsonPath("$.balance").value(300));
+    }
+
+    @Test
+    void getBalanceInvalidRequest() throws Exception {
+        UUID accountId = UUID.randomUUID();
+        when(accountsRepository.findById(any(UUID.class))).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/balance")
+                        .param("account_id", accountId.toString())
+                        .param("at", "2024-05-31"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 at must be an ISO-8601 timestamp"));
+
+        mockMvc.perform(get("/balance")
+                        .param("account_id", accountId.toString())
+                        .param("at", Instant.now().plusSeconds(3600).toString()))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 at must not be in the future"));
+
+        mockMvc.perform(get("/balance")
+                        .param("account_id", accountId.toString())
+                        .param("at", "2024-05-31T23:59:59Z"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("404 account not found"));
+
+        verify(historicalBalanceService, never()).balanceAt(any(), any());
+    }
+}
@@ -0,0 +1,164 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.api.responses.TimelineEntryView;
+import com.zigurs.ledger.data.LedgerEntriesRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.HistoryEntry;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ClientTimelineTest {
+
+    private static final Account eur = new Account(UUID.fromString("d4a8ad83-93b5-4114-9df5-61127a6c61de"), null, "EUR", BigInteger.ZERO);
+    private static final Account usd = new Account(UUID.fromString("413a0b12-985d-4437-9490-bdeddb617e9e"), null, "USD", BigInteger.ZERO);
+    private static final Account gbp = new Account(UUID.fromString("8f0e39c5-4b5f-4c1b-9e3e-2b7d0c0f6a11"), null, "GBP", BigInteger.ZERO);
+    private static final Instant now = Instant.ofEpochSecond(1715933225L);
+
+    // history of every account, newest first, as the repository would return it
+    private final Map<UUID, List<HistoryEntry>> histories = new HashMap<>();
+    private LedgerEntriesRepository ledgerEntriesRepository;
+    private ClientTimeline clientTimeline;
+
+    @BeforeEach
+    void setUp() {
+        ledgerEntriesRepository = mock(LedgerEntriesRepository.class);
+        when(ledgerEntriesRepository.findHistory(any(), anyInt(), anyInt())).thenAnswer(invocation -> {
+            List<HistoryEntry> history = histories.getOrDefault(invocation.<UUID>getArgument(0), List.of());
+            int offset = invocation.getArgument(1);
+            int limit = invocation.getArgument(2);
+            return history.subList(Math.min(offset, history.size()), Math.min(offset + limit, history.size()));
+        });
+        when(ledgerEntriesRepository.findHistoryBefore(any(), any(), any(), anyInt())).thenAnswer(invocation -> {
+            Instant timestamp = invocation.getArgument(1);
+            UUID transactionId = invocation.getArgument(2);
+            int limit = invocation.getArgument(3);
+            return histories.getOrDefault(invocation.<UUID>getArgument(0), List.of()).stream()
+                    .filter(entry -> entry.timestamp().isBefore(timestamp)
+                            || entry.timestamp().equals(timestamp) && compareUnsigned(entry.transactionId(), transactionId) < 0)
+                    .limit(limit)
+                    .toList();
+        });
+        clientTimeline = new ClientTimeline(ledgerEntriesRepository);
+    }
+
+    @Test
+    void mergedNewestFirst() {
+        List<HistoryEntry> all = new ArrayList<>();
+        all.addAll(history(eur, 0, 3, 6, 9));
+        all.addAll(history(usd, 1, 4, 7));
+        all.addAll(history(gbp, 2, 5, 8));
+
+        List<TimelineEntryView> page = clientTimeline.page(List.of(eur, usd, gbp), null, 4);
+
+        assertEquals(List.of(9L, 8L, 7L, 6L), seconds(page));
+        assertEquals(List.of(eur.getId(), gbp.getId(), usd.getId(), eur.getId()), page.stream().map(TimelineEntryView::account_id).toList());
+        assertEquals("GBP", page.get(1).currency());
+    }
+
+    @Test
+    void followedWithCursor() {
+        history(eur, 0, 3, 6, 9);
+        history(usd, 1, 4, 7);
+        history(gbp, 2, 5, 8);
+
+        List<Long> seen = new ArrayList<>();
+        HistoryCursor cursor = null;
+        List<TimelineEntryView> page;
+        do {
+            page = clientTimeline.page(List.of(eur, usd, gbp), cursor, 3);
+            seen.addAll(seconds(page));
+            if (!page.isEmpty()) {
+                cursor = HistoryCursor.of(page.get(page.size() - 1).transaction());
+            }
+        } while (page.size() == 3);
+
+        assertEquals(List.of(9L, 8L, 7L, 6L, 5L, 4L, 3L, 2L, 1L, 0L), seen);
+    }
+
+    @Test
+    void accountsReadAsNeeded() {
+        history(eur, 10, 11, 12, 13, 14, 15);
+        history(usd, 0, 1, 2, 3, 4, 5);
+
+        List<TimelineEntryView> page = clientTimeline.page(List.of(eur, usd), null, 4);
+
+        assertEquals(List.of(15L, 14L, 13L, 12L), seconds(page));
+        // a batch of (limit + 1) / 2 of each, eur once more, usd entries were never needed past the first batch
+        verify(ledgerEntriesRepository).findHistory(eur.getId(), 0, 3);
+        verify(ledgerEntriesRepository).findHistoryBefore(eq(eur.getId()), eq(now.plusSeconds(13)), any(), eq(3));
+        verify(ledgerEntriesRepository).findHistory(usd.getId(), 0, 3);
+        verifyNoMoreInteractions(ledgerEntriesRepository);
+    }
+
+    @Test
+    void transfersBetweenOwnAccountsKeptTogether() {
+        UUID transactionId = UUID.randomUUID();
+        histories.put(eur.getId(), List.of(entry(eur, UUID.randomUUID(), 2), entry(eur, transactionId, 1)));
+        histories.put(usd.getId(), List.of(entry(usd, transactionId, 1), entry(usd, UUID.randomUUID(), 0)));
+
+        List<TimelineEntryView> page = clientTimeline.page(List.of(eur, usd), null, 2);
+
+        // both sides of the transfer, one over the limit
+        assertEquals(List.of(2L, 1L, 1L), seconds(page));
+
+        List<TimelineEntryView> next = clientTimeline.page(List.of(eur, usd), HistoryCursor.of(page.get(2).transaction()), 2);
+        assertEquals(List.of(0L), seconds(next));
+    }
+
+    @Test
+    void noAccounts() {
+        assertEquals(List.of(), clientTimeline.page(List.of(), null, 10));
+    }
+
+    @Test
+    void invalidLimit() {
+        assertThrows(IllegalArgumentException.class, () -> clientTimeline.page(List.of(eur), null, 0));
+    }
+
+    private List<HistoryEntry> history(Account account, long... seconds) {
+        List<HistoryEntry> history = new ArrayList<>();
+        for (int i = seconds.length - 1; i >= 0; i--) {
+            history.add(entry(account, UUID.randomUUID(), seconds[i]));
+        }
+        histories.put(account.getId(), history);
+        return history;
+    }
+
+    private static HistoryEntry entry(Account account, UUID transactionId, long seconds) {
+        return new HistoryEntry(
+                transactionId,
+                account.getId(),
+                UUID.randomUUID(),
+                now.plusSeconds(seconds),
+                TransactionStatus.COMPLETED,
+                BigInteger.ONE,
+                BigInteger.ONE,
+                "test"
+        );
+    }
+
+    private static List<Long> seconds(List<TimelineEntryView> page) {
+        return page.stream()
+                .map(entry -> entry.transaction().timestamp().getEpochSecond() - now.getEpochSecond())
+                .toList();
+    }
+
+    private static int compareUnsigned(UUID a, UUID b) {
+        int result = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return result != 0 ? result : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+}
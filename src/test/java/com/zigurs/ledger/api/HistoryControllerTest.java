@@ -1,10 +1,13 @@
 package com.zigurs.ledger.api;
 
 import com.zigurs.ledger.api.requests.HistoryRequest;
+import com.zigurs.ledger.api.responses.TransactionView;
 import com.zigurs.ledger.data.AccountsRepository;
-import com.zigurs.ledger.data.TransactionsRepository;
+import com.zigurs.ledger.data.HistoryExportRepository;
+import com.zigurs.ledger.data.LedgerEntriesRepository;
 import com.zigurs.ledger.model.Account;
 import com.zigurs.ledger.model.Client;
+import com.zigurs.ledger.model.HistoryEntry;
 import com.zigurs.ledger.model.Transaction;
 import com.zigurs.ledger.model.TransactionStatus;
 
@@ -14,7 +17,6 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.data.domain.Pageable;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -22,14 +24,29 @@ import testutils.Snapshot;
 
 import java.math.BigInteger;
 import java.time.Instant;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import static io.github.jsonSnapshot.SnapshotMatcher.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static testutils.Utils.asJsonString;
 
@@ -43,7 +60,16 @@ class HistoryControllerTest {
     private AccountsRepository accountsRepository;
 
     @MockBean
-    private TransactionsRepository transactionsRepository;
+    private LedgerEntriesRepository ledgerEntriesRepository;
+
+    @MockBean
+    private HistoryExportRepository historyExportRepository;
+
+    @MockBean
+    private RecentHistory recentHistory;
+
+    @MockBean
+    private HotAccountsService hotAccountsService;
 
     @BeforeAll
     public static void beforeAll() {
@@ -79,9 +105,9 @@ class HistoryControllerTest {
         Instant timestamp = Instant.ofEpochSecond(1715933225L);
 
         when(
-                transactionsRepository.findAllBySourceAccountIdOrDestinationAccountIdOrderByTimestampDesc(any(UUID.class), any(UUID.class), any(Pageable.class))
+                ledgerEntriesRepository.findHistory(any(UUID.class), anyInt(), anyInt())
         ).thenReturn(
-                List.of(
+                entriesOf(account,
                         new Transaction(
                                 UUID.fromString("424dfead-4625-4dd4-a025-642542eebfdf"),
                                 TransactionStatus.COMPLETED,
@@ -146,7 +172,7 @@ class HistoryControllerTest {
         );
 
 
-        HistoryRequest req = new HistoryRequest(UUID.randomUUID(), null, null);
+        HistoryRequest req = new HistoryRequest(UUID.randomUUID(), null, null, null);
 
         MvcResult result = mockMvc.perform(
                         post("/history")
@@ -166,7 +192,7 @@ class HistoryControllerTest {
                 Optional.empty()
         );
 
-        HistoryRequest req = new HistoryRequest(UUID.randomUUID(), null, null);
+        HistoryRequest req = new HistoryRequest(UUID.randomUUID(), null, null, null);
 
         MvcResult result = mockMvc.perform(
                         post("/history")
@@ -196,7 +222,7 @@ class HistoryControllerTest {
         );
 
         // TODO - divide by page ID is breaking check on -1
-        HistoryRequest req = new HistoryRequest(UUID.randomUUID(), -100, null);
+        HistoryRequest req = new HistoryRequest(UUID.randomUUID(), -100, null, null);
 
         MvcResult result = mockMvc.perform(
                         post("/history")
@@ -226,7 +252,7 @@ class HistoryControllerTest {
         );
 
         // TODO - divide by page ID is breaking check on -1
-        HistoryRequest req = new HistoryRequest(UUID.randomUUID(), null, 0);
+        HistoryRequest req = new HistoryRequest(UUID.randomUUID(), null, 0, null);
 
         MvcResult result = mockMvc.perform(
                         post("/history")
@@ -255,11 +281,11 @@ class HistoryControllerTest {
                 Optional.of(account)
         );
 
-        when(transactionsRepository.findAllBySourceAccountIdOrDestinationAccountIdOrderByTimestampDesc(any(UUID.class), any(UUID.class), any(Pageable.class))).thenReturn(
+        when(ledgerEntriesRepository.findHistory(any(UUID.class), anyInt(), anyInt())).thenReturn(
                 List.of()
         );
 
-        HistoryRequest req = new HistoryRequest(UUID.randomUUID(), 100, 100);
+        HistoryRequest req = new HistoryRequest(UUID.randomUUID(), 100, 100, null);
 
         MvcResult result = mockMvc.perform(
                         post("/history")
@@ -272,4 +298,343 @@ class HistoryControllerTest {
 
         expect(result.getResponse().getContentAsString()).toMatchSnapshot();
     }
-}
\ No newline at end of file
+
+    @Test
+    void getHistoryOfHotAccount() throws Exception {
+        Account account = mock(Account.class);
+        when(account.getId()).thenReturn(UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"));
+        when(account.getCurrency()).thenReturn("EUR");
+        when(account.getBalance()).thenReturn(BigInteger.valueOf(1L));
+        when(account.getSlots()).thenReturn(4);
+
+        when(accountsRepository.findById(account.getId())).thenReturn(Optional.of(account));
+        when(hotAccountsService.balance(account)).thenReturn(BigInteger.valueOf(1000L));
+        when(ledgerEntriesRepository.findHistory(any(UUID.class), anyInt(), anyInt())).thenReturn(List.of());
+
+        mockMvc.perform(
+                        post("/history")
+                                .content(asJsonString(new HistoryRequest(account.getId(), 0, 10, null)))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                // base row and all sub-balance slots
+                .andExpect(jsonPath("$.account.balance").value(1000));
+    }
+
+    @Test
+    void getHistoryWithCursor() throws Exception {
+        Client client = new Client(UUID.randomUUID());
+        Account account = new Account(
+                UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        Account otherAccount = new Account(
+                UUID.fromString("8c6724de-0879-4392-ba25-cf8dcc79ca36"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        when(accountsRepository.findById(any(UUID.class))).thenReturn(
+                Optional.of(account)
+        );
+
+        HistoryCursor cursor = new HistoryCursor(
+                Instant.ofEpochSecond(1715933225L),
+                UUID.fromString("424dfead-4625-4dd4-a025-642542eebfdf")
+        );
+
+        Transaction last = new Transaction(
+                UUID.fromString("ed713c8c-46d1-43b2-9474-63e702983958"),
+                TransactionStatus.COMPLETED,
+                Instant.ofEpochSecond(1715933000L),
+                otherAccount,
+                BigInteger.valueOf(100),
+                BigInteger.valueOf(200),
+                account,
+                BigInteger.valueOf(300),
+                BigInteger.valueOf(400),
+                "tx two"
+        );
+
+        when(ledgerEntriesRepository.findHistoryBefore(account.getId(), cursor.timestamp(), cursor.id(), 1)).thenReturn(
+                entriesOf(account, last)
+        );
+
+        HistoryRequest req = new HistoryRequest(account.getId(), null, 1, cursor.encode());
+
+        mockMvc.perform(
+                        post("/history")
+                                .content(asJsonString(req))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions.length()").value(1))
+                .andExpect(jsonPath("$.transactions[0].transaction_id").value(last.getId().toString()))
+                .andExpect(jsonPath("$.transactions[0].type").value("CREDIT"))
+                .andExpect(jsonPath("$.transactions[0].amount").value(300))
+                .andExpect(jsonPath("$.next_cursor").value(new HistoryCursor(last.getTimestamp(), last.getId()).encode()));
+
+        // no offset scans
+        verify(ledgerEntriesRepository, never()).findHistory(any(UUID.class), anyInt(), anyInt());
+    }
+
+    @Test
+    void getHistoryFromRecentHistory() throws Exception {
+        Client client = new Client(UUID.randomUUID());
+        Account account = new Account(
+                UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        Account otherAccount = new Account(
+                UUID.fromString("8c6724de-0879-4392-ba25-cf8dcc79ca36"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        when(accountsRepository.findById(any(UUID.class))).thenReturn(
+                Optional.of(account)
+        );
+
+        Transaction recent = new Transaction(
+                UUID.fromString("424dfead-4625-4dd4-a025-642542eebfdf"),
+                TransactionStatus.COMPLETED,
+                Instant.ofEpochSecond(1715933225L),
+                account,
+                BigInteger.valueOf(100),
+                BigInteger.valueOf(200),
+                otherAccount,
+                BigInteger.valueOf(300),
+                BigInteger.valueOf(400),
+                "tx one"
+        );
+
+        when(recentHistory.find(account.getId(), 0, 1)).thenReturn(Optional.of(
+                entriesOf(account, recent).stream().map(TransactionView::fromModel).toList()
+        ));
+
+        mockMvc.perform(
+                        post("/history")
+                                .content(asJsonString(new HistoryRequest(account.getId(), null, 1, null)))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions.length()").value(1))
+                .andExpect(jsonPath("$.transactions[0].transaction_id").value(recent.getId().toString()))
+                .andExpect(jsonPath("$.transactions[0].type").value("DEBIT"))
+                .andExpect(jsonPath("$.next_cursor").value(new HistoryCursor(recent.getTimestamp(), recent.getId()).encode()));
+
+        verify(ledgerEntriesRepository, never()).findHistory(any(UUID.class), anyInt(), anyInt());
+    }
+
+    @Test
+    void getHistoryInvalidCursor() throws Exception {
+        Client client = new Client(UUID.randomUUID());
+        Account account = new Account(
+                UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        when(accountsRepository.findById(any(UUID.class))).thenReturn(
+                Optional.of(account)
+        );
+
+        mockMvc.perform(
+                        post("/history")
+                                .content(asJsonString(new HistoryRequest(account.getId(), null, null, "not a cursor")))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 cursor invalid"));
+
+        String cursor = new HistoryCursor(Instant.ofEpochSecond(1715933225L), UUID.randomUUID()).encode();
+
+        mockMvc.perform(
+                        post("/history")
+                                .content(asJsonString(new HistoryRequest(account.getId(), 10, null, cursor)))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 offset cannot be combined with cursor"));
+    }
+
+    @Test
+    void exportHistoryNdjson() throws Exception {
+        Account account = new Account(
+                UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"),
+                new Client(UUID.randomUUID()),
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        Account otherAccount = new Account(
+                UUID.fromString("8c6724de-0879-4392-ba25-cf8dcc79ca36"),
+                new Client(UUID.randomUUID()),
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        when(accountsRepository.findById(account.getId())).thenReturn(Optional.of(account));
+
+        List<HistoryEntry> entries = entriesOf(account,
+                new Transaction(
+                        UUID.fromString("424dfead-4625-4dd4-a025-642542eebfdf"),
+                        TransactionStatus.COMPLETED,
+                        Instant.ofEpochSecond(1715933225L),
+                        account,
+                        BigInteger.valueOf(100),
+                        BigInteger.valueOf(200),
+                        otherAccount,
+                        BigInteger.valueOf(300),
+                        BigInteger.valueOf(400),
+                        "tx one"
+                ),
+                new Transaction(
+                        UUID.fromString("ed713c8c-46d1-43b2-9474-63e702983958"),
+                        TransactionStatus.COMPLETED,
+                        Instant.ofEpochSecond(1715933000L),
+                        otherAccount,
+                        BigInteger.valueOf(100),
+                        BigInteger.valueOf(200),
+                        account,
+                        BigInteger.valueOf(300),
+                        BigInteger.valueOf(400),
+                        "tx two"
+                )
+        );
+
+        Instant from = Instant.parse("2024-05-01T00:00:00Z");
+        doAnswer(invocation -> {
+            Consumer<HistoryEntry> consumer = invocation.getArgument(3);
+            entries.forEach(consumer);
+            return null;
+        }).when(historyExportRepository).export(eq(account.getId()), eq(from), isNull(), any());
+
+        MvcResult result = mockMvc.perform(
+                        get("/history/export")
+                                .param("account_id", account.getId().toString())
+                                .param("from", from.toString())
+                )
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-ndjson"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"history-306b74d2-adea-4592-9f8a-981e80a7e041.ndjson\""))
+                .andExpect(content().string(
+                        "{\"transaction_id\":\"424dfead-4625-4dd4-a025-642542eebfdf\",\"timestamp\":\"2024-05-17T08:07:05Z\",\"type\":\"DEBIT\",\"status\":\"COMPLETED\",\"source_account_id\":\"306b74d2-adea-4592-9f8a-981e80a7e041\",\"destination_account_id\":\"8c6724de-0879-4392-ba25-cf8dcc79ca36\",\"amount\":100,\"account_balance\":200,\"description\":\"tx one\"}\n" +
+                                "{\"transaction_id\":\"ed713c8c-46d1-43b2-9474-63e702983958\",\"timestamp\":\"2024-05-17T08:03:20Z\",\"type\":\"CREDIT\",\"status\":\"COMPLETED\",\"source_account_id\":\"8c6724de-0879-4392-ba25-cf8dcc79ca36\",\"destination_account_id\":\"306b74d2-adea-4592-9f8a-981e80a7e041\",\"amount\":300,\"account_balance\":400,\"description\":\"tx two\"}\n"
+                ));
+    }
+
+    @Test
+    void exportHistoryCsv() throws Exception {
+        Account account = new Account(
+                UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"),
+                new Client(UUID.randomUUID()),
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        Account otherAccount = new Account(
+                UUID.fromString("8c6724de-0879-4392-ba25-cf8dcc79ca36"),
+                new Client(UUID.randomUUID()),
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        when(accountsRepository.findById(account.getId())).thenReturn(Optional.of(account));
+
+        List<HistoryEntry> entries = entriesOf(account,
+                new Transaction(
+                        UUID.fromString("424dfead-4625-4dd4-a025-642542eebfdf"),
+                        TransactionStatus.FAILED,
+                        Instant.ofEpochSecond(1715933225L),
+                        account,
+                        BigInteger.valueOf(100),
+                        BigInteger.valueOf(50),
+                        otherAccount,
+                        BigInteger.valueOf(300),
+                        BigInteger.valueOf(400),
+                        "rent, \"May\""
+                )
+        );
+
+        doAnswer(invocation -> {
+            Consumer<HistoryEntry> consumer = invocation.getArgument(3);
+            entries.forEach(consumer);
+            return null;
+        }).when(historyExportRepository).export(eq(account.getId()), isNull(), isNull(), any());
+
+        MvcResult result = mockMvc.perform(
+                        get("/history/export")
+                                .param("account_id", account.getId().toString())
+                                .param("format", "csv")
+                )
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv"))
+                .andExpect(content().string(
+                        "transaction_id,timestamp,type,status,source_account_id,destination_account_id,amount,account_balance,description\n" +
+                                "424dfead-4625-4dd4-a025-642542eebfdf,2024-05-17T08:07:05Z,DEBIT,FAILED,306b74d2-adea-4592-9f8a-981e80a7e041,8c6724de-0879-4392-ba25-cf8dcc79ca36,100,50,\"rent, \"\"May\"\"\"\n"
+                ));
+    }
+
+    @Test
+    void exportHistoryInvalidRequest() throws Exception {
+        UUID accountId = UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041");
+        when(accountsRepository.findById(accountId)).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/history/export").param("account_id", accountId.toString()))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("404 account not found"));
+
+        mockMvc.perform(get("/history/export").param("account_id", accountId.toString()).param("format", "xml"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 format must be ndjson or csv"));
+
+        mockMvc.perform(get("/history/export").param("account_id", accountId.toString()).param("to", "yesterday"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 to must be an ISO-8601 timestamp"));
+
+        mockMvc.perform(
+                        get("/history/export")
+                                .param("account_id", accountId.toString())
+                                .param("from", "2024-05-17T00:00:00Z")
+                                .param("to", "2024-05-17T00:00:00Z")
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 from must be before to"));
+
+        verify(historyExportRepository, never()).export(any(), any(), any(), any());
+    }
+
+    /**
+     * Ledger entries of the given account, as they would be stored alongside transactions.
+     */
+    private static List<HistoryEntry> entriesOf(Account account, Transaction... transactions) {
+        return Arrays.stream(transactions)
+                .flatMap(transaction -> transaction.getEntries().stream())
+                .filter(entry -> entry.getAccountId().equals(account.getId()))
+                .map(HistoryEntry::of)
+                .toList();
+    }
+}
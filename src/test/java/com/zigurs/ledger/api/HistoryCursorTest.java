@@ -0,0 +1,49 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.api.exceptions.BadRequestException;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoryCursorTest {
+
+    @Test
+    void roundTrip() {
+        HistoryCursor cursor = new HistoryCursor(
+                Instant.ofEpochSecond(1715933225L, 123456789L),
+                UUID.fromString("424dfead-4625-4dd4-a025-642542eebfdf")
+        );
+
+        String encoded = cursor.encode();
+
+        assertEquals(cursor, HistoryCursor.decode(encoded));
+        // opaque, and safe to pass around in urls
+        assertFalse(encoded.contains("424dfead"));
+        assertTrue(encoded.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    void invalidCursor() {
+        String missingId = Base64.getUrlEncoder().encodeToString("2024-05-17T08:07:05Z".getBytes(StandardCharsets.UTF_8));
+        String invalidTimestamp = Base64.getUrlEncoder().encodeToString(
+                "yesterday/424dfead-4625-4dd4-a025-642542eebfdf".getBytes(StandardCharsets.UTF_8)
+        );
+
+        for (String cursor : new String[]{"", "not a cursor", missingId, invalidTimestamp}) {
+            BadRequestException e = assertThrows(BadRequestException.class, () -> HistoryCursor.decode(cursor));
+            assertEquals("cursor invalid", e.getStatusText());
+        }
+    }
+
+    @Test
+    void constructorNullChecks() {
+        assertThrows(NullPointerException.class, () -> new HistoryCursor(null, UUID.randomUUID()));
+        assertThrows(NullPointerException.class, () -> new HistoryCursor(Instant.now(), null));
+    }
+}
@@ -0,0 +1,238 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.api.requests.HistoryRequest;
+import com.zigurs.ledger.data.AccountsRepository;
+
+import com.jayway.jsonpath.JsonPath;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static testutils.Utils.asJsonString;
+
+/**
+ * SQL statements issued per {@code /history} call, against a real database - one to look up the account and one
+ * for the page of entries, regardless of how many accounts the entries reference or how many ledger partitions
+ * they are stored in. Pages held by {@link RecentHistory} skip the latter.
+ * <p>
+ * Entries are read with plain JDBC, so statements are counted on the data source rather than by Hibernate.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:history-statements;DB_CLOSE_DELAY=-1",
+        "spring.flyway.url=jdbc:h2:mem:history-statements;DB_CLOSE_DELAY=-1",
+        // no FX provider requests
+        "fx_rate_table_base=",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureMockMvc
+class HistoryStatementsTest {
+
+    private static final int COUNTERPARTIES = 5;
+
+    // seeded by V2 migration
+    private static final UUID CLIENT_ID = UUID.fromString("39db54e0-3627-4d6b-98a1-93ef930f96db");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private AccountsRepository accountsRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private UUID accountId;
+
+    @TestConfiguration
+    static class StatementCounting {
+
+        // per thread, so that scheduled tasks don't interfere
+        static final ThreadLocal<long[]> STATEMENTS = ThreadLocal.withInitial(() -> new long[1]);
+
+        private static final Set<String> STATEMENT_METHODS = Set.of("prepareStatement", "prepareCall", "createStatement");
+
+        @Bean
+        static BeanPostProcessor countingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource) {
+                        return proxy(DataSource.class, dataSource, (target, method, args) -> {
+                            Object result = invoke(target, method, args);
+                            return result instanceof Connection connection
+                                    ? proxy(Connection.class, connection, StatementCounting::countStatements)
+                                    : result;
+                        });
+                    }
+                    return bean;
+                }
+            };
+        }
+
+        private static Object countStatements(Object connection, Method method, Object[] args) throws Throwable {
+            if (STATEMENT_METHODS.contains(method.getName())) {
+                STATEMENTS.get()[0]++;
+            }
+            return invoke(connection, method, args);
+        }
+
+        private interface Handler {
+            Object invoke(Object target, Method method, Object[] args) throws Throwable;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, T target, Handler handler) {
+            InvocationHandler invocationHandler = (proxy, method, args) -> handler.invoke(target, method, args);
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, invocationHandler);
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        accountId = createAccount();
+        // every entry references a different counterparty account, refunds are stored in a later partition
+        for (int i = 0; i < COUNTERPARTIES; i++) {
+            UUID counterpartyId = createAccount();
+            transferService.transfer(Instant.now(), accountId, BigInteger.ONE, counterpartyId, BigInteger.ONE, "transfer " + i);
+            transferService.transfer(later(), counterpartyId, BigInteger.ONE, accountId, BigInteger.ONE, "refund " + i);
+        }
+    }
+
+    @Test
+    void offsetPage() throws Exception {
+        long[] accountLookup = accountLookup();
+
+        clear();
+        mockMvc.perform(post("/history")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(new HistoryRequest(accountId, 0, COUNTERPARTIES * 2, null))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions.length()").value(COUNTERPARTIES * 2));
+
+        assertEquals(accountLookup[0] + 1, statements());
+        assertEquals(accountLookup[1], statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void recentPage() throws Exception {
+        HistoryRequest firstPage = new HistoryRequest(accountId, 0, COUNTERPARTIES, null);
+
+        // loads recent history of the account
+        mockMvc.perform(post("/history")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(firstPage)))
+                .andExpect(status().isOk());
+
+        transferService.transfer(later(), accountId, BigInteger.ONE, createAccount(), BigInteger.ONE, "latest");
+        long[] accountLookup = accountLookup();
+
+        clear();
+        mockMvc.perform(post("/history")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(firstPage)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions.length()").value(COUNTERPARTIES))
+                .andExpect(jsonPath("$.transactions[0].description").value("latest"));
+
+        assertEquals(accountLookup[0], statements());
+        assertEquals(accountLookup[1], statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void cursorPage() throws Exception {
+        MvcResult firstPage = mockMvc.perform(post("/history")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(new HistoryRequest(accountId, 0, COUNTERPARTIES, null))))
+                .andExpect(status().isOk())
+                .andReturn();
+        String cursor = JsonPath.read(firstPage.getResponse().getContentAsString(), "$.next_cursor");
+
+        long[] accountLookup = accountLookup();
+
+        clear();
+        mockMvc.perform(post("/history")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(asJsonString(new HistoryRequest(accountId, 0, COUNTERPARTIES, cursor))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transactions.length()").value(COUNTERPARTIES));
+
+        assertEquals(accountLookup[0] + 1, statements());
+        assertEquals(accountLookup[1], statistics.getEntityLoadCount());
+    }
+
+    /**
+     * Statements and entity loads of the account lookup alone (account, with its client), as {statements, loads}.
+     */
+    private long[] accountLookup() {
+        clear();
+        accountsRepository.findById(accountId);
+        return new long[]{statements(), statistics.getEntityLoadCount()};
+    }
+
+    private void clear() {
+        statistics.clear();
+        StatementCounting.STATEMENTS.get()[0] = 0;
+    }
+
+    private static long statements() {
+        return StatementCounting.STATEMENTS.get()[0];
+    }
+
+    /**
+     * Past the partitions existing initially, which end with the current month at the latest.
+     */
+    private static Instant later() {
+        return Instant.now().plus(Duration.ofDays(62));
+    }
+
+    private UUID createAccount() {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("insert into accounts(id, client_id, currency, balance) values (?, ?, 'EUR', 1000)", id, CLIENT_ID);
+        return id;
+    }
+}
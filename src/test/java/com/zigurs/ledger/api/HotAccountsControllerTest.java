@@ -0,0 +1,107 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.api.requests.HotAccountRequest;
+import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.Client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigInteger;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static testutils.Utils.asJsonString;
+
+@WebMvcTest(HotAccountsController.class)
+class HotAccountsControllerTest {
+
+    private static final UUID accountId = UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private AccountsRepository accountsRepository;
+
+    @MockBean
+    private HotAccountsService hotAccountsService;
+
+    @Test
+    void markHot() throws Exception {
+        Account account = new Account(accountId, new Client(UUID.randomUUID()), "EUR", BigInteger.ZERO);
+
+        when(hotAccountsService.markHot(accountId, 8)).thenReturn(true);
+        when(accountsRepository.findById(accountId)).thenReturn(Optional.of(account));
+        when(hotAccountsService.balance(account)).thenReturn(BigInteger.valueOf(12345));
+
+        mockMvc.perform(
+                        put("/admin/accounts/" + accountId + "/hot")
+                                .content(asJsonString(new HotAccountRequest(8)))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.account_id").value(accountId.toString()))
+                .andExpect(jsonPath("$.balance").value(12345));
+    }
+
+    @Test
+    void markHotMissingAccount() throws Exception {
+        when(hotAccountsService.markHot(accountId, 8)).thenReturn(false);
+
+        mockMvc.perform(
+                        put("/admin/accounts/" + accountId + "/hot")
+                                .content(asJsonString(new HotAccountRequest(8)))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("404 account not found"));
+    }
+
+    @Test
+    void markHotInvalidSlots() throws Exception {
+        for (int slots : new int[]{0, 65}) {
+            mockMvc.perform(
+                            put("/admin/accounts/" + accountId + "/hot")
+                                    .content(asJsonString(new HotAccountRequest(slots)))
+                                    .contentType(MediaType.APPLICATION_JSON)
+                                    .accept(MediaType.APPLICATION_JSON)
+                    )
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.error").value("400 slots must be between 1 and 64"));
+        }
+
+        verify(hotAccountsService, never()).markHot(any(UUID.class), anyInt());
+    }
+
+    @Test
+    void unmarkHot() throws Exception {
+        Account account = new Account(accountId, new Client(UUID.randomUUID()), "EUR", BigInteger.valueOf(12345));
+
+        when(hotAccountsService.unmarkHot(accountId)).thenReturn(true);
+        when(accountsRepository.findById(accountId)).thenReturn(Optional.of(account));
+        when(hotAccountsService.balance(account)).thenReturn(BigInteger.valueOf(12345));
+
+        mockMvc.perform(
+                        delete("/admin/accounts/" + accountId + "/hot")
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.balance").value(12345));
+    }
+}
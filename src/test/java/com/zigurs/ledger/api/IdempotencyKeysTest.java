@@ -0,0 +1,217 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.api.exceptions.BadRequestException;
+import com.zigurs.ledger.api.exceptions.ConflictException;
+import com.zigurs.ledger.api.requests.TransferRequest;
+import com.zigurs.ledger.api.responses.TransactionDirection;
+import com.zigurs.ledger.api.responses.TransactionView;
+import com.zigurs.ledger.data.IdempotencyKeysRepository;
+import com.zigurs.ledger.data.TransactionsRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.Transaction;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class IdempotencyKeysTest {
+
+    private static final UUID exampleUUID = UUID.fromString("d4a8ad83-93b5-4114-9df5-61127a6c61de");
+    private static final UUID exampleUUID2 = UUID.fromString("413a0b12-985d-4437-9490-bdeddb617e9e");
+    private static final UUID transactionId = UUID.fromString("424dfead-4625-4dd4-a025-642542eebfdf");
+    private static final TransferRequest request = new TransferRequest(exampleUUID, exampleUUID2, "EUR", "50");
+    private IdempotencyKeysRepository idempotencyKeysRepository;
+    private TransactionsRepository transactionsRepository;
+    private IdempotencyKeys idempotencyKeys;
+    private AtomicInteger executions;
+    private Supplier<TransactionView> transfer;
+
+    @BeforeEach
+    void setUp() {
+        idempotencyKeysRepository = mock(IdempotencyKeysRepository.class);
+        transactionsRepository = mock(TransactionsRepository.class);
+        idempotencyKeys = new IdempotencyKeys(idempotencyKeysRepository, transactionsRepository, 2, 60000, 86400000);
+
+        executions = new AtomicInteger();
+        transfer = () -> {
+            executions.incrementAndGet();
+            return view(transactionId);
+        };
+
+        when(idempotencyKeysRepository.find(anyString())).thenReturn(Optional.empty());
+        when(idempotencyKeysRepository.reserve(anyString(), anyString(), any(Instant.class), any(Instant.class))).thenReturn(true);
+    }
+
+    @Test
+    void executedOnce() {
+        TransactionView first = idempotencyKeys.execute("key", request, transfer);
+        TransactionView second = idempotencyKeys.execute("key", request, transfer);
+
+        assertEquals(first, second);
+        assertEquals(1, executions.get());
+
+        verify(idempotencyKeysRepository, times(1)).reserve(eq("key"), anyString(), any(Instant.class), any(Instant.class));
+        verify(idempotencyKeysRepository, times(1)).complete("key", transactionId);
+        // second request answered from cache
+        verify(idempotencyKeysRepository, times(1)).find("key");
+    }
+
+    @Test
+    void storedKeyAfterEviction() {
+        idempotencyKeys.execute("key", request, transfer);
+        // cache holds 2 most recent keys
+        idempotencyKeys.execute("other", request, transfer);
+        idempotencyKeys.execute("another", request, transfer);
+
+        when(idempotencyKeysRepository.find("key")).thenReturn(Optional.of(
+                new IdempotencyKeysRepository.StoredKey(IdempotencyKeys.fingerprint(request), transactionId, Instant.now())
+        ));
+        when(transactionsRepository.findById(transactionId)).thenReturn(Optional.of(transaction(transactionId)));
+
+        TransactionView view = idempotencyKeys.execute("key", request, transfer);
+
+        assertEquals(transactionId, view.transaction_id());
+        assertEquals(TransactionDirection.DEBIT, view.type());
+        assertEquals(3, executions.get());
+    }
+
+    @Test
+    void differentRequest() {
+        idempotencyKeys.execute("key", request, transfer);
+
+        TransferRequest different = new TransferRequest(exampleUUID, exampleUUID2, "EUR", "51");
+        assertThrows(BadRequestException.class, () -> idempotencyKeys.execute("key", different, transfer));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void inProgress() {
+        when(idempotencyKeysRepository.find("key")).thenReturn(Optional.of(
+                new IdempotencyKeysRepository.StoredKey(IdempotencyKeys.fingerprint(request), null, Instant.now())
+        ));
+
+        assertThrows(ConflictException.class, () -> idempotencyKeys.execute("key", request, transfer));
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void staleReservationTakenOver() {
+        when(idempotencyKeysRepository.find("key")).thenReturn(Optional.of(
+                new IdempotencyKeysRepository.StoredKey(IdempotencyKeys.fingerprint(request), null, Instant.now().minusSeconds(61))
+        ));
+
+        TransactionView view = idempotencyKeys.execute("key", request, transfer);
+
+        assertEquals(transactionId, view.transaction_id());
+        assertEquals(1, executions.get());
+        verify(idempotencyKeysRepository, times(1)).reserve(eq("key"), anyString(), any(Instant.class), any(Instant.class));
+        verify(idempotencyKeysRepository, times(1)).complete("key", transactionId);
+    }
+
+    @Test
+    void staleReservationTakenOverConcurrently() {
+        when(idempotencyKeysRepository.reserve(eq("key"), anyString(), any(Instant.class), any(Instant.class))).thenReturn(false);
+        when(idempotencyKeysRepository.find("key"))
+                .thenReturn(Optional.of(new IdempotencyKeysRepository.StoredKey(IdempotencyKeys.fingerprint(request), null, Instant.now().minusSeconds(61))))
+                .thenReturn(Optional.of(new IdempotencyKeysRepository.StoredKey(IdempotencyKeys.fingerprint(request), null, Instant.now())));
+
+        assertThrows(ConflictException.class, () -> idempotencyKeys.execute("key", request, transfer));
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void cachedWhenCompletionFails() {
+        doThrow(new RuntimeException("boom")).when(idempotencyKeysRepository).complete("key", transactionId);
+
+        assertThrows(RuntimeException.class, () -> idempotencyKeys.execute("key", request, transfer));
+
+        // retry answered from cache, not executed again
+        assertEquals(transactionId, idempotencyKeys.execute("key", request, transfer).transaction_id());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void purge() {
+        Instant before = Instant.now().minusSeconds(86400);
+
+        idempotencyKeys.purge();
+
+        verify(idempotencyKeysRepository).purge(argThat(createdBefore -> !createdBefore.isBefore(before)
+                && createdBefore.isBefore(Instant.now().minusSeconds(86399))));
+    }
+
+    @Test
+    void purgeDisabled() {
+        new IdempotencyKeys(idempotencyKeysRepository, transactionsRepository, 2, 60000, 0).purge();
+
+        verify(idempotencyKeysRepository, never()).purge(any());
+    }
+
+    @Test
+    void lostReservationRace() {
+        when(idempotencyKeysRepository.reserve(eq("key"), anyString(), any(Instant.class), any(Instant.class))).thenReturn(false);
+        when(idempotencyKeysRepository.find("key"))
+                .thenReturn(Optional.empty())
+                .thenReturn(Optional.of(new IdempotencyKeysRepository.StoredKey(IdempotencyKeys.fingerprint(request), null, Instant.now())));
+
+        assertThrows(ConflictException.class, () -> idempotencyKeys.execute("key", request, transfer));
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void releasedOnFailure() {
+        assertThrows(TransferService.TransferException.class, () -> idempotencyKeys.execute("key", request, () -> {
+            throw new TransferService.TransferException();
+        }));
+
+        verify(idempotencyKeysRepository, times(1)).release("key");
+        verify(idempotencyKeysRepository, never()).complete(anyString(), any(UUID.class));
+
+        // and can be retried
+        idempotencyKeys.execute("key", request, transfer);
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void invalidKey() {
+        assertThrows(BadRequestException.class, () -> idempotencyKeys.execute(" ", request, transfer));
+        assertThrows(BadRequestException.class, () -> idempotencyKeys.execute("x".repeat(256), request, transfer));
+        assertEquals(0, executions.get());
+    }
+
+    @Test
+    void constructorNullChecks() {
+        assertThrows(NullPointerException.class, () -> new IdempotencyKeys(idempotencyKeysRepository, null, 1, 0, 0));
+        assertThrows(NullPointerException.class, () -> new IdempotencyKeys(null, transactionsRepository, 1, 0, 0));
+    }
+
+    private static TransactionView view(UUID id) {
+        return TransactionView.fromModel(new Account(exampleUUID, null, "EUR", BigInteger.ONE), transaction(id));
+    }
+
+    private static Transaction transaction(UUID id) {
+        return new Transaction(
+                id,
+                TransactionStatus.COMPLETED,
+                Instant.ofEpochSecond(1715933225L),
+                new Account(exampleUUID, null, "EUR", BigInteger.ONE),
+                BigInteger.valueOf(5000),
+                BigInteger.valueOf(200),
+                new Account(exampleUUID2, null, "EUR", BigInteger.ONE),
+                BigInteger.valueOf(5000),
+                BigInteger.valueOf(400),
+                "tx one"
+        );
+    }
+}
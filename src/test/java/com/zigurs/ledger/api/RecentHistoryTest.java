@@ -0,0 +1,197 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.api.responses.TransactionView;
+import com.zigurs.ledger.data.LedgerEntriesRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.HistoryEntry;
+import com.zigurs.ledger.model.Transaction;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import testutils.TestClock;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RecentHistoryTest {
+
+    private static final Account account = new Account(UUID.fromString("d4a8ad83-93b5-4114-9df5-61127a6c61de"), null, "EUR", BigInteger.ZERO);
+    private static final Account otherAccount = new Account(UUID.fromString("413a0b12-985d-4437-9490-bdeddb617e9e"), null, "EUR", BigInteger.ZERO);
+    private static final Instant now = Instant.ofEpochSecond(1715933225L);
+    private final TestClock clock = new TestClock(now);
+    private LedgerEntriesRepository ledgerEntriesRepository;
+    private RecentHistory recentHistory;
+
+    @BeforeEach
+    void setUp() {
+        ledgerEntriesRepository = mock(LedgerEntriesRepository.class);
+        recentHistory = new RecentHistory(ledgerEntriesRepository, 3, 2, 5000L, "pessimistic", clock);
+    }
+
+    @Test
+    void loadedOnce() {
+        Transaction older = transaction(now.minusSeconds(2));
+        Transaction old = transaction(now.minusSeconds(1));
+        when(ledgerEntriesRepository.findHistory(account.getId(), 0, 3)).thenReturn(entries(old, older));
+
+        assertEquals(ids(old, older), ids(recentHistory.find(account.getId(), 0, 3)));
+        assertEquals(ids(older), ids(recentHistory.find(account.getId(), 1, 2)));
+
+        verify(ledgerEntriesRepository, times(1)).findHistory(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void committedTransfersAdded() {
+        Transaction old = transaction(now.minusSeconds(1));
+        when(ledgerEntriesRepository.findHistory(account.getId(), 0, 3)).thenReturn(entries(old));
+        recentHistory.find(account.getId(), 0, 1);
+
+        Transaction latest = transaction(now);
+        Transaction earlier = transaction(now.minusMillis(500));
+        // committed out of timestamp order, and reported twice
+        recentHistory.recordAfterCommit(List.of(latest));
+        recentHistory.recordAfterCommit(List.of(earlier, latest));
+
+        assertEquals(ids(latest, earlier, old), ids(recentHistory.find(account.getId(), 0, 3)));
+
+        // oldest entries fall off
+        Transaction newest = transaction(now.plusSeconds(1));
+        recentHistory.recordAfterCommit(List.of(newest));
+        assertEquals(ids(newest, latest, earlier), ids(recentHistory.find(account.getId(), 0, 3)));
+
+        verify(ledgerEntriesRepository, times(1)).findHistory(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void uncachedAccountsIgnored() {
+        recentHistory.recordAfterCommit(List.of(transaction(now)));
+
+        when(ledgerEntriesRepository.findHistory(account.getId(), 0, 3)).thenReturn(List.of());
+        assertEquals(List.of(), ids(recentHistory.find(account.getId(), 0, 3)));
+    }
+
+    @Test
+    void pagesBeyondSizeNotCached() {
+        assertTrue(recentHistory.find(account.getId(), 0, 4).isEmpty());
+        assertTrue(recentHistory.find(account.getId(), 2, 2).isEmpty());
+        assertTrue(recentHistory.find(account.getId(), 1, Integer.MAX_VALUE).isEmpty());
+
+        verify(ledgerEntriesRepository, never()).findHistory(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void leastRecentlyReadAccountEvicted() {
+        UUID third = UUID.randomUUID();
+        when(ledgerEntriesRepository.findHistory(any(), anyInt(), anyInt())).thenReturn(List.of());
+
+        recentHistory.find(account.getId(), 0, 1);
+        recentHistory.find(otherAccount.getId(), 0, 1);
+        recentHistory.find(account.getId(), 0, 1);
+        recentHistory.find(third, 0, 1);
+
+        // account read again, other account evicted
+        recentHistory.find(account.getId(), 0, 1);
+        recentHistory.find(otherAccount.getId(), 0, 1);
+
+        verify(ledgerEntriesRepository, times(1)).findHistory(account.getId(), 0, 3);
+        verify(ledgerEntriesRepository, times(2)).findHistory(otherAccount.getId(), 0, 3);
+    }
+
+    @Test
+    void reloadedAfterMaxAge() {
+        Transaction old = transaction(now.minusSeconds(1));
+        Transaction elsewhere = transaction(now);
+        when(ledgerEntriesRepository.findHistory(account.getId(), 0, 3))
+                .thenReturn(entries(old))
+                .thenReturn(entries(elsewhere, old));
+
+        assertEquals(ids(old), ids(recentHistory.find(account.getId(), 0, 3)));
+        clock.advance(Duration.ofMillis(5000L));
+        assertEquals(ids(old), ids(recentHistory.find(account.getId(), 0, 3)));
+
+        // transfer made through another instance picked up
+        clock.advance(Duration.ofMillis(1L));
+        assertEquals(ids(elsewhere, old), ids(recentHistory.find(account.getId(), 0, 3)));
+        assertEquals(ids(elsewhere, old), ids(recentHistory.find(account.getId(), 0, 3)));
+
+        verify(ledgerEntriesRepository, times(2)).findHistory(account.getId(), 0, 3);
+    }
+
+    @Test
+    void neverReloadedWithoutMaxAge() {
+        RecentHistory singleInstance = new RecentHistory(ledgerEntriesRepository, 3, 2, 0L, "pessimistic", clock);
+        when(ledgerEntriesRepository.findHistory(account.getId(), 0, 3)).thenReturn(List.of());
+
+        singleInstance.find(account.getId(), 0, 1);
+        clock.advance(Duration.ofDays(1));
+        singleInstance.find(account.getId(), 0, 1);
+
+        verify(ledgerEntriesRepository, times(1)).findHistory(account.getId(), 0, 3);
+    }
+
+    @Test
+    void failedLoadRetried() {
+        when(ledgerEntriesRepository.findHistory(account.getId(), 0, 3))
+                .thenThrow(new IllegalStateException())
+                .thenReturn(List.of());
+
+        assertThrows(IllegalStateException.class, () -> recentHistory.find(account.getId(), 0, 1));
+        assertEquals(Optional.of(List.of()), recentHistory.find(account.getId(), 0, 1));
+    }
+
+    @Test
+    void disabledForOtherModes() {
+        RecentHistory disabled = new RecentHistory(ledgerEntriesRepository, 3, 2, 5000L, "sequencer", clock);
+
+        assertTrue(disabled.find(account.getId(), 0, 1).isEmpty());
+        verify(ledgerEntriesRepository, never()).findHistory(any(), anyInt(), anyInt());
+    }
+
+    @Test
+    void constructorNullChecks() {
+        assertThrows(NullPointerException.class, () -> new RecentHistory(null, 3, 2, 5000L, "pessimistic", clock));
+        assertThrows(NullPointerException.class, () -> new RecentHistory(ledgerEntriesRepository, 3, 2, 5000L, null, clock));
+        assertThrows(NullPointerException.class, () -> new RecentHistory(ledgerEntriesRepository, 3, 2, 5000L, "pessimistic", null));
+    }
+
+    private static Transaction transaction(Instant timestamp) {
+        return new Transaction(
+                UUID.randomUUID(),
+                TransactionStatus.COMPLETED,
+                timestamp,
+                account,
+                BigInteger.ONE,
+                BigInteger.ZERO,
+                otherAccount,
+                BigInteger.ONE,
+                BigInteger.ONE,
+                "transfer"
+        );
+    }
+
+    /**
+     * Entries of {@link #account}, as read from the database.
+     */
+    private static List<HistoryEntry> entries(Transaction... transactions) {
+        return List.of(transactions).stream()
+                .map(transaction -> HistoryEntry.of(transaction.getEntries().get(0)))
+                .toList();
+    }
+
+    private static List<UUID> ids(Transaction... transactions) {
+        return List.of(transactions).stream().map(Transaction::getId).toList();
+    }
+
+    private static List<UUID> ids(Optional<List<TransactionView>> page) {
+        return page.orElseThrow().stream().map(TransactionView::transaction_id).toList();
+    }
+}
@@ -0,0 +1,118 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.api.responses.TransactionDirection;
+import com.zigurs.ledger.api.responses.TransactionView;
+import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.data.LedgerEntriesRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.Transaction;
+import com.zigurs.ledger.model.currencies.EUR;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * Transfers reported to {@link RecentHistory} by the pessimistic transfer service, against a real database - the
+ * transaction is saved with JPA, so its id is only assigned on save, and its timestamp is stored in microseconds.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:recent-history-transfers;DB_CLOSE_DELAY=-1",
+        "spring.flyway.url=jdbc:h2:mem:recent-history-transfers;DB_CLOSE_DELAY=-1",
+        // no FX provider requests
+        "fx_rate_table_base=",
+        "transfer_mode=pessimistic"
+})
+class RecentHistoryTransfersTest {
+
+    // seeded by V2 migration
+    private static final UUID CLIENT_ID = UUID.fromString("39db54e0-3627-4d6b-98a1-93ef930f96db");
+
+    @Autowired
+    private RecentHistory recentHistory;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private TransferInstructions transferInstructions;
+
+    @Autowired
+    private AccountsRepository accountsRepository;
+
+    @Autowired
+    private LedgerEntriesRepository ledgerEntriesRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void transferOfLoadedAccounts() {
+        UUID sourceId = createAccount();
+        UUID destinationId = createAccount();
+
+        // loads recent history of both accounts
+        assertEquals(Optional.of(List.of()), recentHistory.find(sourceId, 0, 10));
+        assertEquals(Optional.of(List.of()), recentHistory.find(destinationId, 0, 10));
+
+        Transaction transaction = transferService.transfer(Instant.now(), sourceId, BigInteger.TWO, destinationId, BigInteger.TWO, "cached");
+        assertNotNull(transaction.getId());
+
+        List<TransactionView> debits = recentHistory.find(sourceId, 0, 10).orElseThrow();
+        assertEquals(1, debits.size());
+        assertEquals(transaction.getId(), debits.get(0).transaction_id());
+        assertEquals(TransactionDirection.DEBIT, debits.get(0).type());
+        assertEquals(BigInteger.valueOf(998L), debits.get(0).account_balance());
+
+        List<TransactionView> credits = recentHistory.find(destinationId, 0, 10).orElseThrow();
+        assertEquals(1, credits.size());
+        assertEquals(transaction.getId(), credits.get(0).transaction_id());
+        assertEquals(TransactionDirection.CREDIT, credits.get(0).type());
+        assertEquals(BigInteger.valueOf(1002L), credits.get(0).account_balance());
+    }
+
+    @Test
+    void cursorFromCachedPage() {
+        UUID sourceId = createAccount();
+        UUID destinationId = createAccount();
+        assertEquals(Optional.of(List.of()), recentHistory.find(sourceId, 0, 10));
+
+        Account source = accountsRepository.findById(sourceId).orElseThrow();
+        Account destination = accountsRepository.findById(destinationId).orElseThrow();
+        for (int i = 0; i < 3; i++) {
+            TransferService.TransferInstruction transfer = transferInstructions.prepare(source, destination, new EUR(), BigInteger.ONE);
+            transferService.transfer(transfer.timestamp(), sourceId, BigInteger.ONE, destinationId, BigInteger.ONE, transfer.description());
+        }
+
+        // cached entries read the same as stored ones
+        List<TransactionView> cached = recentHistory.find(sourceId, 0, 3).orElseThrow();
+        assertEquals(
+                ledgerEntriesRepository.findHistory(sourceId, 0, 3).stream().map(TransactionView::fromModel).map(TransactionView::timestamp).toList(),
+                cached.stream().map(TransactionView::timestamp).toList()
+        );
+
+        // next page starts right past the last cached entry
+        HistoryCursor cursor = HistoryCursor.of(cached.get(1));
+        List<TransactionView> next = ledgerEntriesRepository.findHistoryBefore(sourceId, cursor.timestamp(), cursor.id(), 10)
+                .stream()
+                .map(TransactionView::fromModel)
+                .toList();
+        assertEquals(List.of(cached.get(2).transaction_id()), next.stream().map(TransactionView::transaction_id).toList());
+    }
+
+    private UUID createAccount() {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("insert into accounts(id, client_id, currency, balance) values (?, ?, 'EUR', 1000)", id, CLIENT_ID);
+        return id;
+    }
+}
@@ -0,0 +1,152 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.data.DailyAccountTotalsRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.Client;
+import com.zigurs.ledger.model.DailyAccountTotals;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(StatsController.class)
+class StatsControllerTest {
+
+    private static final Account account = new Account(
+            UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"),
+            new Client(UUID.randomUUID()),
+            "EUR",
+            BigInteger.valueOf(400L)
+    );
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private AccountsRepository accountsRepository;
+
+    @MockBean
+    private DailyAccountTotalsRepository dailyAccountTotalsRepository;
+
+    @MockBean
+    private HotAccountsService hotAccountsService;
+
+    @Test
+    void getStats() throws Exception {
+        LocalDate from = LocalDate.parse("2024-05-01");
+        LocalDate to = LocalDate.parse("2024-05-31");
+        when(accountsRepository.findById(account.getId())).thenReturn(Optional.of(account));
+        when(dailyAccountTotalsRepository.find(account.getId(), from, to)).thenReturn(List.of(
+                new DailyAccountTotals(
+                        LocalDate.parse("2024-05-17"),
+                        2,
+                        BigInteger.valueOf(200L),
+                        1,
+                        BigInteger.valueOf(300L),
+                        BigInteger.valueOf(100L),
+                        BigInteger.valueOf(400L)
+                )
+        ));
+
+        mockMvc.perform(get("/stats")
+                        .param("account_id", account.getId().toString())
+                        .param("from", "2024-05-01")
+                        .param("to", "2024-05-31"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.account.account_id").value(account.getId().toString()))
+                .andExpect(jsonPath("$.from").value("2024-05-01"))
+                .andExpect(jsonPath("$.to").value("2024-05-31"))
+                .andExpect(jsonPath("$.days.length()").value(1))
+                .andExpect(jsonPath("$.days[0].day").value("2024-05-17"))
+                .andExpect(jsonPath("$.days[0].debit_count").value(2))
+                .andExpect(jsonPath("$.days[0].debit_sum").value(200))
+                .andExpect(jsonPath("$.days[0].credit_count").value(1))
+                .andExpect(jsonPath("$.days[0].credit_sum").value(300))
+                .andExpect(jsonPath("$.days[0].min_balance").value(100))
+                .andExpect(jsonPath("$.days[0].max_balance").value(400));
+    }
+
+    @Test
+    void getStatsOfHotAccount() throws Exception {
+        Account hotAccount = mock(Account.class);
+        when(hotAccount.getId()).thenReturn(account.getId());
+        when(hotAccount.getCurrency()).thenReturn("EUR");
+        when(hotAccount.getBalance()).thenReturn(BigInteger.valueOf(1L));
+        when(hotAccount.getSlots()).thenReturn(4);
+
+        when(accountsRepository.findById(account.getId())).thenReturn(Optional.of(hotAccount));
+        when(hotAccountsService.balance(hotAccount)).thenReturn(BigInteger.valueOf(400L));
+        when(dailyAccountTotalsRepository.find(any(), any(), any())).thenReturn(List.of());
+
+        mockMvc.perform(get("/stats")
+                        .param("account_id", account.getId().toString()))
+                .andExpect(status().isOk())
+                // base row and all sub-balance slots
+                .andExpect(jsonPath("$.account.balance").value(400));
+    }
+
+    @Test
+    void getStatsDefaultRange() throws Exception {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        when(accountsRepository.findById(account.getId())).thenReturn(Optional.of(account));
+        when(dailyAccountTotalsRepository.find(any(), any(), any())).thenReturn(List.of());
+
+        mockMvc.perform(get("/stats")
+                        .param("account_id", account.getId().toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.days.length()").value(0));
+
+        verify(dailyAccountTotalsRepository).find(account.getId(), today.minusDays(StatsController.DEFAULT_DAYS - 1), today);
+    }
+
+    @Test
+    void getStatsInvalidRequest() throws Exception {
+        when(accountsRepository.findById(any(UUID.class))).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/stats")
+                        .param("account_id", account.getId().toString())
+                        .param("from", "2024-05-01T00:00:00Z"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 from must be an ISO-8601 date"));
+
+        mockMvc.perform(get("/stats")
+                        .param("account_id", account.getId().toString())
+                        .param("from", "2024-06-01")
+                        .param("to", "2024-05-31"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 from must not be after to"));
+
+        mockMvc.perform(get("/stats")
+                        .param("account_id", account.getId().toString())
+                        .param("from", "2023-01-01")
+                        .param("to", "2024-05-31"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 range must not exceed 366 days"));
+
+        mockMvc.perform(get("/stats")
+                        .param("account_id", account.getId().toString()))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("404 account not found"));
+
+        verify(dailyAccountTotalsRepository, never()).find(any(), any(), any());
+    }
+}
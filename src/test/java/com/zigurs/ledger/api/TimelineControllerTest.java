@@ -0,0 +1,115 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.api.responses.TimelineEntryView;
+import com.zigurs.ledger.api.responses.TransactionView;
+import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.data.ClientsRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.Client;
+import com.zigurs.ledger.model.HistoryEntry;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(TimelineController.class)
+class TimelineControllerTest {
+
+    private static final Client client = new Client(UUID.fromString("39db54e0-3627-4d6b-98a1-93ef930f96db"));
+    private static final Account eur = new Account(UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"), client, "EUR", BigInteger.valueOf(400L));
+    private static final Account usd = new Account(UUID.fromString("02bbeffa-0de8-44f9-99a6-5ee2205ec2e9"), client, "USD", BigInteger.valueOf(100L));
+    private static final TimelineEntryView entry = new TimelineEntryView(eur.getId(), "EUR", TransactionView.fromModel(new HistoryEntry(
+            UUID.fromString("9a4f5a0e-5f3c-4d8e-8a43-1e2b8f7c6d10"),
+            eur.getId(),
+            usd.getId(),
+            Instant.parse("2024-05-17T08:07:05Z"),
+            TransactionStatus.COMPLETED,
+            BigInteger.valueOf(-100L),
+            BigInteger.valueOf(400L),
+            "test"
+    )));
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ClientsRepository clientsRepository;
+
+    @MockBean
+    private AccountsRepository accountsRepository;
+
+    @MockBean
+    private ClientTimeline clientTimeline;
+
+    @Test
+    void getTimeline() throws Exception {
+        when(clientsRepository.findById(client.getId())).thenReturn(Optional.of(client));
+        when(accountsRepository.findByClientId(client.getId())).thenReturn(List.of(eur, usd));
+        when(clientTimeline.page(List.of(eur, usd), null, 1)).thenReturn(List.of(entry));
+
+        mockMvc.perform(get("/clients/{id}/timeline", client.getId())
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.client_id").value(client.getId().toString()))
+                .andExpect(jsonPath("$.limit").value(1))
+                .andExpect(jsonPath("$.entries.length()").value(1))
+                .andExpect(jsonPath("$.entries[0].account_id").value(eur.getId().toString()))
+                .andExpect(jsonPath("$.entries[0].currency").value("EUR"))
+                .andExpect(jsonPath("$.entries[0].transaction.transaction_id").value(entry.transaction().transaction_id().toString()))
+                .andExpect(jsonPath("$.next_cursor").value(HistoryCursor.of(entry.transaction()).encode()));
+    }
+
+    @Test
+    void getTimelineLastPage() throws Exception {
+        HistoryCursor cursor = HistoryCursor.of(entry.transaction());
+        when(clientsRepository.findById(client.getId())).thenReturn(Optional.of(client));
+        when(accountsRepository.findByClientId(client.getId())).thenReturn(List.of(eur, usd));
+        when(clientTimeline.page(List.of(eur, usd), cursor, HistoryController.DEFAULT_LIMIT)).thenReturn(List.of());
+
+        mockMvc.perform(get("/clients/{id}/timeline", client.getId())
+                        .param("cursor", cursor.encode()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.limit").value(HistoryController.DEFAULT_LIMIT))
+                .andExpect(jsonPath("$.entries.length()").value(0))
+                .andExpect(jsonPath("$.next_cursor").doesNotExist());
+    }
+
+    @Test
+    void getTimelineInvalidRequest() throws Exception {
+        when(clientsRepository.findById(any(UUID.class))).thenReturn(Optional.empty());
+
+        mockMvc.perform(get("/clients/{id}/timeline", client.getId())
+                        .param("limit", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 limit must be positive"));
+
+        mockMvc.perform(get("/clients/{id}/timeline", client.getId())
+                        .param("cursor", "not a cursor"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 cursor invalid"));
+
+        mockMvc.perform(get("/clients/{id}/timeline", client.getId()))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("404 client not found"));
+
+        verify(clientTimeline, never()).page(any(), any(), anyInt());
+    }
+}
@@ -0,0 +1,170 @@
+package com.zigurs.ledger.api;
+
+import com.zigurs.ledger.api.requests.TransferRequest;
+import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.data.IdempotencyKeysRepository;
+import com.zigurs.ledger.data.QueuedTransfersRepository;
+import com.zigurs.ledger.data.TransactionsRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.Client;
+import com.zigurs.ledger.model.QueuedTransfer;
+import com.zigurs.ledger.model.QueuedTransferStatus;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigInteger;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static testutils.Utils.asJsonString;
+
+@WebMvcTest(TransferController.class)
+@Import({TransferInstructions.class, IdempotencyKeys.class})
+@TestPropertySource(properties = "transfer_submission=async")
+class TransferControllerAsyncTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private AccountsRepository accountsRepository;
+
+    @MockBean
+    private TransactionsRepository transactionsRepository;
+
+    @MockBean
+    private QueuedTransfersRepository queuedTransfersRepository;
+
+    @MockBean
+    private IdempotencyKeysRepository idempotencyKeysRepository;
+
+    @MockBean
+    private CurrencyConverterService currencyConverterService;
+
+    @MockBean
+    private TransferService transferService;
+
+    @Test
+    void transferQueued() throws Exception {
+        Client client = new Client(UUID.randomUUID());
+
+        Account sourceAccount = new Account(
+                UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"),
+                client,
+                "USD",
+                BigInteger.valueOf(1L)
+        );
+
+        Account destinationAccount = new Account(
+                UUID.fromString("1ea6d532-faca-4240-aacf-0356b1e0e950"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        when(accountsRepository.findById(sourceAccount.getId())).thenReturn(Optional.of(sourceAccount));
+        when(accountsRepository.findById(destinationAccount.getId())).thenReturn(Optional.of(destinationAccount));
+
+        UUID transferId = UUID.fromString("7c1b3c8e-2f4e-4c47-9d8f-0a4f2f0b5e11");
+        when(queuedTransfersRepository.save(any(QueuedTransfer.class))).thenAnswer(i -> {
+            QueuedTransfer q = i.getArgument(0);
+            return new QueuedTransfer(
+                    transferId,
+                    q.getStatus(),
+                    q.getCreated(),
+                    q.getUpdated(),
+                    q.getSourceAccountId(),
+                    q.getDestinationAccountId(),
+                    q.getCurrency(),
+                    q.getAmount(),
+                    q.getTransactionId(),
+                    q.getError()
+            );
+        });
+
+        TransferRequest req = new TransferRequest(
+                sourceAccount.getId(),
+                destinationAccount.getId(),
+                "EUR",
+                "50"
+        );
+
+        mockMvc.perform(
+                        post("/transfer")
+                                .content(asJsonString(req))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.transfer_id").value(transferId.toString()))
+                .andExpect(jsonPath("$.status").value("PENDING"))
+                .andExpect(jsonPath("$.transaction").doesNotExist());
+
+        ArgumentCaptor<QueuedTransfer> captor = ArgumentCaptor.forClass(QueuedTransfer.class);
+        verify(queuedTransfersRepository).save(captor.capture());
+        assertEquals(QueuedTransferStatus.PENDING, captor.getValue().getStatus());
+        assertEquals(BigInteger.valueOf(5000), captor.getValue().getAmount());
+        assertEquals("EUR", captor.getValue().getCurrency());
+
+        // neither FX nor the transfer itself happen on request thread
+        verify(currencyConverterService, never()).convert(anyString(), anyString(), any());
+        verify(currencyConverterService, never()).convertAsync(anyString(), anyString(), any());
+        verify(transferService, never()).transfer(any(), any(), any(), any(), any(), anyString());
+    }
+
+    @Test
+    void transferInvalidNotQueued() throws Exception {
+        Client client = new Client(UUID.randomUUID());
+
+        Account sourceAccount = new Account(
+                UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        Account destinationAccount = new Account(
+                UUID.fromString("1ea6d532-faca-4240-aacf-0356b1e0e950"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        when(accountsRepository.findById(sourceAccount.getId())).thenReturn(Optional.of(sourceAccount));
+        when(accountsRepository.findById(destinationAccount.getId())).thenReturn(Optional.of(destinationAccount));
+
+        TransferRequest req = new TransferRequest(
+                sourceAccount.getId(),
+                destinationAccount.getId(),
+                "EUR",
+                "0"
+        );
+
+        mockMvc.perform(
+                        post("/transfer")
+                                .content(asJsonString(req))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 amount must be positive"));
+
+        verify(queuedTransfersRepository, never()).save(any(QueuedTransfer.class));
+    }
+}
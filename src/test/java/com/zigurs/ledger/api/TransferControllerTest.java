@@ -1,9 +1,17 @@
 package com.zigurs.ledger.api;
 
+import com.zigurs.ledger.api.requests.PayoutItem;
+import com.zigurs.ledger.api.requests.PayoutRequest;
+import com.zigurs.ledger.api.requests.TransferBatchRequest;
 import com.zigurs.ledger.api.requests.TransferRequest;
 import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.data.IdempotencyKeysRepository;
+import com.zigurs.ledger.data.QueuedTransfersRepository;
+import com.zigurs.ledger.data.TransactionsRepository;
 import com.zigurs.ledger.model.Account;
 import com.zigurs.ledger.model.Client;
+import com.zigurs.ledger.model.QueuedTransfer;
+import com.zigurs.ledger.model.QueuedTransferStatus;
 import com.zigurs.ledger.model.Transaction;
 import com.zigurs.ledger.model.TransactionStatus;
 
@@ -13,6 +21,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -20,17 +29,28 @@ import testutils.Snapshot;
 
 import java.math.BigInteger;
 import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static io.github.jsonSnapshot.SnapshotMatcher.*;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static testutils.Utils.asJsonString;
 
 @WebMvcTest(TransferController.class)
+@Import({TransferInstructions.class, IdempotencyKeys.class})
 class TransferControllerTest {
 
     @Autowired
@@ -39,6 +59,15 @@ class TransferControllerTest {
     @MockBean
     private AccountsRepository accountsRepository;
 
+    @MockBean
+    private TransactionsRepository transactionsRepository;
+
+    @MockBean
+    private QueuedTransfersRepository queuedTransfersRepository;
+
+    @MockBean
+    private IdempotencyKeysRepository idempotencyKeysRepository;
+
     @MockBean
     private CurrencyConverterService currencyConverterService;
 
@@ -150,8 +179,8 @@ class TransferControllerTest {
                 Optional.of(destinationAccount)
         );
 
-        when(currencyConverterService.convert("EUR", "USD", BigInteger.valueOf(5000))).thenReturn(
-                new CurrencyConverterService.CurrencyConversionResult("EUR", "USD", BigInteger.valueOf(7500))
+        when(currencyConverterService.convertAsync("EUR", "USD", BigInteger.valueOf(5000))).thenReturn(
+                CompletableFuture.completedFuture(new CurrencyConverterService.CurrencyConversionResult("EUR", "USD", BigInteger.valueOf(7500)))
         );
 
         Instant timestamp = Instant.ofEpochSecond(1715933225L);
@@ -197,6 +226,60 @@ class TransferControllerTest {
         expect(result.getResponse().getContentAsString()).toMatchSnapshot();
     }
 
+    @Test
+    void transferConversionStartedBeforeDestinationLookup() throws Exception {
+        Client client = new Client(UUID.randomUUID());
+
+        Account sourceAccount = new Account(
+                UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"),
+                client,
+                "USD",
+                BigInteger.valueOf(1L)
+        );
+
+        Account destinationAccount = new Account(
+                UUID.fromString("1ea6d532-faca-4240-aacf-0356b1e0e950"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        when(accountsRepository.findById(sourceAccount.getId())).thenReturn(
+                Optional.of(sourceAccount)
+        );
+
+        when(accountsRepository.findById(destinationAccount.getId())).thenReturn(
+                Optional.of(destinationAccount)
+        );
+
+        when(currencyConverterService.convertAsync("EUR", "USD", BigInteger.valueOf(5000))).thenReturn(
+                CompletableFuture.failedFuture(new CurrencyConverterService.CurrencyConversionException("unable to convert EUR into USD, provider unavailable"))
+        );
+
+        TransferRequest req = new TransferRequest(
+                sourceAccount.getId(),
+                destinationAccount.getId(),
+                "EUR",
+                "50"
+        );
+
+        mockMvc.perform(
+                        post("/transfer")
+                                .content(asJsonString(req))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.error").value("currency conversion unavailable"));
+
+        // FX call in flight while the destination account is looked up
+        var inOrder = inOrder(currencyConverterService, accountsRepository);
+        inOrder.verify(currencyConverterService).convertAsync("EUR", "USD", BigInteger.valueOf(5000));
+        inOrder.verify(accountsRepository).findById(destinationAccount.getId());
+        verify(currencyConverterService, never()).convert(anyString(), anyString(), any());
+        verify(transferService, never()).transfer(any(), any(), any(), any(), any(), anyString());
+    }
+
     @Test
     void transferMissingAccount() throws Exception {
         Client client = new Client(UUID.randomUUID());
@@ -264,6 +347,9 @@ class TransferControllerTest {
                 Optional.empty()
         );
 
+        CompletableFuture<CurrencyConverterService.CurrencyConversionResult> conversion = new CompletableFuture<>();
+        when(currencyConverterService.convertAsync("EUR", "USD", BigInteger.valueOf(5000))).thenReturn(conversion);
+
         TransferRequest req = new TransferRequest(
                 sourceAccount.getId(),
                 destinationAccount.getId(),
@@ -281,6 +367,54 @@ class TransferControllerTest {
                 .andReturn();
 
         expect(result.getResponse().getContentAsString()).toMatchSnapshot();
+        // started ahead of the destination lookup, given up once the transfer is rejected
+        assertTrue(conversion.isCancelled());
+    }
+
+    @Test
+    void transferUnknownCurrencyNotConverted() throws Exception {
+        Client client = new Client(UUID.randomUUID());
+
+        Account sourceAccount = new Account(
+                UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"),
+                client,
+                "USD",
+                BigInteger.valueOf(1L)
+        );
+
+        Account destinationAccount = new Account(
+                UUID.fromString("1ea6d532-faca-4240-aacf-0356b1e0e950"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        when(accountsRepository.findById(sourceAccount.getId())).thenReturn(
+                Optional.of(sourceAccount)
+        );
+
+        when(accountsRepository.findById(destinationAccount.getId())).thenReturn(
+                Optional.of(destinationAccount)
+        );
+
+        TransferRequest req = new TransferRequest(
+                sourceAccount.getId(),
+                destinationAccount.getId(),
+                "ZZZ",
+                "50"
+        );
+
+        mockMvc.perform(
+                        post("/transfer")
+                                .content(asJsonString(req))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 currency does not match destination account"));
+
+        // rejected before the FX provider is asked to convert it
+        verify(currencyConverterService, never()).convertAsync(anyString(), anyString(), any());
     }
 
     @Test
@@ -489,8 +623,8 @@ class TransferControllerTest {
                 Optional.of(destinationAccount)
         );
 
-        when(currencyConverterService.convert("EUR", "USD", BigInteger.valueOf(5000))).thenReturn(
-                new CurrencyConverterService.CurrencyConversionResult("EUR", "USD", BigInteger.valueOf(0))
+        when(currencyConverterService.convertAsync("EUR", "USD", BigInteger.valueOf(5000))).thenReturn(
+                CompletableFuture.completedFuture(new CurrencyConverterService.CurrencyConversionResult("EUR", "USD", BigInteger.valueOf(0)))
         );
 
         Instant timestamp = Instant.ofEpochSecond(1715933225L);
@@ -562,8 +696,8 @@ class TransferControllerTest {
                 Optional.of(destinationAccount)
         );
 
-        when(currencyConverterService.convert("EUR", "USD", BigInteger.valueOf(50))).thenReturn(
-                new CurrencyConverterService.CurrencyConversionResult("EUR", "USD", BigInteger.valueOf(75))
+        when(currencyConverterService.convertAsync("EUR", "USD", BigInteger.valueOf(50))).thenReturn(
+                CompletableFuture.completedFuture(new CurrencyConverterService.CurrencyConversionResult("EUR", "USD", BigInteger.valueOf(75)))
         );
 
         when(transferService.transfer(
@@ -595,4 +729,431 @@ class TransferControllerTest {
 
         expect(result.getResponse().getContentAsString()).toMatchSnapshot();
     }
-}
\ No newline at end of file
+
+    @Test
+    void transferBatchHappyPath() throws Exception {
+        Client client = new Client(UUID.randomUUID());
+
+        Account sourceAccount = new Account(
+                UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        Account destinationAccount = new Account(
+                UUID.fromString("1ea6d532-faca-4240-aacf-0356b1e0e950"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        when(accountsRepository.findAllByIdIn(anyCollection())).thenReturn(
+                List.of(sourceAccount, destinationAccount)
+        );
+
+        Instant timestamp = Instant.ofEpochSecond(1715933225L);
+
+        when(transferService.transferAll(anyList())).thenReturn(List.of(
+                new Transaction(
+                        UUID.fromString("424dfead-4625-4dd4-a025-642542eebfdf"),
+                        TransactionStatus.COMPLETED,
+                        timestamp,
+                        sourceAccount,
+                        BigInteger.valueOf(5000),
+                        BigInteger.valueOf(200),
+                        destinationAccount,
+                        BigInteger.valueOf(5000),
+                        BigInteger.valueOf(400),
+                        "tx one"
+                ),
+                new Transaction(
+                        UUID.fromString("ed713c8c-46d1-43b2-9474-63e702983958"),
+                        TransactionStatus.FAILED,
+                        timestamp,
+                        sourceAccount,
+                        BigInteger.valueOf(100000),
+                        BigInteger.valueOf(200),
+                        destinationAccount,
+                        BigInteger.valueOf(100000),
+                        BigInteger.valueOf(400),
+                        "insufficient balance"
+                )
+        ));
+
+        TransferBatchRequest req = new TransferBatchRequest(List.of(
+                new TransferRequest(sourceAccount.getId(), destinationAccount.getId(), "EUR", "50"),
+                new TransferRequest(UUID.randomUUID(), destinationAccount.getId(), "EUR", "50"),
+                new TransferRequest(sourceAccount.getId(), destinationAccount.getId(), "EUR", "1000"),
+                new TransferRequest(sourceAccount.getId(), destinationAccount.getId(), "USD", "50")
+        ));
+
+        mockMvc.perform(
+                        post("/transfers/batch")
+                                .content(asJsonString(req))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transfers.length()").value(4))
+                .andExpect(jsonPath("$.transfers[0].index").value(0))
+                .andExpect(jsonPath("$.transfers[0].status").value("COMPLETED"))
+                .andExpect(jsonPath("$.transfers[0].transaction.transaction_id").value("424dfead-4625-4dd4-a025-642542eebfdf"))
+                .andExpect(jsonPath("$.transfers[0].transaction.type").value("DEBIT"))
+                .andExpect(jsonPath("$.transfers[1].index").value(1))
+                .andExpect(jsonPath("$.transfers[1].status").value("FAILED"))
+                .andExpect(jsonPath("$.transfers[1].error").value("source_account_id invalid"))
+                .andExpect(jsonPath("$.transfers[2].index").value(2))
+                .andExpect(jsonPath("$.transfers[2].status").value("FAILED"))
+                .andExpect(jsonPath("$.transfers[2].transaction.transaction_id").value("ed713c8c-46d1-43b2-9474-63e702983958"))
+                .andExpect(jsonPath("$.transfers[2].error").value("insufficient balance"))
+                .andExpect(jsonPath("$.transfers[3].index").value(3))
+                .andExpect(jsonPath("$.transfers[3].status").value("FAILED"))
+                .andExpect(jsonPath("$.transfers[3].error").value("currency does not match destination account"));
+
+        // single lookup for all accounts
+        verify(accountsRepository, never()).findById(any(UUID.class));
+    }
+
+    @Test
+    void transferBatchNothingToTransfer() throws Exception {
+        when(accountsRepository.findAllByIdIn(anyCollection())).thenReturn(List.of());
+
+        TransferBatchRequest req = new TransferBatchRequest(List.of(
+                new TransferRequest(UUID.randomUUID(), UUID.randomUUID(), "EUR", "50")
+        ));
+
+        mockMvc.perform(
+                        post("/transfers/batch")
+                                .content(asJsonString(req))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transfers[0].status").value("FAILED"))
+                .andExpect(jsonPath("$.transfers[0].error").value("source_account_id invalid"));
+
+        verify(transferService, never()).transferAll(anyList());
+    }
+
+    @Test
+    void transferBatchTooLarge() throws Exception {
+        TransferRequest transfer = new TransferRequest(UUID.randomUUID(), UUID.randomUUID(), "EUR", "50");
+        TransferBatchRequest req = new TransferBatchRequest(Collections.nCopies(10001, transfer));
+
+        mockMvc.perform(
+                        post("/transfers/batch")
+                                .content(asJsonString(req))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 at most 10000 transfers allowed per batch"));
+    }
+
+    @Test
+    void payoutHappyPath() throws Exception {
+        Client client = new Client(UUID.randomUUID());
+
+        Account sourceAccount = new Account(
+                UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"),
+                client,
+                "EUR",
+                BigInteger.valueOf(100000L)
+        );
+
+        Account destinationAccount = new Account(
+                UUID.fromString("1ea6d532-faca-4240-aacf-0356b1e0e950"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        when(accountsRepository.findById(sourceAccount.getId())).thenReturn(Optional.of(sourceAccount));
+        when(accountsRepository.findAllByIdIn(anyCollection())).thenReturn(List.of(destinationAccount));
+
+        Instant timestamp = Instant.ofEpochSecond(1715933225L);
+
+        when(transferService.payout(anyList())).thenReturn(List.of(
+                new Transaction(
+                        UUID.fromString("424dfead-4625-4dd4-a025-642542eebfdf"),
+                        TransactionStatus.COMPLETED,
+                        timestamp,
+                        sourceAccount,
+                        BigInteger.valueOf(5000),
+                        BigInteger.valueOf(95000),
+                        destinationAccount,
+                        BigInteger.valueOf(5000),
+                        BigInteger.valueOf(5001),
+                        "payout one"
+                ),
+                new Transaction(
+                        UUID.fromString("ed713c8c-46d1-43b2-9474-63e702983958"),
+                        TransactionStatus.COMPLETED,
+                        timestamp,
+                        sourceAccount,
+                        BigInteger.valueOf(1000),
+                        BigInteger.valueOf(94000),
+                        destinationAccount,
+                        BigInteger.valueOf(1000),
+                        BigInteger.valueOf(6001),
+                        "payout two"
+                )
+        ));
+
+        PayoutRequest req = new PayoutRequest(sourceAccount.getId(), List.of(
+                new PayoutItem(destinationAccount.getId(), "EUR", "50"),
+                new PayoutItem(destinationAccount.getId(), "EUR", "10")
+        ));
+
+        mockMvc.perform(
+                        post("/transfers/payout")
+                                .content(asJsonString(req))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.transactions.length()").value(2))
+                .andExpect(jsonPath("$.transactions[0].transaction_id").value("424dfead-4625-4dd4-a025-642542eebfdf"))
+                .andExpect(jsonPath("$.transactions[0].type").value("DEBIT"))
+                .andExpect(jsonPath("$.transactions[0].account_balance").value(95000))
+                .andExpect(jsonPath("$.transactions[1].transaction_id").value("ed713c8c-46d1-43b2-9474-63e702983958"))
+                .andExpect(jsonPath("$.transactions[1].account_balance").value(94000));
+
+        // single lookup for all destinations, single unit of work for all payouts
+        verify(accountsRepository, times(1)).findById(any(UUID.class));
+        verify(transferService, times(1)).payout(argThat(payouts -> payouts.size() == 2));
+        verify(transferService, never()).transfer(any(), any(), any(), any(), any(), anyString());
+    }
+
+    @Test
+    void payoutInvalidItemRejectsAll() throws Exception {
+        Client client = new Client(UUID.randomUUID());
+
+        Account sourceAccount = new Account(
+                UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"),
+                client,
+                "EUR",
+                BigInteger.valueOf(100000L)
+        );
+
+        Account destinationAccount = new Account(
+                UUID.fromString("1ea6d532-faca-4240-aacf-0356b1e0e950"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        when(accountsRepository.findById(sourceAccount.getId())).thenReturn(Optional.of(sourceAccount));
+        when(accountsRepository.findAllByIdIn(anyCollection())).thenReturn(List.of(destinationAccount));
+
+        PayoutRequest req = new PayoutRequest(sourceAccount.getId(), List.of(
+                new PayoutItem(destinationAccount.getId(), "EUR", "50"),
+                new PayoutItem(UUID.randomUUID(), "EUR", "50")
+        ));
+
+        mockMvc.perform(
+                        post("/transfers/payout")
+                                .content(asJsonString(req))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("400 payouts[1] destination_account_id invalid"));
+
+        verify(transferService, never()).payout(anyList());
+    }
+
+    @Test
+    void payoutMissingSourceAccount() throws Exception {
+        when(accountsRepository.findById(any(UUID.class))).thenReturn(Optional.empty());
+
+        PayoutRequest req = new PayoutRequest(UUID.randomUUID(), List.of(
+                new PayoutItem(UUID.randomUUID(), "EUR", "50")
+        ));
+
+        mockMvc.perform(
+                        post("/transfers/payout")
+                                .content(asJsonString(req))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("404 source_account_id invalid"));
+
+        verify(transferService, never()).payout(anyList());
+    }
+
+    @Test
+    void payoutTooLarge() throws Exception {
+        PayoutItem payout = new PayoutItem(UUID.randomUUID(), "EUR", "50");
+
+        for (List<PayoutItem> payouts : List.of(List.<PayoutItem>of(), Collections.nCopies(10001, payout))) {
+            mockMvc.perform(
+                            post("/transfers/payout")
+                                    .content(asJsonString(new PayoutRequest(UUID.randomUUID(), payouts)))
+                                    .contentType(MediaType.APPLICATION_JSON)
+                                    .accept(MediaType.APPLICATION_JSON)
+                    )
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.error").value("400 between 1 and 10000 payouts allowed"));
+        }
+    }
+
+    @Test
+    void getTransferCompleted() throws Exception {
+        Client client = new Client(UUID.randomUUID());
+
+        Account sourceAccount = new Account(
+                UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        Account destinationAccount = new Account(
+                UUID.fromString("1ea6d532-faca-4240-aacf-0356b1e0e950"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        UUID transferId = UUID.fromString("7c1b3c8e-2f4e-4c47-9d8f-0a4f2f0b5e11");
+        UUID transactionId = UUID.fromString("424dfead-4625-4dd4-a025-642542eebfdf");
+        Instant timestamp = Instant.ofEpochSecond(1715933225L);
+
+        when(queuedTransfersRepository.findById(transferId)).thenReturn(Optional.of(
+                new QueuedTransfer(
+                        transferId,
+                        QueuedTransferStatus.COMPLETED,
+                        timestamp,
+                        timestamp,
+                        sourceAccount.getId(),
+                        destinationAccount.getId(),
+                        "EUR",
+                        BigInteger.valueOf(5000),
+                        transactionId,
+                        null
+                )
+        ));
+
+        when(transactionsRepository.findById(transactionId)).thenReturn(Optional.of(
+                new Transaction(
+                        transactionId,
+                        TransactionStatus.COMPLETED,
+                        timestamp,
+                        sourceAccount,
+                        BigInteger.valueOf(5000),
+                        BigInteger.valueOf(200),
+                        destinationAccount,
+                        BigInteger.valueOf(5000),
+                        BigInteger.valueOf(400),
+                        "tx one"
+                )
+        ));
+
+        mockMvc.perform(
+                        get("/transfer/" + transferId)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transfer_id").value(transferId.toString()))
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.transaction.transaction_id").value(transactionId.toString()))
+                .andExpect(jsonPath("$.error").doesNotExist());
+    }
+
+    @Test
+    void getTransferMissing() throws Exception {
+        when(queuedTransfersRepository.findById(any(UUID.class))).thenReturn(Optional.empty());
+
+        mockMvc.perform(
+                        get("/transfer/" + UUID.randomUUID())
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("404 transfer not found"));
+    }
+
+    @Test
+    void transferSyncDoesNotQueue() throws Exception {
+        when(accountsRepository.findById(any(UUID.class))).thenReturn(Optional.empty());
+
+        TransferRequest req = new TransferRequest(UUID.randomUUID(), UUID.randomUUID(), "EUR", "50");
+
+        mockMvc.perform(
+                        post("/transfer")
+                                .content(asJsonString(req))
+                                .contentType(MediaType.APPLICATION_JSON)
+                                .accept(MediaType.APPLICATION_JSON)
+                )
+                .andExpect(status().isNotFound());
+
+        verify(queuedTransfersRepository, never()).save(any(QueuedTransfer.class));
+    }
+
+    @Test
+    void transferIdempotentRepeat() throws Exception {
+        Client client = new Client(UUID.randomUUID());
+
+        Account sourceAccount = new Account(
+                UUID.fromString("306b74d2-adea-4592-9f8a-981e80a7e041"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        Account destinationAccount = new Account(
+                UUID.fromString("1ea6d532-faca-4240-aacf-0356b1e0e950"),
+                client,
+                "EUR",
+                BigInteger.valueOf(1L)
+        );
+
+        when(accountsRepository.findById(sourceAccount.getId())).thenReturn(Optional.of(sourceAccount));
+        when(accountsRepository.findById(destinationAccount.getId())).thenReturn(Optional.of(destinationAccount));
+        when(idempotencyKeysRepository.find(anyString())).thenReturn(Optional.empty());
+        when(idempotencyKeysRepository.reserve(eq("retry-me"), anyString(), any(Instant.class), any(Instant.class))).thenReturn(true);
+
+        UUID transactionId = UUID.fromString("424dfead-4625-4dd4-a025-642542eebfdf");
+        when(transferService.transfer(any(), any(), any(), any(), any(), anyString())).thenReturn(
+                new Transaction(
+                        transactionId,
+                        TransactionStatus.COMPLETED,
+                        Instant.ofEpochSecond(1715933225L),
+                        sourceAccount,
+                        BigInteger.valueOf(5000),
+                        BigInteger.valueOf(200),
+                        destinationAccount,
+                        BigInteger.valueOf(5000),
+                        BigInteger.valueOf(400),
+                        "tx one"
+                )
+        );
+
+        TransferRequest req = new TransferRequest(
+                sourceAccount.getId(),
+                destinationAccount.getId(),
+                "EUR",
+                "50"
+        );
+
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(
+                            post("/transfer")
+                                    .header(IdempotencyKeys.HEADER, "retry-me")
+                                    .content(asJsonString(req))
+                                    .contentType(MediaType.APPLICATION_JSON)
+                                    .accept(MediaType.APPLICATION_JSON)
+                    )
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.transaction_id").value(transactionId.toString()));
+        }
+
+        // second request answered from cache
+        verify(transferService, times(1)).transfer(any(), any(), any(), any(), any(), anyString());
+        verify(accountsRepository, times(1)).findById(sourceAccount.getId());
+        verify(idempotencyKeysRepository, times(1)).complete("retry-me", transactionId);
+    }
+}
@@ -13,6 +13,7 @@ class HistoryRequestTest {
     void assertConstructor() {
         assertThrows(NullPointerException.class, () -> {
                     new HistoryRequest(
+                            null,
                             null,
                             null,
                             null
@@ -24,6 +25,7 @@ class HistoryRequestTest {
                     new HistoryRequest(
                             UUID.randomUUID(),
                             null,
+                            null,
                             null
                     );
                 }
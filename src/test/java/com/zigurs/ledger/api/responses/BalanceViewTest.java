@@ -0,0 +1,55 @@
+package com.zigurs.ledger.api.responses;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BalanceViewTest {
+
+    @Test
+    void assertConstructor() {
+        assertThrows(NullPointerException.class, () -> {
+                    new BalanceView(
+                            null,
+                            "XYZ",
+                            Instant.now(),
+                            BigInteger.valueOf(1L)
+                    );
+                }
+        );
+
+        assertThrows(NullPointerException.class, () -> {
+                    new BalanceView(
+                            UUID.randomUUID(),
+                            null,
+                            Instant.now(),
+                            BigInteger.valueOf(1L)
+                    );
+                }
+        );
+
+        assertThrows(NullPointerException.class, () -> {
+                    new BalanceView(
+                            UUID.randomUUID(),
+                            "XYZ",
+                            null,
+                            BigInteger.valueOf(1L)
+                    );
+                }
+        );
+
+        assertThrows(NullPointerException.class, () -> {
+                    new BalanceView(
+                            UUID.randomUUID(),
+                            "XYZ",
+                            Instant.now(),
+                            null
+                    );
+                }
+        );
+    }
+}
@@ -17,7 +17,8 @@ class HistoryResponseTest {
                             null,
                             0,
                             0,
-                            Collections.emptyList()
+                            Collections.emptyList(),
+                            null
                     );
                 }
         );
@@ -27,6 +28,7 @@ class HistoryResponseTest {
                             new AccountView(UUID.randomUUID(), "XYZ", BigInteger.valueOf(1L)),
                             0,
                             0,
+                            null,
                             null
                     );
                 }
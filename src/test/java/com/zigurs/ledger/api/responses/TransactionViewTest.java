@@ -1,5 +1,10 @@
 package com.zigurs.ledger.api.responses;
 
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.HistoryEntry;
+import com.zigurs.ledger.model.Transaction;
+import com.zigurs.ledger.model.TransactionStatus;
+
 import org.junit.jupiter.api.Test;
 
 import java.math.BigInteger;
@@ -7,6 +12,7 @@ import java.time.Instant;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class TransactionViewTest {
@@ -173,4 +179,32 @@ class TransactionViewTest {
                 }
         );
     }
-}
\ No newline at end of file
+
+    @Test
+    void fromLedgerEntries() {
+        Account source = new Account(UUID.randomUUID(), null, "EUR", BigInteger.ZERO);
+        Account destination = new Account(UUID.randomUUID(), null, "USD", BigInteger.ZERO);
+
+        Transaction transaction = new Transaction(
+                UUID.randomUUID(),
+                TransactionStatus.COMPLETED,
+                Instant.now(),
+                source,
+                BigInteger.valueOf(100L),
+                BigInteger.valueOf(200L),
+                destination,
+                BigInteger.valueOf(300L),
+                BigInteger.valueOf(400L),
+                "description"
+        );
+
+        // entries give the same views as the transaction seen from either account
+        HistoryEntry debit = HistoryEntry.of(transaction.getEntries().get(0));
+        HistoryEntry credit = HistoryEntry.of(transaction.getEntries().get(1));
+
+        assertEquals(TransactionView.fromModel(source, transaction), TransactionView.fromModel(debit));
+        assertEquals(TransactionView.fromModel(destination, transaction), TransactionView.fromModel(credit));
+        assertEquals(TransactionDirection.DEBIT, TransactionView.fromModel(debit).type());
+        assertEquals(BigInteger.valueOf(100L), TransactionView.fromModel(debit).amount());
+    }
+}
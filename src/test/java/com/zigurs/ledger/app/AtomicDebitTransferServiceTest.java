@@ -0,0 +1,209 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.api.TransferService;
+import com.zigurs.ledger.data.AccountBalancesRepository;
+import com.zigurs.ledger.data.TransactionsBatchRepository;
+import com.zigurs.ledger.model.Transaction;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class AtomicDebitTransferServiceTest {
+
+    // exampleUUID is "smaller" than exampleUUID2
+    private static final UUID exampleUUID = UUID.fromString("d4a8ad83-93b5-4114-9df5-61127a6c61de");
+    private static final UUID exampleUUID2 = UUID.fromString("413a0b12-985d-4437-9490-bdeddb617e9e");
+    private static final BigInteger exampleAmount = BigInteger.valueOf(1L);
+    private AtomicDebitTransferService transferService;
+    private AccountBalancesRepository accountBalancesRepository;
+    private TransactionsBatchRepository transactionsBatchRepository;
+
+    @BeforeEach
+    void setUp() {
+        accountBalancesRepository = mock(AccountBalancesRepository.class);
+        transactionsBatchRepository = mock(TransactionsBatchRepository.class);
+
+        transferService = new AtomicDebitTransferService(
+                accountBalancesRepository,
+                transactionsBatchRepository
+        );
+    }
+
+    @Test
+    void greenPath() throws TransferService.TransferException {
+        when(accountBalancesRepository.debit(exampleUUID, exampleAmount)).thenReturn(Optional.of(BigInteger.ZERO));
+        when(accountBalancesRepository.credit(exampleUUID2, exampleAmount)).thenReturn(Optional.of(BigInteger.TWO));
+
+        Transaction tx = transferService.transfer(
+                Instant.now(),
+                exampleUUID,
+                exampleAmount,
+                exampleUUID2,
+                exampleAmount,
+                "happy transfer"
+        );
+
+        assertNotNull(tx, "Expected transaction, but none returned");
+        assertNotNull(tx.getId(), "Expected transaction id to be assigned");
+        assertEquals(exampleUUID, tx.getSourceAccount().getId(), "incorrect source account");
+        assertEquals(exampleUUID2, tx.getDestinationAccount().getId(), "incorrect destination account");
+        assertEquals(TransactionStatus.COMPLETED, tx.getStatus(), "incorrect status");
+        assertEquals(0L, tx.getSourceBalance().longValue(), "incorrect source balance");
+        assertEquals(2L, tx.getDestinationBalance().longValue(), "incorrect destination balance");
+        assertEquals("happy transfer", tx.getDescription(), "incorrect description");
+
+        var inOrder = inOrder(accountBalancesRepository, transactionsBatchRepository);
+        inOrder.verify(accountBalancesRepository).debit(exampleUUID, exampleAmount);
+        inOrder.verify(accountBalancesRepository).credit(exampleUUID2, exampleAmount);
+        inOrder.verify(transactionsBatchRepository).insertAll(List.of(tx));
+        verify(accountBalancesRepository, never()).findBalance(any(UUID.class));
+    }
+
+    @Test
+    void reversedOrder() throws TransferService.TransferException {
+        when(accountBalancesRepository.credit(exampleUUID, exampleAmount)).thenReturn(Optional.of(BigInteger.TWO));
+        when(accountBalancesRepository.debit(exampleUUID2, exampleAmount)).thenReturn(Optional.of(BigInteger.ZERO));
+
+        Transaction tx = transferService.transfer(
+                Instant.now(),
+                exampleUUID2,
+                exampleAmount,
+                exampleUUID,
+                exampleAmount,
+                "happy transfer"
+        );
+
+        assertEquals(TransactionStatus.COMPLETED, tx.getStatus(), "incorrect status");
+
+        // "smaller" account is always updated first
+        var inOrder = inOrder(accountBalancesRepository);
+        inOrder.verify(accountBalancesRepository).credit(exampleUUID, exampleAmount);
+        inOrder.verify(accountBalancesRepository).debit(exampleUUID2, exampleAmount);
+    }
+
+    @Test
+    void insufficientBalance() throws TransferService.TransferException {
+        when(accountBalancesRepository.debit(exampleUUID, exampleAmount)).thenReturn(Optional.empty());
+        when(accountBalancesRepository.findBalance(exampleUUID)).thenReturn(Optional.of(BigInteger.ZERO));
+        when(accountBalancesRepository.findBalance(exampleUUID2)).thenReturn(Optional.of(BigInteger.ONE));
+
+        Transaction tx = transferService.transfer(
+                Instant.now(),
+                exampleUUID,
+                exampleAmount,
+                exampleUUID2,
+                exampleAmount,
+                "insufficient balance"
+        );
+
+        assertEquals(TransactionStatus.FAILED, tx.getStatus(), "incorrect status");
+        assertEquals("insufficient balance", tx.getDescription(), "incorrect description");
+        assertEquals(0L, tx.getSourceBalance().longValue(), "incorrect source balance");
+        assertEquals(1L, tx.getDestinationBalance().longValue(), "incorrect destination balance");
+
+        verify(accountBalancesRepository, never()).credit(any(UUID.class), any(BigInteger.class));
+        verify(transactionsBatchRepository, times(1)).insertAll(List.of(tx));
+    }
+
+    @Test
+    void insufficientBalanceReversedOrder() throws TransferService.TransferException {
+        when(accountBalancesRepository.credit(exampleUUID, exampleAmount)).thenReturn(Optional.of(BigInteger.TWO));
+        when(accountBalancesRepository.debit(exampleUUID2, exampleAmount)).thenReturn(Optional.empty());
+        when(accountBalancesRepository.findBalance(exampleUUID)).thenReturn(Optional.of(BigInteger.ONE));
+        when(accountBalancesRepository.findBalance(exampleUUID2)).thenReturn(Optional.of(BigInteger.ZERO));
+
+        Transaction tx = transferService.transfer(
+                Instant.now(),
+                exampleUUID2,
+                exampleAmount,
+                exampleUUID,
+                exampleAmount,
+                "insufficient balance"
+        );
+
+        assertEquals(TransactionStatus.FAILED, tx.getStatus(), "incorrect status");
+        assertEquals(1L, tx.getDestinationBalance().longValue(), "incorrect destination balance");
+
+        // credit is reverted
+        verify(accountBalancesRepository, times(1)).credit(exampleUUID, exampleAmount.negate());
+    }
+
+    @Test
+    void invalidAccounts() throws TransferService.TransferException {
+        assertThrows(TransferService.TransferException.class, () -> transferService.transfer(
+                        Instant.now(),
+                        exampleUUID,
+                        exampleAmount,
+                        exampleUUID,
+                        exampleAmount,
+                        "happy transfer"
+                )
+        );
+
+        verifyNoInteractions(accountBalancesRepository, transactionsBatchRepository);
+    }
+
+    @Test
+    void invalidSourceAccount() throws TransferService.TransferException {
+        when(accountBalancesRepository.debit(exampleUUID, exampleAmount)).thenReturn(Optional.empty());
+        when(accountBalancesRepository.findBalance(exampleUUID)).thenReturn(Optional.empty());
+
+        assertThrows(TransferService.TransferException.class,
+                () -> transferService.transfer(
+                        Instant.now(),
+                        exampleUUID,
+                        exampleAmount,
+                        exampleUUID2,
+                        exampleAmount,
+                        ""
+                )
+        );
+
+        verify(transactionsBatchRepository, never()).insertAll(anyList());
+    }
+
+    @Test
+    void invalidDestinationAccount() throws TransferService.TransferException {
+        when(accountBalancesRepository.debit(exampleUUID, exampleAmount)).thenReturn(Optional.of(BigInteger.ZERO));
+        when(accountBalancesRepository.credit(exampleUUID2, exampleAmount)).thenReturn(Optional.empty());
+
+        assertThrows(TransferService.TransferException.class,
+                () -> transferService.transfer(
+                        Instant.now(),
+                        exampleUUID,
+                        exampleAmount,
+                        exampleUUID2,
+                        exampleAmount,
+                        ""
+                )
+        );
+
+        verify(transactionsBatchRepository, never()).insertAll(anyList());
+    }
+
+    @Test
+    void constructorNullChecks() {
+        assertThrows(NullPointerException.class, () -> new AtomicDebitTransferService(accountBalancesRepository, null));
+        assertThrows(NullPointerException.class, () -> new AtomicDebitTransferService(null, transactionsBatchRepository));
+    }
+
+    @Test
+    void transferNullChecks() {
+        assertThrows(NullPointerException.class, () -> transferService.transfer(null, exampleUUID, exampleAmount, exampleUUID2, exampleAmount, ""));
+        assertThrows(NullPointerException.class, () -> transferService.transfer(Instant.now(), null, exampleAmount, exampleUUID2, exampleAmount, ""));
+        assertThrows(NullPointerException.class, () -> transferService.transfer(Instant.now(), exampleUUID, null, exampleUUID2, exampleAmount, ""));
+        assertThrows(NullPointerException.class, () -> transferService.transfer(Instant.now(), exampleUUID, exampleAmount, null, exampleAmount, ""));
+        assertThrows(NullPointerException.class, () -> transferService.transfer(Instant.now(), exampleUUID, exampleAmount, exampleUUID2, null, ""));
+        assertThrows(NullPointerException.class, () -> transferService.transfer(Instant.now(), exampleUUID, exampleAmount, exampleUUID2, exampleAmount, null));
+    }
+}
@@ -0,0 +1,115 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.data.BalanceCheckpointsRepository;
+import com.zigurs.ledger.data.LedgerEntriesRepository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BalanceCheckpointerTest {
+
+    private static final Instant midnight = Instant.parse("2024-05-17T00:00:00Z");
+    private BalanceCheckpointsRepository balanceCheckpointsRepository;
+    private LedgerEntriesRepository ledgerEntriesRepository;
+    private PlatformTransactionManager transactionManager;
+    private BalanceCheckpointer balanceCheckpointer;
+
+    @BeforeEach
+    void setUp() {
+        balanceCheckpointsRepository = mock(BalanceCheckpointsRepository.class);
+        ledgerEntriesRepository = mock(LedgerEntriesRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        balanceCheckpointer = new BalanceCheckpointer(balanceCheckpointsRepository, ledgerEntriesRepository, transactionManager, 24, 60000);
+    }
+
+    @Test
+    void continuesFromProgress() {
+        UUID accountId = UUID.randomUUID();
+        Map<UUID, BigInteger> balances = Map.of(accountId, BigInteger.TEN);
+        when(balanceCheckpointsRepository.lockProgress()).thenReturn(Optional.of(midnight));
+        when(balanceCheckpointsRepository.findClosingBalances(eq(midnight), eq(midnight.plusSeconds(86400)), any())).thenReturn(balances);
+
+        assertTrue(balanceCheckpointer.checkpointNextPeriod(midnight.plusSeconds(86400)));
+
+        verify(balanceCheckpointsRepository, times(1)).saveAll(midnight.plusSeconds(86400), balances);
+        verify(balanceCheckpointsRepository, times(1)).updateProgress(midnight.plusSeconds(86400));
+        verify(balanceCheckpointsRepository, never()).findFirstTransactionTimestamp();
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void startsFromFirstTransaction() {
+        when(balanceCheckpointsRepository.lockProgress()).thenReturn(Optional.empty());
+        when(balanceCheckpointsRepository.findFirstTransactionTimestamp()).thenReturn(Optional.of(midnight.plusSeconds(3600)));
+        when(balanceCheckpointsRepository.findClosingBalances(any(), any(), any())).thenReturn(Map.of());
+
+        assertTrue(balanceCheckpointer.checkpointNextPeriod(midnight.plusSeconds(86400 * 5)));
+
+        // aligned to the start of the period
+        verify(balanceCheckpointsRepository, times(1)).findClosingBalances(eq(midnight), eq(midnight.plusSeconds(86400)), any());
+        verify(balanceCheckpointsRepository, times(1)).updateProgress(midnight.plusSeconds(86400));
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    void firstCheckpointOfAccountReplayedFromCurrentBalance() {
+        UUID accountId = UUID.randomUUID();
+        when(balanceCheckpointsRepository.lockProgress()).thenReturn(Optional.of(midnight));
+        when(ledgerEntriesRepository.findBalanceBefore(accountId, midnight)).thenReturn(BigInteger.valueOf(42));
+
+        balanceCheckpointer.checkpointNextPeriod(midnight.plusSeconds(86400));
+
+        ArgumentCaptor<Function<UUID, BigInteger>> openingBalance = ArgumentCaptor.forClass(Function.class);
+        verify(balanceCheckpointsRepository).findClosingBalances(eq(midnight), eq(midnight.plusSeconds(86400)), openingBalance.capture());
+        assertEquals(BigInteger.valueOf(42), openingBalance.getValue().apply(accountId));
+    }
+
+    @Test
+    void unfinishedPeriodSkipped() {
+        when(balanceCheckpointsRepository.lockProgress()).thenReturn(Optional.of(midnight));
+
+        assertFalse(balanceCheckpointer.checkpointNextPeriod(midnight.plusSeconds(86399)));
+
+        verify(balanceCheckpointsRepository, never()).findClosingBalances(any(), any(), any());
+        verify(balanceCheckpointsRepository, never()).updateProgress(any());
+    }
+
+    @Test
+    void noTransactionsYet() {
+        when(balanceCheckpointsRepository.lockProgress()).thenReturn(Optional.empty());
+        when(balanceCheckpointsRepository.findFirstTransactionTimestamp()).thenReturn(Optional.empty());
+
+        assertFalse(balanceCheckpointer.checkpointNextPeriod(midnight.plusSeconds(3600)));
+
+        verify(balanceCheckpointsRepository, never()).updateProgress(any());
+    }
+
+    @Test
+    void failuresCaught() {
+        when(balanceCheckpointsRepository.lockProgress()).thenThrow(new RuntimeException("boom"));
+
+        assertDoesNotThrow(() -> balanceCheckpointer.checkpoint());
+        verify(transactionManager, times(1)).rollback(any());
+    }
+
+    @Test
+    void constructorChecks() {
+        assertThrows(NullPointerException.class, () -> new BalanceCheckpointer(null, ledgerEntriesRepository, transactionManager, 24, 60000));
+        assertThrows(NullPointerException.class, () -> new BalanceCheckpointer(balanceCheckpointsRepository, null, transactionManager, 24, 60000));
+        assertThrows(NullPointerException.class, () -> new BalanceCheckpointer(balanceCheckpointsRepository, ledgerEntriesRepository, null, 24, 60000));
+        assertThrows(IllegalArgumentException.class, () -> new BalanceCheckpointer(balanceCheckpointsRepository, ledgerEntriesRepository, transactionManager, 0, 60000));
+    }
+}
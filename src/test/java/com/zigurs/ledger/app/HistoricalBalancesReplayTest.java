@@ -0,0 +1,104 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.api.HistoricalBalanceService;
+import com.zigurs.ledger.api.TransferService;
+import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.data.BalanceCheckpointsRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.Transaction;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Point-in-time balances and checkpoints against a real database, with transactions committed out of timestamp
+ * order - so that running balances of entries don't follow timestamp order.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:historical-balances;DB_CLOSE_DELAY=-1",
+        "spring.flyway.url=jdbc:h2:mem:historical-balances;DB_CLOSE_DELAY=-1",
+        // no FX provider requests
+        "fx_rate_table_base=",
+        "transfer_mode=pessimistic",
+        "balance_checkpoint_period_hours=24"
+})
+class HistoricalBalancesReplayTest {
+
+    // seeded by V2 migration
+    private static final UUID CLIENT_ID = UUID.fromString("39db54e0-3627-4d6b-98a1-93ef930f96db");
+
+    private static final Instant earlier = Instant.parse("2020-01-01T10:00:00Z");
+    private static final Instant later = Instant.parse("2020-01-01T11:00:00Z");
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private HistoricalBalanceService historicalBalanceService;
+
+    @Autowired
+    private BalanceCheckpointer balanceCheckpointer;
+
+    @Autowired
+    private BalanceCheckpointsRepository balanceCheckpointsRepository;
+
+    @Autowired
+    private AccountsRepository accountsRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void entriesCommittedOutOfTimestampOrder() {
+        UUID sourceId = createAccount();
+        UUID destinationId = createAccount();
+
+        // the later transfer commits first - running balances 990 (later) and 989 (earlier)
+        Transaction first = transferService.transfer(later, sourceId, BigInteger.TEN, destinationId, BigInteger.TEN, "later");
+        Transaction second = transferService.transfer(earlier, sourceId, BigInteger.ONE, destinationId, BigInteger.ONE, "earlier");
+        assertEquals(BigInteger.valueOf(990), first.getSourceBalance());
+        assertEquals(BigInteger.valueOf(989), second.getSourceBalance());
+
+        // failed transfers don't count
+        Transaction failed = transferService.transfer(earlier, sourceId, BigInteger.valueOf(5000), destinationId, BigInteger.valueOf(5000), "failed");
+        assertEquals(TransactionStatus.FAILED, failed.getStatus());
+
+        Account source = accountsRepository.findById(sourceId).orElseThrow();
+        Account destination = accountsRepository.findById(destinationId).orElseThrow();
+
+        // replayed back from current balances, no checkpoints yet
+        assertEquals(BigInteger.valueOf(1000), historicalBalanceService.balanceAt(source, earlier.minusSeconds(1)));
+        assertEquals(BigInteger.valueOf(999), historicalBalanceService.balanceAt(source, earlier));
+        assertEquals(BigInteger.valueOf(989), historicalBalanceService.balanceAt(source, later));
+        assertEquals(BigInteger.valueOf(1001), historicalBalanceService.balanceAt(destination, earlier.plusSeconds(1)));
+
+        Instant checkpointAt = Instant.parse("2020-01-02T00:00:00Z");
+        while (balanceCheckpointer.checkpointNextPeriod(Instant.parse("2020-01-03T00:00:00Z"))) {
+            // up to the period following the transfers
+        }
+
+        assertEquals(BigInteger.valueOf(989), balanceCheckpointsRepository.findLatest(sourceId, checkpointAt).orElseThrow().balance());
+        assertEquals(BigInteger.valueOf(1011), balanceCheckpointsRepository.findLatest(destinationId, checkpointAt).orElseThrow().balance());
+
+        // replayed from the checkpoint, and still back from current balances before it
+        transferService.transfer(checkpointAt.plusSeconds(60), sourceId, BigInteger.TWO, destinationId, BigInteger.TWO, "after checkpoint");
+        assertEquals(BigInteger.valueOf(989), historicalBalanceService.balanceAt(source, checkpointAt));
+        assertEquals(BigInteger.valueOf(987), historicalBalanceService.balanceAt(source, checkpointAt.plusSeconds(60)));
+        assertEquals(BigInteger.valueOf(999), historicalBalanceService.balanceAt(source, earlier));
+    }
+
+    private UUID createAccount() {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("insert into accounts(id, client_id, currency, balance) values (?, ?, 'EUR', 1000)", id, CLIENT_ID);
+        return id;
+    }
+}
@@ -0,0 +1,70 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.data.BalanceCheckpointsRepository;
+import com.zigurs.ledger.data.LedgerEntriesRepository;
+import com.zigurs.ledger.model.Account;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class HistoricalBalancesTest {
+
+    private static final Account account = new Account(UUID.fromString("d4a8ad83-93b5-4114-9df5-61127a6c61de"), null, "EUR", BigInteger.valueOf(1000));
+    private static final Instant at = Instant.parse("2024-05-31T23:59:59Z");
+    private static final Instant checkpointAt = Instant.parse("2024-05-31T00:00:00Z");
+    private BalanceCheckpointsRepository balanceCheckpointsRepository;
+    private LedgerEntriesRepository ledgerEntriesRepository;
+    private HistoricalBalances historicalBalances;
+
+    @BeforeEach
+    void setUp() {
+        balanceCheckpointsRepository = mock(BalanceCheckpointsRepository.class);
+        ledgerEntriesRepository = mock(LedgerEntriesRepository.class);
+        historicalBalances = new HistoricalBalances(balanceCheckpointsRepository, ledgerEntriesRepository);
+    }
+
+    @Test
+    void replayedFromCheckpoint() {
+        when(balanceCheckpointsRepository.findLatest(account.getId(), at))
+                .thenReturn(Optional.of(new BalanceCheckpointsRepository.Checkpoint(checkpointAt, BigInteger.valueOf(100))));
+        // entries at the instant included
+        when(ledgerEntriesRepository.sumCompleted(account.getId(), checkpointAt, at.plusNanos(1)))
+                .thenReturn(BigInteger.valueOf(-30));
+
+        assertEquals(BigInteger.valueOf(70), historicalBalances.balanceAt(account, at));
+        verify(ledgerEntriesRepository, never()).findBalanceBefore(any(), any());
+    }
+
+    @Test
+    void checkpointOnly() {
+        when(balanceCheckpointsRepository.findLatest(account.getId(), at))
+                .thenReturn(Optional.of(new BalanceCheckpointsRepository.Checkpoint(checkpointAt, BigInteger.valueOf(100))));
+        when(ledgerEntriesRepository.sumCompleted(any(), any(), any())).thenReturn(BigInteger.ZERO);
+
+        assertEquals(BigInteger.valueOf(100), historicalBalances.balanceAt(account, at));
+    }
+
+    @Test
+    void noCheckpointYet() {
+        when(balanceCheckpointsRepository.findLatest(account.getId(), at)).thenReturn(Optional.empty());
+        when(ledgerEntriesRepository.findBalanceBefore(account.getId(), at.plusNanos(1))).thenReturn(BigInteger.valueOf(150));
+
+        assertEquals(BigInteger.valueOf(150), historicalBalances.balanceAt(account, at));
+        verify(ledgerEntriesRepository, never()).sumCompleted(any(), any(), any());
+    }
+
+    @Test
+    void constructorNullChecks() {
+        assertThrows(NullPointerException.class, () -> new HistoricalBalances(null, ledgerEntriesRepository));
+        assertThrows(NullPointerException.class, () -> new HistoricalBalances(balanceCheckpointsRepository, null));
+    }
+}
@@ -0,0 +1,34 @@
+package com.zigurs.ledger.app;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class HotAccountsRebalancerTest {
+
+    @Test
+    void rebalancesAllHotAccounts() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+
+        HotAccounts hotAccounts = mock(HotAccounts.class);
+        when(hotAccounts.hotAccountIds()).thenReturn(Set.of(first, second));
+        doThrow(new RuntimeException("boom")).when(hotAccounts).rebalance(first);
+
+        new HotAccountsRebalancer(hotAccounts).rebalance();
+
+        // failure of one account doesn't stop the others
+        verify(hotAccounts, times(1)).refresh();
+        verify(hotAccounts, times(1)).rebalance(first);
+        verify(hotAccounts, times(1)).rebalance(second);
+    }
+
+    @Test
+    void constructorNullChecks() {
+        assertThrows(NullPointerException.class, () -> new HotAccountsRebalancer(null));
+    }
+}
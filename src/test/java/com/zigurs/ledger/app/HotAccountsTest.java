@@ -0,0 +1,151 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.api.TransferService;
+import com.zigurs.ledger.data.AccountSlotsRepository;
+import com.zigurs.ledger.model.Account;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class HotAccountsTest {
+
+    private static final UUID exampleUUID = UUID.fromString("d4a8ad83-93b5-4114-9df5-61127a6c61de");
+    private static final UUID exampleUUID2 = UUID.fromString("413a0b12-985d-4437-9490-bdeddb617e9e");
+    private AccountSlotsRepository accountSlotsRepository;
+    private HotAccounts hotAccounts;
+
+    @BeforeEach
+    void setUp() {
+        accountSlotsRepository = mock(AccountSlotsRepository.class);
+        when(accountSlotsRepository.findSlotCounts()).thenReturn(Map.of(exampleUUID, 4));
+
+        hotAccounts = new HotAccounts(accountSlotsRepository);
+        hotAccounts.refresh();
+    }
+
+    @Test
+    void refresh() {
+        assertTrue(hotAccounts.isHot(exampleUUID));
+        assertFalse(hotAccounts.isHot(exampleUUID2));
+
+        when(accountSlotsRepository.findSlotCounts()).thenReturn(Map.of(exampleUUID2, 2));
+        hotAccounts.refresh();
+
+        assertFalse(hotAccounts.isHot(exampleUUID));
+        assertTrue(hotAccounts.isHot(exampleUUID2));
+        assertEquals(Set.of(exampleUUID2), hotAccounts.hotAccountIds());
+    }
+
+    @Test
+    void markAndUnmark() {
+        when(accountSlotsRepository.stripe(exampleUUID2, 8)).thenReturn(true);
+        when(accountSlotsRepository.unstripe(exampleUUID2)).thenReturn(true);
+
+        assertTrue(hotAccounts.markHot(exampleUUID2, 8));
+        assertTrue(hotAccounts.isHot(exampleUUID2));
+
+        assertTrue(hotAccounts.unmarkHot(exampleUUID2));
+        assertFalse(hotAccounts.isHot(exampleUUID2));
+    }
+
+    @Test
+    void markMissingAccount() {
+        when(accountSlotsRepository.stripe(exampleUUID2, 8)).thenReturn(false);
+
+        assertFalse(hotAccounts.markHot(exampleUUID2, 8));
+        assertFalse(hotAccounts.isHot(exampleUUID2));
+        assertThrows(IllegalArgumentException.class, () -> hotAccounts.markHot(exampleUUID2, 0));
+    }
+
+    @Test
+    void creditRandomSlot() {
+        when(accountSlotsRepository.credit(eq(exampleUUID), anyInt(), eq(BigInteger.TEN))).thenReturn(true);
+
+        int slot = hotAccounts.credit(exampleUUID, BigInteger.TEN);
+
+        assertTrue(slot >= 0 && slot < 4, "slot out of range");
+        verify(accountSlotsRepository, times(1)).credit(exampleUUID, slot, BigInteger.TEN);
+    }
+
+    @Test
+    void creditNotHot() {
+        assertThrows(TransferService.TransferException.class, () -> hotAccounts.credit(exampleUUID2, BigInteger.TEN));
+        verify(accountSlotsRepository, never()).credit(any(), anyInt(), any());
+    }
+
+    @Test
+    void debitSingleSlot() {
+        when(accountSlotsRepository.debit(eq(exampleUUID), anyInt(), eq(BigInteger.TEN))).thenReturn(false, true);
+
+        assertTrue(hotAccounts.debit(exampleUUID, BigInteger.TEN));
+
+        verify(accountSlotsRepository, times(2)).debit(eq(exampleUUID), anyInt(), eq(BigInteger.TEN));
+        verify(accountSlotsRepository, never()).lockSlots(any());
+    }
+
+    @Test
+    void debitSweep() {
+        when(accountSlotsRepository.debit(eq(exampleUUID), anyInt(), eq(BigInteger.TEN))).thenReturn(false);
+        when(accountSlotsRepository.lockSlots(exampleUUID)).thenReturn(List.of(
+                BigInteger.valueOf(4), BigInteger.valueOf(3), BigInteger.valueOf(5), BigInteger.valueOf(1)
+        ));
+
+        assertTrue(hotAccounts.debit(exampleUUID, BigInteger.TEN));
+
+        // every slot tried once before sweeping
+        verify(accountSlotsRepository, times(4)).debit(eq(exampleUUID), anyInt(), eq(BigInteger.TEN));
+        verify(accountSlotsRepository, times(1)).updateSlots(exampleUUID, List.of(
+                BigInteger.ZERO, BigInteger.ZERO, BigInteger.TWO, BigInteger.ONE
+        ));
+    }
+
+    @Test
+    void debitInsufficientBalance() {
+        when(accountSlotsRepository.debit(eq(exampleUUID), anyInt(), eq(BigInteger.TEN))).thenReturn(false);
+        when(accountSlotsRepository.lockSlots(exampleUUID)).thenReturn(List.of(
+                BigInteger.ONE, BigInteger.ONE, BigInteger.ONE, BigInteger.ONE
+        ));
+
+        assertFalse(hotAccounts.debit(exampleUUID, BigInteger.TEN));
+        verify(accountSlotsRepository, never()).updateSlots(any(), anyList());
+    }
+
+    @Test
+    void rebalance() {
+        when(accountSlotsRepository.lockSlots(exampleUUID)).thenReturn(List.of(
+                BigInteger.valueOf(9), BigInteger.ZERO, BigInteger.ZERO, BigInteger.ZERO
+        ));
+
+        hotAccounts.rebalance(exampleUUID);
+
+        verify(accountSlotsRepository, times(1)).updateSlots(exampleUUID, List.of(
+                BigInteger.valueOf(3), BigInteger.TWO, BigInteger.TWO, BigInteger.TWO
+        ));
+    }
+
+    @Test
+    void balance() {
+        Account regular = new Account(exampleUUID2, null, "EUR", BigInteger.ONE);
+        assertEquals(BigInteger.ONE, hotAccounts.balance(regular));
+        verify(accountSlotsRepository, never()).slotsBalance(any());
+
+        Account hot = new Account(exampleUUID, null, "EUR", BigInteger.ONE);
+        when(accountSlotsRepository.slotsBalance(exampleUUID)).thenReturn(BigInteger.TEN);
+        assertEquals(BigInteger.valueOf(11), hotAccounts.balance(hot));
+    }
+
+    @Test
+    void constructorNullChecks() {
+        assertThrows(NullPointerException.class, () -> new HotAccounts(null));
+    }
+}
@@ -0,0 +1,72 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.data.LedgerArchive;
+import com.zigurs.ledger.data.LedgerPartitions;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LedgerArchiverTest {
+
+    private static final Instant now = Instant.now();
+    private LedgerPartitions ledgerPartitions;
+    private LedgerArchive ledgerArchive;
+
+    @BeforeEach
+    void setUp() {
+        ledgerPartitions = mock(LedgerPartitions.class);
+        ledgerArchive = mock(LedgerArchive.class);
+    }
+
+    @Test
+    void archivesOldPartitionsInOrder() {
+        LedgerPartitions.Partition oldest = new LedgerPartitions.Partition("ledger_entries", Instant.MIN, now.minus(400, ChronoUnit.DAYS), null);
+        LedgerPartitions.Partition old = new LedgerPartitions.Partition("ledger_entries_1", oldest.end(), now.minus(370, ChronoUnit.DAYS), null);
+        LedgerPartitions.Partition recent = new LedgerPartitions.Partition("ledger_entries_2", old.end(), now.minus(340, ChronoUnit.DAYS), null);
+        when(ledgerPartitions.oldestLive()).thenReturn(Optional.of(oldest), Optional.of(old), Optional.of(recent));
+        when(ledgerArchive.write(any())).thenAnswer(invocation -> invocation.<LedgerPartitions.Partition>getArgument(0).table() + ".seg");
+
+        new LedgerArchiver(ledgerPartitions, ledgerArchive, 365, 7200000).archive();
+
+        var inOrder = inOrder(ledgerArchive, ledgerPartitions);
+        inOrder.verify(ledgerArchive).write(oldest);
+        inOrder.verify(ledgerPartitions).markArchived(oldest, "ledger_entries.seg");
+        inOrder.verify(ledgerArchive).write(old);
+        inOrder.verify(ledgerPartitions).markArchived(old, "ledger_entries_1.seg");
+        inOrder.verify(ledgerPartitions).dropArchived(any());
+        verify(ledgerArchive, never()).write(recent);
+    }
+
+    @Test
+    void failedPartitionNotMarked() {
+        LedgerPartitions.Partition oldest = new LedgerPartitions.Partition("ledger_entries", Instant.MIN, now.minus(400, ChronoUnit.DAYS), null);
+        when(ledgerPartitions.oldestLive()).thenReturn(Optional.of(oldest));
+        when(ledgerArchive.write(any())).thenThrow(new RuntimeException("boom"));
+
+        assertDoesNotThrow(() -> new LedgerArchiver(ledgerPartitions, ledgerArchive, 365, 7200000).archive());
+
+        verify(ledgerPartitions, never()).markArchived(any(), any());
+        verify(ledgerPartitions, never()).dropArchived(any());
+    }
+
+    @Test
+    void disabled() {
+        new LedgerArchiver(ledgerPartitions, ledgerArchive, 0, 7200000).archive();
+
+        verifyNoInteractions(ledgerPartitions, ledgerArchive);
+    }
+
+    @Test
+    void constructorNullChecks() {
+        assertThrows(NullPointerException.class, () -> new LedgerArchiver(null, ledgerArchive, 365, 0));
+        assertThrows(NullPointerException.class, () -> new LedgerArchiver(ledgerPartitions, null, 365, 0));
+    }
+}
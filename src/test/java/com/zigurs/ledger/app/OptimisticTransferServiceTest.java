@@ -0,0 +1,221 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.api.TransferService;
+import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.data.TransactionsRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.Transaction;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class OptimisticTransferServiceTest {
+
+    private static final UUID exampleUUID = UUID.fromString("d4a8ad83-93b5-4114-9df5-61127a6c61de");
+    private static final UUID exampleUUID2 = UUID.fromString("413a0b12-985d-4437-9490-bdeddb617e9e");
+    private static final BigInteger exampleAmount = BigInteger.valueOf(1L);
+    private static final int maxRetries = 3;
+    private OptimisticTransferService transferService;
+    private AccountsRepository accountsRepository;
+    private TransactionsRepository transactionsRepository;
+    private PlatformTransactionManager transactionManager;
+    private SimpleMeterRegistry meterRegistry;
+    private TransferMetrics transferMetrics;
+
+    @BeforeEach
+    void setUp() {
+        accountsRepository = mock(AccountsRepository.class);
+        transactionsRepository = mock(TransactionsRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        meterRegistry = new SimpleMeterRegistry();
+        transferMetrics = new TransferMetrics(meterRegistry);
+
+        transferService = new OptimisticTransferService(
+                accountsRepository,
+                transactionsRepository,
+                transactionManager,
+                transferMetrics,
+                maxRetries,
+                1L
+        );
+
+        when(accountsRepository.save(any(Account.class))).thenAnswer(i -> i.getArgument(0));
+        when(transactionsRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArgument(0));
+    }
+
+    @Test
+    void greenPath() throws TransferService.TransferException {
+        Account account = mockAccount(exampleUUID, 1L);
+        Account destinationAccount = mockAccount(exampleUUID2, 1L);
+
+        Transaction tx = transferService.transfer(
+                Instant.now(),
+                exampleUUID,
+                exampleAmount,
+                exampleUUID2,
+                exampleAmount,
+                "happy transfer"
+        );
+
+        assertNotNull(tx, "Expected transaction, but none returned");
+        assertEquals(exampleUUID, tx.getSourceAccount().getId(), "incorrect source account");
+        assertEquals(exampleUUID2, tx.getDestinationAccount().getId(), "incorrect destination account");
+        assertEquals(TransactionStatus.COMPLETED, tx.getStatus(), "incorrect status");
+        assertEquals("happy transfer", tx.getDescription(), "incorrect description");
+
+        // no locking reads
+        verify(accountsRepository, never()).findByIdForUpdate(any(UUID.class));
+        verify(account, times(1)).setBalance(BigInteger.valueOf(0L));
+        verify(destinationAccount, times(1)).setBalance(BigInteger.valueOf(2L));
+        verify(transactionManager, times(1)).commit(any());
+
+        assertEquals(1L, meterRegistry.get(TransferMetrics.TRANSFERS).tags("mode", "optimistic", "outcome", "COMPLETED").timer().count());
+        assertEquals(0.0, meterRegistry.counter(TransferMetrics.RETRIES, "mode", "optimistic").count());
+    }
+
+    @Test
+    void retriedOnConflict() throws TransferService.TransferException {
+        mockAccount(exampleUUID, 1L);
+        mockAccount(exampleUUID2, 1L);
+
+        when(transactionsRepository.save(any(Transaction.class)))
+                .thenThrow(new OptimisticLockingFailureException("conflict"))
+                .thenThrow(new OptimisticLockingFailureException("conflict"))
+                .thenAnswer(i -> i.getArgument(0));
+
+        Transaction tx = transferService.transfer(
+                Instant.now(),
+                exampleUUID,
+                exampleAmount,
+                exampleUUID2,
+                exampleAmount,
+                "happy transfer"
+        );
+
+        assertEquals(TransactionStatus.COMPLETED, tx.getStatus(), "incorrect status");
+
+        // every attempt re-reads accounts in its own transaction
+        verify(accountsRepository, times(3)).findById(exampleUUID);
+        verify(transactionManager, times(2)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+        assertEquals(2.0, meterRegistry.counter(TransferMetrics.RETRIES, "mode", "optimistic").count());
+    }
+
+    @Test
+    void retriesExhausted() throws TransferService.TransferException {
+        mockAccount(exampleUUID, 1L);
+        mockAccount(exampleUUID2, 1L);
+
+        when(transactionsRepository.save(any(Transaction.class))).thenThrow(new OptimisticLockingFailureException("conflict"));
+
+        assertThrows(TransferService.TransferException.class, () -> transferService.transfer(
+                        Instant.now(),
+                        exampleUUID,
+                        exampleAmount,
+                        exampleUUID2,
+                        exampleAmount,
+                        "happy transfer"
+                )
+        );
+
+        verify(accountsRepository, times(maxRetries + 1)).findById(exampleUUID);
+        verify(transactionManager, never()).commit(any());
+        assertEquals(maxRetries, meterRegistry.counter(TransferMetrics.RETRIES, "mode", "optimistic").count());
+        assertEquals(1L, meterRegistry.get(TransferMetrics.TRANSFERS).tags("mode", "optimistic", "outcome", "ERROR").timer().count());
+    }
+
+    @Test
+    void insufficientBalance() throws TransferService.TransferException {
+        Account account = mockAccount(exampleUUID, 0L);
+        Account destinationAccount = mockAccount(exampleUUID2, 1L);
+
+        Transaction tx = transferService.transfer(
+                Instant.now(),
+                exampleUUID,
+                exampleAmount,
+                exampleUUID2,
+                exampleAmount,
+                "insufficient balance"
+        );
+
+        assertEquals(TransactionStatus.FAILED, tx.getStatus(), "incorrect status");
+        assertEquals("insufficient balance", tx.getDescription(), "incorrect description");
+
+        verify(account, never()).setBalance(any(BigInteger.class));
+        verify(destinationAccount, never()).setBalance(any(BigInteger.class));
+        verify(accountsRepository, never()).save(any(Account.class));
+    }
+
+    @Test
+    void invalidAccounts() throws TransferService.TransferException {
+        assertThrows(TransferService.TransferException.class, () -> transferService.transfer(
+                        Instant.now(),
+                        exampleUUID,
+                        exampleAmount,
+                        exampleUUID,
+                        exampleAmount,
+                        "happy transfer"
+                )
+        );
+
+        verify(accountsRepository, never()).findById(any(UUID.class));
+    }
+
+    @Test
+    void invalidSourceAccount() throws TransferService.TransferException {
+        when(accountsRepository.findById(exampleUUID)).thenReturn(Optional.empty());
+        mockAccount(exampleUUID2, 1L);
+
+        assertThrows(TransferService.TransferException.class, () -> transferService.transfer(
+                        Instant.now(),
+                        exampleUUID,
+                        exampleAmount,
+                        exampleUUID2,
+                        exampleAmount,
+                        ""
+                )
+        );
+
+        // not a concurrency failure, no retries
+        verify(accountsRepository, times(1)).findById(exampleUUID);
+        verify(transactionManager, times(1)).rollback(any());
+    }
+
+    @Test
+    void constructorNullChecks() {
+        assertThrows(NullPointerException.class, () -> new OptimisticTransferService(accountsRepository, transactionsRepository, transactionManager, null, 1, 1L));
+        assertThrows(NullPointerException.class, () -> new OptimisticTransferService(accountsRepository, transactionsRepository, null, transferMetrics, 1, 1L));
+        assertThrows(NullPointerException.class, () -> new OptimisticTransferService(accountsRepository, null, transactionManager, transferMetrics, 1, 1L));
+        assertThrows(NullPointerException.class, () -> new OptimisticTransferService(null, transactionsRepository, transactionManager, transferMetrics, 1, 1L));
+    }
+
+    @Test
+    void transferNullChecks() {
+        assertThrows(NullPointerException.class, () -> transferService.transfer(null, exampleUUID, exampleAmount, exampleUUID2, exampleAmount, ""));
+        assertThrows(NullPointerException.class, () -> transferService.transfer(Instant.now(), null, exampleAmount, exampleUUID2, exampleAmount, ""));
+        assertThrows(NullPointerException.class, () -> transferService.transfer(Instant.now(), exampleUUID, null, exampleUUID2, exampleAmount, ""));
+        assertThrows(NullPointerException.class, () -> transferService.transfer(Instant.now(), exampleUUID, exampleAmount, null, exampleAmount, ""));
+        assertThrows(NullPointerException.class, () -> transferService.transfer(Instant.now(), exampleUUID, exampleAmount, exampleUUID2, null, ""));
+        assertThrows(NullPointerException.class, () -> transferService.transfer(Instant.now(), exampleUUID, exampleAmount, exampleUUID2, exampleAmount, null));
+    }
+
+    private Account mockAccount(UUID id, long balance) {
+        Account account = mock(Account.class);
+        when(account.getId()).thenReturn(id);
+        when(account.getBalance()).thenReturn(BigInteger.valueOf(balance));
+        when(accountsRepository.findById(id)).thenReturn(Optional.of(account));
+        return account;
+    }
+}
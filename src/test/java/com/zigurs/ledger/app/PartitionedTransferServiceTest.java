@@ -0,0 +1,195 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.api.TransferService;
+import com.zigurs.ledger.model.Transaction;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PartitionedTransferServiceTest {
+
+    private static final BigInteger exampleAmount = BigInteger.valueOf(1L);
+    private TransferServiceImpl delegate;
+    private PartitionedTransferService transferService;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(TransferServiceImpl.class);
+        transferService = new PartitionedTransferService(delegate, 4);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        transferService.shutdown();
+    }
+
+    @Test
+    void partitionCountDefaultsToCores() throws InterruptedException {
+        PartitionedTransferService defaultService = new PartitionedTransferService(delegate, 0);
+        try {
+            assertEquals(Runtime.getRuntime().availableProcessors(), defaultService.partitionCount());
+        } finally {
+            defaultService.shutdown();
+        }
+    }
+
+    @Test
+    void delegatesTransfer() throws TransferService.TransferException {
+        UUID source = UUID.randomUUID();
+        UUID destination = UUID.randomUUID();
+        Transaction transaction = mock(Transaction.class);
+        Instant timestamp = Instant.now();
+
+        when(delegate.transfer(timestamp, source, exampleAmount, destination, exampleAmount, "transfer", null)).thenReturn(transaction);
+
+        assertSame(transaction, transferService.transfer(timestamp, source, exampleAmount, destination, exampleAmount, "transfer"));
+        verify(delegate, times(1)).transfer(timestamp, source, exampleAmount, destination, exampleAmount, "transfer", null);
+    }
+
+    @Test
+    void delegatesRequestId() throws TransferService.TransferException {
+        UUID source = UUID.randomUUID();
+        UUID destination = UUID.randomUUID();
+        UUID requestId = UUID.randomUUID();
+        Transaction transaction = mock(Transaction.class);
+        Instant timestamp = Instant.now();
+
+        when(delegate.transfer(timestamp, source, exampleAmount, destination, exampleAmount, "transfer", requestId)).thenReturn(transaction);
+
+        assertSame(transaction, transferService.transfer(timestamp, source, exampleAmount, destination, exampleAmount, "transfer", requestId));
+    }
+
+    @Test
+    void delegatesPayout() throws TransferService.TransferException {
+        List<TransferService.TransferInstruction> payouts = List.of(
+                new TransferService.TransferInstruction(Instant.now(), UUID.randomUUID(), exampleAmount, UUID.randomUUID(), exampleAmount, "payout")
+        );
+        List<Transaction> transactions = List.of(mock(Transaction.class));
+
+        when(delegate.payout(payouts)).thenReturn(transactions);
+
+        assertSame(transactions, transferService.payout(payouts));
+        verify(delegate, times(1)).payout(payouts);
+    }
+
+    @Test
+    void propagatesTransferException() throws TransferService.TransferException {
+        // make sure the nested hand off unwraps exceptions as well
+        UUID source = accountInPartition(0);
+        UUID destination = accountInPartition(3);
+
+        when(delegate.transfer(any(), any(), any(), any(), any(), anyString(), any())).thenThrow(new TransferService.TransferException());
+
+        assertThrows(TransferService.TransferException.class,
+                () -> transferService.transfer(Instant.now(), source, exampleAmount, destination, exampleAmount, "")
+        );
+    }
+
+    @Test
+    void sameAccountTransfersAreSerialized() throws Exception {
+        UUID hot = accountInPartition(1);
+        List<UUID> others = List.of(accountInPartition(0), accountInPartition(1), accountInPartition(2), accountInPartition(3));
+
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(delegate.transfer(any(), any(), any(), any(), any(), anyString(), any())).thenAnswer(i -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(1);
+            inFlight.decrementAndGet();
+            return null;
+        });
+
+        runConcurrently(200, n -> {
+            UUID other = others.get(n % others.size());
+            // alternate directions, hot account is involved either way
+            if (n % 2 == 0) {
+                transferService.transfer(Instant.now(), hot, exampleAmount, other, exampleAmount, "");
+            } else {
+                transferService.transfer(Instant.now(), other, exampleAmount, hot, exampleAmount, "");
+            }
+        });
+
+        assertEquals(1, maxInFlight.get(), "transfers of the same account overlapped");
+        verify(delegate, times(200)).transfer(any(), any(), any(), any(), any(), anyString(), any());
+    }
+
+    @Test
+    void crossPartitionTransfersDoNotDeadlock() throws Exception {
+        UUID[] accounts = {accountInPartition(0), accountInPartition(1), accountInPartition(2), accountInPartition(3)};
+
+        when(delegate.transfer(any(), any(), any(), any(), any(), anyString(), any())).thenReturn(null);
+
+        // circular A>B, B>C, C>D, D>A transfers
+        runConcurrently(400, n -> transferService.transfer(
+                Instant.now(),
+                accounts[n % 4],
+                exampleAmount,
+                accounts[(n + 1) % 4],
+                exampleAmount,
+                ""
+        ));
+
+        verify(delegate, times(400)).transfer(any(), any(), any(), any(), any(), anyString(), any());
+    }
+
+    @Test
+    void constructorNullChecks() {
+        assertThrows(NullPointerException.class, () -> new PartitionedTransferService(null, 1));
+    }
+
+    @Test
+    void transferNullChecks() {
+        UUID source = UUID.randomUUID();
+        UUID destination = UUID.randomUUID();
+
+        assertThrows(NullPointerException.class, () -> transferService.transfer(null, source, exampleAmount, destination, exampleAmount, ""));
+        assertThrows(NullPointerException.class, () -> transferService.transfer(Instant.now(), null, exampleAmount, destination, exampleAmount, ""));
+        assertThrows(NullPointerException.class, () -> transferService.transfer(Instant.now(), source, null, destination, exampleAmount, ""));
+        assertThrows(NullPointerException.class, () -> transferService.transfer(Instant.now(), source, exampleAmount, null, exampleAmount, ""));
+        assertThrows(NullPointerException.class, () -> transferService.transfer(Instant.now(), source, exampleAmount, destination, null, ""));
+        assertThrows(NullPointerException.class, () -> transferService.transfer(Instant.now(), source, exampleAmount, destination, exampleAmount, null));
+    }
+
+    private UUID accountInPartition(int partition) {
+        UUID candidate;
+        do {
+            candidate = UUID.randomUUID();
+        } while (transferService.partitionOf(candidate) != partition);
+        return candidate;
+    }
+
+    private void runConcurrently(int count, ConcurrentTask task) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(16);
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                int n = i;
+                futures.add(CompletableFuture.runAsync(() -> task.run(n), clients));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(30, TimeUnit.SECONDS);
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConcurrentTask {
+        void run(int n);
+    }
+}
@@ -0,0 +1,110 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.api.TransferService;
+import com.zigurs.ledger.data.QueuedTransfersRepository;
+import com.zigurs.ledger.data.TransactionsRepository;
+import com.zigurs.ledger.model.QueuedTransfer;
+import com.zigurs.ledger.model.QueuedTransferStatus;
+import com.zigurs.ledger.model.Transaction;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Queued transfer requests against a real database - request ids stored with transactions are unique, so a request
+ * executed again is rolled back as a whole.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:queued-transfer-fencing;DB_CLOSE_DELAY=-1",
+        "spring.flyway.url=jdbc:h2:mem:queued-transfer-fencing;DB_CLOSE_DELAY=-1",
+        // no FX provider requests
+        "fx_rate_table_base=",
+        "transfer_mode=pessimistic"
+})
+class QueuedTransferFencingTest {
+
+    // seeded by V2 migration
+    private static final UUID CLIENT_ID = UUID.fromString("39db54e0-3627-4d6b-98a1-93ef930f96db");
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private TransactionsRepository transactionsRepository;
+
+    @Autowired
+    private QueuedTransfersRepository queuedTransfersRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void requestExecutedOnce() {
+        UUID sourceId = createAccount();
+        UUID destinationId = createAccount();
+        UUID requestId = UUID.randomUUID();
+
+        Transaction transaction = transferService.transfer(Instant.now(), sourceId, BigInteger.TEN, destinationId, BigInteger.TEN, "queued", requestId);
+
+        assertThrows(DataIntegrityViolationException.class, () ->
+                transferService.transfer(Instant.now(), sourceId, BigInteger.TEN, destinationId, BigInteger.TEN, "queued", requestId));
+
+        assertEquals(transaction.getId(), transactionsRepository.findByRequestId(requestId).orElseThrow().getId());
+        assertEquals(BigInteger.valueOf(990), balance(sourceId));
+        assertEquals(BigInteger.valueOf(1010), balance(destinationId));
+    }
+
+    @Test
+    void retriedRequestDueAfterDelay() {
+        Instant now = Instant.now();
+        QueuedTransfer queuedTransfer = queuedTransfersRepository.save(new QueuedTransfer(
+                null,
+                QueuedTransferStatus.PROCESSING,
+                now,
+                now,
+                createAccount(),
+                createAccount(),
+                "EUR",
+                BigInteger.TEN,
+                null,
+                null
+        ));
+
+        assertEquals(1, queuedTransfersRepository.retry(queuedTransfer.getId(), 1, now.plusSeconds(60), now));
+        // only requests in processing
+        assertEquals(0, queuedTransfersRepository.retry(queuedTransfer.getId(), 1, now.plusSeconds(60), now));
+
+        assertFalse(isDue(queuedTransfer.getId(), now.plusSeconds(59)));
+        assertTrue(isDue(queuedTransfer.getId(), now.plusSeconds(60)));
+
+        QueuedTransfer retried = queuedTransfersRepository.findById(queuedTransfer.getId()).orElseThrow();
+        assertEquals(QueuedTransferStatus.PENDING, retried.getStatus());
+        assertEquals(1, retried.getAttempts());
+    }
+
+    private boolean isDue(UUID id, Instant now) {
+        return queuedTransfersRepository.findAllDue(QueuedTransferStatus.PENDING, now, PageRequest.of(0, 1000)).stream()
+                .anyMatch(queuedTransfer -> queuedTransfer.getId().equals(id));
+    }
+
+    private BigInteger balance(UUID accountId) {
+        return jdbcTemplate.queryForObject("select balance from accounts where id = ?", BigDecimal.class, accountId).toBigIntegerExact();
+    }
+
+    private UUID createAccount() {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("insert into accounts(id, client_id, currency, balance) values (?, ?, 'EUR', 1000)", id, CLIENT_ID);
+        return id;
+    }
+}
@@ -0,0 +1,355 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.api.CurrencyConverterService;
+import com.zigurs.ledger.api.TransferInstructions;
+import com.zigurs.ledger.api.TransferService;
+import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.data.QueuedTransfersRepository;
+import com.zigurs.ledger.data.TransactionsRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.QueuedTransfer;
+import com.zigurs.ledger.model.QueuedTransferStatus;
+import com.zigurs.ledger.model.Transaction;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class QueuedTransferWorkerTest {
+
+    private static final UUID exampleUUID = UUID.fromString("d4a8ad83-93b5-4114-9df5-61127a6c61de");
+    private static final UUID exampleUUID2 = UUID.fromString("413a0b12-985d-4437-9490-bdeddb617e9e");
+    private static final BigInteger exampleAmount = BigInteger.valueOf(100L);
+    private QueuedTransfersRepository queuedTransfersRepository;
+    private AccountsRepository accountsRepository;
+    private TransactionsRepository transactionsRepository;
+    private TransferInstructions transferInstructions;
+    private TransferService transferService;
+    private QueuedTransferWorker worker;
+
+    @BeforeEach
+    void setUp() {
+        queuedTransfersRepository = mock(QueuedTransfersRepository.class);
+        accountsRepository = mock(AccountsRepository.class);
+        transactionsRepository = mock(TransactionsRepository.class);
+        transferInstructions = mock(TransferInstructions.class);
+        transferService = mock(TransferService.class);
+
+        worker = new QueuedTransferWorker(
+                queuedTransfersRepository,
+                accountsRepository,
+                transactionsRepository,
+                transferInstructions,
+                transferService,
+                10,
+                2,
+                60000L,
+                1000L,
+                3
+        );
+
+        when(queuedTransfersRepository.updateStatus(any(UUID.class), eq(QueuedTransferStatus.PENDING), eq(QueuedTransferStatus.PROCESSING), any(Instant.class)))
+                .thenReturn(1);
+        when(accountsRepository.findById(exampleUUID)).thenReturn(Optional.of(new Account(exampleUUID, null, "EUR", exampleAmount)));
+        when(accountsRepository.findById(exampleUUID2)).thenReturn(Optional.of(new Account(exampleUUID2, null, "EUR", exampleAmount)));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        worker.shutdown();
+    }
+
+    @Test
+    void processesPending() throws Exception {
+        QueuedTransfer first = queued();
+        QueuedTransfer second = queued();
+        when(queuedTransfersRepository.findAllDue(eq(QueuedTransferStatus.PENDING), any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(first, second));
+        mockInstruction();
+
+        Transaction transaction = mock(Transaction.class);
+        UUID transactionId = UUID.randomUUID();
+        when(transaction.getId()).thenReturn(transactionId);
+        when(transaction.getStatus()).thenReturn(TransactionStatus.COMPLETED);
+        when(transferService.transfer(any(), eq(exampleUUID), eq(exampleAmount), eq(exampleUUID2), eq(exampleAmount), anyString(), any()))
+                .thenReturn(transaction);
+
+        assertEquals(2, worker.processPending());
+
+        verify(transferService, times(2)).transfer(any(), any(), any(), any(), any(), anyString(), any());
+        verify(queuedTransfersRepository).complete(eq(first.getId()), eq(QueuedTransferStatus.COMPLETED), eq(transactionId), isNull(), any(Instant.class));
+        verify(queuedTransfersRepository).complete(eq(second.getId()), eq(QueuedTransferStatus.COMPLETED), eq(transactionId), isNull(), any(Instant.class));
+    }
+
+    @Test
+    void skipsAlreadyClaimed() throws Exception {
+        QueuedTransfer queuedTransfer = queued();
+        when(queuedTransfersRepository.updateStatus(eq(queuedTransfer.getId()), any(), any(), any(Instant.class))).thenReturn(0);
+
+        worker.process(queuedTransfer);
+
+        verify(transferService, never()).transfer(any(), any(), any(), any(), any(), anyString(), any());
+        verify(queuedTransfersRepository, never()).complete(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void insufficientBalance() throws Exception {
+        QueuedTransfer queuedTransfer = queued();
+        mockInstruction();
+
+        Transaction transaction = mock(Transaction.class);
+        UUID transactionId = UUID.randomUUID();
+        when(transaction.getId()).thenReturn(transactionId);
+        when(transaction.getStatus()).thenReturn(TransactionStatus.FAILED);
+        when(transaction.getDescription()).thenReturn("insufficient balance");
+        when(transferService.transfer(any(), any(), any(), any(), any(), anyString(), any())).thenReturn(transaction);
+
+        worker.process(queuedTransfer);
+
+        verify(queuedTransfersRepository).complete(eq(queuedTransfer.getId()), eq(QueuedTransferStatus.FAILED), eq(transactionId), eq("insufficient balance"), any(Instant.class));
+    }
+
+    @Test
+    void conversionFailureRetried() throws Exception {
+        QueuedTransfer queuedTransfer = queued();
+        when(transferInstructions.prepare(any(), any(), any(), any()))
+                .thenThrow(new CurrencyConverterService.CurrencyConversionException("unavailable"));
+
+        Instant before = Instant.now();
+        worker.process(queuedTransfer);
+
+        verify(transferService, never()).transfer(any(), any(), any(), any(), any(), anyString(), any());
+        verify(queuedTransfersRepository).retry(eq(queuedTransfer.getId()), eq(1), argThat(notBefore -> !notBefore.isBefore(before.plusMillis(1000))), any(Instant.class));
+        verify(queuedTransfersRepository, never()).complete(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void conversionFailureBacksOff() throws Exception {
+        QueuedTransfer queuedTransfer = queued(1);
+        when(transferInstructions.prepare(any(), any(), any(), any()))
+                .thenThrow(new CurrencyConverterService.CurrencyConversionException("unavailable"));
+
+        Instant before = Instant.now();
+        worker.process(queuedTransfer);
+
+        verify(queuedTransfersRepository).retry(eq(queuedTransfer.getId()), eq(2), argThat(notBefore -> !notBefore.isBefore(before.plusMillis(2000))), any(Instant.class));
+    }
+
+    @Test
+    void conversionFailureAfterMaxAttempts() throws Exception {
+        QueuedTransfer queuedTransfer = queued(2);
+        when(transferInstructions.prepare(any(), any(), any(), any()))
+                .thenThrow(new CurrencyConverterService.CurrencyConversionException("unavailable"));
+
+        worker.process(queuedTransfer);
+
+        verify(queuedTransfersRepository, never()).retry(any(), anyInt(), any(), any());
+        verify(queuedTransfersRepository).complete(eq(queuedTransfer.getId()), eq(QueuedTransferStatus.FAILED), isNull(), eq("currency conversion unavailable"), any(Instant.class));
+    }
+
+    @Test
+    void transferFailure() throws Exception {
+        QueuedTransfer queuedTransfer = queued();
+        mockInstruction();
+        when(transferService.transfer(any(), any(), any(), any(), any(), anyString(), any())).thenThrow(new TransferService.TransferException());
+
+        worker.process(queuedTransfer);
+
+        verify(queuedTransfersRepository).complete(eq(queuedTransfer.getId()), eq(QueuedTransferStatus.FAILED), isNull(), eq("internal error"), any(Instant.class));
+    }
+
+    @Test
+    void transactionCarriesRequestId() throws Exception {
+        QueuedTransfer queuedTransfer = queued();
+        mockInstruction();
+
+        Transaction transaction = mock(Transaction.class);
+        when(transaction.getStatus()).thenReturn(TransactionStatus.COMPLETED);
+        when(transferService.transfer(any(), any(), any(), any(), any(), anyString(), any())).thenReturn(transaction);
+
+        worker.process(queuedTransfer);
+
+        // description left as is
+        verify(transferService).transfer(any(), any(), any(), any(), any(), eq("queued transfer"), eq(queuedTransfer.getId()));
+    }
+
+    @Test
+    void executedByEarlierAttempt() throws Exception {
+        QueuedTransfer queuedTransfer = queued();
+        mockInstruction();
+        when(transferService.transfer(any(), any(), any(), any(), any(), anyString(), any()))
+                .thenThrow(new DataIntegrityViolationException("transactions_request_idx"));
+
+        Transaction transaction = mock(Transaction.class);
+        UUID transactionId = UUID.randomUUID();
+        when(transaction.getId()).thenReturn(transactionId);
+        when(transaction.getStatus()).thenReturn(TransactionStatus.COMPLETED);
+        when(transactionsRepository.findByRequestId(queuedTransfer.getId())).thenReturn(Optional.of(transaction));
+
+        worker.process(queuedTransfer);
+
+        verify(queuedTransfersRepository).complete(eq(queuedTransfer.getId()), eq(QueuedTransferStatus.COMPLETED), eq(transactionId), isNull(), any(Instant.class));
+        verify(queuedTransfersRepository, never()).complete(any(), eq(QueuedTransferStatus.FAILED), any(), any(), any());
+    }
+
+    @Test
+    void completeRetried() throws Exception {
+        QueuedTransfer queuedTransfer = queued();
+        mockInstruction();
+
+        Transaction transaction = mock(Transaction.class);
+        UUID transactionId = UUID.randomUUID();
+        when(transaction.getId()).thenReturn(transactionId);
+        when(transaction.getStatus()).thenReturn(TransactionStatus.COMPLETED);
+        when(transferService.transfer(any(), any(), any(), any(), any(), anyString(), any())).thenReturn(transaction);
+        when(queuedTransfersRepository.complete(any(), any(), any(), any(), any()))
+                .thenThrow(new RuntimeException("connection reset"))
+                .thenReturn(1);
+
+        worker.process(queuedTransfer);
+
+        verify(queuedTransfersRepository, times(2)).complete(eq(queuedTransfer.getId()), eq(QueuedTransferStatus.COMPLETED), eq(transactionId), isNull(), any(Instant.class));
+    }
+
+    @Test
+    void completeFailureLeavesProcessing() throws Exception {
+        QueuedTransfer queuedTransfer = queued();
+        mockInstruction();
+
+        Transaction transaction = mock(Transaction.class);
+        when(transaction.getId()).thenReturn(UUID.randomUUID());
+        when(transaction.getStatus()).thenReturn(TransactionStatus.COMPLETED);
+        when(transferService.transfer(any(), any(), any(), any(), any(), anyString(), any())).thenReturn(transaction);
+        when(queuedTransfersRepository.complete(any(), any(), any(), any(), any())).thenThrow(new RuntimeException("connection reset"));
+
+        worker.process(queuedTransfer);
+
+        // money moved - never marked as failed
+        verify(queuedTransfersRepository, times(3)).complete(any(), eq(QueuedTransferStatus.COMPLETED), any(), any(), any());
+        verify(queuedTransfersRepository, never()).complete(any(), eq(QueuedTransferStatus.FAILED), any(), any(), any());
+    }
+
+    @Test
+    void reapCompletesExecuted() {
+        QueuedTransfer queuedTransfer = processing();
+        when(queuedTransfersRepository.findAllByStatusAndUpdatedBeforeOrderByUpdatedAsc(eq(QueuedTransferStatus.PROCESSING), any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(queuedTransfer));
+
+        Transaction transaction = mock(Transaction.class);
+        UUID transactionId = UUID.randomUUID();
+        when(transaction.getId()).thenReturn(transactionId);
+        when(transaction.getStatus()).thenReturn(TransactionStatus.COMPLETED);
+        when(transactionsRepository.findByRequestId(queuedTransfer.getId())).thenReturn(Optional.of(transaction));
+
+        assertEquals(1, worker.reapStuck());
+
+        verify(queuedTransfersRepository).complete(eq(queuedTransfer.getId()), eq(QueuedTransferStatus.COMPLETED), eq(transactionId), isNull(), any(Instant.class));
+        verify(queuedTransfersRepository, never()).updateStatus(any(), eq(QueuedTransferStatus.PROCESSING), any(), any());
+    }
+
+    @Test
+    void reapFailsFailedAttempt() {
+        QueuedTransfer queuedTransfer = processing();
+        when(queuedTransfersRepository.findAllByStatusAndUpdatedBeforeOrderByUpdatedAsc(eq(QueuedTransferStatus.PROCESSING), any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(queuedTransfer));
+
+        Transaction transaction = mock(Transaction.class);
+        UUID transactionId = UUID.randomUUID();
+        when(transaction.getId()).thenReturn(transactionId);
+        when(transaction.getStatus()).thenReturn(TransactionStatus.FAILED);
+        when(transaction.getDescription()).thenReturn("insufficient balance");
+        when(transactionsRepository.findByRequestId(queuedTransfer.getId())).thenReturn(Optional.of(transaction));
+
+        assertEquals(1, worker.reapStuck());
+
+        // not executed again
+        verify(queuedTransfersRepository).complete(eq(queuedTransfer.getId()), eq(QueuedTransferStatus.FAILED), eq(transactionId), eq("insufficient balance"), any(Instant.class));
+        verify(queuedTransfersRepository, never()).updateStatus(any(), eq(QueuedTransferStatus.PROCESSING), any(), any());
+    }
+
+    @Test
+    void reapRequeuesNotExecuted() {
+        QueuedTransfer queuedTransfer = processing();
+        when(queuedTransfersRepository.findAllByStatusAndUpdatedBeforeOrderByUpdatedAsc(eq(QueuedTransferStatus.PROCESSING), any(Instant.class), any(Pageable.class)))
+                .thenReturn(List.of(queuedTransfer));
+        when(transactionsRepository.findByRequestId(any())).thenReturn(Optional.empty());
+
+        assertEquals(1, worker.reapStuck());
+
+        verify(queuedTransfersRepository).updateStatus(eq(queuedTransfer.getId()), eq(QueuedTransferStatus.PROCESSING), eq(QueuedTransferStatus.PENDING), any(Instant.class));
+        verify(queuedTransfersRepository, never()).complete(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void constructorNullChecks() {
+        assertThrows(NullPointerException.class, () -> new QueuedTransferWorker(queuedTransfersRepository, accountsRepository, transactionsRepository, transferInstructions, null, 1, 1, 1L, 1L, 1));
+        assertThrows(NullPointerException.class, () -> new QueuedTransferWorker(queuedTransfersRepository, accountsRepository, transactionsRepository, null, transferService, 1, 1, 1L, 1L, 1));
+        assertThrows(NullPointerException.class, () -> new QueuedTransferWorker(queuedTransfersRepository, accountsRepository, null, transferInstructions, transferService, 1, 1, 1L, 1L, 1));
+        assertThrows(NullPointerException.class, () -> new QueuedTransferWorker(queuedTransfersRepository, null, transactionsRepository, transferInstructions, transferService, 1, 1, 1L, 1L, 1));
+        assertThrows(NullPointerException.class, () -> new QueuedTransferWorker(null, accountsRepository, transactionsRepository, transferInstructions, transferService, 1, 1, 1L, 1L, 1));
+    }
+
+    private QueuedTransfer queued() {
+        return queued(0);
+    }
+
+    private QueuedTransfer queued(int attempts) {
+        Instant now = Instant.now();
+        return new QueuedTransfer(
+                UUID.randomUUID(),
+                QueuedTransferStatus.PENDING,
+                now,
+                now,
+                exampleUUID,
+                exampleUUID2,
+                "EUR",
+                exampleAmount,
+                null,
+                null,
+                attempts,
+                null
+        );
+    }
+
+    private QueuedTransfer processing() {
+        Instant claimed = Instant.now().minusSeconds(600);
+        return new QueuedTransfer(
+                UUID.randomUUID(),
+                QueuedTransferStatus.PROCESSING,
+                claimed,
+                claimed,
+                exampleUUID,
+                exampleUUID2,
+                "EUR",
+                exampleAmount,
+                null,
+                null
+        );
+    }
+
+    private void mockInstruction() throws CurrencyConverterService.CurrencyConversionException {
+        when(transferInstructions.prepare(any(), any(), any(), eq(exampleAmount))).thenReturn(
+                new TransferService.TransferInstruction(
+                        Instant.now(),
+                        exampleUUID,
+                        exampleAmount,
+                        exampleUUID2,
+                        exampleAmount,
+                        "queued transfer"
+                )
+        );
+    }
+}
@@ -0,0 +1,322 @@
+package com.zigurs.ledger.app;
+
+import com.zigurs.ledger.api.TransferService;
+import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.data.TransactionsBatchRepository;
+import com.zigurs.ledger.data.TransactionsRepository;
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.Transaction;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class SequencerTransferServiceTest {
+
+    private static final UUID exampleUUID = UUID.fromString("d4a8ad83-93b5-4114-9df5-61127a6c61de");
+    private static final UUID exampleUUID2 = UUID.fromString("413a0b12-985d-4437-9490-bdeddb617e9e");
+    private static final BigInteger exampleAmount = BigInteger.valueOf(1L);
+    private SequencerTransferService transferService;
+    private AccountsRepository accountsRepository;
+    private TransactionsBatchRepository transactionsBatchRepository;
+    private TransactionsRepository transactionsRepository;
+
+    @BeforeEach
+    void setUp() {
+        accountsRepository = mock(AccountsRepository.class);
+        transactionsBatchRepository = mock(TransactionsBatchRepository.class);
+        transactionsRepository = mock(TransactionsRepository.class);
+
+        transferService = new SequencerTransferService(
+                accountsRepository,
+                transactionsBatchRepository,
+                transactionsRepository,
+                16,
+                4
+        );
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        transferService.shutdown();
+    }
+
+    @Test
+    void greenPath() throws TransferService.TransferException {
+        mockAccount(exampleUUID, 1L);
+        mockAccount(exampleUUID2, 1L);
+
+        Transaction tx = transferService.transfer(
+                Instant.now(),
+                exampleUUID,
+                exampleAmount,
+                exampleUUID2,
+                exampleAmount,
+                "happy transfer"
+        );
+
+        assertNotNull(tx, "Expected transaction, but none returned");
+        assertNotNull(tx.getId(), "Expected transaction id to be assigned");
+        assertEquals(exampleUUID, tx.getSourceAccount().getId(), "incorrect source account");
+        assertEquals(exampleUUID2, tx.getDestinationAccount().getId(), "incorrect destination account");
+        assertEquals(TransactionStatus.COMPLETED, tx.getStatus(), "incorrect status");
+        assertEquals(1L, tx.getDestinationAmount().longValue(), "incorrect transaction amount");
+        assertEquals(0L, tx.getSourceBalance().longValue(), "incorrect source balance");
+        assertEquals(2L, tx.getDestinationBalance().longValue(), "incorrect destination balance");
+        assertEquals("happy transfer", tx.getDescription(), "incorrect description");
+
+        verify(transactionsBatchRepository, timeout(1000).times(1)).persist(
+                eq(List.of(tx)),
+                eq(Map.of(exampleUUID, BigInteger.ZERO, exampleUUID2, BigInteger.TWO))
+        );
+    }
+
+    @Test
+    void balancesKeptInMemory() throws TransferService.TransferException {
+        mockAccount(exampleUUID, 2L);
+        mockAccount(exampleUUID2, 0L);
+
+        transferService.transfer(Instant.now(), exampleUUID, exampleAmount, exampleUUID2, exampleAmount, "one");
+        Transaction tx = transferService.transfer(Instant.now(), exampleUUID, exampleAmount, exampleUUID2, exampleAmount, "two");
+
+        assertEquals(TransactionStatus.COMPLETED, tx.getStatus(), "incorrect status");
+        assertEquals(0L, tx.getSourceBalance().longValue(), "incorrect source balance");
+        assertEquals(2L, tx.getDestinationBalance().longValue(), "incorrect destination balance");
+
+        // accounts are loaded once, no locking reads at all
+        verify(accountsRepository, times(1)).findById(exampleUUID);
+        verify(accountsRepository, times(1)).findById(exampleUUID2);
+        verify(accountsRepository, never()).findByIdForUpdate(any(UUID.class));
+    }
+
+    @Test
+    void invalidAccounts() throws TransferService.TransferException {
+        mockAccount(exampleUUID, 1L);
+
+        assertThrows(TransferService.TransferException.class, () -> transferService.transfer(
+                        Instant.now(),
+                        exampleUUID,
+                        exampleAmount,
+                        exampleUUID,
+                        exampleAmount,
+                        "happy transfer"
+                )
+        );
+
+        verify(accountsRepository, times(0)).findById(any(UUID.class));
+    }
+
+    @Test
+    void insufficientBalance() throws TransferService.TransferException {
+        mockAccount(exampleUUID, 0L);
+        mockAccount(exampleUUID2, 1L);
+
+        Transaction tx = transferService.transfer(
+                Instant.now(),
+                exampleUUID,
+                exampleAmount,
+                exampleUUID2,
+                exampleAmount,
+                "insufficient balance"
+        );
+
+        assertNotNull(tx, "Expected transaction, but none returned");
+        assertEquals(exampleUUID, tx.getSourceAccount().getId(), "incorrect source account");
+        assertEquals(exampleUUID2, tx.getDestinationAccount().getId(), "incorrect destination account");
+        assertEquals(TransactionStatus.FAILED, tx.getStatus(), "incorrect status");
+        assertEquals(0L, tx.getSourceBalance().longValue(), "incorrect source balance");
+        assertEquals(1L, tx.getDestinationBalance().longValue(), "incorrect destination balance");
+        assertEquals("insufficient balance", tx.getDescription(), "incorrect description");
+
+        // failed transaction is recorded, but no balances are touched
+        verify(transactionsBatchRepository, timeout(1000).times(1)).persist(eq(List.of(tx)), eq(Map.of()));
+    }
+
+    @Test
+    void invalidSourceAccount() throws TransferService.TransferException {
+        when(accountsRepository.findById(exampleUUID)).thenReturn(Optional.empty());
+
+        assertThrows(TransferService.TransferException.class,
+                () -> transferService.transfer(
+                        Instant.now(),
+                        exampleUUID,
+                        exampleAmount,
+                        exampleUUID2,
+                        exampleAmount,
+                        ""
+                )
+        );
+
+        verify(accountsRepository, times(1)).findById(exampleUUID);
+    }
+
+    @Test
+    void invalidDestinationAccount() throws TransferService.TransferException {
+        mockAccount(exampleUUID, 1L);
+        when(accountsRepository.findById(exampleUUID2)).thenReturn(Optional.empty());
+
+        assertThrows(TransferService.TransferException.class,
+                () -> transferService.transfer(
+                        Instant.now(),
+                        exampleUUID,
+                        exampleAmount,
+                        exampleUUID2,
+                        exampleAmount,
+                        ""
+                )
+        );
+
+        verify(accountsRepository, times(1)).findById(exampleUUID);
+        verify(accountsRepository, times(1)).findById(exampleUUID2);
+        verify(transactionsBatchRepository, after(200).never()).persist(anyList(), anyMap());
+    }
+
+    @Test
+    void rejectedAfterShutdown() throws InterruptedException {
+        transferService.shutdown();
+
+        assertThrows(TransferService.TransferException.class,
+                () -> transferService.transfer(
+                        Instant.now(),
+                        exampleUUID,
+                        exampleAmount,
+                        exampleUUID2,
+                        exampleAmount,
+                        ""
+                )
+        );
+    }
+
+    @Test
+    void requestExecutedOnce() throws TransferService.TransferException {
+        mockAccount(exampleUUID, 1L);
+        mockAccount(exampleUUID2, 1L);
+        UUID requestId = UUID.randomUUID();
+
+        Transaction tx = transferService.transfer(Instant.now(), exampleUUID, exampleAmount, exampleUUID2, exampleAmount, "queued", requestId);
+        assertEquals(requestId, tx.getRequestId());
+        verify(transactionsBatchRepository, timeout(1000).times(1)).persist(eq(List.of(tx)), any());
+
+        // stored by now
+        when(transactionsRepository.findByRequestId(requestId)).thenReturn(Optional.of(tx));
+
+        assertSame(tx, transferService.transfer(Instant.now(), exampleUUID, exampleAmount, exampleUUID2, exampleAmount, "queued", requestId));
+
+        // applied once - source balance depleted by the first attempt only
+        Transaction next = transferService.transfer(Instant.now(), exampleUUID2, exampleAmount, exampleUUID, exampleAmount, "other");
+        assertEquals(1L, next.getSourceBalance().longValue());
+        verify(transactionsBatchRepository, timeout(1000).times(2)).persist(any(), any());
+    }
+
+    @Test
+    void constructorNullChecks() throws TransferService.TransferException {
+        assertThrows(NullPointerException.class, () -> new SequencerTransferService(
+                        accountsRepository,
+                        transactionsBatchRepository,
+                        null,
+                        16,
+                        4
+                )
+        );
+
+        assertThrows(NullPointerException.class, () -> new SequencerTransferService(
+                        accountsRepository,
+                        null,
+                        transactionsRepository,
+                        16,
+                        4
+                )
+        );
+
+        assertThrows(NullPointerException.class, () -> new SequencerTransferService(
+                        null,
+                        transactionsBatchRepository,
+                        transactionsRepository,
+                        16,
+                        4
+                )
+        );
+    }
+
+    @Test
+    void transferNullChecks() throws TransferService.TransferException {
+        assertThrows(NullPointerException.class, () -> transferService.transfer(
+                        null,
+                        exampleUUID,
+                        exampleAmount,
+                        exampleUUID2,
+                        exampleAmount,
+                        "happy transfer"
+                )
+        );
+
+        assertThrows(NullPointerException.class, () -> transferService.transfer(
+                        Instant.now(),
+                        null,
+                        exampleAmount,
+                        exampleUUID2,
+                        exampleAmount,
+                        "happy transfer"
+                )
+        );
+
+        assertThrows(NullPointerException.class, () -> transferService.transfer(
+                        Instant.now(),
+                        exampleUUID,
+                        null,
+                        exampleUUID2,
+                        exampleAmount,
+                        "happy transfer"
+                )
+        );
+
+        assertThrows(NullPointerException.class, () -> transferService.transfer(
+                        Instant.now(),
+                        exampleUUID,
+                        exampleAmount,
+                        null,
+                        exampleAmount,
+                        "happy transfer"
+                )
+        );
+
+        assertThrows(NullPointerException.class, () -> transferService.transfer(
+                        Instant.now(),
+                        exampleUUID,
+                        exampleAmount,
+                        exampleUUID2,
+                        null,
+                        "happy transfer"
+                )
+        );
+
+        assertThrows(NullPointerException.class, () -> transferService.transfer(
+                        Instant.now(),
+                        exampleUUID,
+                        exampleAmount,
+                        exampleUUID2,
+                        exampleAmount,
+                        null
+                )
+        );
+    }
+
+    private void mockAccount(UUID id, long balance) {
+        Account account = mock(Account.class);
+        when(account.getId()).thenReturn(id);
+        when(account.getBalance()).thenReturn(BigInteger.valueOf(balance));
+        when(accountsRepository.findById(id)).thenReturn(Optional.of(account));
+    }
+}
@@ -1,17 +1,24 @@
 package com.zigurs.ledger.app;
 
+import com.zigurs.ledger.api.RecentHistory;
 import com.zigurs.ledger.api.TransferService;
 import com.zigurs.ledger.data.AccountsRepository;
+import com.zigurs.ledger.data.TransactionsBatchRepository;
 import com.zigurs.ledger.data.TransactionsRepository;
 import com.zigurs.ledger.model.Account;
 import com.zigurs.ledger.model.Transaction;
 import com.zigurs.ledger.model.TransactionStatus;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotSerializeTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigInteger;
 import java.time.Instant;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -22,19 +29,37 @@ class TransferServiceImplTest {
 
     private static final UUID exampleUUID = UUID.fromString("d4a8ad83-93b5-4114-9df5-61127a6c61de");
     private static final UUID exampleUUID2 = UUID.fromString("413a0b12-985d-4437-9490-bdeddb617e9e");
+    private static final UUID exampleUUID3 = UUID.fromString("7b2c4b8e-5f0d-4c3a-8e61-2a9d0f6b1c57");
     private static final BigInteger exampleAmount = BigInteger.valueOf(1L);
     private TransferServiceImpl transferService;
     private AccountsRepository accountsRepository;
     private TransactionsRepository transactionsRepository;
+    private TransactionsBatchRepository transactionsBatchRepository;
+    private PlatformTransactionManager transactionManager;
+    private SimpleMeterRegistry meterRegistry;
+    private TransferMetrics transferMetrics;
+    private HotAccounts hotAccounts;
+    private RecentHistory recentHistory;
 
     @BeforeEach
     void setUp() {
         accountsRepository = mock(AccountsRepository.class);
         transactionsRepository = mock(TransactionsRepository.class);
+        transactionsBatchRepository = mock(TransactionsBatchRepository.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        meterRegistry = new SimpleMeterRegistry();
+        transferMetrics = new TransferMetrics(meterRegistry);
+        hotAccounts = mock(HotAccounts.class);
+        recentHistory = mock(RecentHistory.class);
 
         transferService = new TransferServiceImpl(
                 accountsRepository,
-                transactionsRepository
+                transactionsRepository,
+                transactionsBatchRepository,
+                transactionManager,
+                transferMetrics,
+                hotAccounts,
+                recentHistory
         );
     }
 
@@ -76,6 +101,39 @@ class TransferServiceImplTest {
         verify(destinationAccount, times(1)).setBalance(BigInteger.valueOf(2L));
         verify(accountsRepository, times(1)).save(account);
         verify(accountsRepository, times(1)).save(destinationAccount);
+
+        assertEquals(1L, meterRegistry.get(TransferMetrics.TRANSFERS).tags("mode", "pessimistic", "outcome", "COMPLETED").timer().count());
+        verify(recentHistory, times(1)).recordAfterCommit(List.of(tx));
+    }
+
+    @Test
+    void commitIsTimed() throws TransferService.TransferException {
+        Account account = mock(Account.class);
+        when(account.getId()).thenReturn(exampleUUID);
+        when(account.getBalance()).thenReturn(BigInteger.valueOf(1L));
+
+        Account destinationAccount = mock(Account.class);
+        when(destinationAccount.getId()).thenReturn(exampleUUID2);
+        when(destinationAccount.getBalance()).thenReturn(BigInteger.valueOf(1L));
+
+        when(accountsRepository.findByIdForUpdate(exampleUUID)).thenReturn(Optional.of(account));
+        when(accountsRepository.findByIdForUpdate(exampleUUID2)).thenReturn(Optional.of(destinationAccount));
+        when(accountsRepository.save(any(Account.class))).thenAnswer(i -> i.getArgument(0));
+        when(transactionsRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArgument(0));
+        doThrow(new CannotSerializeTransactionException("conflict")).when(transactionManager).commit(any());
+
+        assertThrows(CannotSerializeTransactionException.class, () -> transferService.transfer(
+                Instant.now(),
+                exampleUUID,
+                exampleAmount,
+                exampleUUID2,
+                exampleAmount,
+                "failed commit"
+        ));
+
+        // commit failure is part of the measured transfer
+        assertEquals(1L, meterRegistry.get(TransferMetrics.TRANSFERS).tags("mode", "pessimistic", "outcome", "ERROR").timer().count());
+        assertNull(meterRegistry.find(TransferMetrics.TRANSFERS).tags("outcome", "COMPLETED").timer());
     }
 
     @Test
@@ -210,13 +268,78 @@ class TransferServiceImplTest {
     void constructorNullChecks() throws TransferService.TransferException {
         assertThrows(NullPointerException.class, () -> new TransferServiceImpl(
                         accountsRepository,
+                        transactionsRepository,
+                        transactionsBatchRepository,
+                        transactionManager,
+                        transferMetrics,
+                        hotAccounts,
                         null
                 )
         );
 
+        assertThrows(NullPointerException.class, () -> new TransferServiceImpl(
+                        accountsRepository,
+                        transactionsRepository,
+                        transactionsBatchRepository,
+                        transactionManager,
+                        transferMetrics,
+                        null,
+                        recentHistory
+                )
+        );
+
+        assertThrows(NullPointerException.class, () -> new TransferServiceImpl(
+                        accountsRepository,
+                        transactionsRepository,
+                        transactionsBatchRepository,
+                        transactionManager,
+                        null,
+                        hotAccounts,
+                        recentHistory
+                )
+        );
+
+        assertThrows(NullPointerException.class, () -> new TransferServiceImpl(
+                        accountsRepository,
+                        transactionsRepository,
+                        transactionsBatchRepository,
+                        null,
+                        transferMetrics,
+                        hotAccounts,
+                        recentHistory
+                )
+        );
+
+        assertThrows(NullPointerException.class, () -> new TransferServiceImpl(
+                        accountsRepository,
+                        transactionsRepository,
+                        null,
+                        transactionManager,
+                        transferMetrics,
+                        hotAccounts,
+                        recentHistory
+                )
+        );
+
+        assertThrows(NullPointerException.class, () -> new TransferServiceImpl(
+                        accountsRepository,
+                        null,
+                        transactionsBatchRepository,
+                        transactionManager,
+                        transferMetrics,
+                        hotAccounts,
+                        recentHistory
+                )
+        );
+
         assertThrows(NullPointerException.class, () -> new TransferServiceImpl(
                         null,
-                        transactionsRepository
+                        transactionsRepository,
+                        transactionsBatchRepository,
+                        transactionManager,
+                        transferMetrics,
+                        hotAccounts,
+                        recentHistory
                 )
         );
     }
@@ -283,4 +406,347 @@ class TransferServiceImplTest {
                 )
         );
     }
+
+    @Test
+    void batchGreenPath() throws TransferService.TransferException {
+        Account account = mock(Account.class);
+        when(account.getId()).thenReturn(exampleUUID);
+        when(account.getBalance()).thenReturn(BigInteger.valueOf(1L));
+
+        Account destinationAccount = mock(Account.class);
+        when(destinationAccount.getId()).thenReturn(exampleUUID2);
+        when(destinationAccount.getBalance()).thenReturn(BigInteger.valueOf(1L));
+
+        when(accountsRepository.findByIdForUpdate(exampleUUID)).thenReturn(Optional.of(account));
+        when(accountsRepository.findByIdForUpdate(exampleUUID2)).thenReturn(Optional.of(destinationAccount));
+
+        Instant timestamp = Instant.now();
+        List<Transaction> transactions = transferService.transferAll(List.of(
+                new TransferService.TransferInstruction(timestamp, exampleUUID, exampleAmount, exampleUUID2, exampleAmount, "first"),
+                new TransferService.TransferInstruction(timestamp, exampleUUID2, BigInteger.TWO, exampleUUID, BigInteger.TWO, "second"),
+                new TransferService.TransferInstruction(timestamp, exampleUUID, BigInteger.TEN, exampleUUID2, BigInteger.TEN, "third")
+        ));
+
+        assertEquals(3, transactions.size(), "incorrect number of transactions");
+
+        assertEquals(TransactionStatus.COMPLETED, transactions.get(0).getStatus(), "incorrect status");
+        assertEquals(0L, transactions.get(0).getSourceBalance().longValue(), "incorrect running balance");
+        assertEquals(2L, transactions.get(0).getDestinationBalance().longValue(), "incorrect running balance");
+
+        assertEquals(TransactionStatus.COMPLETED, transactions.get(1).getStatus(), "incorrect status");
+        assertEquals(0L, transactions.get(1).getSourceBalance().longValue(), "incorrect running balance");
+        assertEquals(2L, transactions.get(1).getDestinationBalance().longValue(), "incorrect running balance");
+
+        assertEquals(TransactionStatus.FAILED, transactions.get(2).getStatus(), "incorrect status");
+        assertEquals("insufficient balance", transactions.get(2).getDescription(), "incorrect description");
+
+        // each account locked exactly once, everything written in batches
+        verify(accountsRepository, times(1)).findByIdForUpdate(exampleUUID);
+        verify(accountsRepository, times(1)).findByIdForUpdate(exampleUUID2);
+        verify(accountsRepository, times(0)).save(any(Account.class));
+        verify(transactionsRepository, times(0)).save(any(Transaction.class));
+        verify(transactionsBatchRepository, times(1)).insertAll(transactions);
+        verify(transactionsBatchRepository, times(1)).updateBalances(Map.of(
+                exampleUUID, BigInteger.TWO,
+                exampleUUID2, BigInteger.ZERO
+        ));
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void batchLocksInOrder() throws TransferService.TransferException {
+        Account account = mock(Account.class);
+        when(account.getId()).thenReturn(exampleUUID);
+        when(account.getBalance()).thenReturn(BigInteger.valueOf(1L));
+
+        Account destinationAccount = mock(Account.class);
+        when(destinationAccount.getId()).thenReturn(exampleUUID2);
+        when(destinationAccount.getBalance()).thenReturn(BigInteger.valueOf(1L));
+
+        when(accountsRepository.findByIdForUpdate(exampleUUID)).thenReturn(Optional.of(account));
+        when(accountsRepository.findByIdForUpdate(exampleUUID2)).thenReturn(Optional.of(destinationAccount));
+
+        transferService.transferAll(List.of(
+                new TransferService.TransferInstruction(Instant.now(), exampleUUID2, exampleAmount, exampleUUID, exampleAmount, "")
+        ));
+
+        // exampleUUID is "smaller", same order as single transfers
+        var inOrder = inOrder(accountsRepository);
+        inOrder.verify(accountsRepository).findByIdForUpdate(exampleUUID);
+        inOrder.verify(accountsRepository).findByIdForUpdate(exampleUUID2);
+    }
+
+    @Test
+    void batchInvalidAccounts() throws TransferService.TransferException {
+        when(accountsRepository.findByIdForUpdate(exampleUUID2)).thenReturn(Optional.empty());
+
+        assertThrows(TransferService.TransferException.class, () -> transferService.transferAll(List.of(
+                new TransferService.TransferInstruction(Instant.now(), exampleUUID, exampleAmount, exampleUUID2, exampleAmount, "")
+        )));
+
+        assertThrows(TransferService.TransferException.class, () -> transferService.transferAll(List.of(
+                new TransferService.TransferInstruction(Instant.now(), exampleUUID, exampleAmount, exampleUUID, exampleAmount, "")
+        )));
+
+        verify(transactionsBatchRepository, times(0)).insertAll(anyList());
+    }
+
+    @Test
+    void hotDestination() throws TransferService.TransferException {
+        Account account = mock(Account.class);
+        when(account.getId()).thenReturn(exampleUUID);
+        when(account.getBalance()).thenReturn(BigInteger.valueOf(1L));
+
+        Account destinationAccount = mock(Account.class);
+        when(destinationAccount.getId()).thenReturn(exampleUUID2);
+
+        when(hotAccounts.isHot(exampleUUID2)).thenReturn(true);
+        when(hotAccounts.balance(destinationAccount)).thenReturn(BigInteger.TEN);
+        when(accountsRepository.findByIdForUpdate(exampleUUID)).thenReturn(Optional.of(account));
+        when(accountsRepository.findById(exampleUUID2)).thenReturn(Optional.of(destinationAccount));
+        when(accountsRepository.save(any(Account.class))).thenAnswer(i -> i.getArgument(0));
+        when(transactionsRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArgument(0));
+
+        Transaction tx = transferService.transfer(
+                Instant.now(),
+                exampleUUID,
+                exampleAmount,
+                exampleUUID2,
+                exampleAmount,
+                "hot transfer"
+        );
+
+        assertEquals(TransactionStatus.COMPLETED, tx.getStatus(), "incorrect status");
+        assertEquals(BigInteger.TEN, tx.getDestinationBalance(), "incorrect destination balance");
+
+        // hot account itself is never locked, only credited slot is
+        verify(accountsRepository, never()).findByIdForUpdate(exampleUUID2);
+        verify(account, times(1)).setBalance(BigInteger.ZERO);
+        verify(hotAccounts, times(1)).credit(exampleUUID2, exampleAmount);
+        verify(accountsRepository, times(1)).save(account);
+    }
+
+    @Test
+    void hotSourceInsufficientBalance() throws TransferService.TransferException {
+        Account account = mock(Account.class);
+        when(account.getId()).thenReturn(exampleUUID);
+
+        Account destinationAccount = mock(Account.class);
+        when(destinationAccount.getId()).thenReturn(exampleUUID2);
+        when(destinationAccount.getBalance()).thenReturn(BigInteger.valueOf(1L));
+
+        when(hotAccounts.isHot(exampleUUID)).thenReturn(true);
+        when(hotAccounts.debit(exampleUUID, exampleAmount)).thenReturn(false);
+        when(accountsRepository.findById(exampleUUID)).thenReturn(Optional.of(account));
+        when(accountsRepository.findByIdForUpdate(exampleUUID2)).thenReturn(Optional.of(destinationAccount));
+        when(transactionsRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArgument(0));
+
+        Transaction tx = transferService.transfer(
+                Instant.now(),
+                exampleUUID,
+                exampleAmount,
+                exampleUUID2,
+                exampleAmount,
+                "hot transfer"
+        );
+
+        assertEquals(TransactionStatus.FAILED, tx.getStatus(), "incorrect status");
+        assertEquals("insufficient balance", tx.getDescription(), "incorrect description");
+
+        verify(destinationAccount, never()).setBalance(any(BigInteger.class));
+        verify(accountsRepository, never()).save(any(Account.class));
+    }
+
+    @Test
+    void bothHotInLockOrder() throws TransferService.TransferException {
+        Account account = mock(Account.class);
+        when(account.getId()).thenReturn(exampleUUID);
+
+        Account destinationAccount = mock(Account.class);
+        when(destinationAccount.getId()).thenReturn(exampleUUID2);
+
+        when(hotAccounts.isHot(any(UUID.class))).thenReturn(true);
+        when(hotAccounts.credit(exampleUUID, exampleAmount)).thenReturn(3);
+        when(hotAccounts.debit(exampleUUID2, exampleAmount)).thenReturn(false);
+        when(accountsRepository.findById(exampleUUID)).thenReturn(Optional.of(account));
+        when(accountsRepository.findById(exampleUUID2)).thenReturn(Optional.of(destinationAccount));
+        when(transactionsRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArgument(0));
+
+        Transaction tx = transferService.transfer(
+                Instant.now(),
+                exampleUUID2,
+                exampleAmount,
+                exampleUUID,
+                exampleAmount,
+                "hot transfer"
+        );
+
+        assertEquals(TransactionStatus.FAILED, tx.getStatus(), "incorrect status");
+
+        // exampleUUID is "smaller" - credited first, then reverted as debit failed
+        var inOrder = inOrder(hotAccounts);
+        inOrder.verify(hotAccounts).credit(exampleUUID, exampleAmount);
+        inOrder.verify(hotAccounts).debit(exampleUUID2, exampleAmount);
+        inOrder.verify(hotAccounts).revertCredit(exampleUUID, 3, exampleAmount);
+        verify(accountsRepository, never()).findByIdForUpdate(any(UUID.class));
+    }
+
+    @Test
+    void batchWithHotAccount() throws TransferService.TransferException {
+        Account account = mock(Account.class);
+        when(account.getId()).thenReturn(exampleUUID);
+        when(account.getBalance()).thenReturn(BigInteger.valueOf(1L));
+
+        Account destinationAccount = mock(Account.class);
+        when(destinationAccount.getId()).thenReturn(exampleUUID2);
+
+        when(hotAccounts.isHot(exampleUUID2)).thenReturn(true);
+        when(accountsRepository.findByIdForUpdate(exampleUUID)).thenReturn(Optional.of(account));
+        when(accountsRepository.findById(exampleUUID2)).thenReturn(Optional.of(destinationAccount));
+        when(accountsRepository.save(any(Account.class))).thenAnswer(i -> i.getArgument(0));
+        when(transactionsRepository.save(any(Transaction.class))).thenAnswer(i -> i.getArgument(0));
+
+        List<Transaction> transactions = transferService.transferAll(List.of(
+                new TransferService.TransferInstruction(Instant.now(), exampleUUID, exampleAmount, exampleUUID2, exampleAmount, ""),
+                new TransferService.TransferInstruction(Instant.now(), exampleUUID, exampleAmount, exampleUUID2, exampleAmount, "")
+        ));
+
+        assertEquals(2, transactions.size(), "incorrect number of transactions");
+
+        // applied one by one, each in a transaction of its own, no batch writes
+        verify(hotAccounts, times(2)).credit(exampleUUID2, exampleAmount);
+        verify(transactionManager, times(2)).commit(any());
+        verify(transactionsBatchRepository, never()).insertAll(anyList());
+    }
+
+    @Test
+    void payoutGreenPath() throws TransferService.TransferException {
+        Account source = mock(Account.class);
+        when(source.getId()).thenReturn(exampleUUID2);
+        when(source.getBalance()).thenReturn(BigInteger.TEN);
+
+        Account first = mock(Account.class);
+        when(first.getId()).thenReturn(exampleUUID);
+        when(first.getBalance()).thenReturn(BigInteger.ONE);
+
+        Account second = mock(Account.class);
+        when(second.getId()).thenReturn(exampleUUID3);
+        when(second.getBalance()).thenReturn(BigInteger.ZERO);
+
+        when(accountsRepository.findByIdForUpdate(exampleUUID)).thenReturn(Optional.of(first));
+        when(accountsRepository.findByIdForUpdate(exampleUUID2)).thenReturn(Optional.of(source));
+        when(accountsRepository.findByIdForUpdate(exampleUUID3)).thenReturn(Optional.of(second));
+
+        Instant timestamp = Instant.now();
+        List<Transaction> transactions = transferService.payout(List.of(
+                new TransferService.TransferInstruction(timestamp, exampleUUID2, BigInteger.valueOf(3L), exampleUUID3, BigInteger.valueOf(3L), "first"),
+                new TransferService.TransferInstruction(timestamp, exampleUUID2, BigInteger.valueOf(4L), exampleUUID, BigInteger.valueOf(4L), "second"),
+                new TransferService.TransferInstruction(timestamp, exampleUUID2, BigInteger.TWO, exampleUUID3, BigInteger.TWO, "third")
+        ));
+
+        assertEquals(3, transactions.size(), "incorrect number of transactions");
+        assertTrue(transactions.stream().allMatch(t -> t.getStatus() == TransactionStatus.COMPLETED), "incorrect status");
+
+        assertEquals(7L, transactions.get(0).getSourceBalance().longValue(), "incorrect running balance");
+        assertEquals(3L, transactions.get(0).getDestinationBalance().longValue(), "incorrect running balance");
+        assertEquals(3L, transactions.get(1).getSourceBalance().longValue(), "incorrect running balance");
+        assertEquals(5L, transactions.get(1).getDestinationBalance().longValue(), "incorrect running balance");
+        assertEquals(1L, transactions.get(2).getSourceBalance().longValue(), "incorrect running balance");
+        assertEquals(5L, transactions.get(2).getDestinationBalance().longValue(), "incorrect running balance");
+
+        // every account (source included) locked once, in the same order as single transfers
+        var inOrder = inOrder(accountsRepository);
+        inOrder.verify(accountsRepository).findByIdForUpdate(exampleUUID);
+        inOrder.verify(accountsRepository).findByIdForUpdate(exampleUUID2);
+        inOrder.verify(accountsRepository).findByIdForUpdate(exampleUUID3);
+        verify(accountsRepository, times(3)).findByIdForUpdate(any(UUID.class));
+
+        verify(transactionsRepository, never()).save(any(Transaction.class));
+        verify(transactionsBatchRepository, times(1)).insertAll(transactions);
+        verify(transactionsBatchRepository, times(1)).updateBalances(Map.of(
+                exampleUUID, BigInteger.valueOf(5L),
+                exampleUUID2, BigInteger.ONE,
+                exampleUUID3, BigInteger.valueOf(5L)
+        ));
+    }
+
+    @Test
+    void payoutInsufficientBalance() throws TransferService.TransferException {
+        Account source = mock(Account.class);
+        when(source.getId()).thenReturn(exampleUUID2);
+        when(source.getBalance()).thenReturn(BigInteger.TEN);
+
+        Account destination = mock(Account.class);
+        when(destination.getId()).thenReturn(exampleUUID);
+        when(destination.getBalance()).thenReturn(BigInteger.ONE);
+
+        when(accountsRepository.findByIdForUpdate(exampleUUID)).thenReturn(Optional.of(destination));
+        when(accountsRepository.findByIdForUpdate(exampleUUID2)).thenReturn(Optional.of(source));
+
+        // each payout alone is covered, the total is not
+        List<Transaction> transactions = transferService.payout(List.of(
+                new TransferService.TransferInstruction(Instant.now(), exampleUUID2, BigInteger.valueOf(6L), exampleUUID, BigInteger.valueOf(6L), "first"),
+                new TransferService.TransferInstruction(Instant.now(), exampleUUID2, BigInteger.valueOf(6L), exampleUUID, BigInteger.valueOf(6L), "second")
+        ));
+
+        assertEquals(2, transactions.size(), "incorrect number of transactions");
+        for (Transaction transaction : transactions) {
+            assertEquals(TransactionStatus.FAILED, transaction.getStatus(), "incorrect status");
+            assertEquals("insufficient balance", transaction.getDescription(), "incorrect description");
+            assertEquals(BigInteger.TEN, transaction.getSourceBalance(), "incorrect source balance");
+        }
+
+        verify(transactionsBatchRepository, times(1)).insertAll(transactions);
+        verify(transactionsBatchRepository, never()).updateBalances(anyMap());
+    }
+
+    @Test
+    void payoutHotSourceRevertsCredits() throws TransferService.TransferException {
+        Account source = mock(Account.class);
+        when(source.getId()).thenReturn(exampleUUID2);
+
+        Account destination = mock(Account.class);
+        when(destination.getId()).thenReturn(exampleUUID);
+
+        when(hotAccounts.isHot(any(UUID.class))).thenReturn(true);
+        when(hotAccounts.balance(any(Account.class))).thenReturn(BigInteger.ONE);
+        when(hotAccounts.credit(exampleUUID, BigInteger.TWO)).thenReturn(5);
+        when(hotAccounts.debit(exampleUUID2, BigInteger.TWO)).thenReturn(false);
+        when(accountsRepository.findById(exampleUUID)).thenReturn(Optional.of(destination));
+        when(accountsRepository.findById(exampleUUID2)).thenReturn(Optional.of(source));
+
+        List<Transaction> transactions = transferService.payout(List.of(
+                new TransferService.TransferInstruction(Instant.now(), exampleUUID2, BigInteger.ONE, exampleUUID, BigInteger.ONE, "first"),
+                new TransferService.TransferInstruction(Instant.now(), exampleUUID2, BigInteger.ONE, exampleUUID, BigInteger.ONE, "second")
+        ));
+
+        assertTrue(transactions.stream().allMatch(t -> t.getStatus() == TransactionStatus.FAILED), "incorrect status");
+
+        // exampleUUID is "smaller" - credited (once, for both payouts) first, then reverted as debit failed
+        var inOrder = inOrder(hotAccounts);
+        inOrder.verify(hotAccounts).credit(exampleUUID, BigInteger.TWO);
+        inOrder.verify(hotAccounts).debit(exampleUUID2, BigInteger.TWO);
+        inOrder.verify(hotAccounts).revertCredit(exampleUUID, 5, BigInteger.TWO);
+        verify(accountsRepository, never()).findByIdForUpdate(any(UUID.class));
+        verify(transactionsBatchRepository, never()).updateBalances(anyMap());
+    }
+
+    @Test
+    void payoutInvalidInstructions() throws TransferService.TransferException {
+        assertThrows(TransferService.TransferException.class, () -> transferService.payout(List.of()));
+
+        // different sources
+        assertThrows(TransferService.TransferException.class, () -> transferService.payout(List.of(
+                new TransferService.TransferInstruction(Instant.now(), exampleUUID, exampleAmount, exampleUUID2, exampleAmount, ""),
+                new TransferService.TransferInstruction(Instant.now(), exampleUUID3, exampleAmount, exampleUUID2, exampleAmount, "")
+        )));
+
+        // paying out to source itself
+        assertThrows(TransferService.TransferException.class, () -> transferService.payout(List.of(
+                new TransferService.TransferInstruction(Instant.now(), exampleUUID, exampleAmount, exampleUUID, exampleAmount, "")
+        )));
+
+        verify(accountsRepository, never()).findByIdForUpdate(any(UUID.class));
+        verify(transactionsBatchRepository, never()).insertAll(anyList());
+    }
 }
@@ -0,0 +1,152 @@
+package com.zigurs.ledger.data;
+
+import com.zigurs.ledger.model.Account;
+import com.zigurs.ledger.model.DailyAccountTotals;
+import com.zigurs.ledger.model.Transaction;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Daily totals against a real database - stripes of an account and day are only summed up by the database.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:daily-account-totals;DB_CLOSE_DELAY=-1",
+        "spring.flyway.url=jdbc:h2:mem:daily-account-totals;DB_CLOSE_DELAY=-1",
+        // no FX provider requests
+        "fx_rate_table_base="
+})
+class DailyAccountTotalsRepositoryTest {
+
+    private static final Instant timestamp = Instant.parse("2024-05-17T10:00:00Z");
+    private static final LocalDate day = LocalDate.parse("2024-05-17");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void firstInsert() {
+        DailyAccountTotalsRepository repository = new DailyAccountTotalsRepository(jdbcTemplate, 4);
+        Account source = account();
+        Account destination = account();
+
+        repository.addAll(List.of(transaction(TransactionStatus.COMPLETED, source, destination, 30, 70, 130)));
+
+        assertEquals(List.of(new DailyAccountTotals(day, 1, BigInteger.valueOf(30), 0, BigInteger.ZERO, BigInteger.valueOf(70), BigInteger.valueOf(70))),
+                repository.find(source.getId(), day, day));
+        assertEquals(List.of(new DailyAccountTotals(day, 0, BigInteger.ZERO, 1, BigInteger.valueOf(30), BigInteger.valueOf(130), BigInteger.valueOf(130))),
+                repository.find(destination.getId(), day, day));
+    }
+
+    @Test
+    void concurrentFirstInsert() {
+        Account source = account();
+        Account destination = account();
+        DailyAccountTotalsRepository concurrent = new DailyAccountTotalsRepository(jdbcTemplate, 1);
+
+        // rows of the stripe inserted by a concurrent transaction right after this one found none to update
+        JdbcTemplate racing = new JdbcTemplate(dataSource) {
+            private boolean raced;
+
+            @Override
+            public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+                int[] updated = super.batchUpdate(sql, batchArgs);
+                if (!raced) {
+                    raced = true;
+                    concurrent.addAll(List.of(transaction(TransactionStatus.COMPLETED, source, destination, 10, 90, 110)));
+                }
+                return updated;
+            }
+        };
+        DailyAccountTotalsRepository repository = new DailyAccountTotalsRepository(racing, 1);
+
+        repository.addAll(List.of(transaction(TransactionStatus.COMPLETED, source, destination, 30, 60, 140)));
+
+        // added to the concurrently inserted rows instead
+        assertEquals(List.of(new DailyAccountTotals(day, 2, BigInteger.valueOf(40), 0, BigInteger.ZERO, BigInteger.valueOf(60), BigInteger.valueOf(90))),
+                repository.find(source.getId(), day, day));
+        assertEquals(List.of(new DailyAccountTotals(day, 0, BigInteger.ZERO, 2, BigInteger.valueOf(40), BigInteger.valueOf(110), BigInteger.valueOf(140))),
+                repository.find(destination.getId(), day, day));
+        assertEquals(1, stripes(source));
+    }
+
+    @Test
+    void stripesSummed() {
+        DailyAccountTotalsRepository repository = new DailyAccountTotalsRepository(jdbcTemplate, 4);
+        Account source = account();
+        Account destination = account();
+
+        // stripes are picked at random, added to until more than one is used
+        long balance = 1000;
+        int transactions = 0;
+        while (stripes(source) < 2) {
+            balance -= 10;
+            repository.addAll(List.of(transaction(TransactionStatus.COMPLETED, source, destination, 10, balance, 0)));
+            transactions++;
+        }
+
+        // following day is totalled separately
+        repository.addAll(List.of(new Transaction(UUID.randomUUID(), TransactionStatus.COMPLETED, timestamp.plusSeconds(86400),
+                source, BigInteger.ONE, BigInteger.ONE, destination, BigInteger.ONE, BigInteger.ONE, "next day")));
+
+        assertEquals(List.of(new DailyAccountTotals(day, transactions, BigInteger.valueOf(10L * transactions), 0, BigInteger.ZERO, BigInteger.valueOf(balance), BigInteger.valueOf(990))),
+                repository.find(source.getId(), day, day));
+        assertEquals(2, repository.find(source.getId(), day, day.plusDays(1)).size());
+    }
+
+    @Test
+    void failedTransactionsExcluded() {
+        DailyAccountTotalsRepository repository = new DailyAccountTotalsRepository(jdbcTemplate, 4);
+        Account source = account();
+        Account destination = account();
+
+        repository.addAll(List.of(transaction(TransactionStatus.FAILED, source, destination, 500, 100, 100)));
+        assertEquals(List.of(), repository.find(source.getId(), day, day));
+        assertEquals(List.of(), repository.find(destination.getId(), day, day));
+
+        repository.addAll(List.of(
+                transaction(TransactionStatus.FAILED, source, destination, 500, 100, 100),
+                transaction(TransactionStatus.COMPLETED, source, destination, 20, 80, 120)
+        ));
+        assertEquals(List.of(new DailyAccountTotals(day, 1, BigInteger.valueOf(20), 0, BigInteger.ZERO, BigInteger.valueOf(80), BigInteger.valueOf(80))),
+                repository.find(source.getId(), day, day));
+    }
+
+    private int stripes(Account account) {
+        return jdbcTemplate.queryForObject("select count(*) from daily_account_totals where account_id = ?", Integer.class, account.getId());
+    }
+
+    private static Account account() {
+        return new Account(UUID.randomUUID(), null, "EUR", BigInteger.ZERO);
+    }
+
+    private static Transaction transaction(TransactionStatus status, Account source, Account destination, long amount, long sourceBalance, long destinationBalance) {
+        return new Transaction(
+                UUID.randomUUID(),
+                status,
+                timestamp,
+                source,
+                BigInteger.valueOf(amount),
+                BigInteger.valueOf(sourceBalance),
+                destination,
+                BigInteger.valueOf(amount),
+                BigInteger.valueOf(destinationBalance),
+                "transfer"
+        );
+    }
+}
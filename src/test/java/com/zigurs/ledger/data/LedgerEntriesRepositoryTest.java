@@ -0,0 +1,100 @@
+package com.zigurs.ledger.data;
+
+import com.zigurs.ledger.api.TransferService;
+import com.zigurs.ledger.model.HistoryEntry;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * History of an account split between tables and the archive, against a real database - offset pages continue into
+ * archived partitions once tables run out of entries.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:ledger-entries;DB_CLOSE_DELAY=-1",
+        "spring.flyway.url=jdbc:h2:mem:ledger-entries;DB_CLOSE_DELAY=-1",
+        // no FX provider requests
+        "fx_rate_table_base=",
+        "transfer_mode=pessimistic",
+        "ledger_archive_dir=${java.io.tmpdir}/ledger-entries-test-archive"
+})
+class LedgerEntriesRepositoryTest {
+
+    // seeded by V2 migration
+    private static final UUID CLIENT_ID = UUID.fromString("39db54e0-3627-4d6b-98a1-93ef930f96db");
+
+    @Autowired
+    private LedgerEntriesRepository ledgerEntriesRepository;
+
+    @Autowired
+    private LedgerPartitions ledgerPartitions;
+
+    @Autowired
+    private LedgerArchive ledgerArchive;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void offsetPagesContinueIntoArchive() {
+        UUID sourceId = createAccount();
+        UUID destinationId = createAccount();
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+
+        // newest first, three entries in the original partition...
+        List<UUID> history = new ArrayList<>();
+        for (int i = 3; i > 0; i--) {
+            history.add(0, transfer(now.minusSeconds(i), sourceId, destinationId));
+        }
+        LedgerPartitions.Partition original = ledgerPartitions.newestFirst(null, now).get(0);
+        ledgerPartitions.markArchived(original, ledgerArchive.write(original));
+
+        // ...archived, followed by two in the partition of the next month
+        Instant nextMonth = YearMonth.now(ZoneOffset.UTC).plusMonths(1).atDay(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+        for (int i = 1; i <= 2; i++) {
+            history.add(0, transfer(nextMonth.plusSeconds(i), sourceId, destinationId));
+        }
+
+        assertEquals(history, transactionIds(ledgerEntriesRepository.findHistory(sourceId, 0, 10)));
+
+        // paged from offset 0, pages crossing into the archive and within it
+        List<UUID> paged = new ArrayList<>();
+        for (int offset = 0; offset < 6; offset += 2) {
+            paged.addAll(transactionIds(ledgerEntriesRepository.findHistory(sourceId, offset, 2)));
+        }
+        assertEquals(history, paged);
+
+        assertEquals(history.subList(3, 5), transactionIds(ledgerEntriesRepository.findHistory(sourceId, 3, 10)));
+        assertEquals(List.of(), ledgerEntriesRepository.findHistory(sourceId, 5, 10));
+    }
+
+    private UUID transfer(Instant timestamp, UUID sourceId, UUID destinationId) {
+        return transferService.transfer(timestamp, sourceId, BigInteger.ONE, destinationId, BigInteger.ONE, "transfer").getId();
+    }
+
+    private UUID createAccount() {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("insert into accounts(id, client_id, currency, balance) values (?, ?, 'EUR', 1000)", id, CLIENT_ID);
+        return id;
+    }
+
+    private static List<UUID> transactionIds(List<HistoryEntry> entries) {
+        return entries.stream().map(HistoryEntry::transactionId).toList();
+    }
+}
@@ -0,0 +1,168 @@
+package com.zigurs.ledger.infra.archive;
+
+import com.zigurs.ledger.model.HistoryEntry;
+import com.zigurs.ledger.model.TransactionStatus;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentTest {
+
+    private static final Instant now = Instant.ofEpochSecond(1715933225L, 123456789);
+
+    // upper half of UUIDs sorts first as signed, last as unsigned
+    private static final UUID first = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID second = UUID.fromString("7fffffff-0000-0000-0000-000000000001");
+    private static final UUID third = UUID.fromString("ffffffff-0000-0000-0000-000000000001");
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void accountHistory() throws IOException {
+        List<HistoryEntry> entries = new ArrayList<>();
+        for (UUID account : List.of(first, second, third)) {
+            for (int i = 0; i < 10; i++) {
+                entries.add(entry(account, now.minusSeconds(i)));
+            }
+        }
+        // blocks spanning accounts
+        Segment segment = write(entries, 3);
+
+        assertEquals(entries.subList(10, 20), read(segment, second, null, null, 100));
+        assertEquals(entries.subList(20, 25), read(segment, third, null, null, 5));
+        assertEquals(List.of(), read(segment, UUID.fromString("3fffffff-0000-0000-0000-000000000001"), null, null, 100));
+        assertEquals(List.of(), read(segment, UUID.randomUUID(), now.minusSeconds(100), null, 100));
+    }
+
+    @Test
+    void afterPosition() throws IOException {
+        List<HistoryEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            entries.add(entry(second, now.minusSeconds(i / 2)));
+        }
+        // same timestamp, descending (unsigned) transaction ids
+        for (int i = 0; i < entries.size(); i += 2) {
+            if (compareUnsigned(entries.get(i).transactionId(), entries.get(i + 1).transactionId()) < 0) {
+                entries.set(i, entries.set(i + 1, entries.get(i)));
+            }
+        }
+        Segment segment = write(entries, 4);
+
+        HistoryEntry cursor = entries.get(4);
+        assertEquals(entries.subList(5, 8), read(segment, second, cursor.timestamp(), cursor.transactionId(), 3));
+
+        // whole timestamp included
+        assertEquals(entries.subList(4, 10), read(segment, second, cursor.timestamp(), null, 100));
+        assertEquals(entries, read(segment, second, now.plusSeconds(1), UUID.randomUUID(), 100));
+    }
+
+    @Test
+    void valuesPreserved() throws IOException {
+        HistoryEntry entry = new HistoryEntry(
+                UUID.randomUUID(),
+                first,
+                second,
+                now,
+                TransactionStatus.FAILED,
+                new BigInteger("-99999999999999999999999999999999999999"),
+                new BigInteger("99999999999999999999999999999999999999"),
+                "ąčę 😀"
+        );
+
+        assertEquals(List.of(entry), read(write(List.of(entry), 1), first, null, null, 1));
+    }
+
+    @Test
+    void chunkedMapping() throws IOException {
+        List<HistoryEntry> entries = new ArrayList<>();
+        for (UUID account : List.of(first, second, third)) {
+            for (int i = 0; i < 10; i++) {
+                entries.add(entry(account, now.minusSeconds(i)));
+            }
+        }
+        Path path = write(entries, 3).path();
+
+        // header, blocks, index and footer all crossing chunk boundaries
+        Segment segment = Segment.open(path, 7);
+        assertEquals(entries.subList(0, 10), read(segment, first, null, null, 100));
+        assertEquals(entries.subList(13, 20), read(segment, second, entries.get(12).timestamp(), entries.get(12).transactionId(), 100));
+        assertEquals(entries.subList(20, 30), read(segment, third, null, null, 100));
+    }
+
+    @Test
+    void emptySegment() throws IOException {
+        assertEquals(List.of(), read(write(List.of(), 1), first, null, null, 1));
+    }
+
+    @Test
+    void unorderedEntriesRejected() throws IOException {
+        try (SegmentWriter writer = new SegmentWriter(directory.resolve("unordered.seg"), 2)) {
+            writer.append(entry(first, now.minusSeconds(1)));
+            assertThrows(IllegalArgumentException.class, () -> writer.append(entry(first, now)));
+        }
+
+        // nothing left behind
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void notASegment() throws IOException {
+        Path path = Files.write(directory.resolve("other.seg"), new byte[64]);
+        assertThrows(IOException.class, () -> Segment.open(path));
+    }
+
+    private Segment write(List<HistoryEntry> entries, int blockEntries) throws IOException {
+        Path path;
+        try (SegmentWriter writer = new SegmentWriter(directory.resolve("test.seg"), blockEntries)) {
+            for (HistoryEntry entry : entries) {
+                writer.append(entry);
+            }
+            path = writer.finish();
+        }
+        return Segment.open(path);
+    }
+
+    private static List<HistoryEntry> read(Segment segment, UUID accountId, Instant before, UUID transactionId, int limit) throws IOException {
+        List<HistoryEntry> read = new ArrayList<>();
+        segment.read(accountId, before, transactionId, entry -> {
+            read.add(entry);
+            return read.size() < limit;
+        });
+        return read;
+    }
+
+    private static HistoryEntry entry(UUID accountId, Instant timestamp) {
+        return new HistoryEntry(
+                UUID.randomUUID(),
+                accountId,
+                UUID.randomUUID(),
+                timestamp,
+                TransactionStatus.COMPLETED,
+                BigInteger.valueOf(-100),
+                BigInteger.valueOf(200),
+                "transfer"
+        );
+    }
+
+    private static int compareUnsigned(UUID a, UUID b) {
+        return Comparator.comparing(UUID::getMostSignificantBits, Long::compareUnsigned)
+                .thenComparing(UUID::getLeastSignificantBits, Long::compareUnsigned)
+                .compare(a, b);
+    }
+}
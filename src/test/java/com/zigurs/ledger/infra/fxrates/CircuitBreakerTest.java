@@ -0,0 +1,105 @@
+package com.zigurs.ledger.infra.fxrates;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import testutils.TestClock;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private static final Duration OPEN = Duration.ofSeconds(30);
+
+    private TestClock clock;
+    private CircuitBreaker circuitBreaker;
+
+    @BeforeEach
+    void setUp() {
+        clock = new TestClock(Instant.ofEpochSecond(1715933225L));
+        circuitBreaker = new CircuitBreaker(3, OPEN, clock);
+    }
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        fail(2);
+        succeed();
+        // success resets the count
+        fail(2);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+
+        fail(1);
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+        assertFalse(circuitBreaker.tryAcquire());
+
+        clock.advance(OPEN.minusMillis(1));
+        assertFalse(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void singleProbeWhenHalfOpen() {
+        fail(3);
+        clock.advance(OPEN);
+
+        assertTrue(circuitBreaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.state());
+        // probe in flight
+        assertFalse(circuitBreaker.tryAcquire());
+
+        circuitBreaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.state());
+        assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void failedProbeOpensAgain() {
+        fail(3);
+        clock.advance(OPEN);
+
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onFailure();
+
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.state());
+        assertFalse(circuitBreaker.tryAcquire());
+
+        clock.advance(OPEN);
+        assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void skippedProbeReleased() {
+        fail(3);
+        clock.advance(OPEN);
+
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onSkipped();
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.state());
+        assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void lateFailuresIgnoredWhileOpen() {
+        // admitted before the circuit opened
+        assertTrue(circuitBreaker.tryAcquire());
+        fail(3);
+        circuitBreaker.onFailure();
+
+        clock.advance(OPEN);
+        assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            assertTrue(circuitBreaker.tryAcquire());
+            circuitBreaker.onFailure();
+        }
+    }
+
+    private void succeed() {
+        assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onSuccess();
+    }
+}
@@ -0,0 +1,160 @@
+package com.zigurs.ledger.infra.fxrates;
+
+import com.zigurs.ledger.api.CurrencyConverterService.CurrencyConversionException;
+import com.zigurs.ledger.infra.fxrates.model.CurrencyBeaconResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Against a local stub of CurrencyBeacon's convert endpoint.
+ */
+class CurrencyBeaconClientTest {
+
+    private static final String CONVERTED = """
+            {"meta":{"code":200},"response":{"timestamp":1715933225,"date":"2024-05-17","from":"EUR","to":"USD","amount":1,"value":1.0856},"timestamp":1715933225,"date":"2024-05-17","from":"EUR","to":"USD","amount":1,"value":1.0856}""";
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private volatile int status;
+    private volatile String body;
+    private volatile boolean hold;
+    private HttpServer stub;
+    private String url;
+    private CurrencyBeaconClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        status = 200;
+        body = CONVERTED;
+
+        stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.createContext("/v1/convert", exchange -> {
+            requests.add(exchange.getRequestURI().getQuery());
+            connections.add(exchange.getRemoteAddress());
+
+            if (hold) {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            byte[] response = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, response.length == 0 ? -1 : response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        stub.start();
+        url = "http://localhost:" + stub.getAddress().getPort() + "/v1/convert?api_key=api_key&from=EUR&to=USD&amount=1";
+
+        client = new CurrencyBeaconClient(HttpClient.newHttpClient(), new ObjectMapper(), 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        stub.stop(0);
+    }
+
+    @Test
+    void parsed() {
+        CurrencyBeaconResponse response = get().join();
+
+        assertEquals("EUR", response.from());
+        assertEquals("USD", response.to());
+        assertEquals(0, new BigDecimal("1.0856").compareTo(response.value()));
+        assertEquals(List.of("api_key=api_key&from=EUR&to=USD&amount=1"), requests);
+    }
+
+    @Test
+    void connectionsKeptAlive() {
+        for (int i = 0; i < 5; i++) {
+            get().join();
+        }
+
+        assertEquals(5, requests.size());
+        assertEquals(1, connections.size());
+    }
+
+    @Test
+    void serverError() {
+        status = 500;
+
+        assertEquals("unable to convert EUR into USD, provider error", failure(get()).getMessage());
+    }
+
+    @Test
+    void clientError() {
+        status = 422;
+
+        CurrencyConversionException e = failure(get());
+        assertInstanceOf(FxRequestRejectedException.class, e);
+        assertEquals("unable to convert EUR into USD, rejected by provider", e.getMessage());
+    }
+
+    @Test
+    void rateLimited() {
+        status = 429;
+
+        CurrencyConversionException e = failure(get());
+        assertFalse(e instanceof FxRequestRejectedException);
+        assertEquals("unable to convert EUR into USD, provider error", e.getMessage());
+    }
+
+    @Test
+    void badResponse() {
+        body = "";
+        assertEquals("unable to convert EUR into USD, internal error", failure(get()).getMessage());
+
+        body = "{\"from\":\"EUR\"";
+        assertEquals("unable to convert EUR into USD, internal error", failure(get()).getMessage());
+    }
+
+    @Test
+    void readTimeout() {
+        hold = true;
+
+        assertEquals("unable to convert EUR into USD, provider unavailable", failure(get()).getMessage());
+    }
+
+    @Test
+    void networkError() {
+        stub.stop(0);
+
+        assertEquals("unable to convert EUR into USD, provider unavailable", failure(get()).getMessage());
+    }
+
+    private CompletableFuture<CurrencyBeaconResponse> get() {
+        return client.get(url, CurrencyBeaconResponse.class, "unable to convert EUR into USD");
+    }
+
+    private static CurrencyConversionException failure(CompletableFuture<?> result) {
+        CompletionException e = assertThrows(CompletionException.class, result::join);
+        return assertInstanceOf(CurrencyConversionException.class, e.getCause());
+    }
+}
@@ -4,29 +4,43 @@ import com.zigurs.ledger.api.CurrencyConverterService;
 import com.zigurs.ledger.api.TransferService;
 import com.zigurs.ledger.infra.fxrates.model.CurrencyBeaconResponse;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 class CurrencyConverterServiceImplTest {
 
-    private RestTemplate restTemplate;
+    private CurrencyBeaconClient currencyBeaconClient;
+    private SimpleMeterRegistry meterRegistry;
+    private FxRateTable rateTable;
     private CurrencyConverterService currencyConverterService;
 
     @BeforeEach
     void setUp() {
-        restTemplate = mock(RestTemplate.class);
-        currencyConverterService = new CurrencyConverterServiceImpl(restTemplate, "http://base_url", "api_key");
+        currencyBeaconClient = mock(CurrencyBeaconClient.class);
+        meterRegistry = new SimpleMeterRegistry();
+        rateTable = mock(FxRateTable.class);
+        currencyConverterService = new CurrencyConverterServiceImpl(
+                currencyBeaconClient,
+                meterRegistry,
+                new FxProviderGuard(meterRegistry, 3, 60_000L, 10, 0, 0L),
+                rateTable,
+                "http://base_url",
+                "api_key",
+                60_000L,
+                60_000L,
+                0L
+        );
     }
 
 
@@ -35,28 +49,88 @@ class CurrencyConverterServiceImplTest {
         CurrencyBeaconResponse response = new CurrencyBeaconResponse(
                 "FROM",
                 "TO",
-                BigDecimal.valueOf(123L),
-                BigDecimal.valueOf(456L)
+                BigDecimal.valueOf(1L),
+                new BigDecimal("4.56")
+        );
+        when(currencyBeaconClient.get(anyString(), eq(CurrencyBeaconResponse.class), anyString())).thenReturn(
+                CompletableFuture.completedFuture(response)
         );
-        ResponseEntity<CurrencyBeaconResponse> entity = ResponseEntity.of(Optional.of(response));
-
-        when(restTemplate.getForEntity(anyString(), any(CurrencyBeaconResponse.class.getClass()))).thenReturn(entity);
 
-        CurrencyConverterService.CurrencyConversionResult result = currencyConverterService.convert("FROM", "TO", BigInteger.valueOf(1L));
+        CurrencyConverterService.CurrencyConversionResult result = currencyConverterService.convert("FROM", "TO", BigInteger.valueOf(100L));
 
         assertEquals("FROM", result.from());
         assertEquals("TO", result.to());
         assertEquals(456L, result.value().longValue());
 
-        verify(restTemplate, times(1)).getForEntity(anyString(), any(CurrencyBeaconResponse.class.getClass()));
+        // rate of a single unit requested, the amount is converted locally
+        verify(currencyBeaconClient, times(1)).get(eq("http://base_url?api_key=api_key&from=FROM&to=TO&amount=1"), eq(CurrencyBeaconResponse.class), eq("unable to convert FROM into TO"));
     }
 
     @Test
-    void serverError() throws TransferService.TransferException {
-        ResponseEntity<CurrencyBeaconResponse> entity = ResponseEntity.internalServerError().build();
+    void ratesCached() throws TransferService.TransferException {
+        CurrencyBeaconResponse response = new CurrencyBeaconResponse(
+                "FROM",
+                "TO",
+                BigDecimal.valueOf(1L),
+                new BigDecimal("0.857")
+        );
+        when(currencyBeaconClient.get(anyString(), eq(CurrencyBeaconResponse.class), anyString())).thenReturn(
+                CompletableFuture.completedFuture(response)
+        );
+
+        assertEquals(857L, currencyConverterService.convert("FROM", "TO", BigInteger.valueOf(1000L)).value().longValue());
+        // truncated
+        assertEquals(1L, currencyConverterService.convert("FROM", "TO", BigInteger.valueOf(2L)).value().longValue());
+
+        verify(currencyBeaconClient, times(1)).get(anyString(), eq(CurrencyBeaconResponse.class), anyString());
+        assertEquals(1.0, meterRegistry.counter(FxRateCache.LOOKUPS, "result", "miss").count());
+        assertEquals(1.0, meterRegistry.counter(FxRateCache.LOOKUPS, "result", "hit").count());
+    }
+
+    @Test
+    void rateTablePreferred() throws TransferService.TransferException {
+        when(rateTable.rate("FROM", "TO")).thenReturn(Optional.of(new BigDecimal("1.5")));
+
+        assertEquals(150L, currencyConverterService.convert("FROM", "TO", BigInteger.valueOf(100L)).value().longValue());
+
+        verifyNoInteractions(currencyBeaconClient);
+    }
+
+    @Test
+    void convertAsyncDoesNotWait() throws TransferService.TransferException {
+        CompletableFuture<CurrencyBeaconResponse> inFlight = new CompletableFuture<>();
+        when(currencyBeaconClient.get(anyString(), eq(CurrencyBeaconResponse.class), anyString())).thenReturn(inFlight);
+
+        CompletableFuture<CurrencyConverterService.CurrencyConversionResult> result =
+                currencyConverterService.convertAsync("FROM", "TO", BigInteger.valueOf(100L));
+        assertFalse(result.isDone());
+
+        inFlight.complete(new CurrencyBeaconResponse("FROM", "TO", BigDecimal.valueOf(1L), new BigDecimal("4.56")));
+
+        assertEquals(456L, result.join().value().longValue());
+    }
+
+    @Test
+    void invalidRate() throws TransferService.TransferException {
+        CurrencyBeaconResponse response = new CurrencyBeaconResponse(
+                "FROM",
+                "TO",
+                BigDecimal.valueOf(1L),
+                BigDecimal.ZERO
+        );
+        when(currencyBeaconClient.get(anyString(), eq(CurrencyBeaconResponse.class), anyString())).thenReturn(
+                CompletableFuture.completedFuture(response)
+        );
+
+        assertThrows(
+                CurrencyConverterService.CurrencyConversionException.class,
+                () -> {
 
-        when(restTemplate.getForEntity(anyString(), any(CurrencyBeaconResponse.class.getClass()))).thenReturn(entity);
+                    currencyConverterService.convert("FROM", "TO", BigInteger.valueOf(1L));
+                }
+        );
 
+        // not cached
         assertThrows(
                 CurrencyConverterService.CurrencyConversionException.class,
                 () -> {
@@ -65,15 +139,32 @@ class CurrencyConverterServiceImplTest {
                 }
         );
 
-        verify(restTemplate, times(1)).getForEntity(anyString(), any(CurrencyBeaconResponse.class.getClass()));
+        verify(currencyBeaconClient, times(2)).get(anyString(), eq(CurrencyBeaconResponse.class), anyString());
+    }
+
+    @Test
+    void serverError() throws TransferService.TransferException {
+        when(currencyBeaconClient.get(anyString(), eq(CurrencyBeaconResponse.class), anyString())).thenReturn(
+                CompletableFuture.failedFuture(new CurrencyConverterService.CurrencyConversionException("unable to convert FROM into TO, provider error"))
+        );
+
+        assertThrows(
+                CurrencyConverterService.CurrencyConversionException.class,
+                () -> {
+
+                    currencyConverterService.convert("FROM", "TO", BigInteger.valueOf(1L));
+                }
+        );
+
+        verify(currencyBeaconClient, times(1)).get(anyString(), eq(CurrencyBeaconResponse.class), anyString());
     }
 
 
     @Test
     void badResponse() throws TransferService.TransferException {
-        ResponseEntity<CurrencyBeaconResponse> entity = ResponseEntity.ok(null);
-
-        when(restTemplate.getForEntity(anyString(), any(CurrencyBeaconResponse.class.getClass()))).thenReturn(entity);
+        when(currencyBeaconClient.get(anyString(), eq(CurrencyBeaconResponse.class), anyString())).thenReturn(
+                CompletableFuture.failedFuture(new CurrencyConverterService.CurrencyConversionException("unable to convert FROM into TO, internal error"))
+        );
 
         assertThrows(
                 CurrencyConverterService.CurrencyConversionException.class,
@@ -83,13 +174,13 @@ class CurrencyConverterServiceImplTest {
                 }
         );
 
-        verify(restTemplate, times(1)).getForEntity(anyString(), any(CurrencyBeaconResponse.class.getClass()));
+        verify(currencyBeaconClient, times(1)).get(anyString(), eq(CurrencyBeaconResponse.class), anyString());
     }
 
     @Test
     void networkError() throws TransferService.TransferException {
-        when(restTemplate.getForEntity(anyString(), any(CurrencyBeaconResponse.class.getClass()))).thenThrow(
-                new RestClientException("you shall not pass")
+        when(currencyBeaconClient.get(anyString(), eq(CurrencyBeaconResponse.class), anyString())).thenReturn(
+                CompletableFuture.failedFuture(new CurrencyConverterService.CurrencyConversionException("unable to convert FROM into TO, provider unavailable"))
         );
 
         assertThrows(
@@ -100,13 +191,36 @@ class CurrencyConverterServiceImplTest {
                 }
         );
 
-        verify(restTemplate, times(1)).getForEntity(anyString(), any(CurrencyBeaconResponse.class.getClass()));
+        verify(currencyBeaconClient, times(1)).get(anyString(), eq(CurrencyBeaconResponse.class), anyString());
     }
 
 
+    @Test
+    void circuitOpenFailsFast() throws TransferService.TransferException {
+        when(currencyBeaconClient.get(anyString(), eq(CurrencyBeaconResponse.class), anyString())).thenReturn(
+                CompletableFuture.failedFuture(new CurrencyConverterService.CurrencyConversionException("unable to convert FROM into TO, provider unavailable"))
+        );
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(
+                    CurrencyConverterService.CurrencyConversionException.class,
+                    () -> currencyConverterService.convert("FROM", "TO", BigInteger.valueOf(1L))
+            );
+        }
+
+        // not even tried
+        CurrencyConverterService.CurrencyConversionException e = assertThrows(
+                CurrencyConverterService.CurrencyConversionException.class,
+                () -> currencyConverterService.convert("FROM", "TO", BigInteger.valueOf(1L))
+        );
+        assertEquals("unable to convert FROM into TO, provider unavailable (circuit open)", e.getMessage());
+
+        verify(currencyBeaconClient, times(3)).get(anyString(), eq(CurrencyBeaconResponse.class), anyString());
+    }
+
     @Test
     void runtimeException() throws TransferService.TransferException {
-        when(restTemplate.getForEntity(anyString(), any(CurrencyBeaconResponse.class.getClass()))).thenThrow(
+        when(currencyBeaconClient.get(anyString(), eq(CurrencyBeaconResponse.class), anyString())).thenThrow(
                 new NullPointerException()
         );
 
@@ -118,7 +232,7 @@ class CurrencyConverterServiceImplTest {
                 }
         );
 
-        verify(restTemplate, times(1)).getForEntity(anyString(), any(CurrencyBeaconResponse.class.getClass()));
+        verify(currencyBeaconClient, times(1)).get(anyString(), eq(CurrencyBeaconResponse.class), anyString());
     }
 
     @Test
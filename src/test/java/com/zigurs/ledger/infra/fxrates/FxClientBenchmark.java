@@ -0,0 +1,200 @@
+package com.zigurs.ledger.infra.fxrates;
+
+import com.zigurs.ledger.infra.fxrates.model.CurrencyBeaconResponse;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * CurrencyBeacon client against a local stub of the convert endpoint.
+ * <p>
+ * {@link #connectionReuse()} - sequential requests over a new connection each vs a kept-alive one. The stub is plain
+ * HTTP on loopback, so this is the TCP setup share only - TLS handshakes to the real provider widen the gap.<br>
+ * {@link #concurrentRequests()} - a burst of requests to a slow provider, each blocking a thread of a bounded pool
+ * (as request threads used to) vs all in flight at once without blocking.
+ * <p>
+ * Excluded from regular builds, run with {@code ./gradlew benchmark}.
+ */
+@Tag("benchmark")
+class FxClientBenchmark {
+
+    private static final int SEQUENTIAL_REQUESTS = 2000;
+    private static final int CONCURRENT_REQUESTS = 500;
+    private static final int BLOCKING_THREADS = 50;
+    private static final Duration FX_DELAY = Duration.ofMillis(200);
+
+    private static final String CONVERTED = "{\"from\":\"EUR\",\"to\":\"USD\",\"amount\":1,\"value\":1.0856}";
+
+    private static final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+    private static HttpServer fxStub;
+    private static HttpClient httpClient;
+    private static CurrencyBeaconClient client;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        // every async request opens its own connection at once (HTTP/1.1 stub)
+        fxStub = HttpServer.create(new InetSocketAddress("localhost", 0), CONCURRENT_REQUESTS);
+        fxStub.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        fxStub.createContext("/keep-alive/v1/convert", exchange -> respond(exchange, false, Duration.ZERO));
+        fxStub.createContext("/close/v1/convert", exchange -> respond(exchange, true, Duration.ZERO));
+        fxStub.createContext("/slow/v1/convert", exchange -> respond(exchange, false, FX_DELAY));
+        fxStub.start();
+
+        // same as the application's, see ApiClientConfig
+        httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        client = new CurrencyBeaconClient(httpClient, new ObjectMapper(), 5);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        httpClient.close();
+        fxStub.stop(0);
+    }
+
+    @Test
+    void connectionReuse() {
+        // warm up both paths (JIT, first connection)
+        sequential("/close", SEQUENTIAL_REQUESTS / 10);
+        sequential("/keep-alive", SEQUENTIAL_REQUESTS / 10);
+
+        connections.clear();
+        List<Long> reconnecting = sequential("/close", SEQUENTIAL_REQUESTS);
+        int reconnectingConnections = connections.size();
+
+        connections.clear();
+        List<Long> keptAlive = sequential("/keep-alive", SEQUENTIAL_REQUESTS);
+        int keptAliveConnections = connections.size();
+
+        System.out.printf(
+                "%s: %d sequential requests%n" +
+                        "  new connection each  %4d connections, p50 %d us, p99 %d us, total %d ms%n" +
+                        "  kept alive           %4d connections, p50 %d us, p99 %d us, total %d ms%n",
+                getClass().getSimpleName(),
+                SEQUENTIAL_REQUESTS,
+                reconnectingConnections, percentile(reconnecting, 0.5), percentile(reconnecting, 0.99), total(reconnecting),
+                keptAliveConnections, percentile(keptAlive, 0.5), percentile(keptAlive, 0.99), total(keptAlive)
+        );
+
+        assertEquals(SEQUENTIAL_REQUESTS, reconnecting.size());
+        assertEquals(SEQUENTIAL_REQUESTS, keptAlive.size());
+    }
+
+    @Test
+    void concurrentRequests() throws Exception {
+        String url = url("/slow");
+
+        long start = System.nanoTime();
+        List<Future<CurrencyBeaconResponse>> blocked = new ArrayList<>();
+        try (ExecutorService threads = Executors.newFixedThreadPool(BLOCKING_THREADS)) {
+            for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+                blocked.add(threads.submit(() -> client.get(url, CurrencyBeaconResponse.class, "unable to convert").join()));
+            }
+            for (Future<CurrencyBeaconResponse> response : blocked) {
+                response.get();
+            }
+        }
+        Duration blocking = Duration.ofNanos(System.nanoTime() - start);
+
+        start = System.nanoTime();
+        List<CompletableFuture<CurrencyBeaconResponse>> inFlight = new ArrayList<>();
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            inFlight.add(client.get(url, CurrencyBeaconResponse.class, "unable to convert"));
+        }
+        CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).join();
+        Duration async = Duration.ofNanos(System.nanoTime() - start);
+
+        System.out.printf(
+                "%s: %d concurrent requests, provider takes %d ms%n" +
+                        "  blocking, %d threads  %d ms (%.0f req/s)%n" +
+                        "  async                 %d ms (%.0f req/s)%n",
+                getClass().getSimpleName(),
+                CONCURRENT_REQUESTS,
+                FX_DELAY.toMillis(),
+                BLOCKING_THREADS, blocking.toMillis(), CONCURRENT_REQUESTS / (blocking.toNanos() / 1e9),
+                async.toMillis(), CONCURRENT_REQUESTS / (async.toNanos() / 1e9)
+        );
+
+        assertEquals(CONCURRENT_REQUESTS, blocked.size());
+        assertEquals(CONCURRENT_REQUESTS, inFlight.size());
+    }
+
+    private static List<Long> sequential(String path, int requests) {
+        String url = url(path);
+
+        List<Long> latencies = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            long start = System.nanoTime();
+            client.get(url, CurrencyBeaconResponse.class, "unable to convert").join();
+            latencies.add(System.nanoTime() - start);
+        }
+        return latencies;
+    }
+
+    private static String url(String path) {
+        return "http://localhost:" + fxStub.getAddress().getPort() + path + "/v1/convert?api_key=api_key&from=EUR&to=USD&amount=1";
+    }
+
+    private static void respond(HttpExchange exchange, boolean close, Duration delay) throws IOException {
+        connections.add(exchange.getRemoteAddress());
+
+        if (!delay.isZero()) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        byte[] body = CONVERTED.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        if (close) {
+            // client has to connect again for the next request
+            exchange.getResponseHeaders().add("Connection", "close");
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * @return in microseconds
+     */
+    private static long percentile(List<Long> latenciesNanos, double percentile) {
+        List<Long> sorted = new ArrayList<>(latenciesNanos);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile * sorted.size()) - 1;
+        return sorted.get(Math.max(index, 0)) / 1000;
+    }
+
+    private static long total(List<Long> latenciesNanos) {
+        return Duration.ofNanos(latenciesNanos.stream().mapToLong(Long::longValue).sum()).toMillis();
+    }
+}
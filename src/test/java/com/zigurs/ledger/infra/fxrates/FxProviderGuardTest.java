@@ -0,0 +1,190 @@
+package com.zigurs.ledger.infra.fxrates;
+
+import com.zigurs.ledger.api.CurrencyConverterService.CurrencyConversionException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.zigurs.ledger.infra.fxrates.FxProviderGuard.Endpoint.CONVERT;
+import static com.zigurs.ledger.infra.fxrates.FxProviderGuard.Endpoint.LATEST;
+import static org.junit.jupiter.api.Assertions.*;
+
+class FxProviderGuardTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void callsPassedThrough() {
+        FxProviderGuard guard = new FxProviderGuard(meterRegistry, 2, 60_000L, 1, 0, 0L);
+
+        assertEquals("1.1", guard.call(CONVERT, "unable to convert", () -> completed("1.1")).join());
+        assertEquals(0.0, meterRegistry.get(FxProviderGuard.CIRCUIT_OPEN).tag("endpoint", "convert").gauge().value());
+    }
+
+    @Test
+    void failFastOnceOpen() {
+        FxProviderGuard guard = new FxProviderGuard(meterRegistry, 2, 60_000L, 1, 0, 0L);
+
+        for (int i = 0; i < 2; i++) {
+            assertFailure(guard.call(CONVERT, "unable to convert", this::failure));
+        }
+
+        CurrencyConversionException e = assertFailure(guard.call(CONVERT, "unable to convert", this::failure));
+        assertEquals("unable to convert, provider unavailable (circuit open)", e.getMessage());
+        assertEquals(2, calls.get());
+        assertEquals(1.0, meterRegistry.counter(FxProviderGuard.REJECTED, "reason", "open").count());
+        assertEquals(1.0, meterRegistry.get(FxProviderGuard.CIRCUIT_OPEN).tag("endpoint", "convert").gauge().value());
+    }
+
+    @Test
+    void endpointsFailIndependently() {
+        FxProviderGuard guard = new FxProviderGuard(meterRegistry, 1, 60_000L, 1, 0, 0L);
+
+        assertFailure(guard.call(LATEST, "unable to fetch rates", this::failure));
+        assertEquals(1.0, meterRegistry.get(FxProviderGuard.CIRCUIT_OPEN).tag("endpoint", "latest").gauge().value());
+
+        assertEquals("1.1", guard.call(CONVERT, "unable to convert", () -> completed("1.1")).join());
+        assertEquals(0.0, meterRegistry.get(FxProviderGuard.CIRCUIT_OPEN).tag("endpoint", "convert").gauge().value());
+    }
+
+    @Test
+    void failuresWithinLaterStagesCounted() {
+        FxProviderGuard guard = new FxProviderGuard(meterRegistry, 1, 60_000L, 1, 0, 0L);
+
+        assertFailure(guard.call(CONVERT, "unable to convert", () -> completed("0").thenApply(rate -> {
+            throw new CurrencyConversionException("unable to convert, invalid rate");
+        })));
+
+        assertEquals(1.0, meterRegistry.get(FxProviderGuard.CIRCUIT_OPEN).tag("endpoint", "convert").gauge().value());
+    }
+
+    @Test
+    void rejectedRequestsNotCounted() {
+        FxProviderGuard guard = new FxProviderGuard(meterRegistry, 1, 60_000L, 1, 0, 0L);
+
+        for (int i = 0; i < 3; i++) {
+            assertFailure(guard.call(CONVERT, "unable to convert", () -> CompletableFuture.failedFuture(
+                    new FxRequestRejectedException("unable to convert, rejected by provider")
+            )));
+        }
+        assertEquals(0.0, meterRegistry.get(FxProviderGuard.CIRCUIT_OPEN).tag("endpoint", "convert").gauge().value());
+    }
+
+    @Test
+    void rejectedProbeKeepsCircuitHalfOpen() {
+        FxProviderGuard guard = new FxProviderGuard(meterRegistry, 1, 0L, 1, 0, 0L);
+        assertFailure(guard.call(CONVERT, "unable to convert", this::failure));
+
+        // probe neither closes the circuit nor opens it again
+        CurrencyConversionException e = assertFailure(guard.call(CONVERT, "unable to convert", () -> CompletableFuture.failedFuture(
+                new FxRequestRejectedException("unable to convert, rejected by provider")
+        )));
+        assertEquals("unable to convert, rejected by provider", e.getMessage());
+        assertEquals(1.0, meterRegistry.get(FxProviderGuard.CIRCUIT_OPEN).tag("endpoint", "convert").gauge().value());
+
+        // next probe decides
+        assertEquals("1.1", guard.call(CONVERT, "unable to convert", () -> completed("1.1")).join());
+        assertEquals(0.0, meterRegistry.get(FxProviderGuard.CIRCUIT_OPEN).tag("endpoint", "convert").gauge().value());
+    }
+
+    @Test
+    void otherExceptionsNotCounted() {
+        FxProviderGuard guard = new FxProviderGuard(meterRegistry, 1, 60_000L, 1, 0, 0L);
+
+        for (int i = 0; i < 3; i++) {
+            CompletionException e = assertThrows(CompletionException.class, () -> guard.call(CONVERT, "unable to convert", () -> {
+                calls.incrementAndGet();
+                throw new NullPointerException();
+            }).join());
+            assertInstanceOf(NullPointerException.class, e.getCause());
+        }
+
+        assertEquals(3, calls.get());
+        assertEquals("1.1", guard.call(CONVERT, "unable to convert", () -> completed("1.1")).join());
+    }
+
+    @Test
+    void busyBulkheadRejects() {
+        FxProviderGuard guard = new FxProviderGuard(meterRegistry, 1, 60_000L, 1, 0, 0L);
+
+        CompletableFuture<String> inFlight = new CompletableFuture<>();
+        CompletableFuture<String> first = guard.call(CONVERT, "unable to convert", () -> inFlight);
+
+        CurrencyConversionException e = assertFailure(guard.call(CONVERT, "unable to convert", () -> completed("1.2")));
+        assertEquals("unable to convert, provider busy", e.getMessage());
+        assertEquals(1.0, meterRegistry.counter(FxProviderGuard.REJECTED, "reason", "busy").count());
+
+        inFlight.complete("1.1");
+        assertEquals("1.1", first.join());
+
+        // not a provider failure, nor holding on to anything
+        assertEquals("1.2", guard.call(CONVERT, "unable to convert", () -> completed("1.2")).join());
+    }
+
+    @Test
+    void queuedCallersWaitTheirTurn() {
+        FxProviderGuard guard = new FxProviderGuard(meterRegistry, 1, 60_000L, 1, 1, 5_000L);
+
+        CompletableFuture<String> inFlight = new CompletableFuture<>();
+        CompletableFuture<String> first = guard.call(CONVERT, "unable to convert", () -> inFlight);
+        CompletableFuture<String> queued = guard.call(CONVERT, "unable to convert", () -> {
+            calls.incrementAndGet();
+            return completed("1.2");
+        });
+        assertEquals(1.0, meterRegistry.get(FxProviderGuard.QUEUED).gauge().value());
+
+        // queue full
+        assertFailure(guard.call(CONVERT, "unable to convert", () -> completed("1.3")));
+
+        // not started before its turn
+        assertEquals(0, calls.get());
+        inFlight.complete("1.1");
+
+        assertEquals("1.1", first.join());
+        assertEquals("1.2", queued.join());
+        assertEquals(0.0, meterRegistry.get(FxProviderGuard.QUEUED).gauge().value());
+    }
+
+    @Test
+    void queuedCallersGiveUpAfterMaxWait() throws Exception {
+        FxProviderGuard guard = new FxProviderGuard(meterRegistry, 1, 60_000L, 1, 1, 10L);
+
+        CompletableFuture<String> inFlight = new CompletableFuture<>();
+        guard.call(CONVERT, "unable to convert", () -> inFlight);
+        CompletableFuture<String> queued = guard.call(CONVERT, "unable to convert", () -> completed("1.2"));
+
+        CompletionException e = assertThrows(CompletionException.class, () -> queued.orTimeout(5, TimeUnit.SECONDS).join());
+        assertEquals("unable to convert, provider busy", e.getCause().getMessage());
+        assertEquals(0.0, meterRegistry.get(FxProviderGuard.QUEUED).gauge().value());
+
+        // permit not lost on the way out
+        inFlight.complete("1.1");
+        assertEquals("1.3", guard.call(CONVERT, "unable to convert", () -> completed("1.3")).join());
+    }
+
+    private CompletableFuture<String> failure() {
+        calls.incrementAndGet();
+        return CompletableFuture.failedFuture(new CurrencyConversionException("unable to convert, provider unavailable"));
+    }
+
+    private static CompletableFuture<String> completed(String value) {
+        return CompletableFuture.completedFuture(value);
+    }
+
+    private static CurrencyConversionException assertFailure(CompletableFuture<String> result) {
+        CompletionException e = assertThrows(CompletionException.class, result::join);
+        return assertInstanceOf(CurrencyConversionException.class, e.getCause());
+    }
+}
@@ -0,0 +1,196 @@
+package com.zigurs.ledger.infra.fxrates;
+
+import com.zigurs.ledger.api.CurrencyConverterService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import testutils.TestClock;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FxRateCacheTest {
+
+    private static final Duration TTL = Duration.ofMinutes(1);
+    private static final Duration STALE_WINDOW = Duration.ofMinutes(5);
+
+    private final AtomicInteger loads = new AtomicInteger();
+    // fetches left in flight, while deferred
+    private final List<Runnable> pending = new ArrayList<>();
+    private boolean deferred;
+    private SimpleMeterRegistry meterRegistry;
+    private TestClock clock;
+    private BigDecimal providerRate;
+    private FxRateCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new TestClock(Instant.ofEpochSecond(1715933225L));
+        providerRate = new BigDecimal("1.1");
+        cache = cache(Duration.ZERO);
+    }
+
+    @Test
+    void freshRatesServedFromCache() {
+        assertEquals(new BigDecimal("1.1"), cache.rate("EUR", "USD"));
+        clock.advance(TTL.minusMillis(1));
+        assertEquals(new BigDecimal("1.1"), cache.rate("EUR", "USD"));
+
+        assertEquals(1, loads.get());
+        assertEquals(1.0, lookups("miss"));
+        assertEquals(1.0, lookups("hit"));
+        assertEquals(TTL.minusMillis(1).toMillis(), meterRegistry.timer(FxRateCache.AGE).max(TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void pairsCachedSeparately() {
+        cache.rate("EUR", "USD");
+        cache.rate("USD", "EUR");
+        cache.rate("EUR", "USD");
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void staleRatesServedWhileRefreshed() {
+        cache.rate("EUR", "USD");
+        clock.advance(TTL);
+        providerRate = new BigDecimal("1.2");
+
+        deferred = true;
+
+        // stale rate right away, a single refresh however many lookups
+        assertEquals(new BigDecimal("1.1"), cache.rate("EUR", "USD"));
+        assertEquals(new BigDecimal("1.1"), cache.rate("EUR", "USD"));
+        assertEquals(1, pending.size());
+        assertEquals(2, loads.get());
+        assertEquals(2.0, lookups("stale"));
+
+        pending.get(0).run();
+
+        assertEquals(new BigDecimal("1.2"), cache.rate("EUR", "USD"));
+        assertEquals(2, loads.get());
+        assertEquals(1.0, lookups("hit"));
+    }
+
+    @Test
+    void failedRefreshKeepsStaleRate() {
+        cache.rate("EUR", "USD");
+        clock.advance(TTL);
+        providerRate = null;
+        deferred = true;
+
+        assertEquals(new BigDecimal("1.1"), cache.rate("EUR", "USD"));
+        pending.get(0).run();
+        assertEquals(1.0, meterRegistry.counter(FxRateCache.REFRESH_FAILURES).count());
+
+        // still stale, tried again
+        assertEquals(new BigDecimal("1.1"), cache.rate("EUR", "USD"));
+        assertEquals(2, pending.size());
+    }
+
+    @Test
+    void expiredRatesFetchedRightAway() {
+        cache.rate("EUR", "USD");
+        clock.advance(TTL.plus(STALE_WINDOW));
+        providerRate = new BigDecimal("1.2");
+
+        assertEquals(new BigDecimal("1.2"), cache.rate("EUR", "USD"));
+        assertEquals(2, loads.get());
+        assertEquals(2.0, lookups("miss"));
+        assertEquals(0.0, lookups("stale"));
+
+        // not cached once failed
+        clock.advance(TTL.plus(STALE_WINDOW));
+        providerRate = null;
+        assertThrows(CurrencyConverterService.CurrencyConversionException.class, () -> cache.rate("EUR", "USD"));
+    }
+
+    @Test
+    void expiredRatesAwaitedAsynchronously() {
+        deferred = true;
+
+        CompletableFuture<BigDecimal> rate = cache.rateAsync("EUR", "USD");
+        // coalesced with the one in flight
+        CompletableFuture<BigDecimal> concurrent = cache.rateAsync("EUR", "USD");
+        assertFalse(rate.isDone());
+
+        pending.get(0).run();
+
+        assertEquals(new BigDecimal("1.1"), rate.join());
+        assertEquals(new BigDecimal("1.1"), concurrent.join());
+        assertEquals(1, loads.get());
+        assertTrue(cache.rateAsync("EUR", "USD").isDone());
+    }
+
+    @Test
+    void lastKnownRateFallback() {
+        cache = cache(Duration.ofHours(1));
+
+        cache.rate("EUR", "USD");
+        clock.advance(TTL.plus(STALE_WINDOW));
+        providerRate = null;
+
+        assertEquals(new BigDecimal("1.1"), cache.rate("EUR", "USD"));
+        assertEquals(1.0, lookups("fallback"));
+
+        // too old even for a fallback
+        clock.advance(Duration.ofHours(1));
+        assertThrows(CurrencyConverterService.CurrencyConversionException.class, () -> cache.rate("EUR", "USD"));
+
+        // never known
+        assertThrows(CurrencyConverterService.CurrencyConversionException.class, () -> cache.rate("USD", "EUR"));
+    }
+
+    @Test
+    void disabledWithZeroTtl() {
+        cache = new FxRateCache(this::load, Duration.ZERO, Duration.ZERO, Duration.ZERO, meterRegistry, clock);
+
+        cache.rate("EUR", "USD");
+        cache.rate("EUR", "USD");
+
+        assertEquals(2, loads.get());
+        assertEquals(2.0, lookups("miss"));
+    }
+
+    private FxRateCache cache(Duration fallbackMaxAge) {
+        return new FxRateCache(this::load, TTL, STALE_WINDOW, fallbackMaxAge, meterRegistry, clock);
+    }
+
+    /**
+     * Completed right away with the current provider rate, unless deferred - then once its pending entry is run.
+     */
+    private CompletableFuture<BigDecimal> load(String from, String to) {
+        loads.incrementAndGet();
+
+        CompletableFuture<BigDecimal> fetch = new CompletableFuture<>();
+        Runnable complete = () -> {
+            if (providerRate == null) {
+                fetch.completeExceptionally(new CurrencyConverterService.CurrencyConversionException("provider unavailable"));
+            } else {
+                fetch.complete(providerRate);
+            }
+        };
+
+        if (deferred) {
+            pending.add(complete);
+        } else {
+            complete.run();
+        }
+        return fetch;
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.counter(FxRateCache.LOOKUPS, "result", result).count();
+    }
+}
@@ -0,0 +1,135 @@
+package com.zigurs.ledger.infra.fxrates;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import testutils.TestClock;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Against a local stub of CurrencyBeacon's latest rates endpoint.
+ */
+class FxRateTableTest {
+
+    private static final String LATEST = """
+            {"meta":{"code":200},"response":{"base":"%1$s","rates":%2$s},"base":"%1$s","rates":%2$s}""";
+
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private volatile int status;
+    private volatile String body;
+    private HttpServer stub;
+    private SimpleMeterRegistry meterRegistry;
+    private TestClock clock;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        status = 200;
+        body = String.format(LATEST, "USD", "{\"EUR\":0.8,\"GBP\":0.5}");
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new TestClock(Instant.parse("2024-05-17T10:00:00Z"));
+
+        stub = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stub.createContext("/v1/latest", exchange -> {
+            requests.add(exchange.getRequestURI().getQuery());
+
+            byte[] response = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        stub.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.stop(0);
+    }
+
+    @Test
+    void refreshed() {
+        FxRateTable table = table("USD", 60_000L);
+        assertEquals(Optional.empty(), table.rate("EUR", "GBP"));
+
+        table.refresh();
+
+        assertEquals(List.of("api_key=api_key&base=USD"), requests);
+        assertEquals(0, new BigDecimal("0.625").compareTo(table.rate("EUR", "GBP").orElseThrow()));
+        assertEquals(0, new BigDecimal("2").compareTo(table.rate("GBP", "USD").orElseThrow()));
+        assertEquals(Optional.empty(), table.rate("EUR", "JPY"));
+        assertEquals(2.0, meterRegistry.counter(FxRateCache.LOOKUPS, "result", "table").count());
+
+        // swapped as a whole
+        body = String.format(LATEST, "USD", "{\"EUR\":0.9}");
+        table.refresh();
+
+        assertEquals(0, new BigDecimal("0.9").compareTo(table.rate("USD", "EUR").orElseThrow()));
+        assertEquals(Optional.empty(), table.rate("USD", "GBP"));
+    }
+
+    @Test
+    void failedRefreshKeepsTable() {
+        FxRateTable table = table("USD", 60_000L);
+        table.refresh();
+
+        status = 500;
+        table.refresh();
+        body = String.format(LATEST, "EUR", "{\"USD\":1.25}");
+        status = 200;
+        table.refresh();
+
+        assertEquals(3, requests.size());
+        assertEquals(0, new BigDecimal("0.8").compareTo(table.rate("USD", "EUR").orElseThrow()));
+    }
+
+    @Test
+    void tooOldTableNotUsed() {
+        FxRateTable table = table("USD", 60_000L);
+        table.refresh();
+
+        clock.advance(Duration.ofMillis(60_000L));
+        assertEquals(0, new BigDecimal("0.8").compareTo(table.rate("USD", "EUR").orElseThrow()));
+
+        clock.advance(Duration.ofMillis(1L));
+        assertEquals(Optional.empty(), table.rate("USD", "EUR"));
+    }
+
+    @Test
+    void disabled() {
+        FxRateTable table = table("", 60_000L);
+        table.refresh();
+
+        assertTrue(requests.isEmpty());
+        assertEquals(Optional.empty(), table.rate("USD", "EUR"));
+    }
+
+    private FxRateTable table(String base, long maxAgeMs) {
+        return new FxRateTable(
+                new CurrencyBeaconClient(HttpClient.newHttpClient(), new ObjectMapper(), 5),
+                new FxProviderGuard(meterRegistry, 5, 60_000L, 1, 0, 0L),
+                meterRegistry,
+                "http://localhost:" + stub.getAddress().getPort() + "/v1/latest",
+                "api_key",
+                base,
+                maxAgeMs,
+                clock
+        );
+    }
+}
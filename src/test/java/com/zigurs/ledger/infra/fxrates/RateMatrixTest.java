@@ -0,0 +1,56 @@
+package com.zigurs.ledger.infra.fxrates;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateMatrixTest {
+
+    private static final Instant now = Instant.ofEpochSecond(1715933225L);
+
+    @Test
+    void triangulated() {
+        RateMatrix matrix = RateMatrix.triangulate("USD", Map.of(
+                "EUR", new BigDecimal("0.8"),
+                "GBP", new BigDecimal("0.5")
+        ), now);
+
+        assertEquals(3, matrix.size());
+        assertEquals(now, matrix.fetchedAt());
+        assertEquals(0, new BigDecimal("0.8").compareTo(matrix.rate("USD", "EUR").orElseThrow()));
+        assertEquals(0, new BigDecimal("1.25").compareTo(matrix.rate("EUR", "USD").orElseThrow()));
+        assertEquals(0, new BigDecimal("0.625").compareTo(matrix.rate("EUR", "GBP").orElseThrow()));
+        assertEquals(0, new BigDecimal("1.6").compareTo(matrix.rate("GBP", "EUR").orElseThrow()));
+        assertEquals(BigDecimal.ONE, matrix.rate("GBP", "GBP").orElseThrow());
+    }
+
+    @Test
+    void unknownCurrencies() {
+        RateMatrix matrix = RateMatrix.triangulate("USD", Map.of("EUR", new BigDecimal("0.8")), now);
+
+        assertEquals(Optional.empty(), matrix.rate("USD", "JPY"));
+        assertEquals(Optional.empty(), matrix.rate("JPY", "EUR"));
+    }
+
+    @Test
+    void invalidRatesLeftOut() {
+        Map<String, BigDecimal> rates = new HashMap<>();
+        rates.put("EUR", BigDecimal.ZERO);
+        rates.put("GBP", new BigDecimal("-1"));
+        rates.put("JPY", null);
+        // base against itself is always 1
+        rates.put("USD", new BigDecimal("2"));
+
+        RateMatrix matrix = RateMatrix.triangulate("USD", rates, now);
+
+        assertEquals(1, matrix.size());
+        assertEquals(Optional.empty(), matrix.rate("USD", "EUR"));
+        assertEquals(BigDecimal.ONE, matrix.rate("USD", "USD").orElseThrow());
+    }
+}
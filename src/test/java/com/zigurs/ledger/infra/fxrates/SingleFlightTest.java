@@ -0,0 +1,104 @@
+package com.zigurs.ledger.infra.fxrates;
+
+import com.zigurs.ledger.api.CurrencyConverterService;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 32;
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    void burstShareSingleCall() {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        List<CompletableFuture<String>> results = burst("EUR/USD", call);
+        results.forEach(result -> assertFalse(result.isDone()));
+
+        call.complete("1.1");
+
+        results.forEach(result -> assertEquals("1.1", result.join()));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void exceptionsPropagatedToAll() {
+        CurrencyConverterService.CurrencyConversionException failure =
+                new CurrencyConverterService.CurrencyConversionException("provider unavailable");
+
+        CompletableFuture<String> call = new CompletableFuture<>();
+        List<CompletableFuture<String>> results = burst("EUR/USD", call);
+        call.completeExceptionally(failure);
+
+        for (CompletableFuture<String> result : results) {
+            CompletionException e = assertThrows(CompletionException.class, result::join);
+            assertSame(failure, e.getCause());
+        }
+        assertEquals(1, calls.get());
+
+        // failures are not remembered
+        assertEquals("1.2", singleFlight.run("EUR/USD", () -> CompletableFuture.completedFuture("1.2")).join());
+    }
+
+    @Test
+    void exceptionsStartingCallPropagated() {
+        CompletableFuture<String> result = singleFlight.run("EUR/USD", () -> {
+            throw new NullPointerException();
+        });
+
+        CompletionException e = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(NullPointerException.class, e.getCause());
+    }
+
+    @Test
+    void cancelledCallerDoesNotAffectOthers() {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        List<CompletableFuture<String>> results = burst("EUR/USD", call);
+
+        results.get(0).cancel(false);
+        results.get(1).cancel(false);
+        call.complete("1.1");
+
+        assertEquals("1.1", results.get(2).join());
+        assertFalse(call.isCancelled());
+    }
+
+    @Test
+    void keysIndependent() {
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> first = singleFlight.run("EUR/USD", () -> call);
+
+        assertEquals("0.9", singleFlight.run("USD/EUR", () -> CompletableFuture.completedFuture("0.9")).join());
+        assertFalse(first.isDone());
+    }
+
+    @Test
+    void sequentialCallsNotCoalesced() {
+        assertEquals("1.1", singleFlight.run("EUR/USD", () -> CompletableFuture.completedFuture("1.1")).join());
+        assertEquals("1.2", singleFlight.run("EUR/USD", () -> CompletableFuture.completedFuture("1.2")).join());
+    }
+
+    /**
+     * All callers arrive while the first call is in flight, i.e. before the test completes it.
+     */
+    private List<CompletableFuture<String>> burst(String key, CompletableFuture<String> call) {
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(singleFlight.run(key, () -> {
+                calls.incrementAndGet();
+                return call;
+            }));
+        }
+        return results;
+    }
+}
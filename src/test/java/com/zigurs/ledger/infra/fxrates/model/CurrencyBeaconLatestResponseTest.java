@@ -0,0 +1,29 @@
+package com.zigurs.ledger.infra.fxrates.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CurrencyBeaconLatestResponseTest {
+
+    @Test
+    void nullChecks() {
+        assertThrows(NullPointerException.class, () -> {
+                    new CurrencyBeaconLatestResponse(
+                            "base",
+                            null
+                    );
+                }
+        );
+
+        assertThrows(NullPointerException.class, () -> {
+                    new CurrencyBeaconLatestResponse(
+                            null,
+                            Map.of()
+                    );
+                }
+        );
+    }
+}
@@ -0,0 +1,56 @@
+package com.zigurs.ledger.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DailyAccountTotalsTest {
+
+    private static final Account source = new Account(UUID.randomUUID(), null, "EUR", BigInteger.ZERO);
+    private static final Account destination = new Account(UUID.randomUUID(), null, "EUR", BigInteger.ZERO);
+
+    @Test
+    void entriesOfTransaction() {
+        // just before midnight UTC
+        Transaction transaction = transaction(Instant.parse("2024-05-17T23:59:59Z"), 100, 400, 700);
+
+        DailyAccountTotals debit = DailyAccountTotals.of(transaction.getEntries().get(0));
+        assertEquals(new DailyAccountTotals(LocalDate.parse("2024-05-17"), 1, BigInteger.valueOf(100), 0, BigInteger.ZERO, BigInteger.valueOf(400), BigInteger.valueOf(400)), debit);
+
+        DailyAccountTotals credit = DailyAccountTotals.of(transaction.getEntries().get(1));
+        assertEquals(new DailyAccountTotals(LocalDate.parse("2024-05-17"), 0, BigInteger.ZERO, 1, BigInteger.valueOf(100), BigInteger.valueOf(700), BigInteger.valueOf(700)), credit);
+    }
+
+    @Test
+    void plus() {
+        DailyAccountTotals first = DailyAccountTotals.of(transaction(Instant.parse("2024-05-17T08:00:00Z"), 100, 400, 700).getEntries().get(0));
+        DailyAccountTotals second = DailyAccountTotals.of(transaction(Instant.parse("2024-05-17T09:00:00Z"), 50, 350, 750).getEntries().get(0));
+        DailyAccountTotals third = DailyAccountTotals.of(transaction(Instant.parse("2024-05-17T10:00:00Z"), 500, 850, 200).getEntries().get(1));
+
+        DailyAccountTotals totals = first.plus(second).plus(third);
+        assertEquals(new DailyAccountTotals(LocalDate.parse("2024-05-17"), 2, BigInteger.valueOf(150), 1, BigInteger.valueOf(500), BigInteger.valueOf(200), BigInteger.valueOf(400)), totals);
+
+        DailyAccountTotals nextDay = DailyAccountTotals.of(transaction(Instant.parse("2024-05-18T00:00:00Z"), 1, 1, 1).getEntries().get(0));
+        assertThrows(IllegalArgumentException.class, () -> totals.plus(nextDay));
+    }
+
+    private static Transaction transaction(Instant timestamp, long amount, long sourceBalance, long destinationBalance) {
+        return new Transaction(
+                UUID.randomUUID(),
+                TransactionStatus.COMPLETED,
+                timestamp,
+                source,
+                BigInteger.valueOf(amount),
+                BigInteger.valueOf(sourceBalance),
+                destination,
+                BigInteger.valueOf(amount),
+                BigInteger.valueOf(destinationBalance),
+                "transfer"
+        );
+    }
+}